@@ -36,6 +36,10 @@ import com.vuforia.Vec4I;
 import com.vuforia.VideoBackgroundConfig;
 import com.vuforia.VideoMode;
 import com.vuforia.ViewList;
+import com.vuforia.samples.SampleApplication.utils.DebugTrace;
+import com.vuforia.samples.SampleApplication.utils.FrameProfiler;
+import com.vuforia.samples.SampleApplication.utils.GLStateCache;
+import com.vuforia.samples.SampleApplication.utils.GpuTimer;
 import com.vuforia.samples.SampleApplication.utils.VideoBackgroundShader;
 import com.vuforia.samples.SampleApplication.utils.SampleUtils;
 
@@ -68,6 +72,32 @@ public class SampleAppRenderer {
     // Stores orientation
     private boolean mIsPortrait = false;
 
+    // Shared with the app renderer to skip the redundant state changes
+    private final GLStateCache mStateCache = new GLStateCache();
+    private static final long GL_CALLS_LOG_INTERVAL_MS = 5000;
+    private final DebugTrace.Sampler mGLCallsTrace = new DebugTrace.Sampler(DebugTrace.DEBUG,
+            GL_CALLS_LOG_INTERVAL_MS);
+    private final DebugTrace.Sampler mGLErrorTrace = new DebugTrace.Sampler(DebugTrace.DEBUG, 1000);
+
+    // Stages of render() timed by the profiler
+    public static final int STAGE_UPDATE_STATE = 0;
+    public static final int STAGE_BEGIN = 1;
+    public static final int STAGE_VIDEO_BACKGROUND = 2;
+    public static final int STAGE_RENDER_FRAME = 3;
+    public static final int STAGE_END = 4;
+    private static final String[] STAGE_NAMES = { "updateState", "begin",
+            "background", "renderFrame", "end" };
+    private final FrameProfiler mProfiler = new FrameProfiler(STAGE_NAMES);
+
+    // Passes of the frame timed on the GPU
+    public static final int PASS_VIDEO_BACKGROUND = 0;
+    public static final int PASS_AUGMENTATION = 1;
+    private static final String[] PASS_NAMES = { "background", "augmentation" };
+    private final GpuTimer mGpuTimer = new GpuTimer(PASS_NAMES);
+
+    // Time the current frame started, the same for all its views
+    private long mFrameTimeNs;
+
     public SampleAppRenderer(SampleAppRendererControl renderingInterface, Activity activity, int deviceMode,
                              boolean stereo, float nearPlane, float farPlane)
     {
@@ -97,9 +127,37 @@ public class SampleAppRenderer {
 
     public void onSurfaceCreated()
     {
+        // Nothing is known about the new context
+        mStateCache.invalidate();
+        mGpuTimer.onSurfaceCreated();
         initRendering();
     }
 
+    // Frame and per-stage timings of render(), renderFrame can add its own
+    // nested stages
+    public FrameProfiler getProfiler()
+    {
+        return mProfiler;
+    }
+
+    // System.nanoTime() at the start of the frame being rendered
+    public long getFrameTimeNanos()
+    {
+        return mFrameTimeNs;
+    }
+
+    // GPU time of the passes, renderFrame times its own PASS_AUGMENTATION
+    public GpuTimer getGpuTimer()
+    {
+        return mGpuTimer;
+    }
+
+    // The state cache to use for the GL calls made during renderFrame
+    public GLStateCache getStateCache()
+    {
+        return mStateCache;
+    }
+
     public void onConfigurationChanged(boolean isARActive)
     {
         updateActivityOrientation();
@@ -120,7 +178,7 @@ public class SampleAppRenderer {
         if (vbShaderProgramID > 0)
         {
             // Activate shader:
-            GLES20.glUseProgram(vbShaderProgramID);
+            mStateCache.useProgram(vbShaderProgramID);
 
             // Retrieve handler for texture sampler shader uniform variable:
             vbTexSampler2DHandle = GLES20.glGetUniformLocation(vbShaderProgramID, "texSampler2D");
@@ -134,7 +192,7 @@ public class SampleAppRenderer {
             vbTexSampler2DHandle = GLES20.glGetUniformLocation(vbShaderProgramID, "texSampler2D");
 
             // Stop using the program
-            GLES20.glUseProgram(0);
+            mStateCache.useProgram(0);
         }
 
         videoBackgroundTex = new GLTextureUnit();
@@ -145,11 +203,21 @@ public class SampleAppRenderer {
     // and call any specific rendering method
     public void render()
     {
+        mFrameTimeNs = System.nanoTime();
+        mProfiler.beginFrame(mFrameTimeNs);
+        mGpuTimer.beginFrame();
+        logGLCalls();
+        mStateCache.beginFrame();
+
         GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
         State state;
         // Get our current state
+        mProfiler.beginStage(STAGE_UPDATE_STATE);
         state = TrackerManager.getInstance().getStateUpdater().updateState();
+        mProfiler.endStage();
+        mProfiler.beginStage(STAGE_BEGIN);
         mRenderer.begin(state);
+        mProfiler.endStage();
 
         // We must detect if background reflection is active and adjust the
         // culling direction.
@@ -158,9 +226,9 @@ public class SampleAppRenderer {
         // therefore standard counter clockwise face culling will result in
         // "inside out" models.
         if (Renderer.getInstance().getVideoBackgroundConfig().getReflection() == VIDEO_BACKGROUND_REFLECTION.VIDEO_BACKGROUND_REFLECTION_ON)
-            GLES20.glFrontFace(GLES20.GL_CW);  // Front camera
+            mStateCache.frontFace(GLES20.GL_CW);  // Front camera
         else
-            GLES20.glFrontFace(GLES20.GL_CCW);   // Back camera
+            mStateCache.frontFace(GLES20.GL_CCW);   // Back camera
 
         // We get a list of views which depend on the mode we are working on, for mono we have
         // only one view, in stereo we have three: left, right and postprocess
@@ -207,10 +275,26 @@ public class SampleAppRenderer {
             // This will be called for MONO, LEFT and RIGHT views, POSTPROCESS will not render the
             // frame
             if(currentView != VIEW.VIEW_POSTPROCESS)
+            {
+                mProfiler.beginStage(STAGE_RENDER_FRAME);
                 mRenderingInterface.renderFrame(state, projectionMatrix);
+                mProfiler.endStage();
+            }
         }
 
+        mProfiler.beginStage(STAGE_END);
         mRenderer.end();
+        mProfiler.endStage();
+        mProfiler.endFrame();
+    }
+
+    // Logs the GL calls issued and skipped by the state cache, debug builds only
+    private void logGLCalls()
+    {
+        if (DebugTrace.COMPILE_LEVEL >= DebugTrace.DEBUG && mGLCallsTrace.sample())
+            Log.d(LOGTAG, "GL state calls in the last frame: "
+                    + mStateCache.getLastFrameIssuedCalls() + " issued, "
+                    + mStateCache.getLastFrameSkippedCalls() + " skipped");
     }
 
     public void setNearFarPlanes(float near, float far)
@@ -224,10 +308,23 @@ public class SampleAppRenderer {
         if(currentView == VIEW.VIEW_POSTPROCESS)
             return;
 
+        mProfiler.beginStage(STAGE_VIDEO_BACKGROUND);
+        mGpuTimer.begin(PASS_VIDEO_BACKGROUND);
+        drawVideoBackground();
+        mGpuTimer.end(PASS_VIDEO_BACKGROUND);
+        mProfiler.endStage();
+    }
+
+    private void drawVideoBackground()
+    {
         int vbVideoTextureUnit = 0;
         // Bind the video bg texture and get the Texture ID from Vuforia
         videoBackgroundTex.setTextureUnit(vbVideoTextureUnit);
-        if (!mRenderer.updateVideoBackgroundTexture(videoBackgroundTex))
+        boolean updated = mRenderer.updateVideoBackgroundTexture(videoBackgroundTex);
+        // Vuforia changed some state in Renderer.begin and bound the video
+        // texture to the unit, forget only that
+        mStateCache.invalidateVuforiaState();
+        if (!updated)
         {
             Log.e(LOGTAG, "Unable to update video background texture");
             return;
@@ -245,13 +342,13 @@ public class SampleAppRenderer {
             Matrix.scaleM(vbProjectionMatrix, 0, sceneScaleFactor, sceneScaleFactor, 1.0f);
         }
 
-        GLES20.glDisable(GLES20.GL_DEPTH_TEST);
-        GLES20.glDisable(GLES20.GL_CULL_FACE);
-        GLES20.glDisable(GLES20.GL_SCISSOR_TEST);
+        mStateCache.disable(GLES20.GL_DEPTH_TEST);
+        mStateCache.disable(GLES20.GL_CULL_FACE);
+        mStateCache.disable(GLES20.GL_SCISSOR_TEST);
 
         Mesh vbMesh = mRenderingPrimitives.getVideoBackgroundMesh(currentView);
         // Load the shader and upload the vertex/texcoord/index data
-        GLES20.glUseProgram(vbShaderProgramID);
+        mStateCache.useProgram(vbShaderProgramID);
         GLES20.glVertexAttribPointer(vbVertexHandle, 3, GLES20.GL_FLOAT, false, 0, vbMesh.getPositions().asFloatBuffer());
         GLES20.glVertexAttribPointer(vbTexCoordHandle, 2, GLES20.GL_FLOAT, false, 0, vbMesh.getUVs().asFloatBuffer());
 
@@ -259,8 +356,8 @@ public class SampleAppRenderer {
 
         // Render the video background with the custom shader
         // First, we enable the vertex arrays
-        GLES20.glEnableVertexAttribArray(vbVertexHandle);
-        GLES20.glEnableVertexAttribArray(vbTexCoordHandle);
+        mStateCache.enableVertexAttribArray(vbVertexHandle);
+        mStateCache.enableVertexAttribArray(vbTexCoordHandle);
 
         // Pass the projection matrix to OpenGL
         GLES20.glUniformMatrix4fv(vbProjectionMatrixHandle, 1, false, vbProjectionMatrix, 0);
@@ -270,10 +367,10 @@ public class SampleAppRenderer {
                 vbMesh.getTriangles().asShortBuffer());
 
         // Finally, we disable the vertex arrays
-        GLES20.glDisableVertexAttribArray(vbVertexHandle);
-        GLES20.glDisableVertexAttribArray(vbTexCoordHandle);
+        mStateCache.disableVertexAttribArray(vbVertexHandle);
+        mStateCache.disableVertexAttribArray(vbTexCoordHandle);
 
-        SampleUtils.checkGLError("Rendering of the video background failed");
+        DebugTrace.checkGLError(mGLErrorTrace, "Rendering of the video background failed");
     }
 
 
@@ -52,8 +52,10 @@ public class SampleApplicationSession implements UpdateCallbackInterface
     // An object used for synchronizing Vuforia initialization, dataset loading
     // and the Android onDestroy() life cycle event. If the application is
     // destroyed while a data set is still being loaded, then we wait for the
-    // loading operation to finish before shutting down Vuforia:
-    private final Object mLifecycleLock = new Object();
+    // loading operation to finish before shutting down Vuforia.
+    // Shared by all the sessions, since stopAR may run on a worker thread
+    // while the session of a new activity initializes Vuforia:
+    private static final Object mLifecycleLock = new Object();
     
     // Vuforia initialization flags:
     private int mVuforiaFlags = 0;
@@ -0,0 +1,94 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+
+
+// Loads binary assets (models, compressed textures) into direct buffers
+// that can be handed to OpenGL without parsing or copying
+public final class AssetBuffers
+{
+    
+    private AssetBuffers()
+    {
+    }
+    
+    
+    // Memory-maps the asset if it is stored uncompressed in the APK,
+    // otherwise reads it in a single direct buffer
+    public static ByteBuffer load(AssetManager assetManager, String filename)
+        throws IOException
+    {
+        ByteBuffer data = map(assetManager, filename);
+        if (data == null)
+            data = read(assetManager, filename);
+        return data;
+    }
+    
+    
+    // Returns null if the asset is compressed inside the APK and so it can
+    // not be mapped
+    public static ByteBuffer map(AssetManager assetManager,
+        String filename) throws IOException
+    {
+        AssetFileDescriptor fd;
+        try
+        {
+            fd = assetManager.openFd(filename);
+        } catch (FileNotFoundException e)
+        {
+            // Thrown also for compressed assets, try to open it as a stream
+            return null;
+        }
+        
+        FileInputStream fis = fd.createInputStream();
+        try
+        {
+            // The mapping stays valid after the channel is closed
+            return fis.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                fd.getStartOffset(), fd.getLength());
+        } finally
+        {
+            fis.close();
+            fd.close();
+        }
+    }
+    
+    
+    public static ByteBuffer read(AssetManager assetManager,
+        String filename) throws IOException
+    {
+        InputStream is = assetManager.open(filename, AssetManager.ACCESS_STREAMING);
+        try
+        {
+            // For assets available() is the whole uncompressed size, the
+            // spare byte lets the end of the stream be reached without growing
+            ByteBuffer data = ByteBuffer.allocateDirect(is.available() + 1);
+            ReadableByteChannel channel = Channels.newChannel(is);
+            while (channel.read(data) >= 0)
+            {
+                if (!data.hasRemaining())
+                {
+                    ByteBuffer grown = ByteBuffer.allocateDirect(data.capacity() * 2);
+                    data.flip();
+                    grown.put(data);
+                    data = grown;
+                }
+            }
+            data.flip();
+            return data;
+        } finally
+        {
+            is.close();
+        }
+    }
+}
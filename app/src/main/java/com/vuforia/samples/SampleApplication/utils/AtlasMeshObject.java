@@ -0,0 +1,44 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import java.nio.Buffer;
+
+
+// A mesh drawn with a texture packed in a TextureAtlas: it shares the
+// buffers of the original mesh, except the texture coordinates that are
+// remapped once in the region of the texture.
+public class AtlasMeshObject extends MeshObject
+{
+    
+    private final MeshObject mMesh;
+    private final Buffer mTexCoords;
+    
+    
+    public AtlasMeshObject(MeshObject mesh, TextureAtlas.Region region)
+    {
+        mMesh = mesh;
+        mTexCoords = TextureAtlas.remapTexCoords(mesh.getTexCoords(), region);
+    }
+    
+    
+    @Override
+    public Buffer getBuffer(BUFFER_TYPE bufferType)
+    {
+        if (bufferType == BUFFER_TYPE.BUFFER_TYPE_TEXTURE_COORD)
+            return mTexCoords;
+        return mMesh.getBuffer(bufferType);
+    }
+    
+    
+    @Override
+    public int getNumObjectVertex()
+    {
+        return mMesh.getNumObjectVertex();
+    }
+    
+    
+    @Override
+    public int getNumObjectIndex()
+    {
+        return mMesh.getNumObjectIndex();
+    }
+}
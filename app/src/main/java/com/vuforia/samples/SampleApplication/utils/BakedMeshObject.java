@@ -0,0 +1,78 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+
+// A mesh baked in the BinaryModelFile format, like the built-in Teapot and
+// CubeObject. The buffers are views on the file data: a memory-mapped asset
+// is drawn with no parsing and no copy, and no geometry is kept on the heap.
+public class BakedMeshObject extends MeshObject
+{
+    
+    private final Buffer mVertBuff;
+    private final Buffer mTexCoordBuff;
+    private final Buffer mNormBuff;
+    private final Buffer mIndBuff;
+    private final int mNumVertices;
+    private final int mNumIndices;
+    
+    
+    // data is the content of a .mesh file, see AssetBuffers.load
+    public BakedMeshObject(ByteBuffer data) throws IOException
+    {
+        this(BinaryModelFile.read(data));
+    }
+    
+    
+    public BakedMeshObject(BinaryModelFile model)
+    {
+        mVertBuff = model.getVertices();
+        mTexCoordBuff = model.getTexCoords();
+        mNormBuff = model.getNormals();
+        mIndBuff = model.getIndices();
+        mNumVertices = model.getNumVertexFloats() / 3;
+        mNumIndices = model.getNumIndices();
+    }
+    
+    
+    @Override
+    public Buffer getBuffer(BUFFER_TYPE bufferType)
+    {
+        Buffer result = null;
+        switch (bufferType)
+        {
+            case BUFFER_TYPE_VERTEX:
+                result = mVertBuff;
+                break;
+            case BUFFER_TYPE_TEXTURE_COORD:
+                result = mTexCoordBuff;
+                break;
+            case BUFFER_TYPE_NORMALS:
+                result = mNormBuff;
+                break;
+            case BUFFER_TYPE_INDICES:
+                result = mIndBuff;
+                break;
+            default:
+                break;
+        }
+        return result;
+    }
+    
+    
+    @Override
+    public int getNumObjectVertex()
+    {
+        return mNumVertices;
+    }
+    
+    
+    // 0 if the mesh is not indexed
+    @Override
+    public int getNumObjectIndex()
+    {
+        return mNumIndices;
+    }
+}
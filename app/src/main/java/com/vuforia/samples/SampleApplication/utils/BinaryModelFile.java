@@ -0,0 +1,239 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+
+// Compact binary container for the meshes of SampleApplication3DModel,
+// loaded with no per-value parsing.
+//
+// Layout, all values little-endian:
+//   int   magic ("MAR3")
+//   int   version
+//   int   number of vertex floats
+//   int   number of normal floats
+//   int   number of texture coordinate floats
+//   int   number of indices (shorts, 0 if the mesh is not indexed)
+//   float vertices[], float normals[], float texCoords[], short indices[]
+//
+// The blocks can be used directly as OpenGL buffers, so a file can be
+// memory-mapped (FileChannel.map) and sliced without copying. Every Android
+// ABI is little-endian, which is also the native order expected by OpenGL.
+//
+// The text models read by SampleApplication3DModel.loadModel are converted
+// offline by ModelConverter, in the tools module:
+//   ./gradlew :tools:convertModel -Pin=Buildings.txt -Pout=Buildings.mesh
+public final class BinaryModelFile
+{
+    public static final String EXTENSION = ".mesh";
+    public static final int MAGIC = 0x3352414D; // "MAR3" in little-endian
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 6 * 4;
+
+    private final ByteBuffer mVertices;
+    private final ByteBuffer mNormals;
+    private final ByteBuffer mTexCoords;
+    private final ByteBuffer mIndices;
+
+
+    private BinaryModelFile(ByteBuffer vertices, ByteBuffer normals,
+        ByteBuffer texCoords, ByteBuffer indices)
+    {
+        mVertices = vertices;
+        mNormals = normals;
+        mTexCoords = texCoords;
+        mIndices = indices;
+    }
+
+
+    // Reads a model from the content of a .mesh file, starting at the
+    // current position of data. The returned buffers are views on data.
+    public static BinaryModelFile read(ByteBuffer data) throws IOException
+    {
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        int base = data.position();
+        if (data.remaining() < HEADER_SIZE || data.getInt(base) != MAGIC)
+            throw new IOException("Not a binary model file");
+
+        int version = data.getInt(base + 4);
+        if (version != VERSION)
+            throw new IOException("Unsupported binary model version " + version);
+
+        int numVertices = data.getInt(base + 8);
+        int numNormals = data.getInt(base + 12);
+        int numTexCoords = data.getInt(base + 16);
+        int numIndices = data.getInt(base + 20);
+        if (numVertices < 0 || numNormals < 0 || numTexCoords < 0 || numIndices < 0)
+            throw new IOException("Corrupted binary model header");
+
+        long size = HEADER_SIZE + 4L * (numVertices + numNormals + numTexCoords)
+            + 2L * numIndices;
+        if (data.remaining() < size)
+            throw new IOException("Truncated binary model: " + data.remaining()
+                + " bytes instead of " + size);
+
+        int offset = base + HEADER_SIZE;
+        ByteBuffer vertices = block(data, offset, numVertices * 4);
+        offset += numVertices * 4;
+        ByteBuffer normals = block(data, offset, numNormals * 4);
+        offset += numNormals * 4;
+        ByteBuffer texCoords = block(data, offset, numTexCoords * 4);
+        offset += numTexCoords * 4;
+        ByteBuffer indices = numIndices > 0 ? block(data, offset, numIndices * 2)
+            : null;
+
+        return new BinaryModelFile(vertices, normals, texCoords, indices);
+    }
+
+
+    // Parses the text format of SampleApplication3DModel: for vertices,
+    // normals and texture coordinates a line with the number of floats
+    // followed by one float per line
+    public static BinaryModelFile readText(Reader input) throws IOException
+    {
+        BufferedReader reader = new BufferedReader(input);
+        ByteBuffer vertices = readTextBlock(reader);
+        ByteBuffer normals = readTextBlock(reader);
+        ByteBuffer texCoords = readTextBlock(reader);
+        return new BinaryModelFile(vertices, normals, texCoords, null);
+    }
+
+
+    // Wraps arrays in a model, e.g. to bake a mesh built in code; indices
+    // can be null
+    public static BinaryModelFile fromArrays(float[] vertices, float[] normals,
+        float[] texCoords, short[] indices)
+    {
+        return new BinaryModelFile(floatBlock(vertices), floatBlock(normals),
+            floatBlock(texCoords), indices != null ? shortBlock(indices) : null);
+    }
+
+
+    public void write(File file) throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(
+            ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(getNumVertexFloats());
+        header.putInt(mNormals.remaining() / 4);
+        header.putInt(mTexCoords.remaining() / 4);
+        header.putInt(getNumIndices());
+        header.flip();
+
+        FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            FileChannel channel = out.getChannel();
+            writeFully(channel, header);
+            writeFully(channel, mVertices.duplicate());
+            writeFully(channel, mNormals.duplicate());
+            writeFully(channel, mTexCoords.duplicate());
+            if (mIndices != null)
+                writeFully(channel, mIndices.duplicate());
+        } finally
+        {
+            out.close();
+        }
+    }
+
+
+    public ByteBuffer getVertices()
+    {
+        return mVertices;
+    }
+
+
+    public ByteBuffer getNormals()
+    {
+        return mNormals;
+    }
+
+
+    public ByteBuffer getTexCoords()
+    {
+        return mTexCoords;
+    }
+
+
+    // null if the mesh is not indexed
+    public ByteBuffer getIndices()
+    {
+        return mIndices;
+    }
+
+
+    public int getNumVertexFloats()
+    {
+        return mVertices.remaining() / 4;
+    }
+
+
+    public int getNumIndices()
+    {
+        return mIndices == null ? 0 : mIndices.remaining() / 2;
+    }
+
+
+    private static ByteBuffer block(ByteBuffer data, int offset, int bytes)
+    {
+        ByteBuffer view = data.duplicate();
+        view.limit(offset + bytes);
+        view.position(offset);
+        return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+
+    private static ByteBuffer floatBlock(float[] values)
+    {
+        ByteBuffer block = ByteBuffer.allocateDirect(values.length * 4).order(
+            ByteOrder.LITTLE_ENDIAN);
+        block.asFloatBuffer().put(values);
+        return block;
+    }
+
+
+    private static ByteBuffer shortBlock(short[] values)
+    {
+        ByteBuffer block = ByteBuffer.allocateDirect(values.length * 2).order(
+            ByteOrder.LITTLE_ENDIAN);
+        block.asShortBuffer().put(values);
+        return block;
+    }
+
+
+    private static ByteBuffer readTextBlock(BufferedReader reader)
+        throws IOException
+    {
+        String line = reader.readLine();
+        if (line == null)
+            throw new IOException("Unexpected end of the model");
+
+        int floatsToRead = Integer.parseInt(line.trim());
+        ByteBuffer block = ByteBuffer.allocateDirect(floatsToRead * 4).order(
+            ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < floatsToRead; i++)
+        {
+            line = reader.readLine();
+            if (line == null)
+                throw new IOException("Unexpected end of the model");
+            block.putFloat(Float.parseFloat(line));
+        }
+        block.rewind();
+        return block;
+    }
+
+
+    private static void writeFully(FileChannel channel, ByteBuffer data)
+        throws IOException
+    {
+        while (data.hasRemaining())
+            channel.write(data);
+    }
+}
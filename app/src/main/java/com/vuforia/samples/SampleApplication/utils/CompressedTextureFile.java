@@ -0,0 +1,208 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+
+// Parser of precompressed texture files, the payload is uploaded as it is
+// with glCompressedTexImage2D.
+// Supported containers:
+//  - PKM, written by etc1tool (ETC1) or etcpack (ETC2), big-endian header
+//  - KTX 1.1 with a compressed glInternalFormat, e.g. written by EtcTool,
+//    including its mipmap levels
+// Plain Java, so it can be tested on a JVM.
+public final class CompressedTextureFile
+{
+    // OES_compressed_ETC1_RGB8_texture, supported by every OpenGL ES 2.0
+    // Android device
+    public static final int GL_ETC1_RGB8_OES = 0x8D64;
+    // ETC2 formats, core in OpenGL ES 3.0
+    public static final int GL_COMPRESSED_RGB8_ETC2 = 0x9274;
+    public static final int GL_COMPRESSED_RGBA8_ETC2_EAC = 0x9278;
+
+    private static final int PKM_HEADER_SIZE = 16;
+    private static final int KTX_HEADER_SIZE = 64;
+    private static final byte[] KTX_IDENTIFIER = { (byte) 0xAB, 'K', 'T', 'X',
+            ' ', '1', '1', (byte) 0xBB, '\r', '\n', 0x1A, '\n' };
+    private static final int KTX_ENDIANNESS = 0x04030201;
+    // A 2^31 texel side has 32 levels, more means a corrupted header
+    private static final int KTX_MAX_MIPMAP_LEVELS = 32;
+
+    private final int mFormat;
+    private final int mWidth;
+    private final int mHeight;
+    private final ByteBuffer[] mLevels;
+
+
+    private CompressedTextureFile(int format, int width, int height,
+        ByteBuffer[] levels)
+    {
+        mFormat = format;
+        mWidth = width;
+        mHeight = height;
+        mLevels = levels;
+    }
+
+
+    public static boolean isEtc2(int format)
+    {
+        return format == GL_COMPRESSED_RGB8_ETC2
+            || format == GL_COMPRESSED_RGBA8_ETC2_EAC;
+    }
+
+
+    // Parses a .pkm or .ktx file starting at the current position of data,
+    // the returned payload is a view on data
+    public static CompressedTextureFile read(ByteBuffer data) throws IOException
+    {
+        if (data.remaining() >= KTX_HEADER_SIZE && hasKtxIdentifier(data))
+            return readKtx(data);
+        if (data.remaining() >= PKM_HEADER_SIZE && data.get(data.position()) == 'P'
+            && data.get(data.position() + 1) == 'K'
+            && data.get(data.position() + 2) == 'M'
+            && data.get(data.position() + 3) == ' ')
+            return readPkm(data);
+        throw new IOException("Not a PKM or KTX texture");
+    }
+
+
+    private static CompressedTextureFile readPkm(ByteBuffer data)
+        throws IOException
+    {
+        ByteBuffer header = data.duplicate().order(ByteOrder.BIG_ENDIAN);
+        int base = header.position();
+        int version = (header.get(base + 4) - '0') * 10 + (header.get(base + 5) - '0');
+        int type = header.getShort(base + 6) & 0xFFFF;
+        int paddedWidth = header.getShort(base + 8) & 0xFFFF;
+        int paddedHeight = header.getShort(base + 10) & 0xFFFF;
+        int width = header.getShort(base + 12) & 0xFFFF;
+        int height = header.getShort(base + 14) & 0xFFFF;
+
+        int format;
+        int blockSize = 8;
+        if (version == 10 || (version == 20 && type == 0))
+            format = GL_ETC1_RGB8_OES;
+        else if (version == 20 && type == 1)
+            format = GL_COMPRESSED_RGB8_ETC2;
+        else if (version == 20 && type == 3)
+        {
+            format = GL_COMPRESSED_RGBA8_ETC2_EAC;
+            blockSize = 16;
+        } else
+            throw new IOException("Unsupported PKM version " + version
+                + " type " + type);
+
+        int size = (paddedWidth / 4) * (paddedHeight / 4) * blockSize;
+        return new CompressedTextureFile(format, width, height,
+            new ByteBuffer[] { slice(data, base + PKM_HEADER_SIZE, size) });
+    }
+
+
+    private static CompressedTextureFile readKtx(ByteBuffer data)
+        throws IOException
+    {
+        ByteBuffer header = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int base = header.position();
+        if (header.getInt(base + 12) != KTX_ENDIANNESS)
+        {
+            header.order(ByteOrder.BIG_ENDIAN);
+            if (header.getInt(base + 12) != KTX_ENDIANNESS)
+                throw new IOException("Invalid KTX endianness");
+        }
+
+        int glType = header.getInt(base + 16);
+        int internalFormat = header.getInt(base + 28);
+        int width = header.getInt(base + 36);
+        int height = header.getInt(base + 40);
+        int numberOfMipmapLevels = Math.max(1, header.getInt(base + 56));
+        int bytesOfKeyValueData = header.getInt(base + 60);
+        if (glType != 0)
+            throw new IOException("KTX texture is not compressed");
+        // Both come from the file, checked before they size anything
+        if (numberOfMipmapLevels > KTX_MAX_MIPMAP_LEVELS)
+            throw new IOException("Invalid KTX mipmap level count "
+                + numberOfMipmapLevels);
+        if (bytesOfKeyValueData < 0
+            || bytesOfKeyValueData > header.limit() - (base + KTX_HEADER_SIZE))
+            throw new IOException("Invalid KTX key/value data size "
+                + bytesOfKeyValueData);
+
+        // The mip levels follow the key/value data, each preceded by its
+        // size and padded to 4 bytes
+        ByteBuffer[] levels = new ByteBuffer[numberOfMipmapLevels];
+        int offset = base + KTX_HEADER_SIZE + bytesOfKeyValueData;
+        for (int i = 0; i < levels.length; i++)
+        {
+            if (offset > header.limit() - 4)
+                throw new IOException("Truncated KTX texture");
+            int size = header.getInt(offset);
+            levels[i] = slice(data, offset + 4, size);
+            offset += 4 + ((size + 3) & ~3);
+        }
+        return new CompressedTextureFile(internalFormat, width, height, levels);
+    }
+
+
+    private static boolean hasKtxIdentifier(ByteBuffer data)
+    {
+        for (int i = 0; i < KTX_IDENTIFIER.length; i++)
+        {
+            if (data.get(data.position() + i) != KTX_IDENTIFIER[i])
+                return false;
+        }
+        return true;
+    }
+
+
+    private static ByteBuffer slice(ByteBuffer data, int offset, int size)
+        throws IOException
+    {
+        if (size < 0 || offset < 0 || size > data.limit() - offset)
+            throw new IOException("Truncated compressed texture");
+
+        ByteBuffer view = data.duplicate();
+        view.limit(offset + size);
+        view.position(offset);
+        return view.slice();
+    }
+
+
+    // The OpenGL compressed internal format
+    public int getFormat()
+    {
+        return mFormat;
+    }
+
+
+    public int getWidth()
+    {
+        return mWidth;
+    }
+
+
+    public int getHeight()
+    {
+        return mHeight;
+    }
+
+
+    // The base level
+    public ByteBuffer getData()
+    {
+        return mLevels[0];
+    }
+
+
+    // Number of mip levels stored in the file, including the base one
+    public int getLevelCount()
+    {
+        return mLevels.length;
+    }
+
+
+    public ByteBuffer getLevel(int level)
+    {
+        return mLevels[level];
+    }
+}
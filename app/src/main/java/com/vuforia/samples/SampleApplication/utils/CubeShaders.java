@@ -30,4 +30,45 @@ public class CubeShaders
         + "{ \n" + "   gl_FragColor = texture2D(texSampler2D, texCoord); \n"
         + "} \n";
     
+    // Draws up to MAX_BATCHED_INSTANCES copies of a mesh with the matrices
+    // set once in an array, each draw call only changes instanceIndex.
+    // Used on OpenGL ES 2.0, which can not draw instances.
+    public static final int MAX_BATCHED_INSTANCES = 16;
+    
+    public static final String BATCHED_MESH_VERTEX_SHADER = " \n" + "\n"
+        + "attribute vec4 vertexPosition; \n"
+        + "attribute vec2 vertexTexCoord; \n" + "\n"
+        + "varying vec2 texCoord; \n" + "\n"
+        + "uniform mat4 modelViewProjectionMatrices[" + MAX_BATCHED_INSTANCES
+        + "]; \n"
+        + "uniform int instanceIndex; \n" + "\n"
+        + "void main() \n" + "{ \n"
+        + "   gl_Position = modelViewProjectionMatrices[instanceIndex] * vertexPosition; \n"
+        + "   texCoord = vertexTexCoord; \n"
+        + "} \n";
+    
+    // Draws all the copies of a mesh in one call, the matrix of each
+    // instance is a vertex attribute advanced once per instance.
+    // Needs OpenGL ES 3.0, #version must be the first line.
+    public static final String INSTANCED_MESH_VERTEX_SHADER = "#version 300 es \n"
+        + "\n"
+        + "in vec4 vertexPosition; \n"
+        + "in vec2 vertexTexCoord; \n"
+        + "in mat4 instanceModelViewProjectionMatrix; \n" + "\n"
+        + "out vec2 texCoord; \n" + "\n"
+        + "void main() \n" + "{ \n"
+        + "   gl_Position = instanceModelViewProjectionMatrix * vertexPosition; \n"
+        + "   texCoord = vertexTexCoord; \n"
+        + "} \n";
+    
+    public static final String INSTANCED_MESH_FRAGMENT_SHADER = "#version 300 es \n"
+        + "\n"
+        + "precision mediump float; \n" + " \n"
+        + "in vec2 texCoord; \n"
+        + "uniform sampler2D texSampler2D; \n"
+        + "out vec4 fragColor; \n" + " \n"
+        + "void main() \n"
+        + "{ \n" + "   fragColor = texture(texSampler2D, texCoord); \n"
+        + "} \n";
+    
 }
@@ -0,0 +1,109 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import it.drakefk.metar.BuildConfig;
+
+
+// Debug tracing for the render loop: logging and glGetError checks that
+// cost nothing when they are off.
+// A trace point has a level and is compiled in only up to COMPILE_LEVEL
+// (BuildConfig.TRACE_LEVEL, ERROR in release builds): guarded by
+//     if (DebugTrace.COMPILE_LEVEL >= DebugTrace.DEBUG && sampler.sample())
+// the whole block, string formatting included, is dead code the compiler
+// removes. Compiled-in points are further filtered by the runtime level
+// and sampled by a Sampler, at most once per interval, so a trace in the
+// per-frame path does not flood the log nor sync the GPU every frame.
+public final class DebugTrace
+{
+    public static final int NONE = 0;
+    public static final int ERROR = 1;
+    public static final int DEBUG = 2;
+    public static final int VERBOSE = 3;
+
+    // Highest level compiled in, a compile-time constant
+    public static final int COMPILE_LEVEL = BuildConfig.TRACE_LEVEL;
+
+    private static volatile int sLevel = Math.min(COMPILE_LEVEL, DEBUG);
+
+
+    // Rate limits a trace point: lets through at most one event per
+    // interval and counts the ones suppressed in between.
+    // A sampler belongs to a single thread (e.g. the GL thread).
+    public static final class Sampler
+    {
+        private final int mLevel;
+        private final long mIntervalNs;
+        private long mLastNs;
+        private boolean mSampled;
+        private int mSuppressed;
+        private int mLastSuppressed;
+
+
+        public Sampler(int level, long intervalMs)
+        {
+            mLevel = level;
+            mIntervalNs = intervalMs * 1000000L;
+        }
+
+
+        public boolean sample()
+        {
+            // The clock is only read when the level is enabled
+            return isEnabled(mLevel) && sample(System.nanoTime());
+        }
+
+
+        public boolean sample(long nowNs)
+        {
+            if (mSampled && nowNs - mLastNs < mIntervalNs)
+            {
+                mSuppressed++;
+                return false;
+            }
+            mSampled = true;
+            mLastNs = nowNs;
+            mLastSuppressed = mSuppressed;
+            mSuppressed = 0;
+            return true;
+        }
+
+
+        // Events suppressed before the one just let through
+        public int getSuppressed()
+        {
+            return mLastSuppressed;
+        }
+    }
+
+
+    private DebugTrace()
+    {
+    }
+
+
+    // Runtime level, trace points above COMPILE_LEVEL stay disabled
+    public static void setLevel(int level)
+    {
+        sLevel = level;
+    }
+
+
+    public static int getLevel()
+    {
+        return sLevel;
+    }
+
+
+    public static boolean isEnabled(int level)
+    {
+        return level <= COMPILE_LEVEL && level <= sLevel;
+    }
+
+
+    // glGetError stalls the pipeline on many drivers: in the per-frame path
+    // the check is compiled in only in debug builds, and sampled
+    public static void checkGLError(Sampler sampler, String op)
+    {
+        if (COMPILE_LEVEL >= DEBUG && sampler.sample())
+            SampleUtils.checkGLError(op);
+    }
+}
@@ -0,0 +1,308 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Locale;
+
+
+// Always-on frame timing: records the interval between frames, the work
+// time of each frame and the time spent in each stage of the frame into
+// preallocated ring buffers, so recording never allocates.
+// Stages can be nested, the time of a stage excludes the stages started
+// inside it (e.g. the video background drawn by renderFrame).
+// Every PUBLISH_INTERVAL_MS the statistics of the frames in the ring are
+// published as an immutable FrameStats, readable from any thread.
+// Recording must be done from a single thread (the GL thread); writeReport
+// must be called from the same thread or while it is paused.
+// Plain Java, so it can be tested on a JVM.
+public class FrameProfiler
+{
+    public static final int DEFAULT_CAPACITY = 600;
+    public static final long PUBLISH_INTERVAL_MS = 500;
+    private static final int MAX_NESTING = 8;
+    private static final long NS_PER_MS = 1000000L;
+
+    // Statistics of the frames in the ring when they were published
+    public static final class FrameStats
+    {
+        public final int frames;
+        public final long droppedFrames;
+        public final long totalDroppedFrames;
+        public final double fps;
+        public final double intervalP50Ms;
+        public final double intervalP95Ms;
+        public final double intervalP99Ms;
+        public final double workP50Ms;
+        public final double workP95Ms;
+        public final double workP99Ms;
+        public final String[] stageNames;
+        public final double[] stageMeanMs;
+        public final double[] stageP95Ms;
+
+
+        private FrameStats(int frames, long droppedFrames,
+            long totalDroppedFrames, double fps, double[] interval,
+            double[] work, String[] stageNames, double[] stageMeanMs,
+            double[] stageP95Ms)
+        {
+            this.frames = frames;
+            this.droppedFrames = droppedFrames;
+            this.totalDroppedFrames = totalDroppedFrames;
+            this.fps = fps;
+            this.intervalP50Ms = interval[0];
+            this.intervalP95Ms = interval[1];
+            this.intervalP99Ms = interval[2];
+            this.workP50Ms = work[0];
+            this.workP95Ms = work[1];
+            this.workP99Ms = work[2];
+            this.stageNames = stageNames;
+            this.stageMeanMs = stageMeanMs;
+            this.stageP95Ms = stageP95Ms;
+        }
+
+
+        // A few lines for the on-screen overlay
+        public String format()
+        {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.US,
+                "%.1f fps, dropped %d (%d total)%n", fps, droppedFrames,
+                totalDroppedFrames));
+            sb.append(String.format(Locale.US,
+                "frame p50/95/99 %.1f/%.1f/%.1f ms%n", intervalP50Ms,
+                intervalP95Ms, intervalP99Ms));
+            sb.append(String.format(Locale.US,
+                "work  p50/95/99 %.1f/%.1f/%.1f ms", workP50Ms, workP95Ms,
+                workP99Ms));
+            for (int s = 0; s < stageNames.length; s++)
+                sb.append(String.format(Locale.US, "%n%-12s %.2f ms (p95 %.2f)",
+                    stageNames[s], stageMeanMs[s], stageP95Ms[s]));
+            return sb.toString();
+        }
+    }
+
+    private final String[] mStageNames;
+    private final int mCapacity;
+    private final long[] mIntervals;
+    private final long[] mWorkTimes;
+    private final long[] mStageTimes;
+    private final long[] mScratch;
+
+    // Current frame
+    private final long[] mCurrentStages;
+    private final int[] mStageStack = new int[MAX_NESTING];
+    private int mStackDepth;
+    private long mSegmentStart;
+    private long mFrameStart;
+    private long mPreviousFrameStart;
+    private boolean mInFrame;
+
+    private int mNext;
+    private int mSize;
+    private long mFrameCount;
+    private long mTotalDropped;
+    private long mDropThresholdNs;
+    private long mLastPublish;
+    private volatile FrameStats mLatestStats;
+
+
+    public FrameProfiler(String[] stageNames)
+    {
+        this(stageNames, DEFAULT_CAPACITY);
+    }
+
+
+    public FrameProfiler(String[] stageNames, int capacity)
+    {
+        mStageNames = stageNames.clone();
+        mCapacity = capacity;
+        mIntervals = new long[capacity];
+        mWorkTimes = new long[capacity];
+        mStageTimes = new long[capacity * stageNames.length];
+        mScratch = new long[capacity];
+        mCurrentStages = new long[stageNames.length];
+        setRefreshRate(60);
+    }
+
+
+    // Frames longer than one and a half refresh periods count as dropped
+    public void setRefreshRate(float hz)
+    {
+        mDropThresholdNs = (long) (1.5 * 1e9 / (hz > 0 ? hz : 60));
+    }
+
+
+    public void beginFrame()
+    {
+        beginFrame(System.nanoTime());
+    }
+
+
+    public void beginFrame(long nowNs)
+    {
+        mPreviousFrameStart = mFrameStart;
+        mFrameStart = nowNs;
+        mStackDepth = 0;
+        Arrays.fill(mCurrentStages, 0);
+        mInFrame = true;
+    }
+
+
+    public void beginStage(int stage)
+    {
+        beginStage(stage, System.nanoTime());
+    }
+
+
+    public void beginStage(int stage, long nowNs)
+    {
+        if (!mInFrame || mStackDepth == MAX_NESTING)
+            return;
+        // The running stage is paused while the nested one runs
+        if (mStackDepth > 0)
+            mCurrentStages[mStageStack[mStackDepth - 1]] += nowNs - mSegmentStart;
+        mStageStack[mStackDepth++] = stage;
+        mSegmentStart = nowNs;
+    }
+
+
+    public void endStage()
+    {
+        endStage(System.nanoTime());
+    }
+
+
+    public void endStage(long nowNs)
+    {
+        if (!mInFrame || mStackDepth == 0)
+            return;
+        mCurrentStages[mStageStack[--mStackDepth]] += nowNs - mSegmentStart;
+        mSegmentStart = nowNs;
+    }
+
+
+    public void endFrame()
+    {
+        endFrame(System.nanoTime());
+    }
+
+
+    public void endFrame(long nowNs)
+    {
+        if (!mInFrame)
+            return;
+        mInFrame = false;
+
+        // The interval is only known from the second frame
+        if (mFrameCount > 0)
+        {
+            long interval = mFrameStart - mPreviousFrameStart;
+            mIntervals[mNext] = interval;
+            mWorkTimes[mNext] = nowNs - mFrameStart;
+            System.arraycopy(mCurrentStages, 0, mStageTimes,
+                mNext * mStageNames.length, mStageNames.length);
+            if (interval > mDropThresholdNs)
+                mTotalDropped++;
+            mNext = (mNext + 1) % mCapacity;
+            mSize = Math.min(mSize + 1, mCapacity);
+        }
+        mFrameCount++;
+
+        if (nowNs - mLastPublish >= PUBLISH_INTERVAL_MS * NS_PER_MS)
+        {
+            mLastPublish = nowNs;
+            mLatestStats = computeStats();
+        }
+    }
+
+
+    // The statistics published last, null before the first ones
+    public FrameStats getLatestStats()
+    {
+        return mLatestStats;
+    }
+
+
+    public FrameStats computeStats()
+    {
+        double[] interval = percentiles(mIntervals);
+        double[] work = percentiles(mWorkTimes);
+
+        long dropped = 0;
+        long totalInterval = 0;
+        for (int i = 0; i < mSize; i++)
+        {
+            totalInterval += mIntervals[i];
+            if (mIntervals[i] > mDropThresholdNs)
+                dropped++;
+        }
+        double fps = totalInterval > 0 ? mSize * 1e9 / totalInterval : 0;
+
+        int stages = mStageNames.length;
+        double[] stageMean = new double[stages];
+        double[] stageP95 = new double[stages];
+        for (int s = 0; s < stages; s++)
+        {
+            long total = 0;
+            for (int i = 0; i < mSize; i++)
+            {
+                mScratch[i] = mStageTimes[i * stages + s];
+                total += mScratch[i];
+            }
+            stageMean[s] = mSize > 0 ? (double) total / mSize / NS_PER_MS : 0;
+            Arrays.sort(mScratch, 0, mSize);
+            stageP95[s] = percentile(0.95);
+        }
+
+        return new FrameStats(mSize, dropped, mTotalDropped, fps, interval,
+            work, mStageNames, stageMean, stageP95);
+    }
+
+
+    // Writes the statistics and the frames in the ring as CSV, oldest first
+    public void writeReport(Writer out) throws IOException
+    {
+        FrameStats stats = computeStats();
+        out.write("# " + stats.format().replace("\n", "\n# ") + "\n");
+        out.write("frame,interval_us,work_us");
+        for (String name : mStageNames)
+            out.write("," + name + "_us");
+        out.write("\n");
+
+        int first = (mNext - mSize + mCapacity) % mCapacity;
+        for (int n = 0; n < mSize; n++)
+        {
+            int i = (first + n) % mCapacity;
+            StringBuilder line = new StringBuilder();
+            line.append(mFrameCount - mSize + n).append(',')
+                .append(mIntervals[i] / 1000).append(',')
+                .append(mWorkTimes[i] / 1000);
+            for (int s = 0; s < mStageNames.length; s++)
+                line.append(',').append(
+                    mStageTimes[i * mStageNames.length + s] / 1000);
+            out.write(line.append('\n').toString());
+        }
+        out.flush();
+    }
+
+
+    // p50, p95 and p99 in milliseconds
+    private double[] percentiles(long[] values)
+    {
+        System.arraycopy(values, 0, mScratch, 0, mSize);
+        Arrays.sort(mScratch, 0, mSize);
+        return new double[] { percentile(0.50), percentile(0.95),
+                percentile(0.99) };
+    }
+
+
+    // Nearest-rank percentile of the first mSize sorted values of mScratch
+    private double percentile(double p)
+    {
+        if (mSize == 0)
+            return 0;
+        int rank = (int) Math.ceil(p * mSize) - 1;
+        return (double) mScratch[Math.max(0, rank)] / NS_PER_MS;
+    }
+}
@@ -0,0 +1,298 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import android.opengl.GLES20;
+
+
+// Shadows the OpenGL ES state changed every frame by the renderers (enabled
+// capabilities, program, active texture unit, 2D texture bindings, enabled
+// vertex attribute arrays, culling) and skips the calls that would not
+// change it.
+// The cache only knows about the calls made through it: after code that
+// changes the state on its own call invalidate, invalidateTextures or, after
+// Vuforia's Renderer.begin and updateVideoBackgroundTexture,
+// invalidateVuforiaState, so the next calls are issued again.
+// Counts the calls issued and skipped in the current and in the last frame.
+// All the methods must be called from the GL thread.
+public class GLStateCache
+{
+    private static final int UNKNOWN = -1;
+    private static final int MAX_TEXTURE_UNITS = 8;
+    private static final int MAX_VERTEX_ATTRIBS = 16;
+
+    // Capabilities tracked, the others are always issued
+    private static final int[] CAPS = { GLES20.GL_DEPTH_TEST,
+            GLES20.GL_CULL_FACE, GLES20.GL_SCISSOR_TEST, GLES20.GL_BLEND };
+
+    private final int[] mCaps = new int[CAPS.length];
+    private final int[] mTextures = new int[MAX_TEXTURE_UNITS];
+    private final int[] mAttribArrays = new int[MAX_VERTEX_ATTRIBS];
+    private int mProgram;
+    private int mActiveTexture;
+    private int mCullFace;
+    private int mFrontFace;
+
+    private int mIssued;
+    private int mSkipped;
+    // Read by the frame stats overlay on the UI thread
+    private volatile int mLastFrameIssued;
+    private volatile int mLastFrameSkipped;
+
+
+    public GLStateCache()
+    {
+        invalidate();
+    }
+
+
+    // Forgets the whole state, e.g. when the context is (re)created
+    public void invalidate()
+    {
+        for (int i = 0; i < mCaps.length; i++)
+            mCaps[i] = UNKNOWN;
+        for (int i = 0; i < mAttribArrays.length; i++)
+            mAttribArrays[i] = UNKNOWN;
+        mProgram = UNKNOWN;
+        mCullFace = UNKNOWN;
+        mFrontFace = UNKNOWN;
+        invalidateTextures();
+    }
+
+
+    // Forgets the active unit and the bound textures, e.g. after Vuforia
+    // bound the video background texture
+    public void invalidateTextures()
+    {
+        for (int i = 0; i < mTextures.length; i++)
+            mTextures[i] = UNKNOWN;
+        mActiveTexture = UNKNOWN;
+    }
+
+
+    // Forgets only the state Vuforia changes when it begins the frame and
+    // binds the video background texture: the program, the active unit, the
+    // texture of unit 0, the depth test and the culling. The array buffer is
+    // not shadowed, MeshBufferCache binds it for every mesh.
+    public void invalidateVuforiaState()
+    {
+        mProgram = UNKNOWN;
+        mActiveTexture = UNKNOWN;
+        mTextures[0] = UNKNOWN;
+        mCaps[indexOfCap(GLES20.GL_DEPTH_TEST)] = UNKNOWN;
+        mCaps[indexOfCap(GLES20.GL_CULL_FACE)] = UNKNOWN;
+        mCullFace = UNKNOWN;
+    }
+
+
+    // Starts counting the calls of a new frame
+    public void beginFrame()
+    {
+        mLastFrameIssued = mIssued;
+        mLastFrameSkipped = mSkipped;
+        mIssued = 0;
+        mSkipped = 0;
+    }
+
+
+    public int getLastFrameIssuedCalls()
+    {
+        return mLastFrameIssued;
+    }
+
+
+    public int getLastFrameSkippedCalls()
+    {
+        return mLastFrameSkipped;
+    }
+
+
+    public void enable(int cap)
+    {
+        setCap(cap, 1);
+    }
+
+
+    public void disable(int cap)
+    {
+        setCap(cap, 0);
+    }
+
+
+    public void useProgram(int program)
+    {
+        if (mProgram == program)
+        {
+            mSkipped++;
+            return;
+        }
+        mProgram = program;
+        mIssued++;
+        glUseProgram(program);
+    }
+
+
+    // unit is GLES20.GL_TEXTURE0 + i
+    public void activeTexture(int unit)
+    {
+        if (mActiveTexture == unit)
+        {
+            mSkipped++;
+            return;
+        }
+        mActiveTexture = unit;
+        mIssued++;
+        glActiveTexture(unit);
+    }
+
+
+    // Binds a GL_TEXTURE_2D texture to the active unit
+    public void bindTexture2D(int texture)
+    {
+        int unit = mActiveTexture - GLES20.GL_TEXTURE0;
+        if (unit >= 0 && unit < mTextures.length)
+        {
+            if (mTextures[unit] == texture)
+            {
+                mSkipped++;
+                return;
+            }
+            mTextures[unit] = texture;
+        }
+        mIssued++;
+        glBindTexture2D(texture);
+    }
+
+
+    public void enableVertexAttribArray(int index)
+    {
+        setAttribArray(index, 1);
+    }
+
+
+    public void disableVertexAttribArray(int index)
+    {
+        setAttribArray(index, 0);
+    }
+
+
+    public void cullFace(int mode)
+    {
+        if (mCullFace == mode)
+        {
+            mSkipped++;
+            return;
+        }
+        mCullFace = mode;
+        mIssued++;
+        glCullFace(mode);
+    }
+
+
+    public void frontFace(int mode)
+    {
+        if (mFrontFace == mode)
+        {
+            mSkipped++;
+            return;
+        }
+        mFrontFace = mode;
+        mIssued++;
+        glFrontFace(mode);
+    }
+
+
+    private void setCap(int cap, int enabled)
+    {
+        int index = indexOfCap(cap);
+        if (index >= 0)
+        {
+            if (mCaps[index] == enabled)
+            {
+                mSkipped++;
+                return;
+            }
+            mCaps[index] = enabled;
+        }
+        mIssued++;
+        glEnable(cap, enabled == 1);
+    }
+
+
+    private void setAttribArray(int index, int enabled)
+    {
+        // Attributes missing in the program have location -1
+        if (index < 0)
+            return;
+        if (index < mAttribArrays.length)
+        {
+            if (mAttribArrays[index] == enabled)
+            {
+                mSkipped++;
+                return;
+            }
+            mAttribArrays[index] = enabled;
+        }
+        mIssued++;
+        glEnableVertexAttribArray(index, enabled == 1);
+    }
+
+
+    private static int indexOfCap(int cap)
+    {
+        for (int i = 0; i < CAPS.length; i++)
+        {
+            if (CAPS[i] == cap)
+                return i;
+        }
+        return -1;
+    }
+
+
+    // The actual OpenGL calls, overridden by the tests
+
+    protected void glEnable(int cap, boolean enabled)
+    {
+        if (enabled)
+            GLES20.glEnable(cap);
+        else
+            GLES20.glDisable(cap);
+    }
+
+
+    protected void glUseProgram(int program)
+    {
+        GLES20.glUseProgram(program);
+    }
+
+
+    protected void glActiveTexture(int unit)
+    {
+        GLES20.glActiveTexture(unit);
+    }
+
+
+    protected void glBindTexture2D(int texture)
+    {
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture);
+    }
+
+
+    protected void glEnableVertexAttribArray(int index, boolean enabled)
+    {
+        if (enabled)
+            GLES20.glEnableVertexAttribArray(index);
+        else
+            GLES20.glDisableVertexAttribArray(index);
+    }
+
+
+    protected void glCullFace(int mode)
+    {
+        GLES20.glCullFace(mode);
+    }
+
+
+    protected void glFrontFace(int mode)
+    {
+        GLES20.glFrontFace(mode);
+    }
+}
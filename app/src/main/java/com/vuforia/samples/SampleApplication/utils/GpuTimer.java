@@ -0,0 +1,239 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import java.util.Locale;
+
+import android.opengl.GLES20;
+import android.os.Build;
+
+
+// Measures the GPU time of a few passes of the frame (e.g. the video
+// background and the augmentation) with EXT_disjoint_timer_query.
+// The results are read back FRAMES_IN_FLIGHT frames later and only if the
+// GPU already made them available, so the pipeline is never stalled: a
+// pass whose previous query is still pending is simply not measured.
+// Only the first begin/end of a pass in a frame is measured (e.g. the left
+// view in stereo), and passes must not overlap.
+// Unsupported contexts (no OpenGL ES 3.0 or no extension) make every call
+// a no-op. All the methods except the getters must be called from the GL
+// thread.
+public class GpuTimer
+{
+    public static final int FRAMES_IN_FLIGHT = 4;
+    private static final String EXTENSION = "GL_EXT_disjoint_timer_query";
+    private static final double SMOOTHING = 0.1;
+    private static final int NONE = -1;
+
+    private final String[] mPassNames;
+    private final int mPasses;
+    private final int[] mQueries;
+    private final boolean[] mPending;
+    private final boolean[] mIssued;
+    private int mSlot;
+    private int mActivePass = NONE;
+    private boolean mSupported;
+    private boolean mGenerated;
+    private boolean mEnabled = true;
+
+    // Written by the GL thread, read by any thread for display
+    private final double[] mAverageMs;
+    private final long[] mLastNs;
+    private volatile int mResults;
+
+
+    public GpuTimer(String[] passNames)
+    {
+        mPassNames = passNames.clone();
+        mPasses = passNames.length;
+        mQueries = new int[FRAMES_IN_FLIGHT * mPasses];
+        mPending = new boolean[mQueries.length];
+        mIssued = new boolean[mPasses];
+        mAverageMs = new double[mPasses];
+        mLastNs = new long[mPasses];
+    }
+
+
+    // To be called when the context is (re)created. The queries generated
+    // before are deleted: if the context survived they would leak, if it is
+    // a new one their names are unknown and silently ignored
+    public void onSurfaceCreated()
+    {
+        if (mGenerated)
+        {
+            glDeleteQueries(mQueries);
+            for (int i = 0; i < mQueries.length; i++)
+                mQueries[i] = 0;
+            mGenerated = false;
+        }
+        mSupported = glIsTimerQuerySupported();
+        mSlot = 0;
+        mActivePass = NONE;
+        for (int i = 0; i < mPending.length; i++)
+            mPending[i] = false;
+        if (mSupported)
+        {
+            glGenQueries(mQueries);
+            mGenerated = true;
+        }
+    }
+
+
+    // False before onSurfaceCreated
+    public boolean isSupported()
+    {
+        return mSupported;
+    }
+
+
+    public void setEnabled(boolean enabled)
+    {
+        mEnabled = enabled;
+    }
+
+
+    // Collects the results that are ready and moves to the queries of a
+    // new frame
+    public void beginFrame()
+    {
+        if (!mSupported)
+            return;
+
+        // A disjoint operation (e.g. frequency change) invalidates the
+        // results of the queries in flight
+        boolean disjoint = glIsDisjoint();
+        mSlot = (mSlot + 1) % FRAMES_IN_FLIGHT;
+        for (int p = 0; p < mPasses; p++)
+        {
+            mIssued[p] = false;
+            int q = mSlot * mPasses + p;
+            if (!mPending[q] || !glIsResultAvailable(mQueries[q]))
+                continue;
+
+            long ns = glGetResult(mQueries[q]);
+            mPending[q] = false;
+            if (!disjoint)
+                record(p, ns);
+        }
+    }
+
+
+    public void begin(int pass)
+    {
+        if (!mSupported || !mEnabled || mActivePass != NONE || mIssued[pass])
+            return;
+        int q = mSlot * mPasses + pass;
+        // The result of this slot is still pending, skip instead of waiting
+        if (mPending[q])
+            return;
+        glBeginQuery(mQueries[q]);
+        mActivePass = pass;
+    }
+
+
+    public void end(int pass)
+    {
+        if (mActivePass != pass)
+            return;
+        glEndQuery();
+        mActivePass = NONE;
+        mIssued[pass] = true;
+        mPending[mSlot * mPasses + pass] = true;
+    }
+
+
+    // Number of results read back so far
+    public int getResultCount()
+    {
+        return mResults;
+    }
+
+
+    // Smoothed GPU time of a pass
+    public double getAverageMs(int pass)
+    {
+        return mAverageMs[pass];
+    }
+
+
+    public long getLastNanos(int pass)
+    {
+        return mLastNs[pass];
+    }
+
+
+    // One line for the on-screen overlay, null if nothing was measured
+    public String format()
+    {
+        if (mResults == 0)
+            return null;
+        StringBuilder sb = new StringBuilder("gpu");
+        for (int p = 0; p < mPasses; p++)
+            sb.append(String.format(Locale.US, " %s %.2f ms", mPassNames[p],
+                mAverageMs[p]));
+        return sb.toString();
+    }
+
+
+    private void record(int pass, long ns)
+    {
+        double ms = ns / 1e6;
+        mLastNs[pass] = ns;
+        mAverageMs[pass] = mAverageMs[pass] == 0 ? ms : mAverageMs[pass]
+            + SMOOTHING * (ms - mAverageMs[pass]);
+        // Volatile write, publishes the values above
+        mResults++;
+    }
+
+
+    // The actual OpenGL calls, overridden by the tests
+
+    protected boolean glIsTimerQuerySupported()
+    {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2
+            || !SampleUtils.isOpenGLES3())
+            return false;
+        String extensions = GLES20.glGetString(GLES20.GL_EXTENSIONS);
+        return extensions != null && extensions.contains(EXTENSION);
+    }
+
+
+    protected void glGenQueries(int[] queries)
+    {
+        TimerQueries.genQueries(queries);
+    }
+
+
+    protected void glDeleteQueries(int[] queries)
+    {
+        TimerQueries.deleteQueries(queries);
+    }
+
+
+    protected void glBeginQuery(int query)
+    {
+        TimerQueries.beginQuery(query);
+    }
+
+
+    protected void glEndQuery()
+    {
+        TimerQueries.endQuery();
+    }
+
+
+    protected boolean glIsResultAvailable(int query)
+    {
+        return TimerQueries.isResultAvailable(query);
+    }
+
+
+    protected long glGetResult(int query)
+    {
+        return TimerQueries.getResult(query);
+    }
+
+
+    protected boolean glIsDisjoint()
+    {
+        return TimerQueries.isDisjoint();
+    }
+}
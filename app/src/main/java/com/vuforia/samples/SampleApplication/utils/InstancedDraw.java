@@ -0,0 +1,39 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import android.annotation.TargetApi;
+import android.opengl.GLES30;
+import android.os.Build;
+
+
+// The OpenGL ES 3.0 calls used to draw many instances of a mesh, kept in a
+// separate class so GLES30 is only loaded on the devices that have it.
+// Use it only on API 18 or later when SampleUtils.isOpenGLES3().
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+public final class InstancedDraw
+{
+    
+    private InstancedDraw()
+    {
+    }
+    
+    
+    // 1 to advance the attribute once per instance, 0 once per vertex
+    public static void vertexAttribDivisor(int attribHandle, int divisor)
+    {
+        GLES30.glVertexAttribDivisor(attribHandle, divisor);
+    }
+    
+    
+    // Draws instanceCount copies of a mesh bound with MeshBufferCache.beginDraw
+    public static void drawBound(MeshBufferCache.Handle handle,
+        int instanceCount)
+    {
+        if (handle.isIndexed())
+            GLES30.glDrawElementsInstanced(GLES30.GL_TRIANGLES,
+                handle.getNumIndices(), GLES30.GL_UNSIGNED_SHORT, 0,
+                instanceCount);
+        else
+            GLES30.glDrawArraysInstanced(GLES30.GL_TRIANGLES, 0,
+                handle.getNumVertices(), instanceCount);
+    }
+}
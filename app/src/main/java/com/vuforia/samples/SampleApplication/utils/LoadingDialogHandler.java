@@ -15,6 +15,7 @@ import android.app.Activity;
 import android.os.Handler;
 import android.os.Message;
 import android.view.View;
+import android.widget.TextView;
 
 
 public final class LoadingDialogHandler extends Handler
@@ -23,8 +24,12 @@ public final class LoadingDialogHandler extends Handler
     // Constants for Hiding/Showing Loading dialog
     public static final int HIDE_LOADING_DIALOG = 0;
     public static final int SHOW_LOADING_DIALOG = 1;
+    // Shows the dialog with the percentage in arg1 under it
+    public static final int UPDATE_LOADING_PROGRESS = 2;
     
     public View mLoadingDialogContainer;
+    // Optional, where the percentage is shown
+    public TextView mLoadingProgressText;
     
     
     public LoadingDialogHandler(Activity activity)
@@ -48,6 +53,17 @@ public final class LoadingDialogHandler extends Handler
         } else if (msg.what == HIDE_LOADING_DIALOG)
         {
             mLoadingDialogContainer.setVisibility(View.GONE);
+            if (mLoadingProgressText != null)
+                mLoadingProgressText.setVisibility(View.GONE);
+            
+        } else if (msg.what == UPDATE_LOADING_PROGRESS)
+        {
+            mLoadingDialogContainer.setVisibility(View.VISIBLE);
+            if (mLoadingProgressText != null)
+            {
+                mLoadingProgressText.setText(msg.arg1 + "%");
+                mLoadingProgressText.setVisibility(View.VISIBLE);
+            }
         }
     }
     
@@ -0,0 +1,254 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import android.opengl.GLES20;
+import android.util.Log;
+
+
+// Keeps the MeshObjects in vertex and index buffer objects on the GPU, so
+// the data is uploaded once instead of being copied by the driver at every
+// draw call. Meshes are keyed by identity.
+// All the methods must be called from the GL thread.
+public class MeshBufferCache
+{
+    private static final String LOGTAG = "MeshBufferCache";
+
+    // The GL buffers of a single mesh, a buffer is 0 if the mesh does not
+    // have that kind of data
+    public static final class Handle
+    {
+        private final MeshObject mMesh;
+        private int mVertexBuffer;
+        private int mTexCoordBuffer;
+        private int mNormalBuffer;
+        private int mIndexBuffer;
+        private int mNumVertices;
+        private int mNumIndices;
+
+
+        private Handle(MeshObject mesh)
+        {
+            mMesh = mesh;
+        }
+
+
+        public MeshObject getMesh()
+        {
+            return mMesh;
+        }
+
+
+        public boolean hasTexCoords()
+        {
+            return mTexCoordBuffer != 0;
+        }
+
+
+        public boolean hasNormals()
+        {
+            return mNormalBuffer != 0;
+        }
+
+
+        public boolean isIndexed()
+        {
+            return mIndexBuffer != 0;
+        }
+
+
+        public int getNumVertices()
+        {
+            return mNumVertices;
+        }
+
+
+        public int getNumIndices()
+        {
+            return mNumIndices;
+        }
+    }
+
+    private final Map<MeshObject, Handle> mHandles = new IdentityHashMap<MeshObject, Handle>();
+
+
+    // Uploads the mesh, or returns its handle if it is already on the GPU
+    public Handle upload(MeshObject mesh)
+    {
+        Handle handle = mHandles.get(mesh);
+        if (handle == null)
+        {
+            handle = new Handle(mesh);
+            mHandles.put(mesh, handle);
+            createBuffers(handle);
+        }
+        return handle;
+    }
+
+
+    public Handle get(MeshObject mesh)
+    {
+        return mHandles.get(mesh);
+    }
+
+
+    // To be called when the OpenGL ES context has been (re)created: the old
+    // buffer names died with the previous context, so every known mesh is
+    // uploaded again and the existing handles stay valid
+    public void onSurfaceCreated()
+    {
+        for (Handle handle : mHandles.values())
+            createBuffers(handle);
+    }
+
+
+    // Deletes the buffer of a mesh, e.g. when the mesh is not used anymore
+    public void release(MeshObject mesh)
+    {
+        Handle handle = mHandles.remove(mesh);
+        if (handle != null)
+            deleteBuffers(handle);
+    }
+
+
+    public void releaseAll()
+    {
+        for (Handle handle : mHandles.values())
+            deleteBuffers(handle);
+        mHandles.clear();
+    }
+
+
+    public void bindVertices(Handle handle, int attribHandle)
+    {
+        bindAttribute(handle.mVertexBuffer, attribHandle, 3);
+    }
+
+
+    public void bindTexCoords(Handle handle, int attribHandle)
+    {
+        bindAttribute(handle.mTexCoordBuffer, attribHandle, 2);
+    }
+
+
+    public void bindNormals(Handle handle, int attribHandle)
+    {
+        bindAttribute(handle.mNormalBuffer, attribHandle, 3);
+    }
+
+
+    // Draws the mesh as triangles with the attributes bound before, then
+    // unbinds the buffers so client-side arrays (e.g. the video background
+    // mesh) keep working
+    public void draw(Handle handle)
+    {
+        beginDraw(handle);
+        drawBound(handle);
+        endDraw();
+    }
+
+
+    // Binds the index buffer of the mesh, so it can be drawn many times with
+    // drawBound (e.g. once per instance) until endDraw
+    public void beginDraw(Handle handle)
+    {
+        if (handle.mIndexBuffer != 0)
+            GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, handle.mIndexBuffer);
+    }
+
+
+    public void drawBound(Handle handle)
+    {
+        if (handle.mIndexBuffer != 0)
+            GLES20.glDrawElements(GLES20.GL_TRIANGLES, handle.mNumIndices,
+                GLES20.GL_UNSIGNED_SHORT, 0);
+        else
+            GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, handle.mNumVertices);
+    }
+
+
+    public void endDraw()
+    {
+        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+    }
+
+
+    private void bindAttribute(int buffer, int attribHandle, int size)
+    {
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, buffer);
+        GLES20.glVertexAttribPointer(attribHandle, size, GLES20.GL_FLOAT,
+            false, 0, 0);
+    }
+
+
+    private void createBuffers(Handle handle)
+    {
+        MeshObject mesh = handle.mMesh;
+        handle.mNumVertices = mesh.getNumObjectVertex();
+        handle.mNumIndices = mesh.getNumObjectIndex();
+
+        handle.mVertexBuffer = createBuffer(GLES20.GL_ARRAY_BUFFER,
+            mesh.getVertices());
+        handle.mTexCoordBuffer = createBuffer(GLES20.GL_ARRAY_BUFFER,
+            mesh.getTexCoords());
+        handle.mNormalBuffer = createBuffer(GLES20.GL_ARRAY_BUFFER,
+            mesh.getNormals());
+        handle.mIndexBuffer = handle.mNumIndices > 0 ? createBuffer(
+            GLES20.GL_ELEMENT_ARRAY_BUFFER, mesh.getIndices()) : 0;
+
+        SampleUtils.checkGLError("MeshBufferCache upload");
+    }
+
+
+    private int createBuffer(int target, Buffer data)
+    {
+        if (data == null)
+            return 0;
+
+        int[] buffer = new int[1];
+        GLES20.glGenBuffers(1, buffer, 0);
+        if (buffer[0] == 0)
+        {
+            Log.e(LOGTAG, "Unable to create a buffer object");
+            return 0;
+        }
+
+        data.rewind();
+        GLES20.glBindBuffer(target, buffer[0]);
+        GLES20.glBufferData(target, sizeInBytes(data), data,
+            GLES20.GL_STATIC_DRAW);
+        GLES20.glBindBuffer(target, 0);
+        return buffer[0];
+    }
+
+
+    private void deleteBuffers(Handle handle)
+    {
+        int[] buffers = { handle.mVertexBuffer, handle.mTexCoordBuffer,
+                handle.mNormalBuffer, handle.mIndexBuffer };
+        GLES20.glDeleteBuffers(buffers.length, buffers, 0);
+        handle.mVertexBuffer = 0;
+        handle.mTexCoordBuffer = 0;
+        handle.mNormalBuffer = 0;
+        handle.mIndexBuffer = 0;
+    }
+
+
+    private static int sizeInBytes(Buffer data)
+    {
+        if (data instanceof FloatBuffer)
+            return data.limit() * 4;
+        if (data instanceof ShortBuffer)
+            return data.limit() * 2;
+        if (data instanceof ByteBuffer)
+            return data.limit();
+        throw new IllegalArgumentException("Unsupported buffer "
+            + data.getClass().getName());
+    }
+}
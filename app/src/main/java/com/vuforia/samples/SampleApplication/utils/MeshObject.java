@@ -12,6 +12,7 @@ package com.vuforia.samples.SampleApplication.utils;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 
 
 public abstract class MeshObject
@@ -49,45 +50,36 @@ public abstract class MeshObject
     
     protected Buffer fillBuffer(double[] array)
     {
-        // Convert to floats because OpenGL doesn't work on doubles, and manually
-        // casting each input value would take too much time.
-        // Each float takes 4 bytes
-        ByteBuffer bb = ByteBuffer.allocateDirect(4 * array.length);
-        bb.order(ByteOrder.LITTLE_ENDIAN);
-        for (double d : array)
-            bb.putFloat((float) d);
-        bb.rewind();
-        
+        // Convert to floats because OpenGL doesn't work on doubles, written
+        // one by one in a float view: a float[] copy would cost more than
+        // the bulk put saves. Built-in meshes are baked, see BakedMeshObject
+        ByteBuffer bb = ByteBuffer.allocateDirect(4 * array.length).order(
+            ByteOrder.nativeOrder());
+        FloatBuffer fb = bb.asFloatBuffer();
+        for (int i = 0; i < array.length; i++)
+            fb.put(i, (float) array[i]);
         return bb;
-        
     }
     
     
     protected Buffer fillBuffer(float[] array)
     {
-        // Each float takes 4 bytes
-        ByteBuffer bb = ByteBuffer.allocateDirect(4 * array.length);
-        bb.order(ByteOrder.LITTLE_ENDIAN);
-        for (float d : array)
-            bb.putFloat(d);
-        bb.rewind();
-        
+        // Each float takes 4 bytes. The array is copied with a single bulk
+        // put through a float view, in the native order read by OpenGL
+        ByteBuffer bb = ByteBuffer.allocateDirect(4 * array.length).order(
+            ByteOrder.nativeOrder());
+        bb.asFloatBuffer().put(array);
         return bb;
-        
     }
     
     
     protected Buffer fillBuffer(short[] array)
     {
         // Each short takes 2 bytes
-        ByteBuffer bb = ByteBuffer.allocateDirect(2 * array.length);
-        bb.order(ByteOrder.LITTLE_ENDIAN);
-        for (short s : array)
-            bb.putShort(s);
-        bb.rewind();
-        
+        ByteBuffer bb = ByteBuffer.allocateDirect(2 * array.length).order(
+            ByteOrder.nativeOrder());
+        bb.asShortBuffer().put(array);
         return bb;
-        
     }
     
     
@@ -0,0 +1,100 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+
+// Builds the mipmap levels of an RGBA image on the CPU with a 2x2 box
+// filter, so they can be computed by the loader threads instead of the GL
+// thread. Plain Java, so it can be tested on a JVM.
+public final class MipChain
+{
+    
+    private MipChain()
+    {
+    }
+    
+    
+    // Number of levels down to 1x1, including the base one
+    public static int getLevelCount(int width, int height)
+    {
+        int levels = 1;
+        int size = Math.max(width, height);
+        while (size > 1)
+        {
+            size >>= 1;
+            levels++;
+        }
+        return levels;
+    }
+    
+    
+    public static boolean isPowerOfTwo(int value)
+    {
+        return value > 0 && (value & (value - 1)) == 0;
+    }
+    
+    
+    // Returns the levels below the base one: level i has size
+    // max(1, width >> i) x max(1, height >> i) and is stored in element i - 1
+    public static ByteBuffer[] generate(ByteBuffer rgba, int width, int height)
+    {
+        ByteBuffer[] levels = new ByteBuffer[getLevelCount(width, height) - 1];
+        ByteBuffer src = rgba;
+        int w = width;
+        int h = height;
+        for (int i = 0; i < levels.length; i++)
+        {
+            levels[i] = downsample(src, w, h);
+            src = levels[i];
+            w = Math.max(1, w >> 1);
+            h = Math.max(1, h >> 1);
+        }
+        return levels;
+    }
+    
+    
+    // Halves an RGBA image, averaging each 2x2 block of pixels. The sizes
+    // are rounded down like the GL levels, so with odd sizes the last row
+    // or column is dropped; only a side of 1 pixel is averaged with itself.
+    public static ByteBuffer downsample(ByteBuffer rgba, int width, int height)
+    {
+        int dstWidth = Math.max(1, width >> 1);
+        int dstHeight = Math.max(1, height >> 1);
+        ByteBuffer dst = ByteBuffer.allocateDirect(dstWidth * dstHeight * 4)
+            .order(ByteOrder.nativeOrder());
+        
+        ByteBuffer src = rgba.duplicate();
+        int base = src.position();
+        int rowBytes = width * 4;
+        byte[] row0 = new byte[rowBytes];
+        byte[] row1 = new byte[rowBytes];
+        byte[] out = new byte[dstWidth * 4];
+        
+        for (int y = 0; y < dstHeight; y++)
+        {
+            int y0 = Math.min(2 * y, height - 1);
+            int y1 = Math.min(2 * y + 1, height - 1);
+            src.position(base + y0 * rowBytes);
+            src.get(row0);
+            src.position(base + y1 * rowBytes);
+            src.get(row1);
+            
+            for (int x = 0; x < dstWidth; x++)
+            {
+                int x0 = Math.min(2 * x, width - 1) * 4;
+                int x1 = Math.min(2 * x + 1, width - 1) * 4;
+                for (int c = 0; c < 4; c++)
+                {
+                    int sum = (row0[x0 + c] & 0xFF) + (row0[x1 + c] & 0xFF)
+                        + (row1[x0 + c] & 0xFF) + (row1[x1 + c] & 0xFF);
+                    out[x * 4 + c] = (byte) ((sum + 2) >> 2);
+                }
+            }
+            dst.put(out);
+        }
+        
+        dst.rewind();
+        return dst;
+    }
+}
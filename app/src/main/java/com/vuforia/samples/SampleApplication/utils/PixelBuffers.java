@@ -0,0 +1,82 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+
+// Conversions of image pixels into the RGBA buffers uploaded by OpenGL.
+// Plain Java, so it can be tested and benchmarked on a JVM.
+public final class PixelBuffers
+{
+    
+    private PixelBuffers()
+    {
+    }
+    
+    
+    // Converts ARGB pixels (as returned by Bitmap.getPixels) to a direct
+    // RGBA buffer, flipped vertically as expected by OpenGL.
+    // The pixels are written one row at a time through an IntBuffer view,
+    // so the only extra memory is a single row.
+    public static ByteBuffer argbToRgba(int[] argb, int width, int height)
+    {
+        ByteBuffer rgba = ByteBuffer.allocateDirect(width * height * 4).order(
+            ByteOrder.nativeOrder());
+        IntBuffer pixels = rgba.asIntBuffer();
+        boolean littleEndian = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+        int[] row = new int[width];
+        
+        for (int r = 0; r < height; r++)
+        {
+            int src = r * width;
+            if (littleEndian)
+            {
+                // Bytes R, G, B, A read as a little-endian int are 0xAABBGGRR
+                for (int x = 0; x < width; x++)
+                {
+                    int c = argb[src + x];
+                    row[x] = (c & 0xFF00FF00) | ((c >>> 16) & 0xFF)
+                        | ((c & 0xFF) << 16);
+                }
+            } else
+            {
+                for (int x = 0; x < width; x++)
+                    row[x] = Integer.rotateLeft(argb[src + x], 8);
+            }
+            
+            pixels.position((height - 1 - r) * width);
+            pixels.put(row);
+        }
+        
+        rgba.rewind();
+        return rgba;
+    }
+    
+    
+    // Flips an image vertically in place, swapping the rows through two
+    // row-sized scratch arrays
+    public static void flipRows(ByteBuffer data, int rowBytes, int rows)
+    {
+        ByteBuffer view = data.duplicate();
+        int base = view.position();
+        byte[] top = new byte[rowBytes];
+        byte[] bottom = new byte[rowBytes];
+        
+        for (int r = 0; r < rows / 2; r++)
+        {
+            int topOffset = base + r * rowBytes;
+            int bottomOffset = base + (rows - 1 - r) * rowBytes;
+            
+            view.position(topOffset);
+            view.get(top);
+            view.position(bottomOffset);
+            view.get(bottom);
+            
+            view.position(topOffset);
+            view.put(bottom);
+            view.position(bottomOffset);
+            view.put(top);
+        }
+    }
+}
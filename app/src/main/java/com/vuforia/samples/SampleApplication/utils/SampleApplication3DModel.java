@@ -82,6 +82,21 @@ public class SampleApplication3DModel extends MeshObject
     }
     
     
+    // Loads a model converted with BinaryModelFile. Uncompressed assets are
+    // memory-mapped, otherwise the file is read in a single direct buffer;
+    // in both cases the values are not parsed.
+    public void loadBinaryModel(AssetManager assetManager, String filename)
+        throws IOException
+    {
+        ByteBuffer data = AssetBuffers.load(assetManager, filename);
+        BinaryModelFile model = BinaryModelFile.read(data);
+        verts = model.getVertices();
+        norms = model.getNormals();
+        textCoords = model.getTexCoords();
+        numVerts = model.getNumVertexFloats() / 3;
+    }
+    
+    
     @Override
     public Buffer getBuffer(BUFFER_TYPE bufferType)
     {
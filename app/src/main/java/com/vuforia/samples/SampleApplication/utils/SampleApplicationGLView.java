@@ -47,7 +47,7 @@ public class SampleApplicationGLView extends GLSurfaceView
         // format here, using PixelFormat.TRANSLUCENT for GL Surfaces
         // is interpreted as any 32-bit surface with alpha by SurfaceFlinger.
         
-        Log.i(LOGTAG, "Using OpenGL ES 2.0");
+        Log.i(LOGTAG, "Using OpenGL ES 3.0 if available, otherwise 2.0");
         Log.i(LOGTAG, "Using " + (translucent ? "translucent" : "opaque")
             + " GLView, depth buffer size: " + depth + ", stencil size: "
             + stencil);
@@ -59,7 +59,7 @@ public class SampleApplicationGLView extends GLSurfaceView
             this.getHolder().setFormat(PixelFormat.TRANSLUCENT);
         }
         
-        // Setup the context factory for 2.0 rendering
+        // Setup the context factory for 3.0 or 2.0 rendering
         setEGLContextFactory(new ContextFactory());
         
         // We need to choose an EGLConfig that matches the format of
@@ -82,12 +82,26 @@ public class SampleApplicationGLView extends GLSurfaceView
         {
             EGLContext context;
             
-            Log.i(LOGTAG, "Creating OpenGL ES 2.0 context");
+            // A 3.0 context runs the 2.0 shaders too, and allows instanced
+            // drawing; devices without it fail here and get a 2.0 one
+            Log.i(LOGTAG, "Creating OpenGL ES 3.0 context");
             checkEglError("Before eglCreateContext", egl);
-            int[] attrib_list_gl20 = { EGL_CONTEXT_CLIENT_VERSION, 2,
+            int[] attrib_list_gl30 = { EGL_CONTEXT_CLIENT_VERSION, 3,
                     EGL10.EGL_NONE };
             context = egl.eglCreateContext(display, eglConfig,
-                EGL10.EGL_NO_CONTEXT, attrib_list_gl20);
+                EGL10.EGL_NO_CONTEXT, attrib_list_gl30);
+            
+            if (context == null || context == EGL10.EGL_NO_CONTEXT)
+            {
+                // Clear the error of the failed attempt
+                egl.eglGetError();
+                
+                Log.i(LOGTAG, "Creating OpenGL ES 2.0 context");
+                int[] attrib_list_gl20 = { EGL_CONTEXT_CLIENT_VERSION, 2,
+                        EGL10.EGL_NONE };
+                context = egl.eglCreateContext(display, eglConfig,
+                    EGL10.EGL_NO_CONTEXT, attrib_list_gl20);
+            }
             
             checkEglError("After eglCreateContext", egl);
             return context;
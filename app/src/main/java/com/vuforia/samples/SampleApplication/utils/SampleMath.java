@@ -19,349 +19,149 @@ import com.vuforia.Vec4F;
 import com.vuforia.VideoBackgroundConfig;
 
 
+// Vec2F/Vec3F/Vec4F/Matrix44F wrappers of VectorMath, kept for the code
+// written against them. They read the data of their arguments once and
+// keep no shared state, so they can be called from any thread, but they
+// still allocate their results: new code should use VectorMath.
+// As before, the Matrix44F arguments are transformed as row major
+// matrices and Matrix44FInverse returns the transposed inverse, so
+// Vec4FTransform(v, Matrix44FInverse(m)) applies the inverse of the
+// OpenGL matrix m.
 public class SampleMath
 {
     
     private static final String LOGTAG = "SampleMath";
     
-    private static float temp[] = new float[16];
-    private static Vec3F mLineStart = new Vec3F();
-    private static Vec3F mLineEnd = new Vec3F();
-    private static Vec3F mIntersection = new Vec3F();
-    
     
     public static Vec2F Vec2FSub(Vec2F v1, Vec2F v2)
     {
-        temp[0] = v1.getData()[0] - v2.getData()[0];
-        temp[1] = v1.getData()[1] - v2.getData()[1];
-        return new Vec2F(temp[0], temp[1]);
+        float[] r = new float[2];
+        VectorMath.vec2Sub(v1.getData(), v2.getData(), r);
+        return new Vec2F(r[0], r[1]);
     }
     
     
     public static float Vec2FDist(Vec2F v1, Vec2F v2)
     {
-        float dx = v1.getData()[0] - v2.getData()[0];
-        float dy = v1.getData()[1] - v2.getData()[1];
-        return (float) Math.sqrt(dx * dx + dy * dy);
+        return VectorMath.vec2Dist(v1.getData(), v2.getData());
     }
     
     
     public static Vec3F Vec3FAdd(Vec3F v1, Vec3F v2)
     {
-        temp[0] = v1.getData()[0] + v2.getData()[0];
-        temp[1] = v1.getData()[1] + v2.getData()[1];
-        temp[2] = v1.getData()[2] + v2.getData()[2];
-        return new Vec3F(temp[0], temp[1], temp[2]);
+        float[] r = new float[3];
+        VectorMath.vec3Add(v1.getData(), v2.getData(), r);
+        return new Vec3F(r[0], r[1], r[2]);
     }
     
     
     public static Vec3F Vec3FSub(Vec3F v1, Vec3F v2)
     {
-        temp[0] = v1.getData()[0] - v2.getData()[0];
-        temp[1] = v1.getData()[1] - v2.getData()[1];
-        temp[2] = v1.getData()[2] - v2.getData()[2];
-        return new Vec3F(temp[0], temp[1], temp[2]);
+        float[] r = new float[3];
+        VectorMath.vec3Sub(v1.getData(), v2.getData(), r);
+        return new Vec3F(r[0], r[1], r[2]);
     }
     
     
     public static Vec3F Vec3FScale(Vec3F v, float s)
     {
-        temp[0] = v.getData()[0] * s;
-        temp[1] = v.getData()[1] * s;
-        temp[2] = v.getData()[2] * s;
-        return new Vec3F(temp[0], temp[1], temp[2]);
+        float[] r = new float[3];
+        VectorMath.vec3Scale(v.getData(), s, r);
+        return new Vec3F(r[0], r[1], r[2]);
     }
     
     
     public static float Vec3FDot(Vec3F v1, Vec3F v2)
     {
-        return v1.getData()[0] * v2.getData()[0] + v1.getData()[1]
-            * v2.getData()[1] + v1.getData()[2] * v2.getData()[2];
+        return VectorMath.vec3Dot(v1.getData(), v2.getData());
     }
     
     
     public static Vec3F Vec3FCross(Vec3F v1, Vec3F v2)
     {
-        temp[0] = v1.getData()[1] * v2.getData()[2] - v1.getData()[2]
-            * v2.getData()[1];
-        temp[1] = v1.getData()[2] * v2.getData()[0] - v1.getData()[0]
-            * v2.getData()[2];
-        temp[2] = v1.getData()[0] * v2.getData()[1] - v1.getData()[1]
-            * v2.getData()[0];
-        return new Vec3F(temp[0], temp[1], temp[2]);
+        float[] r = new float[3];
+        VectorMath.vec3Cross(v1.getData(), v2.getData(), r);
+        return new Vec3F(r[0], r[1], r[2]);
     }
     
     
     public static Vec3F Vec3FNormalize(Vec3F v)
     {
-        float length = (float) Math
-            .sqrt(v.getData()[0] * v.getData()[0] + v.getData()[1]
-                * v.getData()[1] + v.getData()[2] * v.getData()[2]);
-        if (length != 0.0f)
-            length = 1.0f / length;
-        
-        temp[0] = v.getData()[0] * length;
-        temp[1] = v.getData()[1] * length;
-        temp[2] = v.getData()[2] * length;
-        
-        return new Vec3F(temp[0], temp[1], temp[2]);
+        float[] r = new float[3];
+        VectorMath.vec3Normalize(v.getData(), r);
+        return new Vec3F(r[0], r[1], r[2]);
     }
     
     
     public static Vec3F Vec3FTransform(Vec3F v, Matrix44F m)
     {
-        float lambda;
-        lambda = m.getData()[12] * v.getData()[0] + m.getData()[13]
-            * v.getData()[1] + m.getData()[14] * v.getData()[2]
-            + m.getData()[15];
-        
-        temp[0] = m.getData()[0] * v.getData()[0] + m.getData()[1]
-            * v.getData()[1] + m.getData()[2] * v.getData()[2] + m.getData()[3];
-        temp[1] = m.getData()[4] * v.getData()[0] + m.getData()[5]
-            * v.getData()[1] + m.getData()[6] * v.getData()[2] + m.getData()[7];
-        temp[2] = m.getData()[8] * v.getData()[0] + m.getData()[9]
-            * v.getData()[1] + m.getData()[10] * v.getData()[2]
-            + m.getData()[11];
-        
-        temp[0] /= lambda;
-        temp[1] /= lambda;
-        temp[2] /= lambda;
-        
-        return new Vec3F(temp[0], temp[1], temp[2]);
+        float[] r = new float[3];
+        VectorMath.vec3Transform(v.getData(), transposed(m), r);
+        return new Vec3F(r[0], r[1], r[2]);
     }
     
     
     public static Vec3F Vec3FTransformNormal(Vec3F v, Matrix44F m)
     {
-        temp[0] = m.getData()[0] * v.getData()[0] + m.getData()[1]
-            * v.getData()[1] + m.getData()[2] * v.getData()[2];
-        temp[1] = m.getData()[4] * v.getData()[0] + m.getData()[5]
-            * v.getData()[1] + m.getData()[6] * v.getData()[2];
-        temp[2] = m.getData()[8] * v.getData()[0] + m.getData()[9]
-            * v.getData()[1] + m.getData()[10] * v.getData()[2];
-        
-        return new Vec3F(temp[0], temp[1], temp[2]);
+        float[] r = new float[3];
+        VectorMath.vec3TransformNormal(v.getData(), transposed(m), r);
+        return new Vec3F(r[0], r[1], r[2]);
     }
     
     
     public static Vec4F Vec4FTransform(Vec4F v, Matrix44F m)
     {
-        temp[0] = m.getData()[0] * v.getData()[0] + m.getData()[1]
-            * v.getData()[1] + m.getData()[2] * v.getData()[2] + m.getData()[3]
-            * v.getData()[3];
-        temp[1] = m.getData()[4] * v.getData()[0] + m.getData()[5]
-            * v.getData()[1] + m.getData()[6] * v.getData()[2] + m.getData()[7]
-            * v.getData()[3];
-        temp[2] = m.getData()[8] * v.getData()[0] + m.getData()[9]
-            * v.getData()[1] + m.getData()[10] * v.getData()[2]
-            + m.getData()[11] * v.getData()[3];
-        temp[3] = m.getData()[12] * v.getData()[0] + m.getData()[13]
-            * v.getData()[1] + m.getData()[14] * v.getData()[2]
-            + m.getData()[15] * v.getData()[3];
-        
-        return new Vec4F(temp[0], temp[1], temp[2], temp[3]);
+        float[] r = new float[4];
+        VectorMath.vec4Transform(v.getData(), transposed(m), r);
+        return new Vec4F(r[0], r[1], r[2], r[3]);
     }
     
     
     public static Vec4F Vec4FDiv(Vec4F v, float s)
     {
-        temp[0] = v.getData()[0] / s;
-        temp[1] = v.getData()[1] / s;
-        temp[2] = v.getData()[2] / s;
-        temp[3] = v.getData()[3] / s;
-        return new Vec4F(temp[0], temp[1], temp[2], temp[3]);
+        float[] r = new float[4];
+        VectorMath.vec4Div(v.getData(), s, r);
+        return new Vec4F(r[0], r[1], r[2], r[3]);
     }
     
     
     public static Matrix44F Matrix44FIdentity()
     {
+        float[] data = new float[16];
+        VectorMath.matrix44Identity(data);
         Matrix44F r = new Matrix44F();
-        
-        for (int i = 0; i < 16; i++)
-            temp[i] = 0.0f;
-        
-        temp[0] = 1.0f;
-        temp[5] = 1.0f;
-        temp[10] = 1.0f;
-        temp[15] = 1.0f;
-        
-        r.setData(temp);
-        
+        r.setData(data);
         return r;
     }
     
     
     public static Matrix44F Matrix44FTranspose(Matrix44F m)
     {
+        float[] data = new float[16];
+        VectorMath.matrix44Transpose(m.getData(), data);
         Matrix44F r = new Matrix44F();
-        for (int i = 0; i < 4; i++)
-            for (int j = 0; j < 4; j++)
-                temp[i * 4 + j] = m.getData()[i + 4 * j];
-        
-        r.setData(temp);
+        r.setData(data);
         return r;
     }
     
     
     public static float Matrix44FDeterminate(Matrix44F m)
     {
-        return m.getData()[12] * m.getData()[9] * m.getData()[6]
-            * m.getData()[3] - m.getData()[8] * m.getData()[13]
-            * m.getData()[6] * m.getData()[3] - m.getData()[12]
-            * m.getData()[5] * m.getData()[10] * m.getData()[3]
-            + m.getData()[4] * m.getData()[13] * m.getData()[10]
-            * m.getData()[3] + m.getData()[8] * m.getData()[5]
-            * m.getData()[14] * m.getData()[3] - m.getData()[4]
-            * m.getData()[9] * m.getData()[14] * m.getData()[3]
-            - m.getData()[12] * m.getData()[9] * m.getData()[2]
-            * m.getData()[7] + m.getData()[8] * m.getData()[13]
-            * m.getData()[2] * m.getData()[7] + m.getData()[12]
-            * m.getData()[1] * m.getData()[10] * m.getData()[7]
-            - m.getData()[0] * m.getData()[13] * m.getData()[10]
-            * m.getData()[7] - m.getData()[8] * m.getData()[1]
-            * m.getData()[14] * m.getData()[7] + m.getData()[0]
-            * m.getData()[9] * m.getData()[14] * m.getData()[7]
-            + m.getData()[12] * m.getData()[5] * m.getData()[2]
-            * m.getData()[11] - m.getData()[4] * m.getData()[13]
-            * m.getData()[2] * m.getData()[11] - m.getData()[12]
-            * m.getData()[1] * m.getData()[6] * m.getData()[11]
-            + m.getData()[0] * m.getData()[13] * m.getData()[6]
-            * m.getData()[11] + m.getData()[4] * m.getData()[1]
-            * m.getData()[14] * m.getData()[11] - m.getData()[0]
-            * m.getData()[5] * m.getData()[14] * m.getData()[11]
-            - m.getData()[8] * m.getData()[5] * m.getData()[2]
-            * m.getData()[15] + m.getData()[4] * m.getData()[9]
-            * m.getData()[2] * m.getData()[15] + m.getData()[8]
-            * m.getData()[1] * m.getData()[6] * m.getData()[15]
-            - m.getData()[0] * m.getData()[9] * m.getData()[6]
-            * m.getData()[15] - m.getData()[4] * m.getData()[1]
-            * m.getData()[10] * m.getData()[15] + m.getData()[0]
-            * m.getData()[5] * m.getData()[10] * m.getData()[15];
+        return VectorMath.matrix44Determinant(m.getData());
     }
     
     
+    // The transposed inverse, all NaN if m is singular
     public static Matrix44F Matrix44FInverse(Matrix44F m)
     {
+        float[] inverse = VectorMath.scratchMatrix();
+        float[] data = new float[16];
+        if (VectorMath.matrix44Inverse(m.getData(), inverse))
+            VectorMath.matrix44Transpose(inverse, data);
+        else
+            java.util.Arrays.fill(data, Float.NaN);
         Matrix44F r = new Matrix44F();
-        
-        float det = 1.0f / Matrix44FDeterminate(m);
-        
-        temp[0] = m.getData()[6] * m.getData()[11] * m.getData()[13]
-            - m.getData()[7] * m.getData()[10] * m.getData()[13]
-            + m.getData()[7] * m.getData()[9] * m.getData()[14]
-            - m.getData()[5] * m.getData()[11] * m.getData()[14]
-            - m.getData()[6] * m.getData()[9] * m.getData()[15]
-            + m.getData()[5] * m.getData()[10] * m.getData()[15];
-        
-        temp[4] = m.getData()[3] * m.getData()[10] * m.getData()[13]
-            - m.getData()[2] * m.getData()[11] * m.getData()[13]
-            - m.getData()[3] * m.getData()[9] * m.getData()[14]
-            + m.getData()[1] * m.getData()[11] * m.getData()[14]
-            + m.getData()[2] * m.getData()[9] * m.getData()[15]
-            - m.getData()[1] * m.getData()[10] * m.getData()[15];
-        
-        temp[8] = m.getData()[2] * m.getData()[7] * m.getData()[13]
-            - m.getData()[3] * m.getData()[6] * m.getData()[13]
-            + m.getData()[3] * m.getData()[5] * m.getData()[14]
-            - m.getData()[1] * m.getData()[7] * m.getData()[14]
-            - m.getData()[2] * m.getData()[5] * m.getData()[15]
-            + m.getData()[1] * m.getData()[6] * m.getData()[15];
-        
-        temp[12] = m.getData()[3] * m.getData()[6] * m.getData()[9]
-            - m.getData()[2] * m.getData()[7] * m.getData()[9] - m.getData()[3]
-            * m.getData()[5] * m.getData()[10] + m.getData()[1]
-            * m.getData()[7] * m.getData()[10] + m.getData()[2]
-            * m.getData()[5] * m.getData()[11] - m.getData()[1]
-            * m.getData()[6] * m.getData()[11];
-        
-        temp[1] = m.getData()[7] * m.getData()[10] * m.getData()[12]
-            - m.getData()[6] * m.getData()[11] * m.getData()[12]
-            - m.getData()[7] * m.getData()[8] * m.getData()[14]
-            + m.getData()[4] * m.getData()[11] * m.getData()[14]
-            + m.getData()[6] * m.getData()[8] * m.getData()[15]
-            - m.getData()[4] * m.getData()[10] * m.getData()[15];
-        
-        temp[5] = m.getData()[2] * m.getData()[11] * m.getData()[12]
-            - m.getData()[3] * m.getData()[10] * m.getData()[12]
-            + m.getData()[3] * m.getData()[8] * m.getData()[14]
-            - m.getData()[0] * m.getData()[11] * m.getData()[14]
-            - m.getData()[2] * m.getData()[8] * m.getData()[15]
-            + m.getData()[0] * m.getData()[10] * m.getData()[15];
-        
-        temp[9] = m.getData()[3] * m.getData()[6] * m.getData()[12]
-            - m.getData()[2] * m.getData()[7] * m.getData()[12]
-            - m.getData()[3] * m.getData()[4] * m.getData()[14]
-            + m.getData()[0] * m.getData()[7] * m.getData()[14]
-            + m.getData()[2] * m.getData()[4] * m.getData()[15]
-            - m.getData()[0] * m.getData()[6] * m.getData()[15];
-        
-        temp[13] = m.getData()[2] * m.getData()[7] * m.getData()[8]
-            - m.getData()[3] * m.getData()[6] * m.getData()[8] + m.getData()[3]
-            * m.getData()[4] * m.getData()[10] - m.getData()[0]
-            * m.getData()[7] * m.getData()[10] - m.getData()[2]
-            * m.getData()[4] * m.getData()[11] + m.getData()[0]
-            * m.getData()[6] * m.getData()[11];
-        
-        temp[2] = m.getData()[5] * m.getData()[11] * m.getData()[12]
-            - m.getData()[7] * m.getData()[9] * m.getData()[12]
-            + m.getData()[7] * m.getData()[8] * m.getData()[13]
-            - m.getData()[4] * m.getData()[11] * m.getData()[13]
-            - m.getData()[5] * m.getData()[8] * m.getData()[15]
-            + m.getData()[4] * m.getData()[9] * m.getData()[15];
-        
-        temp[6] = m.getData()[3] * m.getData()[9] * m.getData()[12]
-            - m.getData()[1] * m.getData()[11] * m.getData()[12]
-            - m.getData()[3] * m.getData()[8] * m.getData()[13]
-            + m.getData()[0] * m.getData()[11] * m.getData()[13]
-            + m.getData()[1] * m.getData()[8] * m.getData()[15]
-            - m.getData()[0] * m.getData()[9] * m.getData()[15];
-        
-        temp[10] = m.getData()[1] * m.getData()[7] * m.getData()[12]
-            - m.getData()[3] * m.getData()[5] * m.getData()[12]
-            + m.getData()[3] * m.getData()[4] * m.getData()[13]
-            - m.getData()[0] * m.getData()[7] * m.getData()[13]
-            - m.getData()[1] * m.getData()[4] * m.getData()[15]
-            + m.getData()[0] * m.getData()[5] * m.getData()[15];
-        
-        temp[14] = m.getData()[3] * m.getData()[5] * m.getData()[8]
-            - m.getData()[1] * m.getData()[7] * m.getData()[8] - m.getData()[3]
-            * m.getData()[4] * m.getData()[9] + m.getData()[0] * m.getData()[7]
-            * m.getData()[9] + m.getData()[1] * m.getData()[4]
-            * m.getData()[11] - m.getData()[0] * m.getData()[5]
-            * m.getData()[11];
-        
-        temp[3] = m.getData()[6] * m.getData()[9] * m.getData()[12]
-            - m.getData()[5] * m.getData()[10] * m.getData()[12]
-            - m.getData()[6] * m.getData()[8] * m.getData()[13]
-            + m.getData()[4] * m.getData()[10] * m.getData()[13]
-            + m.getData()[5] * m.getData()[8] * m.getData()[14]
-            - m.getData()[4] * m.getData()[9] * m.getData()[14];
-        
-        temp[7] = m.getData()[1] * m.getData()[10] * m.getData()[12]
-            - m.getData()[2] * m.getData()[9] * m.getData()[12]
-            + m.getData()[2] * m.getData()[8] * m.getData()[13]
-            - m.getData()[0] * m.getData()[10] * m.getData()[13]
-            - m.getData()[1] * m.getData()[8] * m.getData()[14]
-            + m.getData()[0] * m.getData()[9] * m.getData()[14];
-        
-        temp[11] = m.getData()[2] * m.getData()[5] * m.getData()[12]
-            - m.getData()[1] * m.getData()[6] * m.getData()[12]
-            - m.getData()[2] * m.getData()[4] * m.getData()[13]
-            + m.getData()[0] * m.getData()[6] * m.getData()[13]
-            + m.getData()[1] * m.getData()[4] * m.getData()[14]
-            - m.getData()[0] * m.getData()[5] * m.getData()[14];
-        
-        temp[15] = m.getData()[1] * m.getData()[6] * m.getData()[8]
-            - m.getData()[2] * m.getData()[5] * m.getData()[8] + m.getData()[2]
-            * m.getData()[4] * m.getData()[9] - m.getData()[0] * m.getData()[6]
-            * m.getData()[9] - m.getData()[1] * m.getData()[4]
-            * m.getData()[10] + m.getData()[0] * m.getData()[5]
-            * m.getData()[10];
-        
-        for (int i = 0; i < 16; i++)
-            temp[i] *= det;
-        
-        r.setData(temp);
+        r.setData(data);
         return r;
     }
     
@@ -369,73 +169,41 @@ public class SampleMath
     public static Vec3F linePlaneIntersection(Vec3F lineStart, Vec3F lineEnd,
         Vec3F pointOnPlane, Vec3F planeNormal)
     {
-        Vec3F lineDir = Vec3FSub(lineEnd, lineStart);
-        lineDir = Vec3FNormalize(lineDir);
-        
-        Vec3F planeDir = Vec3FSub(pointOnPlane, lineStart);
-        
-        float n = Vec3FDot(planeNormal, planeDir);
-        float d = Vec3FDot(planeNormal, lineDir);
-        
-        if (Math.abs(d) < 0.00001)
+        float[] r = new float[3];
+        if (!VectorMath.linePlaneIntersection(lineStart.getData(),
+            lineEnd.getData(), pointOnPlane.getData(), planeNormal.getData(), r))
         {
             // Line is parallel to plane
             return null;
         }
-        
-        float dist = n / d;
-        
-        Vec3F offset = Vec3FScale(lineDir, dist);
-        
-        return Vec3FAdd(lineStart, offset);
+        return new Vec3F(r[0], r[1], r[2]);
     }
     
     
-    private static void projectScreenPointToPlane(Matrix44F inverseProjMatrix,
-        Matrix44F modelViewMatrix, float screenWidth, float screenHeight,
-        Vec2F point, Vec3F planeCenter, Vec3F planeNormal)
+    // Casts the ray of a screen point on the plane, inverseProjMatrix as
+    // returned by Matrix44FInverse. Writes the points of the ray in
+    // lineStart and lineEnd, returns false if there is no intersection
+    private static boolean projectScreenPointToPlane(
+        Matrix44F inverseProjMatrix, Matrix44F modelViewMatrix,
+        float screenWidth, float screenHeight, Vec2F point, Vec3F planeCenter,
+        Vec3F planeNormal, float[] lineStart, float[] lineEnd,
+        float[] intersection)
     {
         // Window Coordinates to Normalized Device Coordinates
         VideoBackgroundConfig config = Renderer.getInstance()
             .getVideoBackgroundConfig();
+        int[] viewport = config.getSize().getData();
+        float[] screenPoint = point.getData();
         
-        float halfScreenWidth = screenWidth / 2.0f;
-        float halfScreenHeight = screenHeight / 2.0f;
+        boolean found = VectorMath.projectScreenPointToPlane(
+            transposed(inverseProjMatrix), modelViewMatrix.getData(),
+            screenWidth, screenHeight, viewport[0], viewport[1],
+            screenPoint[0], screenPoint[1], planeCenter.getData(),
+            planeNormal.getData(), lineStart, lineEnd, intersection);
         
-        float halfViewportWidth = config.getSize().getData()[0] / 2.0f;
-        float halfViewportHeight = config.getSize().getData()[1] / 2.0f;
-        
-        float x = (point.getData()[0] - halfScreenWidth) / halfViewportWidth;
-        float y = (point.getData()[1] - halfScreenHeight) / halfViewportHeight
-            * -1;
-        
-        Vec4F ndcNear = new Vec4F(x, y, -1, 1);
-        Vec4F ndcFar = new Vec4F(x, y, 1, 1);
-        
-        // Normalized Device Coordinates to Eye Coordinates
-        Vec4F pointOnNearPlane = Vec4FTransform(ndcNear, inverseProjMatrix);
-        Vec4F pointOnFarPlane = Vec4FTransform(ndcFar, inverseProjMatrix);
-        pointOnNearPlane = Vec4FDiv(pointOnNearPlane,
-            pointOnNearPlane.getData()[3]);
-        pointOnFarPlane = Vec4FDiv(pointOnFarPlane,
-            pointOnFarPlane.getData()[3]);
-        
-        // Eye Coordinates to Object Coordinates
-        Matrix44F inverseModelViewMatrix = Matrix44FInverse(modelViewMatrix);
-        
-        Vec4F nearWorld = Vec4FTransform(pointOnNearPlane,
-            inverseModelViewMatrix);
-        Vec4F farWorld = Vec4FTransform(pointOnFarPlane, inverseModelViewMatrix);
-        
-        mLineStart = new Vec3F(nearWorld.getData()[0], nearWorld.getData()[1],
-            nearWorld.getData()[2]);
-        mLineEnd = new Vec3F(farWorld.getData()[0], farWorld.getData()[1],
-            farWorld.getData()[2]);
-        mIntersection = linePlaneIntersection(mLineStart, mLineEnd,
-            planeCenter, planeNormal);
-        
-        if (mIntersection == null)
+        if (!found)
             Log.e(LOGTAG, "No intersection with the plane");
+        return found;
     }
     
     
@@ -444,9 +212,12 @@ public class SampleMath
         float screenWidth, float screenHeight, Vec2F point, Vec3F planeCenter,
         Vec3F planeNormal)
     {
-        projectScreenPointToPlane(inverseProjMatrix, modelViewMatrix,
-            screenWidth, screenHeight, point, planeCenter, planeNormal);
-        return mIntersection;
+        float[] intersection = new float[3];
+        if (!projectScreenPointToPlane(inverseProjMatrix, modelViewMatrix,
+            screenWidth, screenHeight, point, planeCenter, planeNormal, null,
+            null, intersection))
+            return null;
+        return new Vec3F(intersection[0], intersection[1], intersection[2]);
     }
     
     
@@ -454,9 +225,11 @@ public class SampleMath
         Matrix44F modelViewMatrix, float screenWidth, float screenHeight,
         Vec2F point, Vec3F planeCenter, Vec3F planeNormal)
     {
+        float[] lineStart = new float[3];
         projectScreenPointToPlane(inverseProjMatrix, modelViewMatrix,
-            screenWidth, screenHeight, point, planeCenter, planeNormal);
-        return mLineStart;
+            screenWidth, screenHeight, point, planeCenter, planeNormal,
+            lineStart, null, new float[3]);
+        return new Vec3F(lineStart[0], lineStart[1], lineStart[2]);
     }
     
     
@@ -464,8 +237,20 @@ public class SampleMath
         Matrix44F modelViewMatrix, float screenWidth, float screenHeight,
         Vec2F point, Vec3F planeCenter, Vec3F planeNormal)
     {
+        float[] lineEnd = new float[3];
         projectScreenPointToPlane(inverseProjMatrix, modelViewMatrix,
-            screenWidth, screenHeight, point, planeCenter, planeNormal);
-        return mLineEnd;
+            screenWidth, screenHeight, point, planeCenter, planeNormal, null,
+            lineEnd, new float[3]);
+        return new Vec3F(lineEnd[0], lineEnd[1], lineEnd[2]);
+    }
+    
+    
+    // The data of m transposed in the scratch matrix of the thread: the
+    // legacy row major product is the column major product by the transpose
+    private static float[] transposed(Matrix44F m)
+    {
+        float[] t = VectorMath.scratchMatrix();
+        VectorMath.matrix44Transpose(m.getData(), t);
+        return t;
     }
 }
@@ -82,6 +82,16 @@ public class SampleUtils
     }
     
     
+    // True if the current context is OpenGL ES 3.0 or later, the contexts
+    // created for 2.0 may also report the actual version of the driver
+    public static boolean isOpenGLES3()
+    {
+        String version = GLES20.glGetString(GLES20.GL_VERSION);
+        return version != null && version.startsWith("OpenGL ES ")
+            && version.length() > 10 && version.charAt(10) >= '3';
+    }
+    
+    
     public static void checkGLError(String op)
     {
         for (int error = GLES20.glGetError(); error != 0; error = GLES20
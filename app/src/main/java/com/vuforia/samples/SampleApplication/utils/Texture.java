@@ -18,6 +18,7 @@ import java.nio.ByteOrder;
 import android.content.res.AssetManager;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.os.Build;
 import android.util.Log;
 
 
@@ -31,10 +32,60 @@ public class Texture
     public int mHeight;         // The height of the texture.
     public int mChannels;       // The number of channels.
     public ByteBuffer mData;    // The pixel data.
+    public int mCompressedFormat = 0; // OpenGL format of mData, 0 for RGBA.
+    public String mFallbackFileName; // Image to decode if the format is not supported.
+    public ByteBuffer[] mMipLevels; // Levels from 1 down, null if not built.
     public int[] mTextureID = new int[1];
     public boolean mSuccess = false;
     
     
+    public boolean isCompressed()
+    {
+        return mCompressedFormat != 0;
+    }
+    
+    
+    public boolean hasMipLevels()
+    {
+        return mMipLevels != null && mMipLevels.length > 0;
+    }
+    
+    
+    // Builds the mip chain of an RGBA texture on the CPU, meant to be called
+    // by the loader threads so the GL thread only uploads the levels
+    public void generateMipLevels()
+    {
+        if (!isCompressed() && mData != null)
+            mMipLevels = MipChain.generate(mData, mWidth, mHeight);
+    }
+    
+    
+    /* Factory function to load a precompressed (.pkm or .ktx) texture from
+     * the APK, the data is kept compressed and uploaded as it is. */
+    public static Texture loadCompressedTextureFromApk(String fileName,
+        String fallbackFileName, AssetManager assets) throws IOException
+    {
+        CompressedTextureFile file = CompressedTextureFile.read(
+            AssetBuffers.load(assets, fileName));
+        
+        Texture texture = new Texture();
+        texture.mWidth = file.getWidth();
+        texture.mHeight = file.getHeight();
+        texture.mChannels = 0;
+        texture.mData = file.getData();
+        texture.mCompressedFormat = file.getFormat();
+        if (file.getLevelCount() > 1)
+        {
+            texture.mMipLevels = new ByteBuffer[file.getLevelCount() - 1];
+            for (int i = 1; i < file.getLevelCount(); i++)
+                texture.mMipLevels[i - 1] = file.getLevel(i);
+        }
+        texture.mFallbackFileName = fallbackFileName;
+        texture.mSuccess = true;
+        return texture;
+    }
+    
+    
     /* Factory function to load a texture from the APK. */
     public static Texture loadTextureFromApk(String fileName,
         AssetManager assets)
@@ -46,14 +97,34 @@ public class Texture
             
             BufferedInputStream bufferedStream = new BufferedInputStream(
                 inputStream);
-            Bitmap bitMap = BitmapFactory.decodeStream(bufferedStream);
             
-            int[] data = new int[bitMap.getWidth() * bitMap.getHeight()];
-            bitMap.getPixels(data, 0, bitMap.getWidth(), 0, 0,
-                bitMap.getWidth(), bitMap.getHeight());
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT)
+            {
+                // Decode straight to unpremultiplied RGBA and copy the pixels
+                // once into the final buffer, without the int[] copy
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+                options.inPremultiplied = false;
+                Bitmap bitMap = BitmapFactory.decodeStream(bufferedStream,
+                    null, options);
+                if (bitMap == null)
+                {
+                    Log.e(LOGTAG, "Failed to decode texture '" + fileName + "'");
+                    return null;
+                }
+                if (bitMap.getConfig() == Bitmap.Config.ARGB_8888)
+                    return loadTextureFromBitmap(bitMap);
+                
+                return loadTextureFromPixels(bitMap);
+            }
             
-            return loadTextureFromIntBuffer(data, bitMap.getWidth(),
-                bitMap.getHeight());
+            Bitmap bitMap = BitmapFactory.decodeStream(bufferedStream);
+            if (bitMap == null)
+            {
+                Log.e(LOGTAG, "Failed to decode texture '" + fileName + "'");
+                return null;
+            }
+            return loadTextureFromPixels(bitMap);
         } catch (IOException e)
         {
             Log.e(LOGTAG, "Failed to log texture '" + fileName + "' from APK");
@@ -63,39 +134,51 @@ public class Texture
     }
     
     
-    public static Texture loadTextureFromIntBuffer(int[] data, int width,
-        int height)
+    private static Texture loadTextureFromPixels(Bitmap bitMap)
     {
-        // Convert:
-        int numPixels = width * height;
-        byte[] dataBytes = new byte[numPixels * 4];
-        
-        for (int p = 0; p < numPixels; ++p)
-        {
-            int colour = data[p];
-            dataBytes[p * 4] = (byte) (colour >>> 16); // R
-            dataBytes[p * 4 + 1] = (byte) (colour >>> 8); // G
-            dataBytes[p * 4 + 2] = (byte) colour; // B
-            dataBytes[p * 4 + 3] = (byte) (colour >>> 24); // A
-        }
+        int width = bitMap.getWidth();
+        int height = bitMap.getHeight();
+        int[] data = new int[width * height];
+        bitMap.getPixels(data, 0, width, 0, 0, width, height);
+        bitMap.recycle();
         
+        return loadTextureFromIntBuffer(data, width, height);
+    }
+    
+    
+    // The memory layout of an ARGB_8888 bitmap is already RGBA, so the
+    // pixels are copied as they are and only flipped vertically in place
+    private static Texture loadTextureFromBitmap(Bitmap bitMap)
+    {
         Texture texture = new Texture();
-        texture.mWidth = width;
-        texture.mHeight = height;
+        texture.mWidth = bitMap.getWidth();
+        texture.mHeight = bitMap.getHeight();
         texture.mChannels = 4;
         
-        texture.mData = ByteBuffer.allocateDirect(dataBytes.length).order(
+        texture.mData = ByteBuffer.allocateDirect(
+            texture.mWidth * texture.mHeight * texture.mChannels).order(
             ByteOrder.nativeOrder());
-        int rowSize = texture.mWidth * texture.mChannels;
-        for (int r = 0; r < texture.mHeight; r++)
-            texture.mData.put(dataBytes, rowSize * (texture.mHeight - 1 - r),
-                rowSize);
-        
+        bitMap.copyPixelsToBuffer(texture.mData);
+        bitMap.recycle();
         texture.mData.rewind();
         
-        // Cleans variables
-        dataBytes = null;
-        data = null;
+        PixelBuffers.flipRows(texture.mData,
+            texture.mWidth * texture.mChannels, texture.mHeight);
+        
+        texture.mSuccess = true;
+        return texture;
+    }
+    
+    
+    public static Texture loadTextureFromIntBuffer(int[] data, int width,
+        int height)
+    {
+        // Convert straight into the final direct buffer, flipped vertically
+        Texture texture = new Texture();
+        texture.mWidth = width;
+        texture.mHeight = height;
+        texture.mChannels = 4;
+        texture.mData = PixelBuffers.argbToRgba(data, width, height);
         
         texture.mSuccess = true;
         return texture;
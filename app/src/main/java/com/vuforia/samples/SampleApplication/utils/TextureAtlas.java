@@ -0,0 +1,298 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+// Packs many RGBA textures into a few large pages at load time, so the
+// objects using them can be drawn binding a single texture.
+// The textures are placed on shelves sorted by height, each one surrounded
+// by a border that repeats its edge pixels to limit the bleeding of the
+// neighbours with linear filtering and on the first mip levels.
+// The texture coordinates of the meshes drawn with a packed texture must be
+// remapped in its region, see remapTexCoords and AtlasMeshObject.
+public class TextureAtlas
+{
+    public static final int DEFAULT_PAGE_SIZE = 2048;
+    public static final int DEFAULT_PADDING = 4;
+
+    // Where a texture has been placed, in pixels and texture coordinates
+    public static final class Region
+    {
+        private final String mKey;
+        private final Texture mSource;
+        private int mPage = -1;
+        private int mX;
+        private int mY;
+        private float mU0;
+        private float mV0;
+        private float mU1;
+        private float mV1;
+
+
+        private Region(String key, Texture source)
+        {
+            mKey = key;
+            mSource = source;
+        }
+
+
+        public String getKey()
+        {
+            return mKey;
+        }
+
+
+        public int getPage()
+        {
+            return mPage;
+        }
+
+
+        public int getX()
+        {
+            return mX;
+        }
+
+
+        public int getY()
+        {
+            return mY;
+        }
+
+
+        public int getWidth()
+        {
+            return mSource.mWidth;
+        }
+
+
+        public int getHeight()
+        {
+            return mSource.mHeight;
+        }
+
+
+        // Maps a texture coordinate of the original texture in the page
+        public float mapU(float u)
+        {
+            return mU0 + u * (mU1 - mU0);
+        }
+
+
+        public float mapV(float v)
+        {
+            return mV0 + v * (mV1 - mV0);
+        }
+    }
+
+    private final int mPageSize;
+    private final int mPadding;
+    private final Map<String, Region> mRegions = new HashMap<String, Region>();
+    private final List<Region> mPending = new ArrayList<Region>();
+    private final List<Texture> mPages = new ArrayList<Texture>();
+
+
+    public TextureAtlas()
+    {
+        this(DEFAULT_PAGE_SIZE, DEFAULT_PADDING);
+    }
+
+
+    public TextureAtlas(int pageSize, int padding)
+    {
+        mPageSize = pageSize;
+        mPadding = padding;
+    }
+
+
+    // Queues a texture to be packed by build. Compressed textures and the
+    // ones bigger than a page can not be packed, false is returned.
+    public boolean add(String key, Texture texture)
+    {
+        if (texture.isCompressed() || texture.mData == null
+            || texture.mWidth + 2 * mPadding > mPageSize
+            || texture.mHeight + 2 * mPadding > mPageSize)
+            return false;
+
+        Region region = new Region(key, texture);
+        mRegions.put(key, region);
+        mPending.add(region);
+        return true;
+    }
+
+
+    // Places the queued textures and copies their pixels in the pages
+    public List<Texture> build()
+    {
+        // Tallest first, so the shelves waste less space
+        List<Region> sorted = new ArrayList<Region>(mPending);
+        Collections.sort(sorted, new Comparator<Region>()
+        {
+            @Override
+            public int compare(Region a, Region b)
+            {
+                return b.getHeight() - a.getHeight();
+            }
+        });
+        mPending.clear();
+
+        int pageWidth = getPageWidth(sorted);
+        int page = mPages.size();
+        int x = 0;
+        int y = 0;
+        int shelfHeight = 0;
+        int[] pageHeights = new int[sorted.size() + 1];
+        for (Region region : sorted)
+        {
+            int w = region.getWidth() + 2 * mPadding;
+            int h = region.getHeight() + 2 * mPadding;
+            if (x + w > pageWidth)
+            {
+                // New shelf
+                x = 0;
+                y += shelfHeight;
+                shelfHeight = 0;
+            }
+            if (y + h > mPageSize)
+            {
+                // New page
+                page++;
+                x = 0;
+                y = 0;
+                shelfHeight = 0;
+            }
+
+            region.mPage = page;
+            region.mX = x + mPadding;
+            region.mY = y + mPadding;
+            x += w;
+            shelfHeight = Math.max(shelfHeight, h);
+            pageHeights[page - mPages.size()] = Math.max(
+                pageHeights[page - mPages.size()], y + h);
+        }
+
+        int firstPage = mPages.size();
+        for (int p = firstPage; p <= page && !sorted.isEmpty(); p++)
+        {
+            Texture texture = new Texture();
+            texture.mWidth = pageWidth;
+            texture.mHeight = nextPowerOfTwo(pageHeights[p - firstPage]);
+            texture.mChannels = 4;
+            texture.mData = ByteBuffer.allocateDirect(
+                texture.mWidth * texture.mHeight * 4).order(
+                ByteOrder.nativeOrder());
+            texture.mSuccess = true;
+            mPages.add(texture);
+        }
+
+        for (Region region : sorted)
+        {
+            Texture texture = mPages.get(region.mPage);
+            copy(region, texture);
+            region.mU0 = (float) region.mX / texture.mWidth;
+            region.mV0 = (float) region.mY / texture.mHeight;
+            region.mU1 = (float) (region.mX + region.getWidth()) / texture.mWidth;
+            region.mV1 = (float) (region.mY + region.getHeight()) / texture.mHeight;
+        }
+
+        return mPages;
+    }
+
+
+    // null if the texture was not packed
+    public Region getRegion(String key)
+    {
+        return mRegions.get(key);
+    }
+
+
+    public List<Texture> getPages()
+    {
+        return mPages;
+    }
+
+
+    // Returns a copy of the (u, v) float pairs of a mesh, in the native
+    // order like MeshObject.fillBuffer, mapped in the region of the atlas
+    public static ByteBuffer remapTexCoords(Buffer texCoords, Region region)
+    {
+        // The duplicate would be big-endian, it is read in the mesh order
+        ByteBuffer mesh = (ByteBuffer) texCoords;
+        ByteBuffer src = mesh.duplicate().order(mesh.order());
+        src.rewind();
+        ByteBuffer dst = ByteBuffer.allocateDirect(src.remaining()).order(
+            ByteOrder.nativeOrder());
+        while (src.remaining() >= 8)
+        {
+            dst.putFloat(region.mapU(src.getFloat()));
+            dst.putFloat(region.mapV(src.getFloat()));
+        }
+        dst.rewind();
+        return dst;
+    }
+
+
+    // Wide enough for the widest texture, and about square for the total
+    // area, so a few small textures do not get a whole page
+    private int getPageWidth(List<Region> regions)
+    {
+        long area = 0;
+        int widest = 1;
+        for (Region region : regions)
+        {
+            int w = region.getWidth() + 2 * mPadding;
+            int h = region.getHeight() + 2 * mPadding;
+            area += (long) w * h;
+            widest = Math.max(widest, w);
+        }
+        int side = (int) Math.ceil(Math.sqrt(area));
+        return Math.min(mPageSize, nextPowerOfTwo(Math.max(widest, side)));
+    }
+
+
+    private static int nextPowerOfTwo(int value)
+    {
+        int result = 1;
+        while (result < value)
+            result <<= 1;
+        return result;
+    }
+
+
+    // Copies the texture rows in the page, extruding the edges in the padding
+    private void copy(Region region, Texture page)
+    {
+        Texture source = region.mSource;
+        int rowBytes = source.mWidth * 4;
+        int pageRowBytes = page.mWidth * 4;
+        byte[] row = new byte[rowBytes + 2 * mPadding * 4];
+        ByteBuffer src = source.mData.duplicate();
+        ByteBuffer dst = page.mData.duplicate();
+        int srcBase = src.position();
+
+        for (int r = -mPadding; r < source.mHeight + mPadding; r++)
+        {
+            int srcRow = Math.min(Math.max(r, 0), source.mHeight - 1);
+            src.position(srcBase + srcRow * rowBytes);
+            src.get(row, mPadding * 4, rowBytes);
+            for (int p = 0; p < mPadding; p++)
+            {
+                System.arraycopy(row, mPadding * 4, row, p * 4, 4);
+                System.arraycopy(row, mPadding * 4 + rowBytes - 4, row,
+                    mPadding * 4 + rowBytes + p * 4, 4);
+            }
+
+            dst.position((region.mY + r) * pageRowBytes
+                + (region.mX - mPadding) * 4);
+            dst.put(row);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import java.nio.ByteBuffer;
+
+import android.opengl.ETC1Util;
+import android.opengl.GLES20;
+
+
+// Checks which compressed texture formats the current OpenGL ES context
+// accepts and uploads textures with their mip levels. Must be called from
+// the GL thread.
+public final class TextureCompression
+{
+    
+    private TextureCompression()
+    {
+    }
+    
+    
+    public static boolean isSupported(int compressedFormat)
+    {
+        if (compressedFormat == CompressedTextureFile.GL_ETC1_RGB8_OES)
+            return ETC1Util.isETC1Supported();
+        
+        if (CompressedTextureFile.isEtc2(compressedFormat))
+        {
+            // ETC2 is core in OpenGL ES 3.0
+            return SampleUtils.isOpenGLES3();
+        }
+        
+        return false;
+    }
+
+    
+    
+    // OpenGL ES 2.0 allows mipmaps of non power of two textures only with
+    // OES_texture_npot, they are core in 3.0
+    public static boolean canMipmap(Texture t)
+    {
+        if (MipChain.isPowerOfTwo(t.mWidth) && MipChain.isPowerOfTwo(t.mHeight))
+            return true;
+        
+        String extensions = GLES20.glGetString(GLES20.GL_EXTENSIONS);
+        return (extensions != null && extensions.contains("GL_OES_texture_npot"))
+            || SampleUtils.isOpenGLES3();
+    }
+    
+    
+    // Uploads the texture bound to GL_TEXTURE_2D, compressed or RGBA, with
+    // its mip levels if mipmap is true. RGBA textures loaded without levels
+    // get them from glGenerateMipmap, compressed ones can not.
+    // Returns true if the texture has a complete mip chain.
+    public static boolean texImage2D(Texture t, boolean mipmap)
+    {
+        texImage2D(t, 0, t.mWidth, t.mHeight, t.mData);
+        if (!mipmap)
+            return false;
+        
+        if (t.hasMipLevels())
+        {
+            int levels = MipChain.getLevelCount(t.mWidth, t.mHeight) - 1;
+            if (t.mMipLevels.length < levels)
+                return false;
+            for (int i = 1; i <= levels; i++)
+                texImage2D(t, i, Math.max(1, t.mWidth >> i),
+                    Math.max(1, t.mHeight >> i), t.mMipLevels[i - 1]);
+            return true;
+        }
+        
+        if (t.isCompressed())
+            return false;
+        GLES20.glGenerateMipmap(GLES20.GL_TEXTURE_2D);
+        return true;
+    }
+    
+    
+    private static void texImage2D(Texture t, int level, int width,
+        int height, ByteBuffer data)
+    {
+        if (t.isCompressed())
+        {
+            GLES20.glCompressedTexImage2D(GLES20.GL_TEXTURE_2D, level,
+                t.mCompressedFormat, width, height, 0, data.remaining(), data);
+        } else
+        {
+            GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, level, GLES20.GL_RGBA,
+                width, height, 0, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, data);
+        }
+    }
+}
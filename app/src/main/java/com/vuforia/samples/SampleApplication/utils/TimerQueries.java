@@ -0,0 +1,71 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import android.annotation.TargetApi;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.os.Build;
+
+
+// EXT_disjoint_timer_query through the OpenGL ES 3.0 query functions, the
+// extension adds its targets to them. The Java bindings have no 64-bit
+// query result, 32 bits of nanoseconds are enough for a pass of a frame.
+// Kept apart so GLES30 is only loaded by GpuTimer on the devices that have it.
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+final class TimerQueries
+{
+    private static final int GL_TIME_ELAPSED_EXT = 0x88BF;
+    private static final int GL_GPU_DISJOINT_EXT = 0x8FBB;
+    
+    private static final int[] sValue = new int[1];
+    
+    
+    private TimerQueries()
+    {
+    }
+    
+    
+    static void genQueries(int[] queries)
+    {
+        GLES30.glGenQueries(queries.length, queries, 0);
+    }
+    
+    
+    static void deleteQueries(int[] queries)
+    {
+        GLES30.glDeleteQueries(queries.length, queries, 0);
+    }
+    
+    
+    static void beginQuery(int query)
+    {
+        GLES30.glBeginQuery(GL_TIME_ELAPSED_EXT, query);
+    }
+    
+    
+    static void endQuery()
+    {
+        GLES30.glEndQuery(GL_TIME_ELAPSED_EXT);
+    }
+    
+    
+    static boolean isResultAvailable(int query)
+    {
+        GLES30.glGetQueryObjectuiv(query, GLES30.GL_QUERY_RESULT_AVAILABLE,
+            sValue, 0);
+        return sValue[0] != 0;
+    }
+    
+    
+    static long getResult(int query)
+    {
+        GLES30.glGetQueryObjectuiv(query, GLES30.GL_QUERY_RESULT, sValue, 0);
+        return sValue[0] & 0xFFFFFFFFL;
+    }
+    
+    
+    static boolean isDisjoint()
+    {
+        GLES20.glGetIntegerv(GL_GPU_DISJOINT_EXT, sValue, 0);
+        return sValue[0] != 0;
+    }
+}
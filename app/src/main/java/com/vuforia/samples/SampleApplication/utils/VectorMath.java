@@ -0,0 +1,330 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+
+// Vector and matrix math over plain float arrays, with the results written
+// in arrays supplied by the caller, so nothing is allocated.
+// Matrices are 4x4 column major, like the OpenGL ones and MatrixUtils:
+// vectors are transformed as m * v. Unless noted, an output array can be
+// the same as an input one.
+// SampleMath wraps these methods for the Vec3F/Matrix44F based code.
+// The temporary values of the longer operations live in a per-thread
+// scratch, so every method can be called from any thread.
+public final class VectorMath
+{
+    private static final float PARALLEL_EPSILON = 0.00001f;
+
+    // Temporary values of projectScreenPointToPlane, one set per thread
+    private static final class Scratch
+    {
+        final float[] ndcNear = new float[4];
+        final float[] ndcFar = new float[4];
+        final float[] eyeNear = new float[4];
+        final float[] eyeFar = new float[4];
+        final float[] inverseModelView = new float[16];
+        final float[] lineDir = new float[3];
+        final float[] planeDir = new float[3];
+        final float[] matrix = new float[16];
+    }
+
+    private static final ThreadLocal<Scratch> sScratch = new ThreadLocal<Scratch>()
+    {
+        @Override
+        protected Scratch initialValue()
+        {
+            return new Scratch();
+        }
+    };
+
+
+    private VectorMath()
+    {
+    }
+
+
+    public static void vec2Sub(float[] a, float[] b, float[] out)
+    {
+        out[0] = a[0] - b[0];
+        out[1] = a[1] - b[1];
+    }
+
+
+    public static float vec2Dist(float[] a, float[] b)
+    {
+        float dx = a[0] - b[0];
+        float dy = a[1] - b[1];
+        return (float) Math.sqrt(dx * dx + dy * dy);
+    }
+
+
+    public static void vec3Add(float[] a, float[] b, float[] out)
+    {
+        out[0] = a[0] + b[0];
+        out[1] = a[1] + b[1];
+        out[2] = a[2] + b[2];
+    }
+
+
+    public static void vec3Sub(float[] a, float[] b, float[] out)
+    {
+        out[0] = a[0] - b[0];
+        out[1] = a[1] - b[1];
+        out[2] = a[2] - b[2];
+    }
+
+
+    public static void vec3Scale(float[] v, float s, float[] out)
+    {
+        out[0] = v[0] * s;
+        out[1] = v[1] * s;
+        out[2] = v[2] * s;
+    }
+
+
+    public static float vec3Dot(float[] a, float[] b)
+    {
+        return a[0] * b[0] + a[1] * b[1] + a[2] * b[2];
+    }
+
+
+    public static void vec3Cross(float[] a, float[] b, float[] out)
+    {
+        float x = a[1] * b[2] - a[2] * b[1];
+        float y = a[2] * b[0] - a[0] * b[2];
+        float z = a[0] * b[1] - a[1] * b[0];
+        out[0] = x;
+        out[1] = y;
+        out[2] = z;
+    }
+
+
+    // A zero vector stays zero
+    public static void vec3Normalize(float[] v, float[] out)
+    {
+        float length = (float) Math.sqrt(vec3Dot(v, v));
+        if (length != 0.0f)
+            length = 1.0f / length;
+        vec3Scale(v, length, out);
+    }
+
+
+    // Transforms a point, with the perspective division
+    public static void vec3Transform(float[] v, float[] m, float[] out)
+    {
+        float lambda = m[3] * v[0] + m[7] * v[1] + m[11] * v[2] + m[15];
+        float x = m[0] * v[0] + m[4] * v[1] + m[8] * v[2] + m[12];
+        float y = m[1] * v[0] + m[5] * v[1] + m[9] * v[2] + m[13];
+        float z = m[2] * v[0] + m[6] * v[1] + m[10] * v[2] + m[14];
+        out[0] = x / lambda;
+        out[1] = y / lambda;
+        out[2] = z / lambda;
+    }
+
+
+    // Transforms a direction, the translation is ignored
+    public static void vec3TransformNormal(float[] v, float[] m, float[] out)
+    {
+        float x = m[0] * v[0] + m[4] * v[1] + m[8] * v[2];
+        float y = m[1] * v[0] + m[5] * v[1] + m[9] * v[2];
+        float z = m[2] * v[0] + m[6] * v[1] + m[10] * v[2];
+        out[0] = x;
+        out[1] = y;
+        out[2] = z;
+    }
+
+
+    public static void vec4Transform(float[] v, float[] m, float[] out)
+    {
+        float x = m[0] * v[0] + m[4] * v[1] + m[8] * v[2] + m[12] * v[3];
+        float y = m[1] * v[0] + m[5] * v[1] + m[9] * v[2] + m[13] * v[3];
+        float z = m[2] * v[0] + m[6] * v[1] + m[10] * v[2] + m[14] * v[3];
+        float w = m[3] * v[0] + m[7] * v[1] + m[11] * v[2] + m[15] * v[3];
+        out[0] = x;
+        out[1] = y;
+        out[2] = z;
+        out[3] = w;
+    }
+
+
+    public static void vec4Div(float[] v, float s, float[] out)
+    {
+        out[0] = v[0] / s;
+        out[1] = v[1] / s;
+        out[2] = v[2] / s;
+        out[3] = v[3] / s;
+    }
+
+
+    public static void matrix44Identity(float[] out)
+    {
+        for (int i = 0; i < 16; i++)
+            out[i] = 0.0f;
+        out[0] = 1.0f;
+        out[5] = 1.0f;
+        out[10] = 1.0f;
+        out[15] = 1.0f;
+    }
+
+
+    // out must not be the same array as m
+    public static void matrix44Transpose(float[] m, float[] out)
+    {
+        for (int i = 0; i < 4; i++)
+            for (int j = 0; j < 4; j++)
+                out[i * 4 + j] = m[i + 4 * j];
+    }
+
+
+    public static float matrix44Determinant(float[] m)
+    {
+        // Laplace expansion on the 2x2 minors of the first two columns
+        float s0 = m[0] * m[5] - m[4] * m[1];
+        float s1 = m[0] * m[6] - m[4] * m[2];
+        float s2 = m[0] * m[7] - m[4] * m[3];
+        float s3 = m[1] * m[6] - m[5] * m[2];
+        float s4 = m[1] * m[7] - m[5] * m[3];
+        float s5 = m[2] * m[7] - m[6] * m[3];
+        float c5 = m[10] * m[15] - m[14] * m[11];
+        float c4 = m[9] * m[15] - m[13] * m[11];
+        float c3 = m[9] * m[14] - m[13] * m[10];
+        float c2 = m[8] * m[15] - m[12] * m[11];
+        float c1 = m[8] * m[14] - m[12] * m[10];
+        float c0 = m[8] * m[13] - m[12] * m[9];
+        return s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0;
+    }
+
+
+    // Returns false, leaving out unchanged, if m is singular.
+    // The inverse of the transpose is the transpose of the inverse, the
+    // same code works for row major matrices too
+    public static boolean matrix44Inverse(float[] m, float[] out)
+    {
+        float s0 = m[0] * m[5] - m[4] * m[1];
+        float s1 = m[0] * m[6] - m[4] * m[2];
+        float s2 = m[0] * m[7] - m[4] * m[3];
+        float s3 = m[1] * m[6] - m[5] * m[2];
+        float s4 = m[1] * m[7] - m[5] * m[3];
+        float s5 = m[2] * m[7] - m[6] * m[3];
+        float c5 = m[10] * m[15] - m[14] * m[11];
+        float c4 = m[9] * m[15] - m[13] * m[11];
+        float c3 = m[9] * m[14] - m[13] * m[10];
+        float c2 = m[8] * m[15] - m[12] * m[11];
+        float c1 = m[8] * m[14] - m[12] * m[10];
+        float c0 = m[8] * m[13] - m[12] * m[9];
+        float det = s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0;
+        if (det == 0.0f)
+            return false;
+        float inv = 1.0f / det;
+
+        float r0 = (m[5] * c5 - m[6] * c4 + m[7] * c3) * inv;
+        float r1 = (-m[1] * c5 + m[2] * c4 - m[3] * c3) * inv;
+        float r2 = (m[13] * s5 - m[14] * s4 + m[15] * s3) * inv;
+        float r3 = (-m[9] * s5 + m[10] * s4 - m[11] * s3) * inv;
+        float r4 = (-m[4] * c5 + m[6] * c2 - m[7] * c1) * inv;
+        float r5 = (m[0] * c5 - m[2] * c2 + m[3] * c1) * inv;
+        float r6 = (-m[12] * s5 + m[14] * s2 - m[15] * s1) * inv;
+        float r7 = (m[8] * s5 - m[10] * s2 + m[11] * s1) * inv;
+        float r8 = (m[4] * c4 - m[5] * c2 + m[7] * c0) * inv;
+        float r9 = (-m[0] * c4 + m[1] * c2 - m[3] * c0) * inv;
+        float r10 = (m[12] * s4 - m[13] * s2 + m[15] * s0) * inv;
+        float r11 = (-m[8] * s4 + m[9] * s2 - m[11] * s0) * inv;
+        float r12 = (-m[4] * c3 + m[5] * c1 - m[6] * c0) * inv;
+        float r13 = (m[0] * c3 - m[1] * c1 + m[2] * c0) * inv;
+        float r14 = (-m[12] * s3 + m[13] * s1 - m[14] * s0) * inv;
+        float r15 = (m[8] * s3 - m[9] * s1 + m[10] * s0) * inv;
+
+        out[0] = r0;   out[1] = r1;   out[2] = r2;   out[3] = r3;
+        out[4] = r4;   out[5] = r5;   out[6] = r6;   out[7] = r7;
+        out[8] = r8;   out[9] = r9;   out[10] = r10; out[11] = r11;
+        out[12] = r12; out[13] = r13; out[14] = r14; out[15] = r15;
+        return true;
+    }
+
+
+    // Intersection of the line through lineStart and lineEnd with a plane.
+    // Returns false, leaving out unchanged, if they are parallel
+    public static boolean linePlaneIntersection(float[] lineStart,
+        float[] lineEnd, float[] pointOnPlane, float[] planeNormal, float[] out)
+    {
+        Scratch scratch = sScratch.get();
+        float[] lineDir = scratch.lineDir;
+        float[] planeDir = scratch.planeDir;
+
+        vec3Sub(lineEnd, lineStart, lineDir);
+        vec3Normalize(lineDir, lineDir);
+        vec3Sub(pointOnPlane, lineStart, planeDir);
+
+        float n = vec3Dot(planeNormal, planeDir);
+        float d = vec3Dot(planeNormal, lineDir);
+        if (Math.abs(d) < PARALLEL_EPSILON)
+            return false;
+
+        float dist = n / d;
+        out[0] = lineStart[0] + lineDir[0] * dist;
+        out[1] = lineStart[1] + lineDir[1] * dist;
+        out[2] = lineStart[2] + lineDir[2] * dist;
+        return true;
+    }
+
+
+    // Casts the ray of a screen point into the scene of a trackable and
+    // intersects it with a plane given in the coordinates of the trackable.
+    // inverseProjMatrix is the inverse of the projection matrix,
+    // modelViewMatrix the one of the trackable (not inverted).
+    // viewportWidth/Height are the size of the video background.
+    // lineStart and lineEnd receive the points of the ray on the near and
+    // far planes, either can be null. Returns false if the ray is parallel
+    // to the plane (or the model view singular), intersection is then
+    // left unchanged
+    public static boolean projectScreenPointToPlane(float[] inverseProjMatrix,
+        float[] modelViewMatrix, float screenWidth, float screenHeight,
+        float viewportWidth, float viewportHeight, float pointX, float pointY,
+        float[] planeCenter, float[] planeNormal, float[] lineStart,
+        float[] lineEnd, float[] intersection)
+    {
+        Scratch scratch = sScratch.get();
+
+        // Window Coordinates to Normalized Device Coordinates
+        float x = (pointX - screenWidth / 2.0f) / (viewportWidth / 2.0f);
+        float y = (pointY - screenHeight / 2.0f) / (viewportHeight / 2.0f) * -1;
+        float[] ndcNear = scratch.ndcNear;
+        float[] ndcFar = scratch.ndcFar;
+        ndcNear[0] = ndcFar[0] = x;
+        ndcNear[1] = ndcFar[1] = y;
+        ndcNear[2] = -1;
+        ndcFar[2] = 1;
+        ndcNear[3] = ndcFar[3] = 1;
+
+        // Normalized Device Coordinates to Eye Coordinates
+        float[] eyeNear = scratch.eyeNear;
+        float[] eyeFar = scratch.eyeFar;
+        vec4Transform(ndcNear, inverseProjMatrix, eyeNear);
+        vec4Transform(ndcFar, inverseProjMatrix, eyeFar);
+        vec4Div(eyeNear, eyeNear[3], eyeNear);
+        vec4Div(eyeFar, eyeFar[3], eyeFar);
+
+        // Eye Coordinates to Object Coordinates, the world points reuse
+        // the NDC arrays
+        float[] inverseModelView = scratch.inverseModelView;
+        if (!matrix44Inverse(modelViewMatrix, inverseModelView))
+            return false;
+        float[] nearWorld = ndcNear;
+        float[] farWorld = ndcFar;
+        vec4Transform(eyeNear, inverseModelView, nearWorld);
+        vec4Transform(eyeFar, inverseModelView, farWorld);
+
+        if (lineStart != null)
+            System.arraycopy(nearWorld, 0, lineStart, 0, 3);
+        if (lineEnd != null)
+            System.arraycopy(farWorld, 0, lineEnd, 0, 3);
+        return linePlaneIntersection(nearWorld, farWorld, planeCenter,
+            planeNormal, intersection);
+    }
+
+
+    // A 16 floats array of the calling thread, for the compatibility
+    // wrappers of SampleMath; the content is overwritten by the next call
+    static float[] scratchMatrix()
+    {
+        return sScratch.get().matrix;
+    }
+}
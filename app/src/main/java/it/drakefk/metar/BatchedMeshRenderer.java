@@ -0,0 +1,226 @@
+package it.drakefk.metar;
+
+import android.opengl.GLES20;
+import android.os.Build;
+import android.util.Log;
+
+import com.vuforia.samples.SampleApplication.utils.CubeShaders;
+import com.vuforia.samples.SampleApplication.utils.GLStateCache;
+import com.vuforia.samples.SampleApplication.utils.InstancedDraw;
+import com.vuforia.samples.SampleApplication.utils.MeshBufferCache;
+import com.vuforia.samples.SampleApplication.utils.SampleUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Draws the groups of a {@link MeshBatch} with the least state changes: the
+ * program, the sampler, the attributes of a mesh and its texture are set
+ * once per group instead of once per trackable.
+ * <p>On an OpenGL ES 3.0 context each group is a single instanced draw
+ * call, the matrices are streamed in an instance buffer. On 2.0 the
+ * matrices are set in a uniform array, {@link CubeShaders#MAX_BATCHED_INSTANCES}
+ * at a time, and the mesh is drawn once per instance changing only the
+ * instance index.</p>
+ * <p>The state changes go through the {@link GLStateCache} shared with
+ * SampleAppRenderer, so the ones already in place are skipped.</p>
+ * <p>All the methods must be called from the GL thread.</p>
+ */
+public class BatchedMeshRenderer {
+    private static final String TAG = "BatchedMeshRenderer";
+
+    private static final int MATRIX_SIZE = 16;
+    private static final int MATRIX_BYTES = MATRIX_SIZE * 4;
+
+    private final MeshBufferCache mMeshCache;
+    private final GLStateCache mStateCache;
+
+    private boolean mInstanced;
+    private int mProgram;
+    private int mVertexHandle;
+    private int mTexCoordHandle;
+    private int mSamplerHandle;
+    /** Attribute of the first column of the instance matrix, OpenGL ES 3.0 only */
+    private int mInstanceMatrixHandle;
+    /** Uniform matrix array and instance index, OpenGL ES 2.0 only */
+    private int mMatricesHandle;
+    private int mInstanceIndexHandle;
+
+    /** Buffer of the instance matrices and its CPU copy, OpenGL ES 3.0 only */
+    private final int[] mInstanceBuffer = new int[1];
+    private int mInstanceBufferCapacity;
+    private FloatBuffer mInstanceData;
+
+    public BatchedMeshRenderer(MeshBufferCache meshCache, GLStateCache stateCache) {
+        this.mMeshCache = meshCache;
+        this.mStateCache = stateCache;
+    }
+
+    /**
+     * Create the program for the current context, to be called once every
+     * time the context is (re)created, from onSurfaceCreated: the program and
+     * the instance buffer of the previous context died with it
+     * @return false if the shaders could not be built
+     */
+    public boolean init() {
+        mInstanceBuffer[0] = 0;
+        mInstanceBufferCapacity = 0;
+        mInstanced = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2
+                && SampleUtils.isOpenGLES3();
+        if (mInstanced) {
+            mProgram = SampleUtils.createProgramFromShaderSrc(
+                    CubeShaders.INSTANCED_MESH_VERTEX_SHADER,
+                    CubeShaders.INSTANCED_MESH_FRAGMENT_SHADER);
+            if (mProgram == 0) {
+                Log.w(TAG, "Instanced shaders not supported, using uniform arrays");
+                mInstanced = false;
+            }
+        }
+        if (!mInstanced) {
+            mProgram = SampleUtils.createProgramFromShaderSrc(
+                    CubeShaders.BATCHED_MESH_VERTEX_SHADER,
+                    CubeShaders.CUBE_MESH_FRAGMENT_SHADER);
+        }
+        if (mProgram == 0)
+            return false;
+
+        mVertexHandle = GLES20.glGetAttribLocation(mProgram, "vertexPosition");
+        mTexCoordHandle = GLES20.glGetAttribLocation(mProgram, "vertexTexCoord");
+        mSamplerHandle = GLES20.glGetUniformLocation(mProgram, "texSampler2D");
+        if (mInstanced) {
+            mInstanceMatrixHandle = GLES20.glGetAttribLocation(mProgram,
+                    "instanceModelViewProjectionMatrix");
+            if (mInstanceMatrixHandle < 0) {
+                Log.e(TAG, "Instance matrix attribute not found");
+                GLES20.glDeleteProgram(mProgram);
+                mProgram = 0;
+                return false;
+            }
+        } else {
+            mMatricesHandle = GLES20.glGetUniformLocation(mProgram,
+                    "modelViewProjectionMatrices");
+            mInstanceIndexHandle = GLES20.glGetUniformLocation(mProgram, "instanceIndex");
+        }
+        Log.d(TAG, mInstanced ? "Drawing with instancing" : "Drawing with uniform arrays");
+        return true;
+    }
+
+    /** @return true if the groups are drawn with OpenGL ES 3.0 instancing */
+    public boolean isInstanced() {
+        return mInstanced;
+    }
+
+    /**
+     * Draw all the groups of the batch, {@link MeshBatch#group()} must
+     * have been called
+     */
+    public void draw(MeshBatch<MeshBufferCache.Handle> batch) {
+        if (mProgram == 0 || batch.getGroupCount() == 0)
+            return;
+
+        mStateCache.useProgram(mProgram);
+        mStateCache.activeTexture(GLES20.GL_TEXTURE0);
+        GLES20.glUniform1i(mSamplerHandle, 0);
+        mStateCache.enableVertexAttribArray(mVertexHandle);
+        mStateCache.enableVertexAttribArray(mTexCoordHandle);
+
+        if (mInstanced) {
+            uploadInstanceMatrices(batch);
+            setInstanceAttributes(true);
+        }
+
+        MeshBufferCache.Handle boundMesh = null;
+        for (int g = 0; g < batch.getGroupCount(); g++) {
+            MeshBufferCache.Handle mesh = batch.getMesh(g);
+            if (mesh != boundMesh) {
+                mMeshCache.bindVertices(mesh, mVertexHandle);
+                mMeshCache.bindTexCoords(mesh, mTexCoordHandle);
+                boundMesh = mesh;
+            }
+            mStateCache.bindTexture2D(batch.getTexture(g));
+
+            if (mInstanced)
+                drawInstanced(batch, g, mesh);
+            else
+                drawUniformArray(batch, g, mesh);
+        }
+
+        // The video background and the other programs expect per-vertex attributes
+        if (mInstanced)
+            setInstanceAttributes(false);
+        mStateCache.disableVertexAttribArray(mVertexHandle);
+        mStateCache.disableVertexAttribArray(mTexCoordHandle);
+    }
+
+    /** Enable the 4 attributes of the instance matrix, advanced once per instance */
+    private void setInstanceAttributes(boolean enabled) {
+        for (int c = 0; c < 4; c++) {
+            int attrib = mInstanceMatrixHandle + c;
+            if (enabled)
+                mStateCache.enableVertexAttribArray(attrib);
+            else
+                mStateCache.disableVertexAttribArray(attrib);
+            InstancedDraw.vertexAttribDivisor(attrib, enabled ? 1 : 0);
+        }
+    }
+
+    private void drawUniformArray(MeshBatch<MeshBufferCache.Handle> batch, int group,
+                                  MeshBufferCache.Handle mesh) {
+        float[] matrices = batch.getMatrices();
+        int start = batch.getStart(group);
+        int size = batch.getSize(group);
+        mMeshCache.beginDraw(mesh);
+        for (int first = 0; first < size; first += CubeShaders.MAX_BATCHED_INSTANCES) {
+            int count = Math.min(CubeShaders.MAX_BATCHED_INSTANCES, size - first);
+            GLES20.glUniformMatrix4fv(mMatricesHandle, count, false, matrices,
+                    (start + first) * MATRIX_SIZE);
+            for (int i = 0; i < count; i++) {
+                GLES20.glUniform1i(mInstanceIndexHandle, i);
+                mMeshCache.drawBound(mesh);
+            }
+        }
+        mMeshCache.endDraw();
+    }
+
+    private void drawInstanced(MeshBatch<MeshBufferCache.Handle> batch, int group,
+                               MeshBufferCache.Handle mesh) {
+        // The columns of the matrix are 4 consecutive attributes, pointing
+        // at the first instance of the group
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mInstanceBuffer[0]);
+        int offset = batch.getStart(group) * MATRIX_BYTES;
+        for (int c = 0; c < 4; c++) {
+            GLES20.glVertexAttribPointer(mInstanceMatrixHandle + c, 4, GLES20.GL_FLOAT, false,
+                    MATRIX_BYTES, offset + c * 16);
+        }
+
+        mMeshCache.beginDraw(mesh);
+        InstancedDraw.drawBound(mesh, batch.getSize(group));
+        mMeshCache.endDraw();
+    }
+
+    /** Stream the matrices of the whole frame in the instance buffer, once */
+    private void uploadInstanceMatrices(MeshBatch<MeshBufferCache.Handle> batch) {
+        int floats = batch.getCount() * MATRIX_SIZE;
+        if (mInstanceData == null || mInstanceData.capacity() < floats) {
+            mInstanceData = ByteBuffer.allocateDirect(
+                    Math.max(floats, 4 * MATRIX_SIZE) * 2 * 4)
+                    .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        }
+        mInstanceData.clear();
+        mInstanceData.put(batch.getMatrices(), 0, floats);
+        mInstanceData.flip();
+
+        if (mInstanceBuffer[0] == 0)
+            GLES20.glGenBuffers(1, mInstanceBuffer, 0);
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mInstanceBuffer[0]);
+        if (mInstanceBufferCapacity < mInstanceData.capacity()) {
+            // Sized like the CPU copy, it grows with it
+            mInstanceBufferCapacity = mInstanceData.capacity();
+            GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, mInstanceBufferCapacity * 4, null,
+                    GLES20.GL_STREAM_DRAW);
+        }
+        GLES20.glBufferSubData(GLES20.GL_ARRAY_BUFFER, 0, floats * 4, mInstanceData);
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+    }
+}
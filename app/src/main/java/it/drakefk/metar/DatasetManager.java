@@ -0,0 +1,285 @@
+package it.drakefk.metar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Keeps only a few of the imported datasets active, so the cost of the
+ * tracker for each frame does not grow with the number of datasets.
+ * <p>The datasets active are the most recently used ones, within a budget
+ * of datasets and of trackables: a dataset is used when one of its
+ * trackables is found, when it is added, or when it gets a {@link #hint}
+ * (e.g. the user is near the place of its targets). When no trackable is
+ * found for {@link #getProbeIntervalMs()} the inactive dataset unused for
+ * the longest time is activated in place of the least recently used one,
+ * so all the library is searched in turn. Each dataset is probed once:
+ * after a whole round without results the probing stops, until one of the
+ * datasets is found again.</p>
+ * <p>add, remove and update change the datasets in the tracker, they must
+ * be called from onVuforiaUpdate, where the tracker is not using them, or
+ * with the tracker stopped. hint can be called from any thread, it is
+ * applied by the next update. The trackables found are looked up in a
+ * sorted array, {@link #update} allocates nothing.</p>
+ * @param <D> the dataset, com.vuforia.DataSet in the app
+ */
+public class DatasetManager<D> {
+
+    /** Activates and deactivates the datasets in the tracker */
+    public interface Activator<D> {
+        /** @return false if the dataset could not be activated */
+        boolean activate(D dataSet);
+
+        /** @return false if the dataset could not be deactivated */
+        boolean deactivate(D dataSet);
+    }
+
+    private static class Entry<D> {
+        final D dataSet;
+        final int[] trackableIds;
+        /** Order of insertion, the newest wins between equal times */
+        final long sequence;
+        long lastUsedMs;
+        boolean active;
+        /** Already tried in the current round of probes */
+        boolean probed;
+
+        Entry(D dataSet, int[] trackableIds, long sequence, long lastUsedMs) {
+            this.dataSet = dataSet;
+            this.trackableIds = trackableIds;
+            this.sequence = sequence;
+            this.lastUsedMs = lastUsedMs;
+        }
+    }
+
+    /** Most recently used first */
+    private final Comparator<Entry<D>> mRecentFirst = new Comparator<Entry<D>>() {
+        @Override
+        public int compare(Entry<D> a, Entry<D> b) {
+            if (a.lastUsedMs != b.lastUsedMs)
+                return a.lastUsedMs > b.lastUsedMs ? -1 : 1;
+            return a.sequence > b.sequence ? -1 : (a.sequence == b.sequence ? 0 : 1);
+        }
+    };
+
+    private final int mMaxActiveDatasets;
+    private final int mMaxActiveTrackables;
+    private final long mProbeIntervalMs;
+    private final Activator<D> mActivator;
+
+    private final List<Entry<D>> mEntries = new ArrayList<Entry<D>>();
+    private long mSequence = 0;
+    /** The trackable ids of all the datasets, sorted, and their datasets */
+    private int[] mIds = new int[0];
+    private Object[] mOwners = new Object[0];
+    /** When a trackable was last found, or a dataset probed */
+    private long mLastActivityMs;
+    /** How many datasets were probed since a managed dataset was last found */
+    private int mProbes = 0;
+    /** A hint changed the order, the next update rebalances */
+    private boolean mHinted = false;
+
+    /**
+     * @param maxActiveDatasets how many datasets can be active at the same time
+     * @param maxActiveTrackables how many trackables the active datasets can
+     *                            have in total, a single dataset larger than
+     *                            this is activated anyway
+     * @param probeIntervalMs how long to wait for a trackable before trying
+     *                        an inactive dataset
+     * @param activator changes the datasets in the tracker
+     */
+    public DatasetManager(int maxActiveDatasets, int maxActiveTrackables,
+                          long probeIntervalMs, Activator<D> activator) {
+        this.mMaxActiveDatasets = Math.max(1, maxActiveDatasets);
+        this.mMaxActiveTrackables = maxActiveTrackables;
+        this.mProbeIntervalMs = probeIntervalMs;
+        this.mActivator = activator;
+    }
+
+    /**
+     * Manage a dataset loaded but not active yet. It is the most recently
+     * used, so it is activated and the least recently used ones are
+     * deactivated if the budget is exceeded.
+     * @param dataSet the dataset
+     * @param trackableIds the ids of its trackables
+     * @param nowMs the current time, SystemClock.uptimeMillis() based
+     */
+    public synchronized void add(D dataSet, int[] trackableIds, long nowMs) {
+        if (indexOf(dataSet) >= 0)
+            return;
+        mEntries.add(new Entry<D>(dataSet, trackableIds.clone(), mSequence++, nowMs));
+        mLastActivityMs = nowMs;
+        rebuildIds();
+        rebalance();
+    }
+
+    /**
+     * Stop managing a dataset, it is deactivated if it was active
+     * @return false if the dataset was not managed
+     */
+    public synchronized boolean remove(D dataSet) {
+        int index = indexOf(dataSet);
+        if (index < 0)
+            return false;
+        Entry<D> entry = mEntries.remove(index);
+        if (entry.active)
+            mActivator.deactivate(entry.dataSet);
+        rebuildIds();
+        rebalance();
+        return true;
+    }
+
+    /** Stop managing all the datasets, without touching the tracker */
+    public synchronized void clear() {
+        mEntries.clear();
+        rebuildIds();
+    }
+
+    /**
+     * Mark a dataset as used, so it is activated by the next update if it
+     * was not, e.g. when the user gets near the place of its targets
+     * @return false if the dataset is not managed
+     */
+    public synchronized boolean hint(D dataSet, long nowMs) {
+        int index = indexOf(dataSet);
+        if (index < 0)
+            return false;
+        mEntries.get(index).lastUsedMs = nowMs;
+        mHinted = true;
+        return true;
+    }
+
+    /**
+     * Mark the datasets of the trackables found as used and, if no trackable
+     * was found for a while, probe an inactive dataset not probed yet. Apply the hints received
+     * since the last call. Call it every frame from onVuforiaUpdate.
+     * @param results the trackables found in the frame
+     * @param nowMs the current time, SystemClock.uptimeMillis() based
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void update(TrackableResultSource results, long nowMs) {
+        int count = results.getNumTrackableResults();
+        // The built-in trackables count too, the user is busy with them
+        if (count > 0)
+            mLastActivityMs = nowMs;
+        for (int i = 0; i < count; i++) {
+            int index = Arrays.binarySearch(mIds, results.getTrackableId(i));
+            if (index >= 0) {
+                ((Entry<D>) mOwners[index]).lastUsedMs = nowMs;
+                if (mProbes > 0) {
+                    // A new round of probes when nothing is found anymore
+                    mProbes = 0;
+                    for (int e = 0; e < mEntries.size(); e++)
+                        mEntries.get(e).probed = false;
+                }
+            }
+        }
+
+        if (nowMs - mLastActivityMs >= mProbeIntervalMs) {
+            mLastActivityMs = nowMs;
+            Entry<D> oldest = null;
+            for (int i = 0; i < mEntries.size(); i++) {
+                Entry<D> entry = mEntries.get(i);
+                if (!entry.active && !entry.probed
+                        && (oldest == null || mRecentFirst.compare(entry, oldest) > 0))
+                    oldest = entry;
+            }
+            // None left, the round is over until a dataset is found
+            if (oldest != null) {
+                oldest.lastUsedMs = nowMs;
+                oldest.probed = true;
+                mProbes++;
+                mHinted = true;
+            }
+        }
+
+        if (mHinted) {
+            mHinted = false;
+            rebalance();
+        }
+    }
+
+    /** Activate the most recently used datasets that fit the budget, deactivate the others */
+    private void rebalance() {
+        List<Entry<D>> sorted = new ArrayList<Entry<D>>(mEntries);
+        Collections.sort(sorted, mRecentFirst);
+        boolean[] wanted = new boolean[sorted.size()];
+        int datasets = 0;
+        int trackables = 0;
+        for (int i = 0; i < sorted.size() && datasets < mMaxActiveDatasets; i++) {
+            int size = sorted.get(i).trackableIds.length;
+            if (datasets > 0 && trackables + size > mMaxActiveTrackables)
+                continue;
+            wanted[i] = true;
+            datasets++;
+            trackables += size;
+        }
+
+        // First deactivate, so the tracker is never over the budget
+        for (int i = 0; i < sorted.size(); i++) {
+            Entry<D> entry = sorted.get(i);
+            if (!wanted[i] && entry.active && mActivator.deactivate(entry.dataSet))
+                entry.active = false;
+        }
+        for (int i = 0; i < sorted.size(); i++) {
+            Entry<D> entry = sorted.get(i);
+            if (wanted[i] && !entry.active)
+                entry.active = mActivator.activate(entry.dataSet);
+        }
+    }
+
+    private void rebuildIds() {
+        int total = 0;
+        for (Entry<D> entry : mEntries)
+            total += entry.trackableIds.length;
+        long[] pairs = new long[total];
+        int n = 0;
+        for (int e = 0; e < mEntries.size(); e++) {
+            for (int id : mEntries.get(e).trackableIds)
+                pairs[n++] = (long) id << 32 | e;
+        }
+        // Sorted by id, the index of the entry is in the low bits
+        Arrays.sort(pairs);
+        mIds = new int[total];
+        mOwners = new Object[total];
+        for (int i = 0; i < total; i++) {
+            mIds[i] = (int) (pairs[i] >> 32);
+            mOwners[i] = mEntries.get((int) pairs[i]);
+        }
+    }
+
+    private int indexOf(D dataSet) {
+        for (int i = 0; i < mEntries.size(); i++) {
+            if (mEntries.get(i).dataSet.equals(dataSet))
+                return i;
+        }
+        return -1;
+    }
+
+    /** @return if the dataset is managed and active */
+    public synchronized boolean isActive(D dataSet) {
+        int index = indexOf(dataSet);
+        return index >= 0 && mEntries.get(index).active;
+    }
+
+    /** @return how many datasets are active */
+    public synchronized int getActiveCount() {
+        int count = 0;
+        for (Entry<D> entry : mEntries) {
+            if (entry.active)
+                count++;
+        }
+        return count;
+    }
+
+    /** @return how many datasets are managed, active or not */
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    public long getProbeIntervalMs() {
+        return mProbeIntervalMs;
+    }
+}
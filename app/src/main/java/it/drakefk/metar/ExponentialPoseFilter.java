@@ -0,0 +1,68 @@
+package it.drakefk.metar;
+
+/**
+ * Exponential smoothing of a pose: the translation moves towards the new
+ * one with a linear interpolation, the rotation with a quaternion slerp.
+ * <p>The smoothing is given as time constants, so it does not depend on
+ * the frame rate: after one time constant the filtered pose covered 63%
+ * of a step. Simpler and cheaper than {@link OneEuroPoseFilter}, but the
+ * lag is the same when moving as when still.</p>
+ */
+public class ExponentialPoseFilter implements PoseFilter {
+
+    public static final float DEFAULT_TIME_CONSTANT = 0.05f;
+
+    private final float mTranslationTimeConstant;
+    private final float mRotationTimeConstant;
+
+    private boolean mInitialized = false;
+    private final float[] mTranslation = new float[3];
+    private final float[] mRotation = new float[4];
+    private final float[] mRawRotation = new float[4];
+
+    public ExponentialPoseFilter() {
+        this(DEFAULT_TIME_CONSTANT, DEFAULT_TIME_CONSTANT);
+    }
+
+    /**
+     * @param translationTimeConstant seconds, 0 to not smooth the translation
+     * @param rotationTimeConstant seconds, 0 to not smooth the rotation
+     */
+    public ExponentialPoseFilter(float translationTimeConstant, float rotationTimeConstant) {
+        this.mTranslationTimeConstant = translationTimeConstant;
+        this.mRotationTimeConstant = rotationTimeConstant;
+    }
+
+    @Override
+    public void reset() {
+        mInitialized = false;
+    }
+
+    @Override
+    public void filter(float[] pose, float dt) {
+        QuaternionMath.fromPose(pose, mRawRotation);
+        if (!mInitialized) {
+            mTranslation[0] = pose[3];
+            mTranslation[1] = pose[7];
+            mTranslation[2] = pose[11];
+            System.arraycopy(mRawRotation, 0, mRotation, 0, 4);
+            mInitialized = true;
+            return;
+        }
+
+        float alpha = alpha(mTranslationTimeConstant, dt);
+        mTranslation[0] += alpha * (pose[3] - mTranslation[0]);
+        mTranslation[1] += alpha * (pose[7] - mTranslation[1]);
+        mTranslation[2] += alpha * (pose[11] - mTranslation[2]);
+        pose[3] = mTranslation[0];
+        pose[7] = mTranslation[1];
+        pose[11] = mTranslation[2];
+
+        QuaternionMath.slerp(mRotation, mRawRotation, alpha(mRotationTimeConstant, dt), mRotation);
+        QuaternionMath.toPose(mRotation, pose);
+    }
+
+    private static float alpha(float timeConstant, float dt) {
+        return timeConstant > 0 ? 1 - (float) Math.exp(-dt / timeConstant) : 1;
+    }
+}
@@ -10,91 +10,23 @@ public class MatrixUtils {
      *  <p>rotX = x*angle; rotY = y*angle; rotZ = z*angle</p>
      *  <p>float convertDegrees = 180f/Math.PI;</p>
      *  <p>rotXDegrees = rotX*convertDegrees</p>
-     * http://www.euclideanspace.com/maths/geometry/rotations/conversions/matrixToAngle/
      * @return new float[]{ angle, x, y, z}: rotX = x*angle; rotY = y*angle; rotZ = z*angle
      */
     public static float[] toAxisAngle(float[] m) {
+        float[] angleAxis = new float[4];
+        toAxisAngle(m, angleAxis);
+        return angleAxis;
+    }
 
-        float angle,x,y,z; // variables for result
-        float epsilon = 0.01f; // margin to allow for rounding errors
-        float epsilon2 = 0.1f; // margin to distinguish between 0 and 180 degrees
-
-        // optional check that input is pure rotation, 'isRotationMatrix' is defined at:
-        // http://www.euclideanspace.com/maths/algebra/matrix/orthogonal/rotation/
-        //assert isRotationMatrix(m) : "not valid rotation matrix" ;// for debugging
-        if ((Math.abs(m[4]-m[1])< epsilon)
-                && (Math.abs(m[8]-m[2])< epsilon)
-                && (Math.abs(m[9]-m[6])< epsilon)) {
-            // singularity found
-
-            // first check for identity matrix which must have +1 for all terms
-            //  in leading diagonaland zero in other terms
-            if ((Math.abs(m[4]+m[1]) < epsilon2)
-                    && (Math.abs(m[8]+m[2]) < epsilon2)
-                    && (Math.abs(m[9]+m[6]) < epsilon2)
-                    && (Math.abs(m[0]+m[5]+m[10]-3) < epsilon2)) {
-                // this singularity is identity matrix so angle = 0
-                return new float[]{0,1,0,0}; // zero angle, arbitrary axis
-            }
-
-            // otherwise this singularity is angle = 180
-            angle = (float) Math.PI;
-
-            float xx = (m[0]+1)*1f/2;
-            float yy = (m[5]+1)*1f/2;
-            float zz = (m[10]+1)*1f/2;
-            float xy = (m[4]+m[1])*1f/4;
-            float xz = (m[8]+m[2])*1f/4;
-            float yz = (m[9]+m[6])*1f/4;
-
-            if ((xx > yy) && (xx > zz)) { // m[0][0] is the largest diagonal term
-                if (xx< epsilon) {
-                    x = 0;
-                    y = 0.7071f;
-                    z = 0.7071f;
-                } else {
-                    x = (float) Math.sqrt(xx);
-                    y = xy/x;
-                    z = xz/x;
-                }
-            } else if (yy > zz) { // m[1][1] is the largest diagonal term
-                if (yy< epsilon) {
-                    x = 0.7071f;
-                    y = 0;
-                    z = 0.7071f;
-                } else {
-                    y = (float) Math.sqrt(yy);
-                    x = xy/y;
-                    z = yz/y;
-                }
-            } else { // m[2][2] is the largest diagonal term so base result on this
-                if (zz< epsilon) {
-                    x = 0.7071f;
-                    y = 0.7071f;
-                    z = 0;
-                } else {
-                    z = (float) Math.sqrt(zz);
-                    x = xz/z;
-                    y = yz/z;
-                }
-            }
-
-            return new float[]{angle,x,y,z}; // return 180 deg rotation
-        }
-
-        // as we have reached here there are no singularities so we can handle normally
-        float s = (float) Math.sqrt(((m[6] - m[9])*(m[6] - m[9]))
-                +((m[8] - m[2])*(m[8] - m[2]))
-                +((m[1] - m[4])*(m[1] - m[4]))); // used to normalise
-        if (Math.abs(s) < 0.001) s=1;
-
-        // prevent divide by zero, should not happen if matrix is orthogonal and should be
-        // caught by singularity test above, but I've left it in just in case
-        angle = (float) Math.acos(( m[0] + m[5] + m[10] - 1)*1f/2);
-        x = (m[6] - m[9])*1f/s;
-        y = (m[8] - m[2])*1f/s;
-        z = (m[1] - m[4])*1f/s;
-        return new float[]{angle,x,y,z};
+    /**
+     * Same as {@link #toAxisAngle(float[])} without allocating: the rotation
+     * is extracted as a quaternion, with no singular case at 0 and 180 degrees
+     * @param out where to write angle (from 0 to PI), x, y and z
+     */
+    public static void toAxisAngle(float[] m, float[] out) {
+        // The quaternion is built in out itself
+        QuaternionMath.fromMatrix(m, out);
+        QuaternionMath.toAxisAngle(out, out);
     }
 
     /**
@@ -106,28 +38,24 @@ public class MatrixUtils {
      * @return new float[]{ rotX, rotY, rotZ}
      */
     public static float[] toXYZAngle(float[] m) {
-
-        float alpha, beta, gamma;
-
-        float sinBeta = -m[2];// m[2][0] = -sin(beta)
-
-        beta = (float) Math.asin(sinBeta);
-
-        /*  m[6] = m[3][1] = cos(beta)*sin(alpha)
-         *  m[10] = m[3][2] = cos(beta)*cos(alpha)
-         */
-        alpha = (float) Math.atan2(m[6], m[10]);
-
-        /*  m[1] = m[1][0] = cos(beta)*sin(gamma)
-         *  m[0] = m[0][0] = cos(beta)*cos(gamma)
-         */
-        gamma = (float) Math.atan2(m[1], m[0]);
-
-        return new float[]{alpha, beta, gamma};
-
+        float[] angles = new float[3];
+        toXYZAngle(m, angles);
+        return angles;
     }
 
-
+    /**
+     * Same as {@link #toXYZAngle(float[])} without allocating
+     * @param out where to write rotX, rotY and rotZ
+     */
+    public static void toXYZAngle(float[] m, float[] out) {
+        // m[6] = m[3][1] = cos(beta)*sin(alpha), m[10] = m[3][2] = cos(beta)*cos(alpha)
+        out[0] = (float) Math.atan2(m[6], m[10]);
+        // m[2] = m[2][0] = -sin(beta); atan2 with cos(beta) instead of asin
+        // stays accurate near +-90 degrees and never gets past 1 with rounding
+        out[1] = (float) Math.atan2(-m[2], Math.sqrt(m[6] * m[6] + m[10] * m[10]));
+        // m[1] = m[1][0] = cos(beta)*sin(gamma), m[0] = m[0][0] = cos(beta)*cos(gamma)
+        out[2] = (float) Math.atan2(m[1], m[0]);
+    }
 
     /**
      * Given a matrix 4x4 return the angles around X, Y and Z axis
@@ -138,29 +66,122 @@ public class MatrixUtils {
      * @return new float[]{ rotX, rotY, rotZ}
      */
     public static float[] toZYXAngle(float[] m) {
+        float[] angles = new float[3];
+        toZYXAngle(m, angles);
+        return angles;
+    }
 
-        float alpha, beta, gamma;
+    /**
+     * Same as {@link #toZYXAngle(float[])} without allocating
+     * @param out where to write rotX, rotY and rotZ
+     */
+    public static void toZYXAngle(float[] m, float[] out) {
+        // m[9] = m[1][2] = -cos(beta)*sin(alpha), m[10] = m[2][2] = cos(beta)*cos(alpha)
+        out[0] = (float) Math.atan2(-m[9], m[10]);
+        // m[8] = m[0][2] = sin(beta), see toXYZAngle
+        out[1] = (float) Math.atan2(m[8], Math.sqrt(m[9] * m[9] + m[10] * m[10]));
+        // m[4] = m[0][1] = -cos(beta)*sin(gamma), m[0] = m[0][0] = cos(beta)*cos(gamma)
+        out[2] = (float) Math.atan2(-m[4], m[0]);
+    }
 
-        float sinBeta = m[8];// m[0][2] = sin(beta)
+    /** Fold an angle in [-PI/2, PI/2], like asin(sin(angle)) */
+    public static float simplifyAngleRad(float angle) {
+        return QuaternionMath.foldAngle(angle);
+    }
 
-        beta = (float) Math.asin(sinBeta);
 
-        /*  m[9] = m[1][2] = -cos(beta)*sin(alpha)
-         *  m[10] = m[2][2] = cos(beta)*cos(alpha)
-         */
-        alpha = (float) Math.atan2(-m[9], m[10]);
+    /**
+     * Convert a Vuforia pose (3x4 row major matrix, as returned by
+     * TrackableResult.getPose().getData()) in a 4x4 column major OpenGL matrix,
+     * like Tool.convertPose2GLMatrix but without allocating.
+     * @param pose the 12 values of the pose
+     * @param out where to write the 16 values of the OpenGL matrix
+     */
+    public static void poseToGLMatrix(float[] pose, float[] out) {
+        out[0] = pose[0]; out[1] = pose[4]; out[2] = pose[8];  out[3] = 0;
+        out[4] = pose[1]; out[5] = pose[5]; out[6] = pose[9];  out[7] = 0;
+        out[8] = pose[2]; out[9] = pose[6]; out[10] = pose[10]; out[11] = 0;
+        out[12] = pose[3]; out[13] = pose[7]; out[14] = pose[11]; out[15] = 1;
+    }
 
+    /**
+     * Multiply two 4x4 column major matrices, result = lhs * rhs.
+     * Same as android.opengl.Matrix.multiplyMM but usable on a plain JVM.
+     * <p>result must not be the same array of lhs or rhs</p>
+     */
+    public static void multiplyMM(float[] result, float[] lhs, float[] rhs) {
+        for (int i = 0; i < 4; i++) {
+            float r0 = rhs[i*4], r1 = rhs[i*4+1], r2 = rhs[i*4+2], r3 = rhs[i*4+3];
+            for (int j = 0; j < 4; j++) {
+                result[i*4+j] = lhs[j]*r0 + lhs[4+j]*r1 + lhs[8+j]*r2 + lhs[12+j]*r3;
+            }
+        }
+    }
 
-        /*  m[4] = m[0][1] = -cos(beta)*sin(gamma)
-         *  m[0] = m[0][0] = cos(beta)*cos(gamma)
-         */
-        gamma = (float) Math.atan2(-m[4], m[0]);
+    /**
+     * Translate in place a 4x4 column major matrix,
+     * same as android.opengl.Matrix.translateM(m, 0, x, y, z)
+     */
+    public static void translateM(float[] m, float x, float y, float z) {
+        for (int i = 0; i < 4; i++) {
+            m[12+i] += m[i]*x + m[4+i]*y + m[8+i]*z;
+        }
+    }
 
-        return new float[]{alpha, beta, gamma};
+    /**
+     * Scale in place a 4x4 column major matrix,
+     * same as android.opengl.Matrix.scaleM(m, 0, x, y, z)
+     */
+    public static void scaleM(float[] m, float x, float y, float z) {
+        for (int i = 0; i < 4; i++) {
+            m[i] *= x;
+            m[4+i] *= y;
+            m[8+i] *= z;
+        }
     }
 
-    public static float simplifyAngleRad(float angle) {
-        return (float)Math.asin(Math.sin(angle));
+    /**
+     * Invert a 4x4 matrix with the cofactors,
+     * same as android.opengl.Matrix.invertM but usable on a plain JVM
+     * @param inv where to write the inverse, must not be the same array of m
+     * @param m the matrix to invert
+     * @return false if the matrix is singular, inv is left untouched
+     */
+    public static boolean invertM(float[] inv, float[] m) {
+        float a0 = m[0]*m[5] - m[1]*m[4];
+        float a1 = m[0]*m[6] - m[2]*m[4];
+        float a2 = m[0]*m[7] - m[3]*m[4];
+        float a3 = m[1]*m[6] - m[2]*m[5];
+        float a4 = m[1]*m[7] - m[3]*m[5];
+        float a5 = m[2]*m[7] - m[3]*m[6];
+        float b0 = m[8]*m[13] - m[9]*m[12];
+        float b1 = m[8]*m[14] - m[10]*m[12];
+        float b2 = m[8]*m[15] - m[11]*m[12];
+        float b3 = m[9]*m[14] - m[10]*m[13];
+        float b4 = m[9]*m[15] - m[11]*m[13];
+        float b5 = m[10]*m[15] - m[11]*m[14];
+
+        float det = a0*b5 - a1*b4 + a2*b3 + a3*b2 - a4*b1 + a5*b0;
+        if (det == 0f) return false;
+        float invDet = 1f/det;
+
+        inv[0] = ( m[5]*b5 - m[6]*b4 + m[7]*b3)*invDet;
+        inv[1] = (-m[1]*b5 + m[2]*b4 - m[3]*b3)*invDet;
+        inv[2] = ( m[13]*a5 - m[14]*a4 + m[15]*a3)*invDet;
+        inv[3] = (-m[9]*a5 + m[10]*a4 - m[11]*a3)*invDet;
+        inv[4] = (-m[4]*b5 + m[6]*b2 - m[7]*b1)*invDet;
+        inv[5] = ( m[0]*b5 - m[2]*b2 + m[3]*b1)*invDet;
+        inv[6] = (-m[12]*a5 + m[14]*a2 - m[15]*a1)*invDet;
+        inv[7] = ( m[8]*a5 - m[10]*a2 + m[11]*a1)*invDet;
+        inv[8] = ( m[4]*b4 - m[5]*b2 + m[7]*b0)*invDet;
+        inv[9] = (-m[0]*b4 + m[1]*b2 - m[3]*b0)*invDet;
+        inv[10] = ( m[12]*a4 - m[13]*a2 + m[15]*a0)*invDet;
+        inv[11] = (-m[8]*a4 + m[9]*a2 - m[11]*a0)*invDet;
+        inv[12] = (-m[4]*b3 + m[5]*b1 - m[6]*b0)*invDet;
+        inv[13] = ( m[0]*b3 - m[1]*b1 + m[2]*b0)*invDet;
+        inv[14] = (-m[12]*a3 + m[13]*a1 - m[14]*a0)*invDet;
+        inv[15] = ( m[8]*a3 - m[9]*a1 + m[10]*a0)*invDet;
+        return true;
     }
 
 }
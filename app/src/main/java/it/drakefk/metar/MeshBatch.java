@@ -0,0 +1,162 @@
+package it.drakefk.metar;
+
+/**
+ * Collects the objects to draw in a frame and groups the ones sharing the
+ * same mesh and texture, so each group can be drawn with a single program,
+ * attribute and texture setup.
+ * <p>The matrices of a group are contiguous in {@link #getMatrices()}, in the
+ * layout expected by glUniformMatrix4fv with a count or by an instance
+ * buffer. The arrays grow by doubling and are reused, so after the first
+ * frames no allocation is done.</p>
+ * @param <M> the mesh type, compared by identity
+ */
+public class MeshBatch<M> {
+
+    private static final int MATRIX_SIZE = 16;
+
+    private int mCapacity;
+    private int mCount;
+    private Object[] mMeshes;
+    private int[] mTextures;
+    private float[] mMatrices;
+    private int[] mGroupOf;
+
+    private int mGroupCount;
+    private Object[] mGroupMeshes;
+    private int[] mGroupTextures;
+    private int[] mGroupStarts;
+    private int[] mGroupSizes;
+    private float[] mGroupedMatrices;
+
+    public MeshBatch() {
+        this(4);
+    }
+
+    public MeshBatch(int initialCapacity) {
+        allocate(Math.max(1, initialCapacity));
+    }
+
+    /** Remove the objects of the previous frame */
+    public void clear() {
+        for (int i = 0; i < mCount; i++)
+            mMeshes[i] = null;
+        for (int g = 0; g < mGroupCount; g++)
+            mGroupMeshes[g] = null;
+        mCount = 0;
+        mGroupCount = 0;
+    }
+
+    /**
+     * Add an object to draw
+     * @param mesh the mesh, objects with the same mesh and texture are drawn together
+     * @param texture the OpenGL name of the texture
+     * @param modelViewProjection the matrix of the object, copied
+     */
+    public void add(M mesh, int texture, float[] modelViewProjection) {
+        if (mCount == mCapacity)
+            grow();
+        mMeshes[mCount] = mesh;
+        mTextures[mCount] = texture;
+        System.arraycopy(modelViewProjection, 0, mMatrices, mCount * MATRIX_SIZE, MATRIX_SIZE);
+        mCount++;
+    }
+
+    /**
+     * Group the objects added since {@link #clear()}, in the order their
+     * mesh and texture were first added
+     * @return the number of groups
+     */
+    public int group() {
+        mGroupCount = 0;
+        for (int i = 0; i < mCount; i++) {
+            int g = findGroup(mMeshes[i], mTextures[i]);
+            if (g < 0) {
+                g = mGroupCount++;
+                mGroupMeshes[g] = mMeshes[i];
+                mGroupTextures[g] = mTextures[i];
+                mGroupSizes[g] = 0;
+            }
+            mGroupOf[i] = g;
+            mGroupSizes[g]++;
+        }
+
+        int start = 0;
+        for (int g = 0; g < mGroupCount; g++) {
+            mGroupStarts[g] = start;
+            start += mGroupSizes[g];
+            // Used as the write position below, restored after
+            mGroupSizes[g] = 0;
+        }
+        for (int i = 0; i < mCount; i++) {
+            int g = mGroupOf[i];
+            int dst = mGroupStarts[g] + mGroupSizes[g]++;
+            System.arraycopy(mMatrices, i * MATRIX_SIZE, mGroupedMatrices, dst * MATRIX_SIZE,
+                    MATRIX_SIZE);
+        }
+        return mGroupCount;
+    }
+
+    /** @return the number of objects added since {@link #clear()} */
+    public int getCount() {
+        return mCount;
+    }
+
+    public int getGroupCount() {
+        return mGroupCount;
+    }
+
+    @SuppressWarnings("unchecked")
+    public M getMesh(int group) {
+        return (M) mGroupMeshes[group];
+    }
+
+    public int getTexture(int group) {
+        return mGroupTextures[group];
+    }
+
+    /** @return the index of the first instance of the group in {@link #getMatrices()} */
+    public int getStart(int group) {
+        return mGroupStarts[group];
+    }
+
+    /** @return the number of instances of the group */
+    public int getSize(int group) {
+        return mGroupSizes[group];
+    }
+
+    /** @return the matrices grouped by {@link #group()}, 16 floats per instance */
+    public float[] getMatrices() {
+        return mGroupedMatrices;
+    }
+
+    private int findGroup(Object mesh, int texture) {
+        for (int g = 0; g < mGroupCount; g++) {
+            if (mGroupMeshes[g] == mesh && mGroupTextures[g] == texture)
+                return g;
+        }
+        return -1;
+    }
+
+    private void grow() {
+        Object[] meshes = mMeshes;
+        int[] textures = mTextures;
+        float[] matrices = mMatrices;
+        allocate(mCapacity * 2);
+        System.arraycopy(meshes, 0, mMeshes, 0, mCount);
+        System.arraycopy(textures, 0, mTextures, 0, mCount);
+        System.arraycopy(matrices, 0, mMatrices, 0, mCount * MATRIX_SIZE);
+    }
+
+    private void allocate(int capacity) {
+        mCapacity = capacity;
+        mMeshes = new Object[capacity];
+        mTextures = new int[capacity];
+        mMatrices = new float[capacity * MATRIX_SIZE];
+        mGroupOf = new int[capacity];
+        mGroupMeshes = new Object[capacity];
+        mGroupTextures = new int[capacity];
+        mGroupStarts = new int[capacity];
+        mGroupSizes = new int[capacity];
+        mGroupedMatrices = new float[capacity * MATRIX_SIZE];
+    }
+}
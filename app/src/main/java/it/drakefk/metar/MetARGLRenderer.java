@@ -1,32 +1,37 @@
 package it.drakefk.metar;
 
-import java.io.IOException;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Future;
 
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
 
 import android.opengl.GLES20;
 import android.opengl.GLSurfaceView;
-import android.opengl.Matrix;
 import android.util.Log;
 
 import com.vuforia.Device;
-import com.vuforia.Matrix44F;
 import com.vuforia.State;
-import com.vuforia.Tool;
-import com.vuforia.Trackable;
-import com.vuforia.TrackableResult;
 import com.vuforia.Vuforia;
 import com.vuforia.samples.SampleApplication.SampleAppRenderer;
 import com.vuforia.samples.SampleApplication.SampleAppRendererControl;
 import com.vuforia.samples.SampleApplication.SampleApplicationSession;
-import com.vuforia.samples.SampleApplication.utils.CubeShaders;
+import com.vuforia.samples.SampleApplication.utils.AtlasMeshObject;
+import com.vuforia.samples.SampleApplication.utils.DebugTrace;
+import com.vuforia.samples.SampleApplication.utils.FrameProfiler;
+import com.vuforia.samples.SampleApplication.utils.GLStateCache;
+import com.vuforia.samples.SampleApplication.utils.GpuTimer;
 import com.vuforia.samples.SampleApplication.utils.LoadingDialogHandler;
+import com.vuforia.samples.SampleApplication.utils.MeshBufferCache;
 import com.vuforia.samples.SampleApplication.utils.SampleApplication3DModel;
 import com.vuforia.samples.SampleApplication.utils.SampleUtils;
 import com.vuforia.samples.SampleApplication.utils.Teapot;
 import com.vuforia.samples.SampleApplication.utils.Texture;
+import com.vuforia.samples.SampleApplication.utils.TextureAtlas;
+import com.vuforia.samples.SampleApplication.utils.TextureCompression;
+
+import it.drakefk.metar.utils.AssetLoader;
 
 
 /** The renderer class that shows the video and the 3D models */
@@ -39,21 +44,59 @@ public class MetARGLRenderer implements GLSurfaceView.Renderer, SampleAppRendere
 
     private Vector<Texture> mTextures;
     
-    private int shaderProgramID;
-    private int vertexHandle;
-    private int textureCoordHandle;
-    private int mvpMatrixHandle;
-    private int texSampler2DHandle;
-    
     private Teapot mTeapot;
+    /** The teapot uploaded on the GPU */
+    private MeshBufferCache.Handle mTeapotBuffers;
+    /** Vertex and index buffers of the meshes, rebuilt when the GL context is recreated */
+    private final MeshBufferCache mMeshCache = new MeshBufferCache();
+
+    /** The teapots to draw in the current frame, grouped by mesh and texture */
+    private final MeshBatch<MeshBufferCache.Handle> mBatch = new MeshBatch<MeshBufferCache.Handle>();
+    /** Draws the batch with instancing on OpenGL ES 3.0, uniform arrays on 2.0 */
+    private final BatchedMeshRenderer mBatchRenderer;
+    /** Shadows the GL state shared with SampleAppRenderer, skips the redundant calls */
+    private final GLStateCache mStateCache;
+
+    /** Packs the RGBA textures in a few pages, so the targets share the same bind */
+    private TextureAtlas mAtlas;
+    /** Region in the atlas of each texture of mTextures, null if not packed */
+    private TextureAtlas.Region[] mTextureRegions;
+    /** The teapot with the texture coordinates remapped in the region of each texture */
+    private AtlasMeshObject[] mTeapotRegionMeshes;
     
     private float kBuildingScale = 0.012f;
     private SampleApplication3DModel mBuildingsModel;
+    /** Path of the buildings model in the assets, without extension */
+    public static final String BUILDINGS_MODEL = "ImageTargets/Buildings";
+
+    /** Assets still loading in background, null once received */
+    private List<Future<Texture>> mPendingTextures;
+    private Future<Teapot> mPendingTeapot;
+    private Future<SampleApplication3DModel> mPendingBuildings;
 
     private boolean mIsActive = false;
     private boolean mModelIsLoaded = false;
     
     private static final float OBJECT_SCALE_FLOAT = 0.003f;
+    /** Upload the textures with a mip chain and sample them with trilinear filtering */
+    private static final boolean MIPMAP_TEXTURES = true;
+
+    /** Matrices reused every frame, so renderFrame does not allocate */
+    private final RenderScratchPool mScratchPool = new RenderScratchPool();
+    /** Wraps the State received by renderFrame, reused every frame */
+    private final StateResultSource mResultSource = new StateResultSource();
+    /** Smooths the jitter of the poses of each trackable, ExponentialPoseFilter is the cheaper alternative */
+    private final PoseFilterBank mPoseFilters = new PoseFilterBank(new PoseFilterBank.Factory() {
+        @Override
+        public PoseFilter create() {
+            return new OneEuroPoseFilter();
+        }
+    });
+    /** Set by {@link #clearPoseFilters()}, applied by the next renderFrame on the GL thread */
+    private volatile boolean mPoseFiltersStale = false;
+    /** Sampled traces of renderFrame, compiled out of release builds */
+    private final DebugTrace.Sampler mUserDataTrace = new DebugTrace.Sampler(DebugTrace.VERBOSE, 1000);
+    private final DebugTrace.Sampler mGLErrorTrace = new DebugTrace.Sampler(DebugTrace.DEBUG, 1000);
     
     
     public MetARGLRenderer(MetARMain activity, SampleApplicationSession session) {
@@ -62,6 +105,9 @@ public class MetARGLRenderer implements GLSurfaceView.Renderer, SampleAppRendere
         // SampleAppRenderer used to encapsulate the use of RenderingPrimitives setting
         // the device mode AR/VR and stereo mode
         mSampleAppRenderer = new SampleAppRenderer(this, mActivity, Device.MODE.MODE_AR, false, 0.01f , 5f);
+        mStateCache = mSampleAppRenderer.getStateCache();
+        mBatchRenderer = new BatchedMeshRenderer(mMeshCache, mStateCache);
+        mScratchPool.setPoseFilters(mPoseFilters);
     }
     
     
@@ -76,6 +122,16 @@ public class MetARGLRenderer implements GLSurfaceView.Renderer, SampleAppRendere
     }
     
 
+    /**
+     * Forget the pose filters of all the trackables, when the datasets are
+     * unloaded or swapped. Call it from any thread, the filters are cleared
+     * on the GL thread before the next frame.
+     */
+    public void clearPoseFilters() {
+        mPoseFiltersStale = true;
+    }
+
+
     public void setActive(boolean active) {
         mIsActive = active;
 
@@ -94,6 +150,13 @@ public class MetARGLRenderer implements GLSurfaceView.Renderer, SampleAppRendere
         vuforiaAppSession.onSurfaceCreated();
 
         mSampleAppRenderer.onSurfaceCreated();
+
+        // The buffers of the meshes died with the previous context
+        mMeshCache.onSurfaceCreated();
+
+        // Once per context, onSurfaceChanged would leak a program per resize
+        if (!mBatchRenderer.init())
+            Log.e(TAG, "Unable to create the shaders");
     }
     
     
@@ -116,50 +179,164 @@ public class MetARGLRenderer implements GLSurfaceView.Renderer, SampleAppRendere
     private void initRendering() {
         GLES20.glClearColor(0.0f, 0.0f, 0.0f, Vuforia.requiresAlpha() ? 0.0f
                 : 1.0f);
+
+        // Collect the textures decoded in background, only the first time
+        if (mPendingTextures != null) {
+            for (Future<Texture> pending : mPendingTextures) {
+                Texture t = AssetLoader.await(pending);
+                if (t != null)
+                    mTextures.add(t);
+            }
+            // The futures would keep the pixels of the packed textures alive
+            mPendingTextures.clear();
+            mPendingTextures = null;
+        }
         
-        for (Texture t : mTextures)
+        for (int i = 0; i < mTextures.size(); i++)
+        {
+            Texture t = mTextures.get(i);
+            if (t.isCompressed() && !TextureCompression.isSupported(t.mCompressedFormat)) {
+                // Rare, the loader picks the formats the device should support
+                Log.w(TAG, "Compressed format 0x" + Integer.toHexString(t.mCompressedFormat)
+                        + " not supported, decoding " + t.mFallbackFileName);
+                Texture rgba = Texture.loadTextureFromApk(t.mFallbackFileName,
+                        mActivity.getAssets());
+                if (rgba != null)
+                    mTextures.set(i, rgba);
+                else
+                    Log.e(TAG, "Unable to load " + t.mFallbackFileName
+                            + ", the targets using it will not be drawn");
+            }
+        }
+
+        if (mAtlas == null)
+            packTextures();
+
+        for (int i = 0; i < mTextures.size(); i++)
         {
+            Texture t = mTextures.get(i);
+            // Not uploaded, its id stays 0 and renderFrame skips it
+            if (t.isCompressed() && !TextureCompression.isSupported(t.mCompressedFormat))
+                continue;
+            // Packed textures share their page, upload it only once
+            if (mTextures.indexOf(t) < i)
+                continue;
+
             GLES20.glGenTextures(1, t.mTextureID, 0);
             GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, t.mTextureID[0]);
+            boolean mipmapped = TextureCompression.texImage2D(t,
+                    MIPMAP_TEXTURES && TextureCompression.canMipmap(t));
+            // Trilinear filtering when the targets are far from the camera
             GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D,
-                GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+                GLES20.GL_TEXTURE_MIN_FILTER, mipmapped
+                    ? GLES20.GL_LINEAR_MIPMAP_LINEAR : GLES20.GL_LINEAR);
             GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D,
                 GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
-            GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA,
-                t.mWidth, t.mHeight, 0, GLES20.GL_RGBA,
-                GLES20.GL_UNSIGNED_BYTE, t.mData);
         }
         
-        shaderProgramID = SampleUtils.createProgramFromShaderSrc(
-            CubeShaders.CUBE_MESH_VERTEX_SHADER,
-            CubeShaders.CUBE_MESH_FRAGMENT_SHADER);
-
-        vertexHandle = GLES20.glGetAttribLocation(shaderProgramID,
-            "vertexPosition");
-        textureCoordHandle = GLES20.glGetAttribLocation(shaderProgramID,
-            "vertexTexCoord");
-        mvpMatrixHandle = GLES20.glGetUniformLocation(shaderProgramID,
-            "modelViewProjectionMatrix");
-        texSampler2DHandle = GLES20.glGetUniformLocation(shaderProgramID,
-            "texSampler2D");
+        // The uploads above bound the textures without the cache
+        mStateCache.invalidateTextures();
 
         if(!mModelIsLoaded) {
-            mTeapot = new Teapot();
-
-            try {
-                mBuildingsModel = new SampleApplication3DModel();
-                mBuildingsModel.loadModel(mActivity.getResources().getAssets(),
-                        "ImageTargets/Buildings.txt");
-                mModelIsLoaded = true;
-            } catch (IOException e) {
+            // The models are parsed in background since the app started,
+            // here we only wait for the ones not ready yet
+            mTeapot = AssetLoader.await(mPendingTeapot);
+            if (mTeapot == null)
+                Log.e(TAG, "Unable to load the teapot, it will not be drawn");
+            mBuildingsModel = AssetLoader.await(mPendingBuildings);
+            if (mBuildingsModel == null)
                 Log.e(TAG, "Unable to load buildings");
-            }
+            mPendingTeapot = null;
+            mPendingBuildings = null;
+            mModelIsLoaded = true;
 
             // Hide the Loading Dialog
             mActivity.loadingDialogHandler
                     .sendEmptyMessage(LoadingDialogHandler.HIDE_LOADING_DIALOG);
         }
 
+        if (mTeapot == null)
+            return;
+
+        // Upload once, next calls return the buffers already on the GPU
+        mTeapotBuffers = mMeshCache.upload(mTeapot);
+        if (mTeapotRegionMeshes == null) {
+            mTeapotRegionMeshes = new AtlasMeshObject[mTextureRegions.length];
+            for (int i = 0; i < mTextureRegions.length; i++) {
+                if (mTextureRegions[i] != null)
+                    mTeapotRegionMeshes[i] = new AtlasMeshObject(mTeapot, mTextureRegions[i]);
+            }
+        }
+        for (AtlasMeshObject mesh : mTeapotRegionMeshes) {
+            if (mesh != null)
+                mMeshCache.upload(mesh);
+        }
+
+    }
+
+    /**
+     * Pack the RGBA textures in the pages of the atlas, the packed entries of
+     * mTextures are replaced by their page and the meshes drawn with them
+     * must use the texture coordinates remapped in mTextureRegions.
+     * <p>Done once: the pixels of the packed textures are released, the
+     * pages are uploaded again when the GL context is recreated.</p>
+     */
+    private void packTextures() {
+        mAtlas = new TextureAtlas();
+        mTextureRegions = new TextureAtlas.Region[mTextures.size()];
+        int packed = 0;
+        for (int i = 0; i < mTextures.size(); i++) {
+            if (mAtlas.add(String.valueOf(i), mTextures.get(i)))
+                packed++;
+        }
+        // A single texture is already bound only once
+        if (packed < 2)
+            return;
+
+        List<Texture> pages = mAtlas.build();
+        for (Texture page : pages)
+            page.generateMipLevels();
+        for (int i = 0; i < mTextures.size(); i++) {
+            TextureAtlas.Region region = mAtlas.getRegion(String.valueOf(i));
+            if (region != null) {
+                mTextureRegions[i] = region;
+                mTextures.set(i, pages.get(region.getPage()));
+            }
+        }
+        Log.d(TAG, "Packed " + packed + " textures in " + pages.size() + " atlas pages");
+    }
+
+    /** @return the index in mTextures of the texture of a trackable */
+    private int getTextureIndex(String trackableName) {
+        int textureIndex = 0;
+        textureIndex = trackableName.equalsIgnoreCase("tarmac") ? 0
+                : textureIndex;
+        return textureIndex;
+    }
+
+    /**
+     * @param trackableName the name of the target
+     * @return the sub-rectangle of the atlas page used by the target,
+     * null if its texture is bound on its own
+     */
+    public TextureAtlas.Region getTextureRegion(String trackableName) {
+        if (mTextureRegions == null)
+            return null;
+        return mTextureRegions[getTextureIndex(trackableName)];
+    }
+
+    /** @return the frame timings of the rendering loop */
+    public FrameProfiler getProfiler() {
+        return mSampleAppRenderer.getProfiler();
+    }
+
+    public GpuTimer getGpuTimer() {
+        return mSampleAppRenderer.getGpuTimer();
+    }
+
+    /** @return the state cache, its counts of the GL calls issued and skipped */
+    public GLStateCache getStateCache() {
+        return mStateCache;
     }
 
     public void updateConfiguration() {
@@ -175,90 +352,97 @@ public class MetARGLRenderer implements GLSurfaceView.Renderer, SampleAppRendere
         // Renders video background replacing Renderer.DrawVideoBackground()
         mSampleAppRenderer.renderVideoBackground();
 
-        GLES20.glEnable(GLES20.GL_DEPTH_TEST);
+        mStateCache.enable(GLES20.GL_DEPTH_TEST);
 
         // handle face culling, we need to detect if we are using reflection
         // to determine the direction of the culling
-        GLES20.glEnable(GLES20.GL_CULL_FACE);
-        GLES20.glCullFace(GLES20.GL_BACK);
-
-        // Did we find any trackables this frame?
-        for (int tIdx = 0; tIdx < state.getNumTrackableResults(); tIdx++) {
-            TrackableResult result = state.getTrackableResult(tIdx);
-            Trackable trackable = result.getTrackable();
-            printUserData(trackable);
-            Matrix44F modelViewMatrix_Vuforia = Tool
-                    .convertPose2GLMatrix(result.getPose());
-            float[] modelViewMatrix = modelViewMatrix_Vuforia.getData();
-
-            if(tIdx == 0){
-                // Show camera distanza from marker
-                float[] cameraPosition = getCameraPositionMatrix(modelViewMatrix);
-                this.mActivity.updateCameraInfoOnUIThread(cameraPosition);
-            }
-            int textureIndex = 0;
-            textureIndex = trackable.getName().equalsIgnoreCase("tarmac") ? 0
-                    : textureIndex;
-
-            // deal with the modelview and projection matrices
-            float[] modelViewProjection = new float[16];
-
-            Matrix.translateM(modelViewMatrix, 0, 0.0f, 0.0f,
-                    OBJECT_SCALE_FLOAT);
-            Matrix.scaleM(modelViewMatrix, 0, OBJECT_SCALE_FLOAT,
-                    OBJECT_SCALE_FLOAT, OBJECT_SCALE_FLOAT);
+        mStateCache.enable(GLES20.GL_CULL_FACE);
+        mStateCache.cullFace(GLES20.GL_BACK);
 
-            Matrix.multiplyMM(modelViewProjection, 0, projectionMatrix, 0, modelViewMatrix, 0);
-
-            // activate the shader program and bind the vertex/normal/tex coords
-            GLES20.glUseProgram(shaderProgramID);
-
-            GLES20.glVertexAttribPointer(vertexHandle, 3, GLES20.GL_FLOAT,
-                    false, 0, mTeapot.getVertices());
-            GLES20.glVertexAttribPointer(textureCoordHandle, 2,
-                    GLES20.GL_FLOAT, false, 0, mTeapot.getTexCoords());
-
-            GLES20.glEnableVertexAttribArray(vertexHandle);
-            GLES20.glEnableVertexAttribArray(textureCoordHandle);
+        // The trackables of the datasets unloaded or swapped out are forgotten
+        if (mPoseFiltersStale) {
+            mPoseFiltersStale = false;
+            mPoseFilters.clear();
+        }
 
-            // activate texture 0, bind it, and pass to shader
-            GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
-            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D,
-                    mTextures.get(textureIndex).mTextureID[0]);
-            GLES20.glUniform1i(texSampler2DHandle, 0);
+        // Compute the matrices of all the trackables in the preallocated pool
+        mResultSource.setState(state);
+        int numResults = mScratchPool.prepareFrame(mResultSource, projectionMatrix,
+                OBJECT_SCALE_FLOAT, mSampleAppRenderer.getFrameTimeNanos());
 
-            // pass the model view matrix to the shader
-            GLES20.glUniformMatrix4fv(mvpMatrixHandle, 1, false,
-                    modelViewProjection, 0);
+        if (mScratchPool.hasCameraPosition()) {
+            // Show camera distanza from marker
+            this.mActivity.updateCameraInfoOnUIThread(mScratchPool.getCameraPosition());
+        }
 
-            // finally draw the teapot
-            GLES20.glDrawElements(GLES20.GL_TRIANGLES,
-                    mTeapot.getNumObjectIndex(), GLES20.GL_UNSIGNED_SHORT,
-                    mTeapot.getIndices());
+        // Collect the teapots of all the trackables, the ones sharing the mesh
+        // and the texture (e.g. the same atlas page) are drawn together
+        mBatch.clear();
 
-            // disable the enabled arrays
-            GLES20.glDisableVertexAttribArray(vertexHandle);
-            GLES20.glDisableVertexAttribArray(textureCoordHandle);
+        // Did we find any trackables this frame?
+        for (int tIdx = 0; tIdx < numResults; tIdx++) {
+            if (DebugTrace.COMPILE_LEVEL >= DebugTrace.VERBOSE && mUserDataTrace.sample())
+                printUserData(mResultSource.getTrackableUserData(tIdx));
+
+            // The teapot could not be loaded, nothing to draw
+            if (mTeapot == null)
+                continue;
+
+            int textureIndex = getTextureIndex(mResultSource.getTrackableName(tIdx));
+            Texture texture = mTextures.get(textureIndex);
+            // The texture could not be uploaded, do not sample texture 0
+            if (texture.mTextureID[0] == 0)
+                continue;
+            MeshBufferCache.Handle teapot = mTeapotRegionMeshes[textureIndex] != null
+                    ? mMeshCache.get(mTeapotRegionMeshes[textureIndex]) : mTeapotBuffers;
 
-            SampleUtils.checkGLError("Render Frame");
+            // deal with the modelview and projection matrices
+            float[] modelViewProjection = mScratchPool.getModelViewProjection(tIdx);
+            mBatch.add(teapot, texture.mTextureID[0], modelViewProjection);
+        }
 
+        if (mBatch.group() > 0) {
+            GpuTimer gpuTimer = mSampleAppRenderer.getGpuTimer();
+            gpuTimer.begin(SampleAppRenderer.PASS_AUGMENTATION);
+            mBatchRenderer.draw(mBatch);
+            gpuTimer.end(SampleAppRenderer.PASS_AUGMENTATION);
+            DebugTrace.checkGLError(mGLErrorTrace, "Render Frame");
         }
 
-        GLES20.glDisable(GLES20.GL_DEPTH_TEST);
+        mStateCache.disable(GLES20.GL_DEPTH_TEST);
 
     }
 
-    private void printUserData(Trackable trackable) {
-        String userData = (String) trackable.getUserData();
-        Log.d(TAG, "UserData:Retreived User Data	\"" + userData + "\"");
+    private void printUserData(Object trackableUserData) {
+        String userData = (String) trackableUserData;
+        Log.v(TAG, "UserData:Retreived User Data	\"" + userData + "\" ("
+                + mUserDataTrace.getSuppressed() + " suppressed)");
     }
     
     
+    /**
+     * @param textures the textures to draw with, the ones packed in the atlas
+     *                 are replaced by their page in initRendering
+     */
     public void setTextures(Vector<Texture> textures) {
         mTextures = textures;
         
     }
 
+    /**
+     * Set the assets loaded in background by AssetLoader, they are
+     * uploaded to OpenGL in initRendering, on the GL thread
+     * @param textures decoded textures, added to the textures of setTextures
+     * @param teapot the teapot buffers
+     * @param buildings the buildings model
+     */
+    public void setPendingAssets(List<Future<Texture>> textures, Future<Teapot> teapot,
+                                 Future<SampleApplication3DModel> buildings) {
+        mPendingTextures = textures;
+        mPendingTeapot = teapot;
+        mPendingBuildings = buildings;
+    }
+
     /**
      * Obtain the position and rotation of the camera from the Matrix
      * <a href="https://developer.vuforia.com/library/articles/Solution/Get-the-Camera-Position">
@@ -280,8 +464,19 @@ public class MetARGLRenderer implements GLSurfaceView.Renderer, SampleAppRendere
      */
     public static float[] getCameraPositionMatrix( float[] modelViewMatrix){
         float[] inv = new float[16];
-        Matrix.invertM(inv, 0, modelViewMatrix, 0);
+        getCameraPositionMatrix(modelViewMatrix, inv);
         return inv;
     }
+
+    /**
+     * Same as {@link #getCameraPositionMatrix(float[])} but writes the result
+     * in a preallocated matrix, used in the render loop
+     * @param modelViewMatrix the matrix obtained from the marker
+     * @param cameraPosition where to write the position of the camera in the marker world
+     * @return false if modelViewMatrix can not be inverted
+     */
+    public static boolean getCameraPositionMatrix( float[] modelViewMatrix, float[] cameraPosition){
+        return MatrixUtils.invertM(cameraPosition, modelViewMatrix);
+    }
     
 }
@@ -1,10 +1,18 @@
 package it.drakefk.metar;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
-import java.util.Locale;
 import java.util.Vector;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
 import android.app.Activity;
+import android.app.ActivityManager;
 import android.app.AlertDialog;
 import android.content.DialogInterface;
 import android.content.Intent;
@@ -13,9 +21,12 @@ import android.content.res.Configuration;
 import android.graphics.Color;
 import android.hardware.Camera;
 import android.hardware.Camera.CameraInfo;
+import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.GestureDetector;
 import android.view.KeyEvent;
@@ -43,15 +54,24 @@ import com.vuforia.Vuforia;
 import com.vuforia.samples.SampleApplication.SampleApplicationControl;
 import com.vuforia.samples.SampleApplication.SampleApplicationException;
 import com.vuforia.samples.SampleApplication.SampleApplicationSession;
+import com.vuforia.samples.SampleApplication.utils.DebugTrace;
+import com.vuforia.samples.SampleApplication.utils.FrameProfiler;
+import com.vuforia.samples.SampleApplication.utils.GLStateCache;
 import com.vuforia.samples.SampleApplication.utils.LoadingDialogHandler;
+import com.vuforia.samples.SampleApplication.utils.SampleApplication3DModel;
 import com.vuforia.samples.SampleApplication.utils.SampleApplicationGLView;
+import com.vuforia.samples.SampleApplication.utils.Teapot;
 import com.vuforia.samples.SampleApplication.utils.Texture;
 import com.vuforia.samples.VuforiaSamples.ui.SampleAppMenu.SampleAppMenu;
 import com.vuforia.samples.VuforiaSamples.ui.SampleAppMenu.SampleAppMenuGroup;
 import com.vuforia.samples.VuforiaSamples.ui.SampleAppMenu.SampleAppMenuInterface;
 
+import it.drakefk.metar.utils.AssetLoader;
+import it.drakefk.metar.utils.DatasetImporter;
 import it.drakefk.metar.utils.DatasetLoader;
+import it.drakefk.metar.utils.ExtractionCache;
 import it.drakefk.metar.utils.FolderSearch;
+import it.drakefk.metar.utils.ZipExtractor;
 
 
 public class MetARMain extends Activity implements SampleApplicationControl,
@@ -78,17 +98,48 @@ public class MetARMain extends Activity implements SampleApplicationControl,
     private ArrayList<String> mDatasetStrings = new ArrayList<String>();
     /** List of the datasets loaded, a group of images that the application may track */
     private ArrayList<DataSet> mDatasetLoaded = new ArrayList<DataSet>();
+    /** Keeps the datasets extracted from the zips picked by the user */
+    private ExtractionCache mExtractionCache;
+    /** Imports the datasets picked by the user in background */
+    private DatasetImporter<DataSet> mDatasetImporter;
+    /** Keeps active only the imported datasets used most recently */
+    private final DatasetManager<DataSet> mDatasetManager = new DatasetManager<DataSet>(
+            MAX_ACTIVE_DATASETS, MAX_ACTIVE_TRACKABLES, DATASET_PROBE_INTERVAL_MS,
+            DatasetLoader.TRACKER_ACTIVATOR);
+    /** Wraps the State received by onVuforiaUpdate, reused every frame */
+    private final StateResultSource mUpdateResults = new StateResultSource();
     private int mStartDatasetsIndex = 0;
     private int mDatasetsNumber = 0;
 
     /** The textures we will use for rendering */
     private Vector<Texture> mTextures;
+    /** Decodes the textures and the models in background during the Vuforia initialization */
+    private AssetLoader mAssetLoader;
+    /** Textures still being decoded, handed to the renderer */
+    private ArrayList<Future<Texture>> mPendingTextures = new ArrayList<Future<Texture>>();
+    private Future<Teapot> mPendingTeapot;
+    private Future<SampleApplication3DModel> mPendingBuildings;
 
 	/* Roba di doLoadTrackersData() */
     /** Dataset e' una classe di Vuforia */
     private DataSet mCurrentDataset;
     /** Indice per scegliere quale dataset usare, 0 indica il primo*/
     private int mCurrentDatasetSelectionIndex = 0;
+    /** Index of mCurrentDataset in mDatasetStrings */
+    private int mCurrentDatasetIndex = 0;
+    /** How many datasets are in the APK, at the start of mDatasetStrings */
+    private int mBuiltInDatasetsNumber = 0;
+    /** The datasets in the APK already loaded, mCurrentDataset and the standby ones */
+    private DataSet[] mBuiltInDatasets;
+    /** The datasets in the APK being loaded in background, for a quick switch */
+    private ArrayList<Future<DataSet>> mStandbyDatasets = new ArrayList<Future<DataSet>>();
+    /**
+     * Guards mBuiltInDatasets and mStandbyDatasets, used by the thread
+     * loading the trackers, by onVuforiaUpdate and by the unload
+     */
+    private final Object mBuiltInLock = new Object();
+    /** Latency of the switches between the datasets of the menu */
+    private final SwitchLatency mSwitchLatency = new SwitchLatency();
     /** Indica se sto usando l'extended tracking, per quando il marker non e' inquadrato */
     private boolean mExtendedTracking = false;
 
@@ -125,6 +176,62 @@ public class MetARMain extends Activity implements SampleApplicationControl,
     private TextView txtCamUp;
     /** Text used to show the camera Right vector */
     private TextView txtCamRight;
+    /** Latest camera position published by the GL thread */
+    private final PoseMailbox mCameraPosMailbox = new PoseMailbox(16);
+    /** Copy of the latest camera position used on the UI thread */
+    private final float[] mShownCameraPos = new float[16];
+    /** Rotation angles of mShownCameraPos */
+    private final float[] mShownCameraRotation = new float[3];
+    /** Texts of the camera position, built without String.format */
+    private PoseText mPoseText;
+    /** How often the camera position is shown, 10 Hz by default */
+    private long mCameraInfoIntervalMs = 100;
+    /** Overlay with the frame timings of the renderer */
+    private TextView txtFrameStats;
+    /** How often the frame timings overlay is refreshed */
+    private static final long FRAME_STATS_INTERVAL_MS = FrameProfiler.PUBLISH_INTERVAL_MS;
+    /** Name of the frame timings report, written in the app files when paused, debug builds only */
+    private static final String FRAME_REPORT_FILE = "frame_report.csv";
+    /** How many imported datasets can be active at the same time */
+    private static final int MAX_ACTIVE_DATASETS = 3;
+    /** How many trackables the active imported datasets can have in total */
+    private static final int MAX_ACTIVE_TRACKABLES = 100;
+    /** How long the active datasets are searched before trying an inactive one */
+    private static final long DATASET_PROBE_INTERVAL_MS = 3000;
+    /** How long the unload waits for a dataset being loaded in background */
+    private static final long IMPORT_SHUTDOWN_TIMEOUT_MS = 5000;
+    /** Folder of the app files where the dataset zips are extracted */
+    private static final String DATASETS_FOLDER = "datasets";
+    /** Refreshes the overlays (frame timings, camera position) while resumed */
+    private final Handler mOverlayHandler = new Handler();
+    /** Samples the camera position log of updateCameraInfo, debug builds only */
+    private final DebugTrace.Sampler mCameraInfoTrace = new DebugTrace.Sampler(DebugTrace.VERBOSE, 1000);
+    /** Shows the statistics last published by the profiler, while resumed */
+    private final Runnable mFrameStatsRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mRenderer != null) {
+                FrameProfiler.FrameStats stats = mRenderer.getProfiler().getLatestStats();
+                String gpuTimes = mRenderer.getGpuTimer().format();
+                GLStateCache stateCache = mRenderer.getStateCache();
+                if (stats != null)
+                    txtFrameStats.setText(stats.format()
+                            + (gpuTimes != null ? "\n" + gpuTimes : "")
+                            + "\nGL state calls " + stateCache.getLastFrameIssuedCalls()
+                            + " issued, " + stateCache.getLastFrameSkippedCalls() + " skipped");
+            }
+            mOverlayHandler.postDelayed(this, FRAME_STATS_INTERVAL_MS);
+        }
+    };
+    /** Shows the latest camera position, if it changed, at mCameraInfoIntervalMs */
+    private final Runnable mCameraInfoRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mCameraPosMailbox.take(mShownCameraPos))
+                updateCameraInfo(mShownCameraPos);
+            mOverlayHandler.postDelayed(this, mCameraInfoIntervalMs);
+        }
+    };
 
     // Called when the activity first starts or the user navigates back to an
     // activity.
@@ -132,14 +239,28 @@ public class MetARMain extends Activity implements SampleApplicationControl,
     protected void onCreate(Bundle savedInstanceState) {
         Log.d(TAG, "onCreate");
         super.onCreate(savedInstanceState);
+        // The per-frame traces are enabled with adb shell setprop log.tag.MetARMain VERBOSE
+        if (Log.isLoggable(TAG, Log.VERBOSE))
+            DebugTrace.setLevel(DebugTrace.VERBOSE);
         this.setContentView(R.layout.metar_main);
         this.initLayoutCameraPos();
 
         vuforiaAppSession = new SampleApplicationSession(this);
 
+        // Load any sample specific textures and models on worker threads,
+        // in parallel with the initialization of Vuforia:
+        mTextures = new Vector<Texture>();
+        mAssetLoader = new AssetLoader(getAssets(), isOpenGLES3Supported());
+        loadTextures();
+        mPendingTeapot = mAssetLoader.loadTeapot();
+        mPendingBuildings = mAssetLoader.loadModel(MetARGLRenderer.BUILDINGS_MODEL);
+
         startLoadingAnimation();
+        mDatasetImporter = new DatasetImporter<DataSet>(new DatasetLoader(this),
+                mImportProgress, mMainThread, mImportListener);
         mDatasetStrings.add("StonesAndChips.xml");
         mDatasetStrings.add("Tarmac.xml");
+        mBuiltInDatasetsNumber = mDatasetStrings.size();
 
         /* Material of the file xml */
         /** A layout who only keep the GLSurfaceView*/
@@ -152,10 +273,6 @@ public class MetARMain extends Activity implements SampleApplicationControl,
 
         mGestureDetector = new GestureDetector(this, new GestureListener());
 
-        // Load any sample specific textures:
-        mTextures = new Vector<Texture>();
-        loadTextures();
-
 //        mIsDroidDevice = android.os.Build.MODEL.toLowerCase().startsWith("droid");
 
     }
@@ -169,6 +286,11 @@ public class MetARMain extends Activity implements SampleApplicationControl,
         this.txtCamDir = (TextView)findViewById(R.id.txt_cam_dir);
         this.txtCamUp = (TextView)findViewById(R.id.txt_cam_up);
         this.txtCamRight = (TextView)findViewById(R.id.txt_cam_right);
+        this.txtFrameStats = (TextView)findViewById(R.id.txt_frame_stats);
+        // The frame timings are a debug tool, like the traces
+        if (DebugTrace.COMPILE_LEVEL < DebugTrace.DEBUG)
+            txtFrameStats.setVisibility(View.GONE);
+        this.mPoseText = new PoseText(getString(R.string.unit_pos), getString(R.string.distance));
     }
 
 
@@ -211,12 +333,59 @@ public class MetARMain extends Activity implements SampleApplicationControl,
     }
 
 
+    /** @return true if the device supports OpenGL ES 3.0, and so ETC2 textures */
+    private boolean isOpenGLES3Supported() {
+        ActivityManager activityManager = (ActivityManager) getSystemService(ACTIVITY_SERVICE);
+        return activityManager.getDeviceConfigurationInfo().reqGlEsVersion >= 0x30000;
+    }
+
+
     // We want to load specific textures from the APK, which we will later use
     // for rendering.
 
+    /**
+     * Dump the frame timings of the last seconds in the app files,
+     * e.g. adb pull /sdcard/Android/data/it.drakefk.metar/files/frame_report.csv
+     * <p>Must be called while the GL thread is paused: the report is
+     * formatted in memory here, the file is written in background so
+     * onPause does not wait for the storage.</p>
+     */
+    private void writeFrameReport() {
+        if (mRenderer == null)
+            return;
+
+        final StringWriter text = new StringWriter();
+        try {
+            mRenderer.getProfiler().writeReport(text);
+        } catch (IOException e) {
+            // Not thrown by a StringWriter
+            return;
+        }
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                File dir = getExternalFilesDir(null);
+                if (dir == null)
+                    dir = getFilesDir();
+                File report = new File(dir, FRAME_REPORT_FILE);
+                try {
+                    Writer out = new BufferedWriter(new FileWriter(report));
+                    try {
+                        out.write(text.toString());
+                    } finally {
+                        out.close();
+                    }
+                    Log.d(TAG, "Frame report written in " + report.getAbsolutePath());
+                } catch (IOException e) {
+                    Log.e(TAG, "Unable to write the frame report: " + e.getMessage());
+                }
+            }
+        });
+    }
+
+
     private void loadTextures() {
-        mTextures.add(Texture.loadTextureFromApk("TextureTeapotBrass.png",
-                getAssets()));
+        mPendingTextures.add(mAssetLoader.loadTexture("TextureTeapotBrass.png"));
     }
 
 
@@ -235,6 +404,10 @@ public class MetARMain extends Activity implements SampleApplicationControl,
 //        }
 
         vuforiaAppSession.onResume();
+
+        if (DebugTrace.COMPILE_LEVEL >= DebugTrace.DEBUG)
+            mOverlayHandler.post(mFrameStatsRunnable);
+        mOverlayHandler.post(mCameraInfoRunnable);
     }
 
 
@@ -254,9 +427,15 @@ public class MetARMain extends Activity implements SampleApplicationControl,
         Log.d(TAG, "onPause");
         super.onPause();
 
+        mOverlayHandler.removeCallbacks(mFrameStatsRunnable);
+        mOverlayHandler.removeCallbacks(mCameraInfoRunnable);
+
         if (mGlView != null) {
             mGlView.setVisibility(View.INVISIBLE);
             mGlView.onPause();
+            // The GL thread is paused, the profiler can be read from here
+            if (DebugTrace.COMPILE_LEVEL >= DebugTrace.DEBUG)
+                writeFrameReport();
         }
 
         // Turn off the flash
@@ -282,11 +461,21 @@ public class MetARMain extends Activity implements SampleApplicationControl,
         Log.d(TAG, "onDestroy");
         super.onDestroy();
 
-        try {
-            vuforiaAppSession.stopAR();
-        } catch (SampleApplicationException e) {
-            Log.e(TAG, e.getString());
-        }
+        // The unload waits for the datasets being loaded, off the UI thread
+        final SampleApplicationSession session = vuforiaAppSession;
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    session.stopAR();
+                } catch (SampleApplicationException e) {
+                    Log.e(TAG, e.getString());
+                }
+            }
+        });
+
+        // Stop loading the assets not needed anymore
+        mAssetLoader.shutdown();
 
         // Unload texture:
         mTextures.clear();
@@ -307,7 +496,9 @@ public class MetARMain extends Activity implements SampleApplicationControl,
         mGlView.init(translucent, depthSize, stencilSize);
 
         mRenderer = new MetARGLRenderer(this, vuforiaAppSession);
+        mRenderer.getProfiler().setRefreshRate(getWindowManager().getDefaultDisplay().getRefreshRate());
         mRenderer.setTextures(mTextures);
+        mRenderer.setPendingAssets(mPendingTextures, mPendingTeapot, mPendingBuildings);
         mGlView.setRenderer(mRenderer);
     }
 
@@ -322,6 +513,8 @@ public class MetARMain extends Activity implements SampleApplicationControl,
         // Gets a reference to the loading dialog
         loadingDialogHandler.mLoadingDialogContainer = mUILayout
                 .findViewById(R.id.loading_indicator);
+        loadingDialogHandler.mLoadingProgressText = (TextView) mUILayout
+                .findViewById(R.id.loading_progress);
 
         // Shows the loading indicator at start
         loadingDialogHandler
@@ -359,11 +552,24 @@ public class MetARMain extends Activity implements SampleApplicationControl,
         if (!objectTracker.activateDataSet(mCurrentDataset))
             return false;
 
-        int numTrackables = mCurrentDataset.getNumTrackables();
+        prepareTrackables(mCurrentDataset);
+        mCurrentDatasetIndex = mCurrentDatasetSelectionIndex;
+        preloadStandbyDatasets();
+
+        return true;
+    }
+
+
+    /** Set the user data and the extended tracking of the trackables of a dataset just activated */
+    private void prepareTrackables(DataSet dataSet) {
+        int numTrackables = dataSet.getNumTrackables();
         for (int count = 0; count < numTrackables; count++) {
-            Trackable trackable = mCurrentDataset.getTrackable(count);
+            Trackable trackable = dataSet.getTrackable(count);
             if (isExtendedTrackingActive()) {
                 trackable.startExtendedTracking();
+            } else if (trackable.isExtendedTrackingStarted()) {
+                // Toggled while the dataset was in standby
+                trackable.stopExtendedTracking();
             }
 
             String name = "Current Dataset : " + trackable.getName();
@@ -371,8 +577,56 @@ public class MetARMain extends Activity implements SampleApplicationControl,
             Log.d(TAG, "UserData:Set the following user data "
                     + (String) trackable.getUserData());
         }
+    }
 
-        return true;
+
+    /**
+     * Load in background the other datasets of the APK, while the current
+     * one is tracked, so the switch from the menu is only a deactivate and
+     * activate in onVuforiaUpdate
+     */
+    private void preloadStandbyDatasets() {
+        synchronized (mBuiltInLock) {
+            if (mBuiltInDatasets == null)
+                mBuiltInDatasets = new DataSet[mBuiltInDatasetsNumber];
+            mBuiltInDatasets[mCurrentDatasetIndex] = mCurrentDataset;
+            if (!mStandbyDatasets.isEmpty())
+                return;
+
+            for (int i = 0; i < mBuiltInDatasetsNumber; i++) {
+                mStandbyDatasets.add(mBuiltInDatasets[i] != null ? null
+                        : mDatasetImporter.preload(mDatasetStrings.get(i), STORAGE_TYPE.STORAGE_APPRESOURCE));
+            }
+        }
+    }
+
+
+    /**
+     * @return the dataset of the APK at index if it is loaded, null if it is
+     * still loading, it could not be loaded or the trackers are unloaded
+     */
+    private DataSet getBuiltInDataset(int index) {
+        synchronized (mBuiltInLock) {
+            if (mBuiltInDatasets == null)
+                return null;
+            if (mBuiltInDatasets[index] == null) {
+                Future<DataSet> standby = mStandbyDatasets.get(index);
+                if (standby == null || !standby.isDone())
+                    return null;
+                mBuiltInDatasets[index] = AssetLoader.await(standby);
+                mStandbyDatasets.set(index, null);
+            }
+            return mBuiltInDatasets[index];
+        }
+    }
+
+
+    /** @return if the dataset of the APK at index is still loading in background */
+    private boolean isStandbyLoading(int index) {
+        synchronized (mBuiltInLock) {
+            Future<DataSet> standby = index < mStandbyDatasets.size() ? mStandbyDatasets.get(index) : null;
+            return standby != null && !standby.isDone();
+        }
     }
 
 
@@ -381,14 +635,22 @@ public class MetARMain extends Activity implements SampleApplicationControl,
         // Indicate if the trackers were unloaded correctly
         boolean result = true;
 
+        // Stop the imports before the trackers are deinitialized, the
+        // dataset being loaded is destroyed by the worker when done
+        if (!mDatasetImporter.shutdown(IMPORT_SHUTDOWN_TIMEOUT_MS)) {
+            Log.e(TAG, "The import did not stop in time");
+            result = false;
+        }
+
         TrackerManager tManager = TrackerManager.getInstance();
         ObjectTracker objectTracker = (ObjectTracker) tManager
                 .getTracker(ObjectTracker.getClassType());
         if (objectTracker == null)
             return false;
 
-        if (mCurrentDataset != null && mCurrentDataset.isActive()) {
-            if (objectTracker.getActiveDataSet(0).equals(mCurrentDataset)
+        // Destroyed even if it is not active, e.g. the activation failed
+        if (mCurrentDataset != null) {
+            if (mCurrentDataset.isActive()
                     && !objectTracker.deactivateDataSet(mCurrentDataset)) {
                 result = false;
             } else if (!objectTracker.destroyDataSet(mCurrentDataset)) {
@@ -398,22 +660,46 @@ public class MetARMain extends Activity implements SampleApplicationControl,
             mCurrentDataset = null;
         }
 
-        // Unload all the loaded datasets
-        for( DataSet d : this.mDatasetLoaded){
-            if( d.isActive()){
-                for (int i = 0; i < objectTracker.getActiveDataSetCount(); i++ ) {
-                    DataSet dataSet = objectTracker.getActiveDataSet(i);
-                    if (dataSet.equals(d)
-                            && !objectTracker.deactivateDataSet(d))
-                    {
-                        result = false;
-                    } else if (!objectTracker.destroyDataSet(d))
-                    {
-                        result = false;
-                    }
+        DataSet[] builtInDatasets;
+        ArrayList<Future<DataSet>> standbyDatasets;
+        synchronized (mBuiltInLock) {
+            builtInDatasets = mBuiltInDatasets;
+            standbyDatasets = new ArrayList<Future<DataSet>>(mStandbyDatasets);
+            mBuiltInDatasets = null;
+            mStandbyDatasets.clear();
+        }
+
+        // Destroy the standby datasets, the current one is already destroyed.
+        // They are preloaded by the importer, stopped above: the queued ones
+        // are cancelled and the one being loaded is done unless it timed out
+        if (builtInDatasets != null) {
+            for (int i = 0; i < builtInDatasets.length; i++) {
+                DataSet d = builtInDatasets[i];
+                Future<DataSet> standby = i < standbyDatasets.size() ? standbyDatasets.get(i) : null;
+                if (d == null && standby != null) {
+                    if (standby.isDone())
+                        d = AssetLoader.await(standby);
+                    else
+                        Log.e(TAG, "Standby dataset " + mDatasetStrings.get(i) + " still loading, leaked");
                 }
+                if (d != null && i != mCurrentDatasetIndex && !objectTracker.destroyDataSet(d))
+                    result = false;
+            }
+        }
+
+        // Unload all the loaded datasets, the inactive ones too
+        for( DataSet d : this.mDatasetLoaded){
+            if( d.isActive() && !objectTracker.deactivateDataSet(d)){
+                result = false;
+            }
+            else if( !objectTracker.destroyDataSet(d)){
+                result = false;
             }
         }
+        this.mDatasetLoaded.clear();
+        mDatasetManager.clear();
+        if (mRenderer != null)
+            mRenderer.clearPoseFilters();
 
         return result;
     }
@@ -534,23 +820,68 @@ public class MetARMain extends Activity implements SampleApplicationControl,
 
     @Override
     public void onVuforiaUpdate(State state) {
-        if (mSwitchDatasetAsap) {
+        // The datasets imported in background are activated here, where the
+        // tracker is not using them
+        mDatasetImporter.activatePending();
+        mUpdateResults.setState(state);
+        mDatasetManager.update(mUpdateResults, SystemClock.uptimeMillis());
+
+        // Until the new dataset is loaded in background the current one is tracked
+        if (mSwitchDatasetAsap && !isStandbyLoading(mCurrentDatasetSelectionIndex)) {
             mSwitchDatasetAsap = false;
             TrackerManager tm = TrackerManager.getInstance();
             ObjectTracker ot = (ObjectTracker) tm.getTracker(ObjectTracker
                     .getClassType());
-            if (ot == null || mCurrentDataset == null
-                    || ot.getActiveDataSet(0) == null) {
+            if (ot == null || mCurrentDataset == null || ot.getActiveDataSet(0) == null) {
                 Log.d(TAG, "Failed to swap datasets");
+                mSwitchLatency.failed();
                 return;
             }
 
-            doUnloadTrackersData();
-            doLoadTrackersData();
+            swapDataset(ot, mCurrentDatasetSelectionIndex);
         }
     }
 
 
+    /**
+     * Switch to a dataset of the APK loaded in background, with a
+     * deactivate and activate, instead of destroying and loading again
+     * the current one. Call it from onVuforiaUpdate.
+     */
+    private void swapDataset(ObjectTracker ot, int index) {
+        if (index == mCurrentDatasetIndex) {
+            mSwitchLatency.failed();
+            return;
+        }
+        DataSet next = getBuiltInDataset(index);
+        if (next == null) {
+            Log.e(TAG, "Failed to swap datasets, " + mDatasetStrings.get(index) + " not loaded");
+            mSwitchLatency.failed();
+            return;
+        }
+
+        long swapStartNs = System.nanoTime();
+        if (!ot.deactivateDataSet(mCurrentDataset)) {
+            Log.e(TAG, "Failed to swap datasets, the current one is still active");
+            mSwitchLatency.failed();
+            return;
+        }
+        if (!ot.activateDataSet(next)) {
+            Log.e(TAG, "Failed to swap datasets, " + mDatasetStrings.get(index) + " not activated");
+            ot.activateDataSet(mCurrentDataset);
+            mSwitchLatency.failed();
+            return;
+        }
+        mSwitchLatency.switched(swapStartNs, System.nanoTime());
+
+        mCurrentDataset = next;
+        mCurrentDatasetIndex = index;
+        prepareTrackables(next);
+        mRenderer.clearPoseFilters();
+        Log.i(TAG, "Dataset switched to " + mDatasetStrings.get(index) + ": " + mSwitchLatency.format());
+    }
+
+
     /**
      * Create the Tracker with the TrackerManager. The tracker is
      * the process that recognize the markers in the video. For recognize
@@ -655,24 +986,71 @@ public class MetARMain extends Activity implements SampleApplicationControl,
 
             String path = data.getExtras().getString(FolderSearch.FILE_SELECTED);
 
-            /* TODO come gestire dataset multipli? Come rimuoverli*/
+            // Kept until the trackers are unloaded, mDatasetManager only
+            // chooses which of the imported datasets are active
             mDatasetStrings.add(path);
 
-            DatasetLoader datasetLoader = new DatasetLoader(MetARMain.this);
+            // Extracted and loaded in background, activated in onVuforiaUpdate
+            mDatasetImporter.importDataset(path);
+        }
+    }
 
-            if( path.endsWith(".xml")){
-                datasetLoader.loadAndActivateDataset(path, STORAGE_TYPE.STORAGE_ABSOLUTE);
-            }
-            else if( path.endsWith(".dat")){
-                datasetLoader.loadAndActivateDataset(path.substring(0, path.length()-4)+".xml", STORAGE_TYPE.STORAGE_ABSOLUTE);
-            }
-            else if( path.endsWith(".zip")){
-                // Extract the zip file and load the xml file inside it
-                datasetLoader.loadAndActivateDatasetFromZip(path, STORAGE_TYPE.STORAGE_ABSOLUTE);
-            }
+    /** Runs the calls of the DatasetImporter on the UI thread */
+    private final Executor mMainThread = new Executor() {
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(Runnable command) {
+            mHandler.post(command);
+        }
+    };
+
+    /** Shows the progress of the imports in the loading dialog */
+    private final DatasetImporter.Progress mImportProgress = new DatasetImporter.Progress() {
+        @Override
+        public void show() {
+            loadingDialogHandler.sendEmptyMessage(LoadingDialogHandler.SHOW_LOADING_DIALOG);
+        }
+
+        @Override
+        public void update(int percent) {
+            loadingDialogHandler.obtainMessage(
+                    LoadingDialogHandler.UPDATE_LOADING_PROGRESS, percent, 0).sendToTarget();
+        }
+
+        @Override
+        public void hide() {
+            loadingDialogHandler.sendEmptyMessage(LoadingDialogHandler.HIDE_LOADING_DIALOG);
+        }
+    };
+
+    /** Shows the result of the imports */
+    private final DatasetImporter.Listener<DataSet> mImportListener = new DatasetImporter.Listener<DataSet>() {
+        @Override
+        public void onDatasetImported(String path, DataSet dataSet) {
+            Log.d(TAG, "Dataset " + path + " activated");
             Toast.makeText(getApplicationContext(), getString(R.string.menu_load)+" " + path, Toast.LENGTH_LONG).show();
+        }
+
+        @Override
+        public void onImportFailed(String path) {
+            Toast.makeText(getApplicationContext(), getString(R.string.import_failed)+" " + path, Toast.LENGTH_LONG).show();
+        }
 
+        @Override
+        public void onImportCancelled(String path) {
+            Toast.makeText(getApplicationContext(), getString(R.string.import_cancelled)+" " + path, Toast.LENGTH_SHORT).show();
+        }
+    };
+
+    /** Back cancels the imports in progress before closing the app */
+    @Override
+    public void onBackPressed() {
+        if (mDatasetImporter.isImporting()) {
+            mDatasetImporter.cancel();
+            return;
         }
+        super.onBackPressed();
     }
 
     // This method sets the menu's settings
@@ -842,9 +1220,10 @@ public class MetARMain extends Activity implements SampleApplicationControl,
             default:
                 if (command >= mStartDatasetsIndex
                         && command < mStartDatasetsIndex + mDatasetsNumber) {
-                    mSwitchDatasetAsap = true;
+                    mSwitchLatency.requested(System.nanoTime());
                     mCurrentDatasetSelectionIndex = command
                             - mStartDatasetsIndex;
+                    mSwitchDatasetAsap = true;
                 }
                 break;
         }
@@ -858,22 +1237,23 @@ public class MetARMain extends Activity implements SampleApplicationControl,
      */
     public void updateCameraInfo( float[] cameraPos){
         float posScale = 1f;
-        String unit = " "+getString(R.string.unit_pos)+" ";
         double distance = Math.sqrt((cameraPos[12]*posScale*cameraPos[12]*posScale)+(cameraPos[13]*posScale*cameraPos[13]*posScale)
                 +(cameraPos[14]*posScale*cameraPos[14]*posScale));
         distance = Math.round(distance*100)*1d/100;
 
-        float[] rotation = MatrixUtils.toXYZAngle(cameraPos);
+        float[] rotation = mShownCameraRotation;
+        MatrixUtils.toXYZAngle(cameraPos, rotation);
         float a = (float) (180f/Math.PI);
         rotation[0] += 0*Math.PI;rotation[1] += 0.0f*Math.PI;rotation[2] *= -1.0f;
 
-        Log.d(TAG,"Cam Pos: X: "+cameraPos[12]*posScale+unit+"\n Y: "+cameraPos[13]*posScale+unit+"\n Z: "+cameraPos[14]*posScale+unit
-                +"\n"+getString(R.string.distance)+": "+distance+unit);
-        this.txtCamPos.setText(String.format(Locale.getDefault(), "Cam Pos: X: %.4f"+unit+"\n Y: %.4f"+unit+"\n Z: %.4f"+unit
-                +"\n"+getString(R.string.distance)+": %.4f"+unit, cameraPos[12]*posScale, cameraPos[13]*posScale, cameraPos[14]*posScale, distance));
-        if(this.txtCamDir.getVisibility()!=View.GONE)this.txtCamDir./*setVisibility(View.GONE);/*/setText(String.format(Locale.getDefault(), "Rot X %.3f: ",(MatrixUtils.simplifyAngleRad(rotation[0])*a)));
-        if(this.txtCamUp.getVisibility()!=View.GONE)this.txtCamUp./*setVisibility(View.GONE);/*/setText(String.format(Locale.getDefault(), "Rot Y: %.3f",(MatrixUtils.simplifyAngleRad(rotation[1])*a)));
-        if(this.txtCamRight.getVisibility()!=View.GONE)this.txtCamRight./*setVisibility(View.GONE);/*/setText(String.format(Locale.getDefault(), "Rot Z: %.3f", MatrixUtils.simplifyAngleRad(rotation[2])*a));
+        if (DebugTrace.COMPILE_LEVEL >= DebugTrace.VERBOSE && mCameraInfoTrace.sample())
+            Log.v(TAG, mPoseText.position(cameraPos[12]*posScale, cameraPos[13]*posScale,
+                    cameraPos[14]*posScale, distance).toString());
+        this.txtCamPos.setText(mPoseText.position(cameraPos[12]*posScale, cameraPos[13]*posScale,
+                cameraPos[14]*posScale, distance));
+        if(this.txtCamDir.getVisibility()!=View.GONE)this.txtCamDir.setText(mPoseText.rotation("Rot X: ", MatrixUtils.simplifyAngleRad(rotation[0])*a));
+        if(this.txtCamUp.getVisibility()!=View.GONE)this.txtCamUp.setText(mPoseText.rotation("Rot Y: ", MatrixUtils.simplifyAngleRad(rotation[1])*a));
+        if(this.txtCamRight.getVisibility()!=View.GONE)this.txtCamRight.setText(mPoseText.rotation("Rot Z: ", MatrixUtils.simplifyAngleRad(rotation[2])*a));
     }
 
     /**
@@ -891,13 +1271,41 @@ public class MetARMain extends Activity implements SampleApplicationControl,
         return mDatasetLoaded;
     }
 
-    public void updateCameraInfoOnUIThread( final float[] cameraPos){
-        runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                updateCameraInfo( cameraPos);
-            }
-        });
+    /**
+     * The manager of the imported datasets, it decides which are active
+     * @return the mDatasetManager
+     */
+    public DatasetManager<DataSet> getDatasetManager() {
+        return mDatasetManager;
+    }
+
+    /**
+     * The cache of the extracted dataset zips, in the private files of the app
+     * @return the mExtractionCache
+     */
+    public synchronized ExtractionCache getExtractionCache() {
+        if (mExtractionCache == null)
+            mExtractionCache = new ExtractionCache(new File(getFilesDir(), DATASETS_FOLDER),
+                    ExtractionCache.DEFAULT_MAX_BYTES, new ZipExtractor());
+        return mExtractionCache;
+    }
+
+    /**
+     * Called by the renderer every frame from the GL thread. The position is
+     * copied in a mailbox, without locking nor posting to the UI thread,
+     * which shows the latest one at its own rate (see {@link #setCameraInfoRate}).
+     * @param cameraPos the position matrix of the camera, can be reused by the caller
+     */
+    public void updateCameraInfoOnUIThread( float[] cameraPos){
+        mCameraPosMailbox.publish(cameraPos);
+    }
+
+    /**
+     * Set how often the camera position is shown, from the UI thread
+     * @param hz updates per second, 10 by default
+     */
+    public void setCameraInfoRate(float hz) {
+        mCameraInfoIntervalMs = Math.max(1, Math.round(1000 / hz));
     }
 
     private void showToast(String text) {
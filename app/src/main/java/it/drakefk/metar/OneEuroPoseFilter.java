@@ -0,0 +1,105 @@
+package it.drakefk.metar;
+
+/**
+ * One Euro filter (Casiez, Roussel, Vogel, CHI 2012) applied to a pose: a
+ * low pass filter whose cutoff frequency grows with the speed, so a still
+ * target is strongly smoothed while a moving one follows with little lag.
+ * <p>Each axis of the translation is filtered on its own. The rotation is
+ * filtered as a quaternion: its speed sets the cutoff and the filtered
+ * rotation moves towards the new one with a slerp.</p>
+ * <p>The default parameters are meant for poses in millimetres. Lower
+ * minCutoff to reduce the jitter when still, raise beta to reduce the lag
+ * when moving.</p>
+ */
+public class OneEuroPoseFilter implements PoseFilter {
+
+    public static final float DEFAULT_MIN_CUTOFF = 1.0f;
+    public static final float DEFAULT_TRANSLATION_BETA = 0.05f;
+    public static final float DEFAULT_ROTATION_BETA = 2.0f;
+    public static final float DEFAULT_DERIVATIVE_CUTOFF = 1.0f;
+
+    private final float mMinCutoff;
+    private final float mTranslationBeta;
+    private final float mRotationBeta;
+    private final float mDerivativeCutoff;
+
+    private boolean mInitialized = false;
+    private final float[] mTranslation = new float[3];
+    private final float[] mTranslationSpeed = new float[3];
+    private final float[] mRotation = new float[4];
+    private final float[] mRotationSpeed = new float[4];
+    /** Rotation of the pose being filtered */
+    private final float[] mRawRotation = new float[4];
+
+    public OneEuroPoseFilter() {
+        this(DEFAULT_MIN_CUTOFF, DEFAULT_TRANSLATION_BETA, DEFAULT_ROTATION_BETA,
+                DEFAULT_DERIVATIVE_CUTOFF);
+    }
+
+    /**
+     * @param minCutoff cutoff frequency when still, in Hz
+     * @param translationBeta how much the translation speed raises the cutoff
+     * @param rotationBeta how much the rotation speed raises the cutoff
+     * @param derivativeCutoff cutoff frequency of the speeds, in Hz
+     */
+    public OneEuroPoseFilter(float minCutoff, float translationBeta, float rotationBeta,
+                             float derivativeCutoff) {
+        this.mMinCutoff = minCutoff;
+        this.mTranslationBeta = translationBeta;
+        this.mRotationBeta = rotationBeta;
+        this.mDerivativeCutoff = derivativeCutoff;
+    }
+
+    @Override
+    public void reset() {
+        mInitialized = false;
+    }
+
+    @Override
+    public void filter(float[] pose, float dt) {
+        QuaternionMath.fromPose(pose, mRawRotation);
+        if (!mInitialized) {
+            mTranslation[0] = pose[3];
+            mTranslation[1] = pose[7];
+            mTranslation[2] = pose[11];
+            System.arraycopy(mRawRotation, 0, mRotation, 0, 4);
+            for (int i = 0; i < 3; i++)
+                mTranslationSpeed[i] = 0;
+            for (int i = 0; i < 4; i++)
+                mRotationSpeed[i] = 0;
+            mInitialized = true;
+            return;
+        }
+
+        float speedAlpha = alpha(mDerivativeCutoff, dt);
+        pose[3] = filterAxis(0, pose[3], dt, speedAlpha);
+        pose[7] = filterAxis(1, pose[7], dt, speedAlpha);
+        pose[11] = filterAxis(2, pose[11], dt, speedAlpha);
+
+        // q and -q are the same rotation, compare with the closest one
+        float sign = QuaternionMath.dot(mRotation, mRawRotation) < 0 ? -1 : 1;
+        float speed2 = 0;
+        for (int i = 0; i < 4; i++) {
+            float speed = (sign * mRawRotation[i] - mRotation[i]) / dt;
+            mRotationSpeed[i] += speedAlpha * (speed - mRotationSpeed[i]);
+            speed2 += mRotationSpeed[i] * mRotationSpeed[i];
+        }
+        float cutoff = mMinCutoff + mRotationBeta * (float) Math.sqrt(speed2);
+        QuaternionMath.slerp(mRotation, mRawRotation, alpha(cutoff, dt), mRotation);
+        QuaternionMath.toPose(mRotation, pose);
+    }
+
+    private float filterAxis(int axis, float value, float dt, float speedAlpha) {
+        float speed = (value - mTranslation[axis]) / dt;
+        mTranslationSpeed[axis] += speedAlpha * (speed - mTranslationSpeed[axis]);
+        float cutoff = mMinCutoff + mTranslationBeta * Math.abs(mTranslationSpeed[axis]);
+        mTranslation[axis] += alpha(cutoff, dt) * (value - mTranslation[axis]);
+        return mTranslation[axis];
+    }
+
+    /** Smoothing factor of a first order low pass filter */
+    static float alpha(float cutoff, float dt) {
+        float tau = (float) (1 / (2 * Math.PI * cutoff));
+        return 1 / (1 + tau / dt);
+    }
+}
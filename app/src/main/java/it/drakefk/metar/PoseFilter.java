@@ -0,0 +1,20 @@
+package it.drakefk.metar;
+
+/**
+ * Smooths the poses of a single trackable over time, to remove the jitter
+ * of the tracking. A filter keeps its own state, so each trackable needs
+ * its own instance, see {@link PoseFilterBank}.
+ * <p>Implementations must not allocate in {@link #filter}.</p>
+ */
+public interface PoseFilter {
+
+    /** Forget the previous poses, the next one is taken as is */
+    void reset();
+
+    /**
+     * Filter the next pose of the trackable
+     * @param pose the 12 values of the 3x4 row major pose, replaced by the filtered pose
+     * @param dt seconds since the previous pose, greater than 0
+     */
+    void filter(float[] pose, float dt);
+}
@@ -0,0 +1,99 @@
+package it.drakefk.metar;
+
+/**
+ * One {@link PoseFilter} for each trackable, created on first sight and
+ * reset when the trackable was lost for more than {@link #RESET_AFTER_NS},
+ * so a target found again does not slide from where it was lost.
+ * <p>A pose filtered again with the same frame time (e.g. for the second
+ * view in stereo) gets the same result, the filter is advanced once per
+ * frame. The trackables are kept in arrays searched linearly, nothing is
+ * allocated once every trackable was seen. It must be used only from the
+ * GL thread.</p>
+ */
+public class PoseFilterBank {
+
+    /** Trackables lost for longer than this start from their new pose */
+    public static final long RESET_AFTER_NS = 500000000L;
+    private static final int INITIAL_CAPACITY = 4;
+
+    /** Creates the filter of a trackable */
+    public interface Factory {
+        PoseFilter create();
+    }
+
+    private final Factory mFactory;
+    private int mCount = 0;
+    private int[] mIds = new int[INITIAL_CAPACITY];
+    private PoseFilter[] mFilters = new PoseFilter[INITIAL_CAPACITY];
+    private long[] mLastTimes = new long[INITIAL_CAPACITY];
+    private float[][] mLastPoses = new float[INITIAL_CAPACITY][12];
+
+    public PoseFilterBank(Factory factory) {
+        this.mFactory = factory;
+    }
+
+    /**
+     * Filter the pose of a trackable in place
+     * @param trackableId the id of the trackable
+     * @param frameTimeNs the time of the frame, System.nanoTime() based
+     * @param pose the 12 values of the 3x4 row major pose
+     */
+    public void filter(int trackableId, long frameTimeNs, float[] pose) {
+        int index = indexOf(trackableId);
+        if (index < 0)
+            index = add(trackableId);
+
+        PoseFilter filter = mFilters[index];
+        long dtNs = frameTimeNs - mLastTimes[index];
+        if (dtNs == 0) {
+            System.arraycopy(mLastPoses[index], 0, pose, 0, 12);
+            return;
+        }
+        if (dtNs < 0 || dtNs > RESET_AFTER_NS)
+            filter.reset();
+
+        filter.filter(pose, dtNs > 0 ? dtNs / 1e9f : 0);
+        mLastTimes[index] = frameTimeNs;
+        System.arraycopy(pose, 0, mLastPoses[index], 0, 12);
+    }
+
+    /** Forget all the trackables, e.g. when the dataset changes */
+    public void clear() {
+        for (int i = 0; i < mCount; i++)
+            mFilters[i] = null;
+        mCount = 0;
+    }
+
+    private int indexOf(int trackableId) {
+        for (int i = 0; i < mCount; i++) {
+            if (mIds[i] == trackableId)
+                return i;
+        }
+        return -1;
+    }
+
+    private int add(int trackableId) {
+        if (mCount == mIds.length) {
+            int capacity = mCount * 2;
+            int[] ids = new int[capacity];
+            PoseFilter[] filters = new PoseFilter[capacity];
+            long[] lastTimes = new long[capacity];
+            float[][] lastPoses = new float[capacity][];
+            System.arraycopy(mIds, 0, ids, 0, mCount);
+            System.arraycopy(mFilters, 0, filters, 0, mCount);
+            System.arraycopy(mLastTimes, 0, lastTimes, 0, mCount);
+            System.arraycopy(mLastPoses, 0, lastPoses, 0, mCount);
+            for (int i = mCount; i < capacity; i++)
+                lastPoses[i] = new float[12];
+            mIds = ids;
+            mFilters = filters;
+            mLastTimes = lastTimes;
+            mLastPoses = lastPoses;
+        }
+        mIds[mCount] = trackableId;
+        mFilters[mCount] = mFactory.create();
+        // Far in the past, so the first pose resets the new filter
+        mLastTimes[mCount] = Long.MIN_VALUE / 2;
+        return mCount++;
+    }
+}
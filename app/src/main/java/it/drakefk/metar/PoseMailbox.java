@@ -0,0 +1,58 @@
+package it.drakefk.metar;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single-slot mailbox holding the latest camera pose published by the GL
+ * thread, read by the UI thread at its own pace.
+ * <p>It is a triple buffer: the writer fills its back buffer and swaps it
+ * with the middle one, the reader swaps its front buffer with the middle
+ * one only if a new pose was published. The swaps are a single atomic
+ * exchange, so neither side ever waits for the other, nothing is
+ * allocated and the reader never sees a half written pose. Poses
+ * published between two reads are overwritten, only the latest one is
+ * read.</p>
+ * <p>One thread may publish and one thread may take.</p>
+ */
+public class PoseMailbox {
+
+    private static final int INDEX_MASK = 3;
+    /** Set in the middle index when it holds a pose not read yet */
+    private static final int FRESH = 4;
+
+    private final float[][] mBuffers;
+    private final AtomicInteger mMiddle = new AtomicInteger(1);
+    /** Owned by the writer */
+    private int mBack = 0;
+    /** Owned by the reader */
+    private int mFront = 2;
+
+    /**
+     * @param size the number of values of a pose, e.g. 16 for a 4x4 matrix
+     */
+    public PoseMailbox(int size) {
+        mBuffers = new float[3][size];
+    }
+
+    /**
+     * Replace the pose in the mailbox, never blocks
+     * @param pose copied, the caller can reuse it
+     */
+    public void publish(float[] pose) {
+        System.arraycopy(pose, 0, mBuffers[mBack], 0, mBuffers[mBack].length);
+        mBack = mMiddle.getAndSet(mBack | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Take the latest pose if it was not taken yet, never blocks
+     * @param out where to copy the pose
+     * @return false if no pose was published since the last take
+     */
+    public boolean take(float[] out) {
+        if ((mMiddle.get() & FRESH) == 0)
+            return false;
+        mFront = mMiddle.getAndSet(mFront) & INDEX_MASK;
+        System.arraycopy(mBuffers[mFront], 0, out, 0, mBuffers[mFront].length);
+        return true;
+    }
+}
@@ -0,0 +1,81 @@
+package it.drakefk.metar;
+
+import java.text.DecimalFormatSymbols;
+
+/**
+ * Builds the texts of the camera pose HUD in a reused StringBuilder, with
+ * the labels resolved once and the numbers appended digit by digit instead
+ * of going through String.format, which parses the pattern and allocates a
+ * Formatter at every call.
+ * <p>The returned text is only valid until the next call; TextView.setText
+ * copies it. Must be used from a single thread (the UI thread).</p>
+ */
+public class PoseText {
+
+    private static final long[] POWERS_OF_TEN = { 1, 10, 100, 1000, 10000, 100000, 1000000 };
+
+    private final StringBuilder mText = new StringBuilder(96);
+    private final String mUnit;
+    private final String mDistanceLabel;
+    private final char mDecimalSeparator;
+
+    /**
+     * @param unit the unit of the positions, e.g. "mm"
+     * @param distanceLabel the label of the distance
+     */
+    public PoseText(String unit, String distanceLabel) {
+        this(unit, distanceLabel, DecimalFormatSymbols.getInstance().getDecimalSeparator());
+    }
+
+    public PoseText(String unit, String distanceLabel, char decimalSeparator) {
+        this.mUnit = " " + unit + " ";
+        this.mDistanceLabel = distanceLabel;
+        this.mDecimalSeparator = decimalSeparator;
+    }
+
+    /** Position of the camera and its distance from the target, 4 decimals */
+    public CharSequence position(float x, float y, float z, double distance) {
+        mText.setLength(0);
+        mText.append("Cam Pos: X: ");
+        appendFixed(mText, x, 4, mDecimalSeparator);
+        mText.append(mUnit).append("\n Y: ");
+        appendFixed(mText, y, 4, mDecimalSeparator);
+        mText.append(mUnit).append("\n Z: ");
+        appendFixed(mText, z, 4, mDecimalSeparator);
+        mText.append(mUnit).append('\n').append(mDistanceLabel).append(": ");
+        appendFixed(mText, distance, 4, mDecimalSeparator);
+        return mText.append(mUnit);
+    }
+
+    /** A rotation angle in degrees, 3 decimals */
+    public CharSequence rotation(String label, float degrees) {
+        mText.setLength(0);
+        mText.append(label);
+        appendFixed(mText, degrees, 3, mDecimalSeparator);
+        return mText;
+    }
+
+    /**
+     * Append value rounded half up to the given decimals, like %.Nf
+     * @param decimals from 0 to 6
+     */
+    public static void appendFixed(StringBuilder sb, double value, int decimals, char separator) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            sb.append(value);
+            return;
+        }
+        long scale = POWERS_OF_TEN[decimals];
+        long scaled = Math.round(Math.abs(value) * scale);
+        if (value < 0 && scaled != 0)
+            sb.append('-');
+        sb.append(scaled / scale);
+        if (decimals == 0)
+            return;
+        sb.append(separator);
+        long fraction = scaled % scale;
+        // Leading zeros of the fraction
+        for (long p = scale / 10; p > 1 && fraction < p; p /= 10)
+            sb.append('0');
+        sb.append(fraction);
+    }
+}
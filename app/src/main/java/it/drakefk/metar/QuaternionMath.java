@@ -0,0 +1,290 @@
+package it.drakefk.metar;
+
+/**
+ * Rotation math over plain float arrays, based on unit quaternions: the
+ * conversions from and to the pose and OpenGL matrices, the axis-angle and
+ * Euler angles decompositions, composition and interpolation.
+ * <p>A quaternion is stored as {x, y, z, w}. A pose is the 3x4 row major
+ * matrix returned by Vuforia: the rotation is in the first 3 columns, the
+ * translation in the last one. A matrix is a 4x4 column major OpenGL
+ * matrix. The results are written in caller-supplied arrays, nothing is
+ * allocated, and the methods are thread safe.</p>
+ */
+public final class QuaternionMath {
+
+    /** Below this angle between two quaternions slerp falls back to a normalized lerp */
+    private static final float SLERP_EPSILON = 1e-4f;
+    /** Below this sine of half the angle the axis of a rotation is undefined */
+    private static final float AXIS_EPSILON = 1e-6f;
+    private static final float HALF_PI = (float) (Math.PI / 2);
+
+    private QuaternionMath() {
+    }
+
+    /**
+     * Extract the rotation of a pose as a unit quaternion, branching on the
+     * largest diagonal term so the square root is never taken of a small
+     * number (Shepperd's method)
+     * @param pose the 12 values of the 3x4 row major pose
+     * @param q where to write the 4 values of the quaternion
+     */
+    public static void fromPose(float[] pose, float[] q) {
+        fromRotation(pose[0], pose[1], pose[2],
+                pose[4], pose[5], pose[6],
+                pose[8], pose[9], pose[10], q);
+    }
+
+    /**
+     * Extract the rotation of an OpenGL matrix as a unit quaternion, see
+     * {@link #fromPose}
+     * @param m the 16 values of the 4x4 column major matrix
+     * @param q where to write the 4 values of the quaternion
+     */
+    public static void fromMatrix(float[] m, float[] q) {
+        fromRotation(m[0], m[4], m[8],
+                m[1], m[5], m[9],
+                m[2], m[6], m[10], q);
+    }
+
+    private static void fromRotation(float r00, float r01, float r02,
+                                     float r10, float r11, float r12,
+                                     float r20, float r21, float r22, float[] q) {
+        float trace = r00 + r11 + r22;
+        float s;
+        if (trace > 0) {
+            s = (float) Math.sqrt(trace + 1) * 2;
+            q[0] = (r21 - r12) / s;
+            q[1] = (r02 - r20) / s;
+            q[2] = (r10 - r01) / s;
+            q[3] = 0.25f * s;
+        } else if (r00 > r11 && r00 > r22) {
+            s = (float) Math.sqrt(1 + r00 - r11 - r22) * 2;
+            q[0] = 0.25f * s;
+            q[1] = (r01 + r10) / s;
+            q[2] = (r02 + r20) / s;
+            q[3] = (r21 - r12) / s;
+        } else if (r11 > r22) {
+            s = (float) Math.sqrt(1 + r11 - r00 - r22) * 2;
+            q[0] = (r01 + r10) / s;
+            q[1] = 0.25f * s;
+            q[2] = (r12 + r21) / s;
+            q[3] = (r02 - r20) / s;
+        } else {
+            s = (float) Math.sqrt(1 + r22 - r00 - r11) * 2;
+            q[0] = (r02 + r20) / s;
+            q[1] = (r12 + r21) / s;
+            q[2] = 0.25f * s;
+            q[3] = (r10 - r01) / s;
+        }
+        normalize(q);
+    }
+
+    /**
+     * Write the rotation of a unit quaternion in a pose, the translation
+     * column is left untouched
+     * @param q the 4 values of the quaternion
+     * @param pose the 12 values of the 3x4 row major pose
+     */
+    public static void toPose(float[] q, float[] pose) {
+        float x = q[0], y = q[1], z = q[2], w = q[3];
+        pose[0] = 1 - 2 * (y * y + z * z);
+        pose[1] = 2 * (x * y - z * w);
+        pose[2] = 2 * (x * z + y * w);
+        pose[4] = 2 * (x * y + z * w);
+        pose[5] = 1 - 2 * (x * x + z * z);
+        pose[6] = 2 * (y * z - x * w);
+        pose[8] = 2 * (x * z - y * w);
+        pose[9] = 2 * (y * z + x * w);
+        pose[10] = 1 - 2 * (x * x + y * y);
+    }
+
+    /**
+     * Write the rotation of a unit quaternion in an OpenGL matrix, the
+     * translation and the last row are left untouched
+     * @param q the 4 values of the quaternion
+     * @param m the 16 values of the 4x4 column major matrix
+     */
+    public static void toMatrix(float[] q, float[] m) {
+        float x = q[0], y = q[1], z = q[2], w = q[3];
+        m[0] = 1 - 2 * (y * y + z * z);
+        m[4] = 2 * (x * y - z * w);
+        m[8] = 2 * (x * z + y * w);
+        m[1] = 2 * (x * y + z * w);
+        m[5] = 1 - 2 * (x * x + z * z);
+        m[9] = 2 * (y * z - x * w);
+        m[2] = 2 * (x * z - y * w);
+        m[6] = 2 * (y * z + x * w);
+        m[10] = 1 - 2 * (x * x + y * y);
+    }
+
+    /**
+     * @param angle radians, counterclockwise around the axis
+     * @param q where to write the 4 values of the quaternion
+     */
+    public static void fromAxisAngle(float angle, float x, float y, float z, float[] q) {
+        float length = (float) Math.sqrt(x * x + y * y + z * z);
+        if (length == 0) {
+            q[0] = q[1] = q[2] = 0;
+            q[3] = 1;
+            return;
+        }
+        float s = (float) Math.sin(angle / 2) / length;
+        q[0] = x * s;
+        q[1] = y * s;
+        q[2] = z * s;
+        q[3] = (float) Math.cos(angle / 2);
+    }
+
+    /**
+     * Decompose a unit quaternion in a rotation angle around an axis. The
+     * angle comes from atan2, accurate also near 0 and 180 degrees where
+     * acos of the trace of the matrix is not.
+     * @param q the 4 values of the quaternion, can be the same array as out
+     * @param out where to write {angle, x, y, z}, angle from 0 to PI and a
+     *            unit axis; the axis is x when the angle is 0
+     */
+    public static void toAxisAngle(float[] q, float[] out) {
+        // q and -q are the same rotation, the one with w >= 0 has angle <= PI
+        float sign = q[3] < 0 ? -1 : 1;
+        float x = sign * q[0], y = sign * q[1], z = sign * q[2], w = sign * q[3];
+        float sin = (float) Math.sqrt(x * x + y * y + z * z);
+        out[0] = 2 * (float) Math.atan2(sin, w);
+        if (sin < AXIS_EPSILON) {
+            out[1] = 1;
+            out[2] = 0;
+            out[3] = 0;
+        } else {
+            out[1] = x / sin;
+            out[2] = y / sin;
+            out[3] = z / sin;
+        }
+    }
+
+    /**
+     * Euler angles of the rotation R = Rz(rotZ) * Ry(rotY) * Rx(rotX), the
+     * same as {@link MatrixUtils#toXYZAngle(float[], float[])} on its matrix
+     * @param out where to write {rotX, rotY, rotZ} in radians, rotY from -PI/2 to PI/2
+     */
+    public static void toEulerXYZ(float[] q, float[] out) {
+        float x = q[0], y = q[1], z = q[2], w = q[3];
+        float r21 = 2 * (y * z + x * w), r22 = 1 - 2 * (x * x + y * y);
+        out[0] = (float) Math.atan2(r21, r22);
+        out[1] = (float) Math.atan2(2 * (y * w - x * z), Math.sqrt(r21 * r21 + r22 * r22));
+        out[2] = (float) Math.atan2(2 * (x * y + z * w), 1 - 2 * (y * y + z * z));
+    }
+
+    /**
+     * Euler angles of the rotation R = Rx(rotX) * Ry(rotY) * Rz(rotZ), the
+     * same as {@link MatrixUtils#toZYXAngle(float[], float[])} on its matrix
+     * @param out where to write {rotX, rotY, rotZ} in radians, rotY from -PI/2 to PI/2
+     */
+    public static void toEulerZYX(float[] q, float[] out) {
+        float x = q[0], y = q[1], z = q[2], w = q[3];
+        float r12 = 2 * (y * z - x * w), r22 = 1 - 2 * (x * x + y * y);
+        out[0] = (float) Math.atan2(-r12, r22);
+        out[1] = (float) Math.atan2(2 * (x * z + y * w), Math.sqrt(r12 * r12 + r22 * r22));
+        out[2] = (float) Math.atan2(2 * (z * w - x * y), 1 - 2 * (y * y + z * z));
+    }
+
+    /**
+     * Compose two rotations, out = a * b rotates by b first and then by a
+     * @param out can be the same array of a or b
+     */
+    public static void multiply(float[] a, float[] b, float[] out) {
+        float x = a[3] * b[0] + a[0] * b[3] + a[1] * b[2] - a[2] * b[1];
+        float y = a[3] * b[1] - a[0] * b[2] + a[1] * b[3] + a[2] * b[0];
+        float z = a[3] * b[2] + a[0] * b[1] - a[1] * b[0] + a[2] * b[3];
+        float w = a[3] * b[3] - a[0] * b[0] - a[1] * b[1] - a[2] * b[2];
+        out[0] = x;
+        out[1] = y;
+        out[2] = z;
+        out[3] = w;
+    }
+
+    /** The inverse rotation of a unit quaternion, out can be the same array of q */
+    public static void conjugate(float[] q, float[] out) {
+        out[0] = -q[0];
+        out[1] = -q[1];
+        out[2] = -q[2];
+        out[3] = q[3];
+    }
+
+    /**
+     * Rotate a 3D vector by a unit quaternion
+     * @param out can be the same array of v
+     */
+    public static void rotate(float[] q, float[] v, float[] out) {
+        // v + 2w (u x v) + 2 u x (u x v), with u the vector part of q
+        float x = q[0], y = q[1], z = q[2], w = q[3];
+        float tx = 2 * (y * v[2] - z * v[1]);
+        float ty = 2 * (z * v[0] - x * v[2]);
+        float tz = 2 * (x * v[1] - y * v[0]);
+        float rx = v[0] + w * tx + (y * tz - z * ty);
+        float ry = v[1] + w * ty + (z * tx - x * tz);
+        float rz = v[2] + w * tz + (x * ty - y * tx);
+        out[0] = rx;
+        out[1] = ry;
+        out[2] = rz;
+    }
+
+    /**
+     * Fold an angle in [-PI/2, PI/2] like asin(sin(angle)), without the
+     * trigonometric functions
+     */
+    public static float foldAngle(float angle) {
+        float wrapped = (float) Math.IEEEremainder(angle, 2 * Math.PI);
+        if (wrapped > HALF_PI)
+            return (float) Math.PI - wrapped;
+        if (wrapped < -HALF_PI)
+            return (float) -Math.PI - wrapped;
+        return wrapped;
+    }
+
+    public static float dot(float[] a, float[] b) {
+        return a[0] * b[0] + a[1] * b[1] + a[2] * b[2] + a[3] * b[3];
+    }
+
+    public static void normalize(float[] q) {
+        float length = (float) Math.sqrt(dot(q, q));
+        if (length == 0) {
+            q[0] = q[1] = q[2] = 0;
+            q[3] = 1;
+            return;
+        }
+        q[0] /= length;
+        q[1] /= length;
+        q[2] /= length;
+        q[3] /= length;
+    }
+
+    /**
+     * Spherical interpolation along the shortest arc between two unit quaternions
+     * @param t 0 for a, 1 for b
+     * @param out can be the same array of a or b
+     */
+    public static void slerp(float[] a, float[] b, float t, float[] out) {
+        float cos = dot(a, b);
+        // q and -q are the same rotation, take the shortest way
+        float sign = 1;
+        if (cos < 0) {
+            cos = -cos;
+            sign = -1;
+        }
+        float wa, wb;
+        if (1 - cos < SLERP_EPSILON) {
+            wa = 1 - t;
+            wb = t;
+        } else {
+            float angle = (float) Math.acos(cos);
+            float sin = (float) Math.sin(angle);
+            wa = (float) Math.sin((1 - t) * angle) / sin;
+            wb = (float) Math.sin(t * angle) / sin;
+        }
+        wb *= sign;
+        out[0] = wa * a[0] + wb * b[0];
+        out[1] = wa * a[1] + wb * b[1];
+        out[2] = wa * a[2] + wb * b[2];
+        out[3] = wa * a[3] + wb * b[3];
+        normalize(out);
+    }
+}
@@ -0,0 +1,105 @@
+package it.drakefk.metar;
+
+/**
+ * The matrices used by MetARGLRenderer to draw a frame, allocated once
+ * and reused every frame so the steady-state render loop does not allocate.
+ * <p>The pool only grows when a frame contains more trackables than any
+ * previous frame. It must be used only from the GL thread.</p>
+ */
+public class RenderScratchPool {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    /** The 3x4 pose of the trackable being processed */
+    private final float[] mPose = new float[12];
+    /** The model view matrix of the trackable being processed */
+    private final float[] mModelView = new float[16];
+    /** The position of the camera in the world of the first trackable */
+    private final float[] mCameraPosition = new float[16];
+    private boolean mHasCameraPosition = false;
+    /** Smooths the poses before the matrices are computed, null to use them as they are */
+    private PoseFilterBank mPoseFilters;
+
+    /** One model view projection matrix for each trackable of the frame */
+    private float[][] mModelViewProjections = new float[INITIAL_CAPACITY][16];
+    private int mCount = 0;
+
+    /**
+     * Set the filters applied to the poses of the trackables, so both the
+     * augmentation and the camera position use the smoothed poses
+     * @param poseFilters null to not filter the poses
+     */
+    public void setPoseFilters(PoseFilterBank poseFilters) {
+        mPoseFilters = poseFilters;
+    }
+
+    /** Same as {@link #prepareFrame(TrackableResultSource, float[], float, long)} at the current time */
+    public int prepareFrame(TrackableResultSource source, float[] projectionMatrix, float objectScale) {
+        return prepareFrame(source, projectionMatrix, objectScale, System.nanoTime());
+    }
+
+    /**
+     * Compute the matrices of all the trackables of the frame
+     * @param source the results of the current frame
+     * @param projectionMatrix the projection matrix of the current view
+     * @param objectScale the scale applied to the model drawn on the trackables
+     * @param frameTimeNs the time of the frame, the same for all its views,
+     *                    used by the pose filters
+     * @return the number of trackables processed
+     */
+    public int prepareFrame(TrackableResultSource source, float[] projectionMatrix, float objectScale,
+                            long frameTimeNs) {
+        mCount = source.getNumTrackableResults();
+        mHasCameraPosition = false;
+        ensureCapacity(mCount);
+
+        for (int i = 0; i < mCount; i++) {
+            source.getPose(i, mPose);
+            if (mPoseFilters != null)
+                mPoseFilters.filter(source.getTrackableId(i), frameTimeNs, mPose);
+            MatrixUtils.poseToGLMatrix(mPose, mModelView);
+
+            if (i == 0) {
+                // The camera position is shown for the first trackable only,
+                // see MetARGLRenderer.getCameraPositionMatrix
+                mHasCameraPosition = MatrixUtils.invertM(mCameraPosition, mModelView);
+            }
+
+            MatrixUtils.translateM(mModelView, 0.0f, 0.0f, objectScale);
+            MatrixUtils.scaleM(mModelView, objectScale, objectScale, objectScale);
+            MatrixUtils.multiplyMM(mModelViewProjections[i], projectionMatrix, mModelView);
+        }
+        return mCount;
+    }
+
+    /** @return the model view projection matrix of the trackable at index, valid until the next frame */
+    public float[] getModelViewProjection(int index) {
+        return mModelViewProjections[index];
+    }
+
+    /** @return true if the last frame contained a trackable to compute the camera position */
+    public boolean hasCameraPosition() {
+        return mHasCameraPosition;
+    }
+
+    /** @return the camera position of the first trackable of the last frame, valid until the next frame */
+    public float[] getCameraPosition() {
+        return mCameraPosition;
+    }
+
+    /** @return the number of trackables the pool can hold without allocating */
+    public int getCapacity() {
+        return mModelViewProjections.length;
+    }
+
+    private void ensureCapacity(int count) {
+        if (count <= mModelViewProjections.length)
+            return;
+
+        float[][] grown = new float[Math.max(count, mModelViewProjections.length * 2)][];
+        System.arraycopy(mModelViewProjections, 0, grown, 0, mModelViewProjections.length);
+        for (int i = mModelViewProjections.length; i < grown.length; i++)
+            grown[i] = new float[16];
+        mModelViewProjections = grown;
+    }
+}
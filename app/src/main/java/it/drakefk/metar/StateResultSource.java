@@ -0,0 +1,60 @@
+package it.drakefk.metar;
+
+import com.vuforia.State;
+import com.vuforia.Trackable;
+import com.vuforia.TrackableResult;
+
+/**
+ * TrackableResultSource backed by the Vuforia State of the current frame.
+ * <p>The same instance is reused every frame with setState, the State should
+ * not be cached outside the render call that received it.</p>
+ */
+public class StateResultSource implements TrackableResultSource {
+
+    private State mState;
+    /** The last result requested, to avoid to ask it again to Vuforia for the name and the pose */
+    private TrackableResult mResult;
+    private int mResultIndex = -1;
+
+    /** Set the state of the frame that is going to be rendered */
+    public void setState(State state) {
+        mState = state;
+        mResult = null;
+        mResultIndex = -1;
+    }
+
+    @Override
+    public int getNumTrackableResults() {
+        return mState.getNumTrackableResults();
+    }
+
+    @Override
+    public void getPose(int index, float[] pose) {
+        // Matrix34F.getData() returns a copy made by the native side
+        System.arraycopy(getResult(index).getPose().getData(), 0, pose, 0, 12);
+    }
+
+    @Override
+    public int getTrackableId(int index) {
+        return getResult(index).getTrackable().getId();
+    }
+
+    @Override
+    public String getTrackableName(int index) {
+        return getResult(index).getTrackable().getName();
+    }
+
+    @Override
+    public Object getTrackableUserData(int index) {
+        Trackable trackable = getResult(index).getTrackable();
+        return trackable.getUserData();
+    }
+
+    private TrackableResult getResult(int index) {
+        if (index != mResultIndex) {
+            mResult = mState.getTrackableResult(index);
+            mResultIndex = index;
+        }
+        return mResult;
+    }
+}
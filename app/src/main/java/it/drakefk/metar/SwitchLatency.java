@@ -0,0 +1,75 @@
+package it.drakefk.metar;
+
+import java.util.Locale;
+
+/**
+ * Measures the dataset switches: the latency from the request of the user
+ * to the new dataset being active, and how long the tracker was changed,
+ * when the old dataset was not active anymore and the new one not yet.
+ * <p>The request comes from the UI thread and the switch is done on the
+ * Vuforia thread, the methods are synchronized.</p>
+ */
+public class SwitchLatency {
+
+    private long mRequestNs = -1;
+    private int mCount = 0;
+    private long mLastLatencyNs;
+    private long mMaxLatencyNs;
+    private long mTotalLatencyNs;
+    private long mLastSwapNs;
+    private long mMaxSwapNs;
+
+    /** A switch was requested, only the first of consecutive requests counts */
+    public synchronized void requested(long nowNs) {
+        if (mRequestNs < 0)
+            mRequestNs = nowNs;
+    }
+
+    /**
+     * The switch is done
+     * @param swapStartNs when the old dataset was deactivated
+     * @param nowNs when the new one was activated
+     */
+    public synchronized void switched(long swapStartNs, long nowNs) {
+        long latency = nowNs - (mRequestNs >= 0 ? mRequestNs : swapStartNs);
+        mRequestNs = -1;
+        mCount++;
+        mLastLatencyNs = latency;
+        mMaxLatencyNs = Math.max(mMaxLatencyNs, latency);
+        mTotalLatencyNs += latency;
+        mLastSwapNs = nowNs - swapStartNs;
+        mMaxSwapNs = Math.max(mMaxSwapNs, mLastSwapNs);
+    }
+
+    /** The switch requested could not be done */
+    public synchronized void failed() {
+        mRequestNs = -1;
+    }
+
+    public synchronized int getCount() {
+        return mCount;
+    }
+
+    /** @return the latency of the last switch in ms, from the request */
+    public synchronized double getLastLatencyMs() {
+        return mLastLatencyNs / 1e6;
+    }
+
+    /** @return the mean latency of the switches in ms, 0 if none */
+    public synchronized double getMeanLatencyMs() {
+        return mCount > 0 ? mTotalLatencyNs / 1e6 / mCount : 0;
+    }
+
+    /** @return the time of the last deactivate and activate in ms */
+    public synchronized double getLastSwapMs() {
+        return mLastSwapNs / 1e6;
+    }
+
+    /** One line for the log */
+    public synchronized String format() {
+        return String.format(Locale.US,
+                "switches %d, latency last %.1f ms mean %.1f ms max %.1f ms, swap last %.2f ms max %.2f ms",
+                mCount, mLastLatencyNs / 1e6, getMeanLatencyMs(), mMaxLatencyNs / 1e6,
+                mLastSwapNs / 1e6, mMaxSwapNs / 1e6);
+    }
+}
@@ -0,0 +1,29 @@
+package it.drakefk.metar;
+
+/**
+ * The trackable results found in a single frame, as they are consumed
+ * by the render loop of MetARGLRenderer.
+ * <p>It hides com.vuforia.State so the frame loop can be driven by a fake
+ * source in the unit tests, where the Vuforia native library is not available.</p>
+ */
+public interface TrackableResultSource {
+
+    /** @return the number of trackables found in the current frame */
+    int getNumTrackableResults();
+
+    /**
+     * Copy the pose of a trackable result in a preallocated array
+     * @param index index of the result, from 0 to getNumTrackableResults()-1
+     * @param pose where to write the 12 values of the 3x4 row major pose
+     */
+    void getPose(int index, float[] pose);
+
+    /** @return the id of the trackable of the result at index, unique in the session */
+    int getTrackableId(int index);
+
+    /** @return the name of the trackable of the result at index */
+    String getTrackableName(int index);
+
+    /** @return the user data set on the trackable of the result at index */
+    Object getTrackableUserData(int index);
+}
@@ -0,0 +1,190 @@
+package it.drakefk.metar.utils;
+
+import android.content.res.AssetManager;
+import android.os.Process;
+import android.util.Log;
+
+import com.vuforia.samples.SampleApplication.utils.BinaryModelFile;
+import com.vuforia.samples.SampleApplication.utils.SampleApplication3DModel;
+import com.vuforia.samples.SampleApplication.utils.Teapot;
+import com.vuforia.samples.SampleApplication.utils.Texture;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decodes textures and parses models on worker threads, so they can be
+ * loaded while Vuforia is initializing instead of blocking the UI or
+ * the GL thread.
+ * <p>The results are only CPU-side buffers: the upload to OpenGL is still
+ * done by the renderer on the GL thread, see {@link #await(Future)}.</p>
+ */
+public class AssetLoader {
+
+    private static final String TAG = "AssetLoader";
+
+    /** Extension of the precompressed ETC2 textures */
+    public static final String ETC2_EXTENSION = ".ktx";
+    /** Extension of the precompressed ETC1 textures, see compressTextures in build.gradle */
+    public static final String ETC1_EXTENSION = ".pkm";
+
+    private final AssetManager mAssets;
+    private final ExecutorService mExecutor;
+    /** If the device supports OpenGL ES 3.0, and so ETC2 textures */
+    private final boolean mEtc2Supported;
+
+    /**
+     * @param assets where to load the assets from
+     * @param etc2Supported true if the device supports OpenGL ES 3.0,
+     *                      the ETC2 version of the textures is preferred
+     */
+    public AssetLoader(AssetManager assets, boolean etc2Supported) {
+        this.mAssets = assets;
+        this.mEtc2Supported = etc2Supported;
+        int threads = Math.max(1, Math.min(3, Runtime.getRuntime().availableProcessors() - 1));
+        this.mExecutor = Executors.newFixedThreadPool(threads, new WorkerFactory(TAG,
+                // The first frame waits for them, they stay in the foreground group
+                Process.THREAD_PRIORITY_DEFAULT + Process.THREAD_PRIORITY_LESS_FAVORABLE));
+    }
+
+    /**
+     * Load a texture from the APK in background. If a precompressed version
+     * exists next to the image (.ktx for ETC2, .pkm for ETC1) it is used
+     * instead of decoding the image. The mip levels of decoded images are
+     * built here too.
+     * @param fileName the name of the image in the assets
+     * @return the texture, null if it could not be loaded
+     */
+    public Future<Texture> loadTexture(final String fileName) {
+        return mExecutor.submit(new Callable<Texture>() {
+            @Override
+            public Texture call() throws Exception {
+                String baseName = fileName.substring(0, fileName.lastIndexOf('.'));
+                Texture texture = null;
+                if (mEtc2Supported)
+                    texture = loadCompressedTexture(baseName + ETC2_EXTENSION, fileName);
+                if (texture == null)
+                    texture = loadCompressedTexture(baseName + ETC1_EXTENSION, fileName);
+                if (texture == null) {
+                    texture = Texture.loadTextureFromApk(fileName, mAssets);
+                    // Box-filter the mip chain here instead of on the GL thread
+                    if (texture != null)
+                        texture.generateMipLevels();
+                }
+                return texture;
+            }
+        });
+    }
+
+    /** @return the compressed texture, null if it is not in the assets */
+    private Texture loadCompressedTexture(String fileName, String fallbackFileName)
+            throws IOException {
+        try {
+            return Texture.loadCompressedTextureFromApk(fileName, fallbackFileName, mAssets);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+    }
+
+    /** Map the baked teapot in background */
+    public Future<Teapot> loadTeapot() {
+        return mExecutor.submit(new Callable<Teapot>() {
+            @Override
+            public Teapot call() throws Exception {
+                return new Teapot(mAssets);
+            }
+        });
+    }
+
+    /**
+     * Load a model in background, the binary version converted with
+     * BinaryModelFile is used if available, otherwise the text one
+     * @param path the path of the model in the assets, without extension
+     */
+    public Future<SampleApplication3DModel> loadModel(final String path) {
+        return mExecutor.submit(new Callable<SampleApplication3DModel>() {
+            @Override
+            public SampleApplication3DModel call() throws Exception {
+                SampleApplication3DModel model = new SampleApplication3DModel();
+                try {
+                    model.loadBinaryModel(mAssets, path + BinaryModelFile.EXTENSION);
+                } catch (FileNotFoundException e) {
+                    model.loadModel(mAssets, path + ".txt");
+                }
+                return model;
+            }
+        });
+    }
+
+    /**
+     * Wait for an asset, it returns immediately if the worker already
+     * finished, so the caller only waits for the slowest pending asset
+     * @return the asset, null if the loading failed or it was cancelled
+     */
+    public static <T> T await(Future<T> future) {
+        if (future == null)
+            return null;
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                Log.e(TAG, "Unable to load asset: " + cause.getMessage());
+            else
+                Log.e(TAG, "Unable to load asset", cause);
+        } catch (CancellationException e) {
+            Log.d(TAG, "Asset loading cancelled");
+        }
+        return null;
+    }
+
+    /** Stop the workers, the pending assets are cancelled */
+    public void shutdown() {
+        // The queued tasks are the futures returned to the callers, cancel
+        // them so nobody waits forever for them
+        for (Runnable pending : mExecutor.shutdownNow()) {
+            if (pending instanceof Future)
+                ((Future<?>) pending).cancel(false);
+        }
+    }
+
+    /** Daemon threads with a given priority */
+    static class WorkerFactory implements ThreadFactory {
+        private final String mName;
+        private final int mPriority;
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        /**
+         * @param name prefix of the names of the threads
+         * @param priority a Process.THREAD_PRIORITY_* value
+         */
+        WorkerFactory(String name, int priority) {
+            this.mName = name;
+            this.mPriority = priority;
+        }
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(mPriority);
+                    r.run();
+                }
+            }, mName + "-" + mCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
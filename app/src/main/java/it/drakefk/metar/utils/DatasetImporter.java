@@ -0,0 +1,299 @@
+package it.drakefk.metar.utils;
+
+import android.os.Process;
+
+import com.vuforia.STORAGE_TYPE;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Imports the datasets picked by the user on a worker thread: the zip is
+ * extracted and the dataset is read from the storage there, so the UI
+ * never waits for them.
+ * <p>The loaded datasets are only activated by {@link #activatePending()},
+ * called from onVuforiaUpdate where the tracker is not using the datasets,
+ * so the tracking does not stall on the storage either.</p>
+ * <p>The progress of the extraction is shown with the {@link Progress}.
+ * {@link #cancel()} stops the imports not activated yet: the extraction is
+ * interrupted and a dataset already loaded is destroyed.</p>
+ * <p>The datasets, the storage and the UI thread are reached through
+ * {@link Loader}, {@link Progress} and an Executor, so the class can be
+ * tested on a JVM.</p>
+ * @param <D> the dataset, com.vuforia.DataSet in the app
+ */
+public class DatasetImporter<D> {
+
+    private static final String TAG = "DatasetImporter";
+
+    /** Reads, activates and destroys the datasets, DatasetLoader in the app */
+    public interface Loader<D> {
+        /**
+         * Get the .xml file of a dataset picked by the user, extracting it
+         * if it is a zip. Called on the worker.
+         * @param path the .xml, .dat or .zip file
+         * @param listener receives the progress of the extraction
+         * @return the path of the .xml file, null if the path is not a dataset
+         * @throws IOException if the zip can not be extracted, an
+         *                     InterruptedIOException if it was cancelled
+         */
+        String resolve(String path, ZipExtractor.ProgressListener listener) throws IOException;
+
+        /** @return the dataset, null if it could not be loaded. Called on the worker */
+        D load(String path, int storageType);
+
+        /** @return false if the dataset could not be activated */
+        boolean activate(D dataSet);
+
+        /** Destroy a dataset that was loaded but will not be activated */
+        void destroy(D dataSet);
+    }
+
+    /** Shows the progress of the imports, called from any thread */
+    public interface Progress {
+        void show();
+
+        /** @param percent of the extraction of the current zip */
+        void update(int percent);
+
+        void hide();
+    }
+
+    /** Receives the result of the imports, on the UI thread */
+    public interface Listener<D> {
+        /** The dataset is loaded and active */
+        void onDatasetImported(String path, D dataSet);
+
+        /** The dataset could not be extracted, loaded or activated */
+        void onImportFailed(String path);
+
+        /** The import was cancelled with {@link #cancel()} */
+        void onImportCancelled(String path);
+    }
+
+    /** A dataset being imported */
+    private static class Import<D> {
+        final String path;
+        Future<?> future;
+        /** Set by the worker, null if the loading failed */
+        volatile D dataSet;
+        volatile boolean cancelled;
+
+        Import(String path) {
+            this.path = path;
+        }
+    }
+
+    private final Loader<D> mLoader;
+    private final Progress mProgress;
+    private final Executor mMainThread;
+    private final Listener<D> mListener;
+    private final ExecutorService mExecutor;
+
+    /** The imports not finished yet, guarded by this */
+    private final List<Import<D>> mImports = new ArrayList<Import<D>>();
+    /** The imports done by the worker, waiting for the Vuforia thread */
+    private final ConcurrentLinkedQueue<Import<D>> mLoaded = new ConcurrentLinkedQueue<Import<D>>();
+
+    /**
+     * @param loader reads, activates and destroys the datasets
+     * @param progress shows the progress
+     * @param mainThread runs the calls to the listener on the UI thread
+     * @param listener receives the results
+     */
+    public DatasetImporter(Loader<D> loader, Progress progress, Executor mainThread,
+                           Listener<D> listener) {
+        // One dataset at a time, the extraction already uses more threads.
+        // Nothing waits for it while tracking, so it does not slow down the UI
+        this(loader, progress, mainThread, listener, Executors.newSingleThreadExecutor(
+                new AssetLoader.WorkerFactory(TAG, Process.THREAD_PRIORITY_BACKGROUND)));
+    }
+
+    /** @param executor runs the imports, a single thread */
+    DatasetImporter(Loader<D> loader, Progress progress, Executor mainThread,
+                    Listener<D> listener, ExecutorService executor) {
+        this.mLoader = loader;
+        this.mProgress = progress;
+        this.mMainThread = mainThread;
+        this.mListener = listener;
+        this.mExecutor = executor;
+    }
+
+    /**
+     * Start the import of a dataset, it returns immediately
+     * @param path the .xml, .dat or .zip file picked by the user
+     */
+    public synchronized void importDataset(String path) {
+        final Import<D> task = new Import<D>(path);
+        mImports.add(task);
+        mProgress.show();
+        task.future = mExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                load(task);
+            }
+        });
+    }
+
+    /**
+     * Load a dataset in background without activating it, e.g. to have it
+     * ready for a quick switch. It is not shown in the progress.
+     * @param path the path of the .xml file
+     * @param storageType STORAGE_TYPE.STORAGE_ABSOLUTE, STORAGE_TYPE.STORAGE_APPRESOURCE, STORAGE_TYPE.STORAGE_APP
+     * @return the dataset, null if it could not be loaded
+     */
+    public Future<D> preload(final String path, final int storageType) {
+        return mExecutor.submit(new Callable<D>() {
+            @Override
+            public D call() throws Exception {
+                return mLoader.load(path, storageType);
+            }
+        });
+    }
+
+    /** If some import is not finished yet */
+    public synchronized boolean isImporting() {
+        return !mImports.isEmpty();
+    }
+
+    /** On the worker, extract and load the dataset, then hand it to the Vuforia thread */
+    private void load(final Import<D> task) {
+        try {
+            String xml = mLoader.resolve(task.path, new ZipExtractor.ProgressListener() {
+                private int mPercent = -1;
+
+                @Override
+                public void onProgress(long extractedBytes, long totalBytes) {
+                    int percent = totalBytes > 0 ? (int) (extractedBytes * 100 / totalBytes) : 0;
+                    // Called for every chunk, only the changes are shown
+                    if (percent == mPercent)
+                        return;
+                    mPercent = percent;
+                    mProgress.update(percent);
+                }
+            });
+            if (xml != null && !task.cancelled)
+                task.dataSet = mLoader.load(xml, STORAGE_TYPE.STORAGE_ABSOLUTE);
+        } catch (InterruptedIOException e) {
+            // Cancelled, already reported by cancel()
+        } catch (IOException e) {
+            // Reported as failed by activatePending
+        }
+        synchronized (this) {
+            if (!task.cancelled) {
+                mLoaded.add(task);
+                return;
+            }
+        }
+        // Cancelled while loading, nobody else will see the dataset
+        if (task.dataSet != null)
+            mLoader.destroy(task.dataSet);
+    }
+
+    /**
+     * Activate the datasets loaded since the last call. Call it from
+     * onVuforiaUpdate, it costs nothing when there is nothing to activate.
+     */
+    public void activatePending() {
+        Import<D> task;
+        while ((task = mLoaded.poll()) != null) {
+            boolean cancelled;
+            synchronized (this) {
+                // cancel() already forgot the cancelled ones and hid the progress
+                if (mImports.remove(task) && mImports.isEmpty())
+                    mProgress.hide();
+                cancelled = task.cancelled;
+            }
+
+            final D dataSet = task.dataSet;
+            if (cancelled) {
+                // Already reported by cancel()
+                if (dataSet != null)
+                    mLoader.destroy(dataSet);
+            } else if (dataSet != null && mLoader.activate(dataSet)) {
+                report(task.path, dataSet);
+            } else {
+                if (dataSet != null)
+                    mLoader.destroy(dataSet);
+                report(task.path, null);
+            }
+        }
+    }
+
+    /** Post the result to the listener, a null dataset if it failed */
+    private void report(final String path, final D dataSet) {
+        mMainThread.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (dataSet != null)
+                    mListener.onDatasetImported(path, dataSet);
+                else
+                    mListener.onImportFailed(path);
+            }
+        });
+    }
+
+    /**
+     * Cancel the imports not activated yet. The extraction in progress is
+     * interrupted, loading a dataset can not be interrupted so the worker
+     * destroys it when done.
+     */
+    public synchronized void cancel() {
+        for (final Import<D> task : mImports) {
+            task.cancelled = true;
+            task.future.cancel(true);
+            mMainThread.execute(new Runnable() {
+                @Override
+                public void run() {
+                    mListener.onImportCancelled(task.path);
+                }
+            });
+        }
+        if (!mImports.isEmpty())
+            mProgress.hide();
+        mImports.clear();
+    }
+
+    /**
+     * Cancel the imports and the preloads, stop the worker and destroy the
+     * datasets loaded and not activated. Loading a dataset can not be
+     * interrupted, so it waits up to timeoutMs for the one in progress,
+     * which the worker destroys when done.
+     * <p>It blocks: call it off the UI thread, from doUnloadTrackersData
+     * before the trackers are deinitialized. When it returns true every
+     * future of {@link #preload} is done or cancelled.</p>
+     * @param timeoutMs how long to wait for the dataset being loaded
+     * @return false if the worker did not stop in time, its dataset is
+     * destroyed later or leaked if the trackers are gone
+     */
+    public boolean shutdown(long timeoutMs) {
+        cancel();
+        // The queued preloads are futures returned to the callers, cancel
+        // them so nobody waits forever for them
+        for (Runnable pending : mExecutor.shutdownNow()) {
+            if (pending instanceof Future)
+                ((Future<?>) pending).cancel(false);
+        }
+        boolean stopped = false;
+        try {
+            stopped = mExecutor.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Import<D> task;
+        while ((task = mLoaded.poll()) != null) {
+            if (task.dataSet != null)
+                mLoader.destroy(task.dataSet);
+        }
+        return stopped;
+    }
+}
@@ -1,5 +1,6 @@
 package it.drakefk.metar.utils;
 
+import android.os.SystemClock;
 import android.util.Log;
 
 import com.vuforia.DataSet;
@@ -11,18 +12,20 @@ import com.vuforia.STORAGE_TYPE;
 import com.vuforia.Trackable;
 import com.vuforia.TrackerManager;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.List;
 
+import it.drakefk.metar.DatasetManager;
 import it.drakefk.metar.MetARMain;
 
-public class DatasetLoader {
+/**
+ * Loads the datasets in the ObjectTracker and adds them to the ones of the
+ * activity. It is the {@link DatasetImporter.Loader} of the app.
+ */
+public class DatasetLoader implements DatasetImporter.Loader<DataSet> {
 
     private static final String TAG = "DatasetLoader";
 
@@ -46,61 +49,204 @@ public class DatasetLoader {
      * @param storageType STORAGE_TYPE.STORAGE_ABSOLUTE, STORAGE_TYPE.STORAGE_APPRESOURCE, STORAGE_TYPE.STORAGE_APP
      */
     public void loadAndActivateDataset(String path, int storageType){
-        TrackerManager tManager = TrackerManager.getInstance();
-        ObjectTracker objectTracker = (ObjectTracker) tManager
-                .getTracker(ObjectTracker.getClassType());
+        DataSet loadedDataset = load(path, storageType);
+        if (loadedDataset != null)
+            activate(loadedDataset);
+    }
+
+    /**
+     * Create a new Dataset object and load it from the given path, without
+     * activating it. This reads the whole dataset from the storage, it can
+     * be called from a worker thread.
+     * @param path the path where I find the .xml file
+     * @param storageType STORAGE_TYPE.STORAGE_ABSOLUTE, STORAGE_TYPE.STORAGE_APPRESOURCE, STORAGE_TYPE.STORAGE_APP
+     * @return the dataset, null if it could not be loaded
+     */
+    @Override
+    public DataSet load(String path, int storageType){
+        ObjectTracker objectTracker = getObjectTracker();
         if (objectTracker == null)
-            return;
+            return null;
 
         DataSet loadedDataset = objectTracker.createDataSet();
 
         if (loadedDataset == null)
-            return;
+            return null;
 
         if (!loadedDataset.load(path,
-                storageType))
-            return;
+                storageType)) {
+            objectTracker.destroyDataSet(loadedDataset);
+            return null;
+        }
+        return loadedDataset;
+    }
 
-        objectTracker.activateDataSet(loadedDataset);
+    /**
+     * Add a dataset returned by {@link #load} to the datasets of the
+     * activity and activate it, so its trackables are searched in the
+     * frames. The {@link DatasetManager} of the activity may deactivate the
+     * least recently used datasets to make room for it.
+     * Call it from onVuforiaUpdate, where the tracker is not using the
+     * datasets.
+     * @return false if it could not be activated
+     */
+    @Override
+    public boolean activate(DataSet loadedDataset){
+        DatasetManager<DataSet> manager = mainActivity.getDatasetManager();
+        manager.add(loadedDataset, getTrackableIds(loadedDataset), SystemClock.uptimeMillis());
+        if (!manager.isActive(loadedDataset)) {
+            manager.remove(loadedDataset);
+            return false;
+        }
 
         this.mDatasetLoaded.add(loadedDataset);
         this.addMarkers(loadedDataset);
+        return true;
+    }
+
+    /** @return the ids of the trackables of a dataset */
+    public static int[] getTrackableIds(DataSet dataSet){
+        int[] ids = new int[dataSet.getNumTrackables()];
+        for (int i = 0; i < ids.length; i++)
+            ids[i] = dataSet.getTrackable(i).getId();
+        return ids;
+    }
+
+    /**
+     * The {@link DatasetManager.Activator} of the datasets in the
+     * ObjectTracker
+     */
+    public static final DatasetManager.Activator<DataSet> TRACKER_ACTIVATOR =
+            new DatasetManager.Activator<DataSet>() {
+                @Override
+                public boolean activate(DataSet dataSet) {
+                    ObjectTracker objectTracker = getObjectTracker();
+                    return objectTracker != null && objectTracker.activateDataSet(dataSet);
+                }
+
+                @Override
+                public boolean deactivate(DataSet dataSet) {
+                    ObjectTracker objectTracker = getObjectTracker();
+                    return objectTracker != null && objectTracker.deactivateDataSet(dataSet);
+                }
+            };
+
+    /** Destroy a dataset returned by {@link #load} that will not be activated */
+    @Override
+    public void destroy(DataSet loadedDataset){
+        ObjectTracker objectTracker = getObjectTracker();
+        if (objectTracker != null)
+            objectTracker.destroyDataSet(loadedDataset);
+    }
+
+    private static ObjectTracker getObjectTracker(){
+        TrackerManager tManager = TrackerManager.getInstance();
+        return (ObjectTracker) tManager
+                .getTracker(ObjectTracker.getClassType());
     }
 
     /**
      * Load a dataset from the given path, create a new
      * Dataset object and activate it.
-     * This is used when you use the .zip, the zip will be
-     * extracted in the same folder and the extracted files
-     * will be loaded.
+     * This is used when you use the .zip, the zip is extracted in the
+     * {@link ExtractionCache} of the activity, only the first time it is
+     * picked, and the .xml file inside it is loaded.
      * @param path the path where I find the .xml file
      * @param storageType STORAGE_TYPE.STORAGE_ABSOLUTE, STORAGE_TYPE.STORAGE_APPRESOURCE, STORAGE_TYPE.STORAGE_APP
      */
     public void loadAndActivateDatasetFromZip(String path, int storageType){
+        try {
+            String xml = resolveDatasetXml(path, mainActivity.getExtractionCache(), null);
+            if (xml != null)
+                this.loadAndActivateDataset(xml, storageType);
+        } catch (IOException e) {
+            e.printStackTrace();
+//            showToast(getString(R.string.failed_to_load)+" "+path);
+        }
+    }
+
+    /**
+     * Get the .xml file of a dataset picked by the user, the zips are
+     * extracted in the {@link ExtractionCache} of the activity
+     * @see #resolveDatasetXml
+     */
+    @Override
+    public String resolve(String path, ZipExtractor.ProgressListener listener) throws IOException {
+        try {
+            return resolveDatasetXml(path, mainActivity.getExtractionCache(), listener);
+        } catch (InterruptedIOException e) {
+            Log.d(TAG, "Import of " + path + " cancelled");
+            throw e;
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to import " + path + ": " + e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Get the .xml file of the dataset picked by the user: the .xml itself,
+     * the one next to a .dat, or the one inside a .zip, extracted in the
+     * cache if needed
+     * @param path the .xml, .dat or .zip file
+     * @param cache where the zips are extracted
+     * @param listener receives the progress of the extraction, can be null
+     * @return the path of the .xml file, null if the path is not a dataset
+     * @throws IOException if the zip can not be extracted
+     */
+    public static String resolveDatasetXml(String path, ExtractionCache cache,
+                                           ZipExtractor.ProgressListener listener) throws IOException {
         // First I check the extension
         if( path.endsWith(".xml")){
-            this.loadAndActivateDataset(path, STORAGE_TYPE.STORAGE_ABSOLUTE);
-            return;
+            return path;
         }
         else if( path.endsWith(".dat")){
-            this.loadAndActivateDataset(path.substring(0, path.length()-4)+".xml", STORAGE_TYPE.STORAGE_ABSOLUTE);
-            return;
+            return path.substring(0, path.length()-4)+".xml";
         }
         else if( !path.endsWith(".zip")){
-            return;
+            return null;
         }
 
-        try {
-            unzip(path, path.substring(0, path.length()-4));
-            Log.d(TAG, "Load Dataset: unzipped "+path);
-            String[] split = path.split("/");
-            this.loadAndActivateDataset(path.substring(0, path.length()-4)
-                            +"/"+split[split.length-1].substring(0, split[split.length-1].length()-4)+".xml"
-                    , storageType);
-        } catch (IOException e) {
-            e.printStackTrace();
-//            showToast(getString(R.string.failed_to_load)+" "+path);
+        File zip = new File(path);
+        File folder = cache.extract(zip, listener);
+        Log.d(TAG, "Load Dataset: "+path+" extracted in "+folder);
+        String name = zip.getName();
+        File xml = findDatasetXml(folder, name.substring(0, name.length()-4)+".xml");
+        if (xml == null) {
+            Log.e(TAG, "Load Dataset: no .xml file in "+path);
+            return null;
+        }
+        return xml.getPath();
+    }
+
+    /**
+     * Find the .xml file of a dataset in the folder where it was extracted
+     * @param folder the extracted folder
+     * @param name the preferred name, the one of the zip
+     * @return the file with the given name, otherwise the first .xml file
+     * found nearest to the folder, null if there is none
+     */
+    static File findDatasetXml(File folder, String name) {
+        File preferred = new File(folder, name);
+        if (preferred.isFile())
+            return preferred;
+        List<File> level = new ArrayList<File>();
+        level.add(folder);
+        while (!level.isEmpty()) {
+            List<File> next = new ArrayList<File>();
+            for (File dir : level) {
+                File[] children = dir.listFiles();
+                if (children == null)
+                    continue;
+                for (File child : children) {
+                    if (child.isDirectory())
+                        next.add(child);
+                    else if (child.getName().endsWith(".xml"))
+                        return child;
+                }
+            }
+            level = next;
         }
+        return null;
     }
 
     public void addMarkers( DataSet d){
@@ -125,53 +271,13 @@ public class DatasetLoader {
 
     /**
      * Extracts a zip file specified by the zipFilePath to a directory specified by
-     * destDirectory (will be created if does not exists)
+     * destDirectory (will be created if does not exists), see {@link ZipExtractor}
      * @param zipFilePath path of the file .zip
      * @param destDirectory path where to extract the file .zip
-     * @throws IOException thrown by ZipInputStream
+     * @throws IOException if the zip can not be read or a file written
      */
     public static void unzip(String zipFilePath, String destDirectory) throws IOException {
-
-        File destDir = new File(destDirectory);
-        if (!destDir.exists()) {
-            destDir.mkdirs();
-        }
-
-        ZipInputStream zipIn = new ZipInputStream(new FileInputStream(zipFilePath));//new BufferedInputStream(new URL(zipFilePath).openStream()));//new FileInputStream(zipFilePath));
-        ZipEntry entry = zipIn.getNextEntry();
-        // iterates over entries in the zip file
-        while (entry != null) {
-            String filePath = destDirectory + File.separator + entry.getName();
-            if (!entry.isDirectory()) {
-                // if the entry is a file, extracts it
-                extractFile(zipIn, filePath);
-
-            } else {
-                // if the entry is a directory, make the directory
-                File dir = new File(filePath);
-                dir.mkdir();
-            }
-            zipIn.closeEntry();
-            entry = zipIn.getNextEntry();
-        }
-        zipIn.close();
-    }
-
-    /**
-     * Extracts a zip entry (file entry)
-     * @param zipIn
-     * @param filePath
-     * @throws IOException
-     */
-    private static void extractFile(ZipInputStream zipIn, String filePath) throws IOException {
-        int BUFFER_SIZE = 4096;
-        BufferedOutputStream bos = new BufferedOutputStream(new FileOutputStream(filePath));
-        byte[] bytesIn = new byte[BUFFER_SIZE];
-        int read = 0;
-        while ((read = zipIn.read(bytesIn)) != -1) {
-            bos.write(bytesIn, 0, read);
-        }
-        bos.close();
+        new ZipExtractor().extract(new File(zipFilePath), new File(destDirectory), null);
     }
 
 }
@@ -0,0 +1,296 @@
+package it.drakefk.metar.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps the extracted datasets, so a zip picked again is not extracted
+ * again.
+ * <p>Each zip is extracted in a folder named after its fingerprint: the
+ * CRC32 of its central directory, which holds the name, size and CRC of
+ * every entry, and the size of the file. The same archive is found under
+ * any name or path, and a changed one gets a new folder. Reading the
+ * central directory costs a few KB of I/O whatever the size of the zip.</p>
+ * <p>A {@link #MANIFEST} is written in the folder once the extraction is
+ * complete, with the files and their sizes; a folder without it, or with
+ * a file missing, is extracted again. When the folders exceed the disk
+ * budget the least recently used ones are deleted.</p>
+ * <p>The methods are synchronized, a single instance must be shared by
+ * the users of a cache folder.</p>
+ */
+public class ExtractionCache {
+
+    /** Name of the manifest in the extracted folders */
+    public static final String MANIFEST = ".manifest";
+    public static final long DEFAULT_MAX_BYTES = 512L * 1024 * 1024;
+
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final long ZIP64_MARKER = 0xFFFFFFFFL;
+
+    private static final String KEY_SOURCE = "source";
+    private static final String KEY_BYTES = "bytes";
+    private static final String KEY_FILES = "files";
+    private static final String KEY_FILE = "file.";
+    private static final String KEY_SIZE = "size.";
+    private static final String KEY_LAST_USED = "lastUsed";
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+    private final ZipExtractor mExtractor;
+
+    /**
+     * @param directory where the datasets are extracted, created if needed
+     * @param maxBytes the disk budget, the folder just used is kept even if
+     *                 it is larger
+     * @param extractor extracts the zips
+     */
+    public ExtractionCache(File directory, long maxBytes, ZipExtractor extractor) {
+        this.mDirectory = directory;
+        this.mMaxBytes = maxBytes;
+        this.mExtractor = extractor;
+    }
+
+    /**
+     * Get the folder where a zip is extracted, extracting it only if it
+     * is not in the cache already
+     * @param zipFile the zip to extract
+     * @param listener receives the progress of the extraction, can be null
+     * @return the folder of the extracted files
+     * @throws IOException if the zip can not be read or extracted
+     */
+    public synchronized File extract(File zipFile, ZipExtractor.ProgressListener listener)
+            throws IOException {
+        String key = fingerprint(zipFile);
+        File folder = new File(mDirectory, key);
+        Properties manifest = readManifest(folder);
+        if (manifest == null || !isComplete(folder, manifest)) {
+            delete(folder);
+            if (!folder.mkdirs())
+                throw new IOException("Can not create " + folder);
+            mExtractor.extract(zipFile, folder, listener);
+            manifest = createManifest(folder, zipFile);
+        }
+
+        manifest.setProperty(KEY_LAST_USED, Long.toString(System.currentTimeMillis()));
+        writeManifest(folder, manifest);
+        evict(folder);
+        return folder;
+    }
+
+    /** Delete all the extracted datasets */
+    public synchronized void clear() {
+        File[] folders = mDirectory.listFiles();
+        if (folders == null)
+            return;
+        for (File folder : folders)
+            delete(folder);
+    }
+
+    /**
+     * The fingerprint of a zip: the CRC32 of its central directory and end
+     * record, and its size, in hexadecimal. For Zip64 archives the last
+     * 64 KB are hashed instead.
+     */
+    public static String fingerprint(File zipFile) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(zipFile, "r");
+        try {
+            long length = file.length();
+            int tailSize = (int) Math.min(length, EOCD_SIZE + MAX_COMMENT_SIZE);
+            byte[] tail = new byte[tailSize];
+            file.seek(length - tailSize);
+            file.readFully(tail);
+
+            // The end record is the last one, after it only its comment
+            int eocd = -1;
+            for (int i = tailSize - EOCD_SIZE; i >= 0 && eocd < 0; i--) {
+                if (readInt(tail, i) == EOCD_SIGNATURE)
+                    eocd = i;
+            }
+            if (eocd < 0)
+                throw new IOException("Not a zip file: " + zipFile);
+
+            CRC32 crc = new CRC32();
+            long size = readInt(tail, eocd + 12) & 0xFFFFFFFFL;
+            long offset = readInt(tail, eocd + 16) & 0xFFFFFFFFL;
+            if (size == ZIP64_MARKER || offset == ZIP64_MARKER) {
+                crc.update(tail, 0, tailSize);
+            } else {
+                if (offset + size > length)
+                    throw new IOException("Corrupted zip file: " + zipFile);
+                byte[] chunk = new byte[64 * 1024];
+                file.seek(offset);
+                for (long left = size; left > 0; ) {
+                    int read = (int) Math.min(chunk.length, left);
+                    file.readFully(chunk, 0, read);
+                    crc.update(chunk, 0, read);
+                    left -= read;
+                }
+                crc.update(tail, eocd, tailSize - eocd);
+            }
+            return String.format(Locale.US, "%08x-%x", crc.getValue(), length);
+        } finally {
+            file.close();
+        }
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8
+                | (data[offset + 2] & 0xFF) << 16 | (data[offset + 3] & 0xFF) << 24;
+    }
+
+    /** If all the files of the manifest are there with their size */
+    private static boolean isComplete(File folder, Properties manifest) {
+        try {
+            int files = Integer.parseInt(manifest.getProperty(KEY_FILES));
+            for (int i = 0; i < files; i++) {
+                File file = new File(folder, manifest.getProperty(KEY_FILE + i));
+                long size = Long.parseLong(manifest.getProperty(KEY_SIZE + i));
+                if (!file.isFile() || file.length() != size)
+                    return false;
+            }
+            return true;
+        } catch (RuntimeException e) {
+            // Missing or malformed values
+            return false;
+        }
+    }
+
+    private static Properties createManifest(File folder, File zipFile) {
+        List<String> paths = new ArrayList<String>();
+        listFiles(folder, "", paths);
+        Properties manifest = new Properties();
+        manifest.setProperty(KEY_SOURCE, zipFile.getAbsolutePath());
+        manifest.setProperty(KEY_FILES, Integer.toString(paths.size()));
+        long bytes = 0;
+        for (int i = 0; i < paths.size(); i++) {
+            long size = new File(folder, paths.get(i)).length();
+            manifest.setProperty(KEY_FILE + i, paths.get(i));
+            manifest.setProperty(KEY_SIZE + i, Long.toString(size));
+            bytes += size;
+        }
+        manifest.setProperty(KEY_BYTES, Long.toString(bytes));
+        return manifest;
+    }
+
+    private static void listFiles(File folder, String prefix, List<String> paths) {
+        File[] children = folder.listFiles();
+        if (children == null)
+            return;
+        for (File child : children) {
+            if (child.isDirectory())
+                listFiles(child, prefix + child.getName() + "/", paths);
+            else if (!(prefix.isEmpty() && child.getName().startsWith(MANIFEST)))
+                paths.add(prefix + child.getName());
+        }
+    }
+
+    /** @return null if there is no manifest, the extraction was not completed */
+    private static Properties readManifest(File folder) {
+        File file = new File(folder, MANIFEST);
+        if (!file.isFile())
+            return null;
+        Properties manifest = new Properties();
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                manifest.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return manifest;
+    }
+
+    /** Written aside and renamed, so a manifest is never half written */
+    private static void writeManifest(File folder, Properties manifest) throws IOException {
+        File temp = new File(folder, MANIFEST + ".tmp");
+        OutputStream out = new FileOutputStream(temp);
+        try {
+            manifest.store(out, null);
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(new File(folder, MANIFEST)))
+            throw new IOException("Can not write the manifest of " + folder);
+    }
+
+    /** Delete the least recently used folders until the cache fits the budget */
+    private void evict(File keep) {
+        File[] folders = mDirectory.listFiles();
+        if (folders == null)
+            return;
+
+        final List<File> candidates = new ArrayList<File>();
+        final List<Long> lastUsed = new ArrayList<Long>();
+        final List<Long> sizes = new ArrayList<Long>();
+        long total = 0;
+        for (File folder : folders) {
+            if (!folder.isDirectory())
+                continue;
+            Properties manifest = readManifest(folder);
+            long size = parse(manifest, KEY_BYTES);
+            total += size;
+            if (folder.equals(keep))
+                continue;
+            if (manifest == null) {
+                // Left by an extraction that did not complete
+                delete(folder);
+                continue;
+            }
+            candidates.add(folder);
+            lastUsed.add(parse(manifest, KEY_LAST_USED));
+            sizes.add(size);
+        }
+
+        List<Integer> order = new ArrayList<Integer>();
+        for (int i = 0; i < candidates.size(); i++)
+            order.add(i);
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                long la = lastUsed.get(a), lb = lastUsed.get(b);
+                return la < lb ? -1 : (la == lb ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < order.size() && total > mMaxBytes; i++) {
+            int index = order.get(i);
+            delete(candidates.get(index));
+            total -= sizes.get(index);
+        }
+    }
+
+    private static long parse(Properties manifest, String key) {
+        if (manifest == null)
+            return 0;
+        try {
+            return Long.parseLong(manifest.getProperty(key));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children)
+                delete(child);
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,230 @@
+package it.drakefk.metar.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Extracts a zip file with random access to its entries, in parallel on
+ * a few threads.
+ * <p>The files are split among the threads by size, largest first, and
+ * each thread opens the zip on its own so the reads are not serialized.
+ * The data is written through a FileChannel in large chunks. Entries that
+ * would be written outside the destination folder are rejected.</p>
+ * <p>The extraction can be cancelled by interrupting the thread that
+ * called {@link #extract}: the workers stop at the next chunk and an
+ * InterruptedIOException is thrown. The files already written are left
+ * in place.</p>
+ */
+public class ZipExtractor {
+
+    /** Size of the chunks read from the zip and written to the files */
+    static final int BUFFER_SIZE = 256 * 1024;
+
+    /** Receives the progress, from the worker threads */
+    public interface ProgressListener {
+        /**
+         * @param extractedBytes the uncompressed bytes written so far
+         * @param totalBytes the uncompressed size of all the files
+         */
+        void onProgress(long extractedBytes, long totalBytes);
+    }
+
+    private final int mThreads;
+
+    /** Uses one thread per core, at most 4 */
+    public ZipExtractor() {
+        this(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())));
+    }
+
+    /** @param threads how many files are extracted at the same time */
+    public ZipExtractor(int threads) {
+        this.mThreads = Math.max(1, threads);
+    }
+
+    /**
+     * Extract all the entries of a zip file
+     * @param zipFile the zip file
+     * @param destDirectory where to extract it, created if it does not exist
+     * @param listener receives the progress, can be null
+     * @throws IOException if the zip can not be read or a file written
+     */
+    public void extract(File zipFile, File destDirectory, final ProgressListener listener)
+            throws IOException {
+        if (!destDirectory.isDirectory() && !destDirectory.mkdirs())
+            throw new IOException("Can not create " + destDirectory);
+        String destPath = destDirectory.getCanonicalPath() + File.separator;
+
+        // The folders are created first, the files are extracted in parallel
+        List<ZipEntry> files = new ArrayList<ZipEntry>();
+        long totalBytes = 0;
+        ZipFile zip = new ZipFile(zipFile);
+        try {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                File target = target(destPath, entry);
+                if (entry.isDirectory()) {
+                    if (!target.isDirectory() && !target.mkdirs())
+                        throw new IOException("Can not create " + target);
+                } else {
+                    files.add(entry);
+                    totalBytes += sizeOf(entry);
+                }
+            }
+        } finally {
+            zip.close();
+        }
+
+        final long total = totalBytes;
+        final AtomicLong extracted = new AtomicLong();
+        List<List<ZipEntry>> groups = split(files, Math.min(mThreads, files.size()));
+        if (groups.size() <= 1) {
+            // Not worth a thread
+            if (!groups.isEmpty())
+                extractGroup(zipFile, destPath, groups.get(0), extracted, total, listener);
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(groups.size());
+        try {
+            List<Future<Void>> results = new ArrayList<Future<Void>>();
+            for (final List<ZipEntry> group : groups) {
+                final String dest = destPath;
+                final File zipPath = zipFile;
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        extractGroup(zipPath, dest, group, extracted, total, listener);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> result : results)
+                result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Extraction of " + zipFile + " cancelled");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new IOException("Extraction of " + zipFile + " failed", cause);
+        } finally {
+            // Interrupts the workers still running if one failed or we were cancelled
+            executor.shutdownNow();
+        }
+    }
+
+    /** Extract the entries of a group, with a zip and a buffer of its own */
+    private static void extractGroup(File zipFile, String destPath, List<ZipEntry> group,
+                                     AtomicLong extracted, long total,
+                                     ProgressListener listener) throws IOException {
+        byte[] chunk = new byte[BUFFER_SIZE];
+        // Wraps the chunk, it is written as read without another copy
+        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        ZipFile zip = new ZipFile(zipFile);
+        try {
+            for (ZipEntry entry : group) {
+                File target = target(destPath, entry);
+                File parent = target.getParentFile();
+                if (parent != null && !parent.isDirectory())
+                    parent.mkdirs();
+
+                InputStream in = zip.getInputStream(entry);
+                FileOutputStream out = new FileOutputStream(target);
+                try {
+                    FileChannel channel = out.getChannel();
+                    int read;
+                    while ((read = readFully(in, chunk)) > 0) {
+                        if (Thread.interrupted())
+                            throw new InterruptedIOException("Extraction of " + zipFile + " cancelled");
+                        buffer.clear();
+                        buffer.limit(read);
+                        while (buffer.hasRemaining())
+                            channel.write(buffer);
+                        long done = extracted.addAndGet(read);
+                        if (listener != null)
+                            listener.onProgress(done, total);
+                    }
+                } finally {
+                    in.close();
+                    out.close();
+                }
+            }
+        } finally {
+            zip.close();
+        }
+    }
+
+    /** Read until the chunk is full or the entry ends, the inflater returns small reads */
+    private static int readFully(InputStream in, byte[] chunk) throws IOException {
+        int total = 0;
+        while (total < chunk.length) {
+            int read = in.read(chunk, total, chunk.length - total);
+            if (read < 0)
+                break;
+            total += read;
+        }
+        return total;
+    }
+
+    /** The file of an entry, rejecting the names that escape the destination (zip slip) */
+    private static File target(String destPath, ZipEntry entry) throws IOException {
+        File target = new File(destPath, entry.getName());
+        String path = target.getCanonicalPath();
+        if (!path.startsWith(destPath) && !(path + File.separator).equals(destPath))
+            throw new IOException("Entry outside of the destination: " + entry.getName());
+        return target;
+    }
+
+    private static long sizeOf(ZipEntry entry) {
+        // The size is unknown only for streamed zips, the compressed one is a guess
+        return entry.getSize() >= 0 ? entry.getSize() : Math.max(0, entry.getCompressedSize());
+    }
+
+    /** Split the files in groups of about the same size, largest files first */
+    static List<List<ZipEntry>> split(List<ZipEntry> files, int count) {
+        List<ZipEntry> sorted = new ArrayList<ZipEntry>(files);
+        Collections.sort(sorted, new Comparator<ZipEntry>() {
+            @Override
+            public int compare(ZipEntry a, ZipEntry b) {
+                long sa = sizeOf(a), sb = sizeOf(b);
+                return sa < sb ? 1 : (sa == sb ? 0 : -1);
+            }
+        });
+        List<List<ZipEntry>> groups = new ArrayList<List<ZipEntry>>();
+        long[] sizes = new long[count];
+        for (int i = 0; i < count; i++)
+            groups.add(new ArrayList<ZipEntry>());
+        for (ZipEntry entry : sorted) {
+            int smallest = 0;
+            for (int i = 1; i < count; i++) {
+                if (sizes[i] < sizes[smallest])
+                    smallest = i;
+            }
+            groups.get(smallest).add(entry);
+            sizes[smallest] += sizeOf(entry);
+        }
+        return groups;
+    }
+}
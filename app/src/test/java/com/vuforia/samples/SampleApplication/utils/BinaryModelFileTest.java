@@ -0,0 +1,71 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import static org.junit.Assert.*;
+
+public class BinaryModelFileTest {
+
+    private static final String TEXT_MODEL =
+            "6\n1.5\n-2\n3.25\n4\n5\n6\n"
+            + "6\n0\n0\n1\n0\n1\n0\n"
+            + "4\n0\n0.5\n1\n0.75\n";
+
+    @Test
+    public void convertAndMap_keepsAllValues() throws Exception {
+        BinaryModelFile text = BinaryModelFile.readText(new StringReader(TEXT_MODEL));
+        File file = File.createTempFile("model", BinaryModelFile.EXTENSION);
+        try {
+            text.write(file);
+            assertEquals(BinaryModelFile.HEADER_SIZE + 4 * 16, file.length());
+
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            ByteBuffer mapped;
+            try {
+                mapped = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            } finally {
+                raf.close();
+            }
+
+            BinaryModelFile model = BinaryModelFile.read(mapped);
+            assertEquals(6, model.getNumVertexFloats());
+            assertEquals(0, model.getNumIndices());
+            assertNull(model.getIndices());
+            assertArrayEquals(new float[]{1.5f, -2f, 3.25f, 4f, 5f, 6f}, floats(model.getVertices()), 0f);
+            assertArrayEquals(new float[]{0, 0, 1, 0, 1, 0}, floats(model.getNormals()), 0f);
+            assertArrayEquals(new float[]{0, 0.5f, 1, 0.75f}, floats(model.getTexCoords()), 0f);
+            assertTrue(model.getVertices().isDirect());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void read_rejectsTextFiles() throws Exception {
+        BinaryModelFile.read(ByteBuffer.wrap(TEXT_MODEL.getBytes("US-ASCII")));
+    }
+
+    @Test(expected = IOException.class)
+    public void read_rejectsTruncatedFiles() throws Exception {
+        ByteBuffer data = ByteBuffer.allocate(BinaryModelFile.HEADER_SIZE + 4)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        data.putInt(BinaryModelFile.MAGIC).putInt(BinaryModelFile.VERSION)
+                .putInt(3).putInt(0).putInt(0).putInt(0).putFloat(1f);
+        data.flip();
+        BinaryModelFile.read(data);
+    }
+
+    private static float[] floats(ByteBuffer block) {
+        float[] values = new float[block.remaining() / 4];
+        block.duplicate().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(values);
+        return values;
+    }
+}
@@ -0,0 +1,91 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+public class CompressedTextureFileTest {
+
+    @Test
+    public void readPkm_usesPaddedSizeForData() throws Exception {
+        // 6x5 image, padded to 8x8: 2x2 blocks of 8 bytes
+        ByteBuffer data = ByteBuffer.allocate(16 + 32 + 7).order(ByteOrder.BIG_ENDIAN);
+        data.put(new byte[] { 'P', 'K', 'M', ' ', '1', '0' });
+        data.putShort((short) 0).putShort((short) 8).putShort((short) 8);
+        data.putShort((short) 6).putShort((short) 5);
+        for (int i = 0; i < 32; i++)
+            data.put((byte) i);
+        data.flip();
+
+        CompressedTextureFile file = CompressedTextureFile.read(data);
+        assertEquals(CompressedTextureFile.GL_ETC1_RGB8_OES, file.getFormat());
+        assertEquals(6, file.getWidth());
+        assertEquals(5, file.getHeight());
+        assertEquals(32, file.getData().remaining());
+        assertEquals(31, file.getData().get(31));
+    }
+
+    /** A 4x4 ETC2 KTX with a level of 16 bytes after 8 bytes of key/value data */
+    private static ByteBuffer ktx(int mipLevels, int bytesOfKeyValueData, int levelSize) {
+        byte[] identifier = { (byte) 0xAB, 'K', 'T', 'X', ' ', '1', '1', (byte) 0xBB,
+                '\r', '\n', 0x1A, '\n' };
+        ByteBuffer data = ByteBuffer.allocate(64 + 8 + 4 + 16).order(ByteOrder.LITTLE_ENDIAN);
+        data.put(identifier);
+        data.putInt(0x04030201);
+        data.putInt(0).putInt(1).putInt(0); // glType, glTypeSize, glFormat
+        data.putInt(CompressedTextureFile.GL_COMPRESSED_RGBA8_ETC2_EAC);
+        data.putInt(0x1908); // glBaseInternalFormat
+        data.putInt(4).putInt(4).putInt(0); // width, height, depth
+        data.putInt(0).putInt(1).putInt(mipLevels); // array elements, faces, mip levels
+        data.putInt(bytesOfKeyValueData);
+        data.putLong(0);
+        data.putInt(levelSize);
+        for (int i = 0; i < 16; i++)
+            data.put((byte) (i + 1));
+        data.flip();
+        return data;
+    }
+
+    @Test
+    public void readKtx_returnsFirstLevel() throws Exception {
+        CompressedTextureFile file = CompressedTextureFile.read(ktx(1, 8, 16));
+        assertTrue(CompressedTextureFile.isEtc2(file.getFormat()));
+        assertEquals(4, file.getWidth());
+        assertEquals(4, file.getHeight());
+        assertEquals(16, file.getData().remaining());
+        assertEquals(1, file.getData().get(0));
+    }
+
+    @Test(expected = IOException.class)
+    public void read_rejectsTruncatedPkm() throws Exception {
+        ByteBuffer data = ByteBuffer.allocate(16 + 4);
+        data.put(new byte[] { 'P', 'K', 'M', ' ', '1', '0' });
+        data.putShort((short) 0).putShort((short) 4).putShort((short) 4);
+        data.putShort((short) 4).putShort((short) 4);
+        data.rewind();
+        CompressedTextureFile.read(data);
+    }
+
+    @Test
+    public void readKtx_rejectsCorruptedHeaders() throws Exception {
+        ByteBuffer[] corrupted = {
+                ktx(1, -8, 16), // key/value data before the header
+                ktx(1, 1000, 16), // key/value data past the end
+                ktx(Integer.MAX_VALUE, 8, 16), // would allocate the levels array
+                ktx(2, 8, 16), // second level past the end
+                ktx(1, 8, Integer.MAX_VALUE), // offset + size overflows
+                ktx(1, 8, -4) };
+        for (ByteBuffer data : corrupted) {
+            try {
+                CompressedTextureFile.read(data);
+                fail("Corrupted KTX accepted");
+            } catch (IOException e) {
+                // Expected
+            }
+        }
+    }
+}
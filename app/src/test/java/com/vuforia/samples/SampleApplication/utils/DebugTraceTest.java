@@ -0,0 +1,52 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DebugTraceTest {
+
+    private static final long MS = 1000000L;
+
+    private final int mLevel = DebugTrace.getLevel();
+
+    @After
+    public void restoreLevel() {
+        DebugTrace.setLevel(mLevel);
+    }
+
+    @Test
+    public void sampler_letsThroughOneEventPerInterval() throws Exception {
+        DebugTrace.Sampler sampler = new DebugTrace.Sampler(DebugTrace.DEBUG, 100);
+        assertTrue(sampler.sample(0));
+        assertEquals(0, sampler.getSuppressed());
+        assertFalse(sampler.sample(10 * MS));
+        assertFalse(sampler.sample(99 * MS));
+        assertTrue(sampler.sample(100 * MS));
+        assertEquals(2, sampler.getSuppressed());
+        assertTrue(sampler.sample(250 * MS));
+        assertEquals(0, sampler.getSuppressed());
+    }
+
+    @Test
+    public void sampler_isClosedAboveTheRuntimeLevel() throws Exception {
+        DebugTrace.Sampler sampler = new DebugTrace.Sampler(DebugTrace.VERBOSE, 0);
+        DebugTrace.setLevel(DebugTrace.DEBUG);
+        assertFalse(sampler.sample());
+        assertFalse(DebugTrace.isEnabled(DebugTrace.VERBOSE));
+        assertTrue(DebugTrace.isEnabled(DebugTrace.ERROR));
+
+        DebugTrace.setLevel(DebugTrace.VERBOSE);
+        assertEquals(DebugTrace.COMPILE_LEVEL >= DebugTrace.VERBOSE, sampler.sample());
+    }
+
+    @Test
+    public void levelsAboveCompileLevel_areNeverEnabled() throws Exception {
+        DebugTrace.setLevel(DebugTrace.VERBOSE);
+        for (int level = DebugTrace.ERROR; level <= DebugTrace.VERBOSE; level++)
+            assertEquals(level <= DebugTrace.COMPILE_LEVEL, DebugTrace.isEnabled(level));
+        DebugTrace.setLevel(DebugTrace.NONE);
+        assertFalse(DebugTrace.isEnabled(DebugTrace.ERROR));
+    }
+}
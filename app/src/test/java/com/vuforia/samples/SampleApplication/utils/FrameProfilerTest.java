@@ -0,0 +1,86 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+public class FrameProfilerTest {
+
+    private static final long MS = 1000000L;
+
+    /** A frame of intervalMs, with 2 ms of stage 0 and 1 ms of stage 1 nested in it */
+    private static long frame(FrameProfiler profiler, long start, long intervalMs) {
+        profiler.beginFrame(start);
+        profiler.beginStage(0, start);
+        profiler.beginStage(1, start + MS);
+        profiler.endStage(start + 2 * MS);
+        profiler.endStage(start + 3 * MS);
+        profiler.endFrame(start + 4 * MS);
+        return start + intervalMs * MS;
+    }
+
+    @Test
+    public void computeStats_percentilesDropsAndNestedStages() throws Exception {
+        FrameProfiler profiler = new FrameProfiler(new String[] { "outer", "inner" }, 100);
+        profiler.setRefreshRate(60);
+        long t = 0;
+        // 1 frame without interval, 90 frames at 16 ms and 10 at 50 ms
+        for (int i = 0; i < 91; i++)
+            t = frame(profiler, t, 16);
+        for (int i = 0; i < 10; i++)
+            t = frame(profiler, t, 50);
+
+        FrameProfiler.FrameStats stats = profiler.computeStats();
+        assertEquals(100, stats.frames);
+        assertEquals(16, stats.intervalP50Ms, 1e-9);
+        assertEquals(50, stats.intervalP95Ms, 1e-9);
+        assertEquals(50, stats.intervalP99Ms, 1e-9);
+        assertEquals(4, stats.workP50Ms, 1e-9);
+        // The last 50 ms interval starts at the last frame, so 9 are recorded
+        assertEquals(9, stats.droppedFrames);
+        assertEquals(9, stats.totalDroppedFrames);
+        // The time of the inner stage is not counted in the outer one
+        assertEquals(2, stats.stageMeanMs[0], 1e-9);
+        assertEquals(1, stats.stageMeanMs[1], 1e-9);
+    }
+
+    @Test
+    public void ring_keepsOnlyTheLastFrames() throws Exception {
+        FrameProfiler profiler = new FrameProfiler(new String[] { "a", "b" }, 10);
+        long t = 0;
+        for (int i = 0; i < 50; i++)
+            t = frame(profiler, t, i < 39 ? 100 : 10);
+        FrameProfiler.FrameStats stats = profiler.computeStats();
+        assertEquals(10, stats.frames);
+        assertEquals(10, stats.intervalP99Ms, 1e-9);
+        assertEquals(0, stats.droppedFrames);
+        assertTrue(stats.totalDroppedFrames > 0);
+
+        StringWriter report = new StringWriter();
+        profiler.writeReport(report);
+        String[] lines = report.toString().split("\n");
+        assertEquals("frame,interval_us,work_us,a_us,b_us", lines[lines.length - 11]);
+        assertEquals("49,10000,4000,2000,1000", lines[lines.length - 1]);
+    }
+
+    @Test
+    public void recording_doesNotAllocate() throws Exception {
+        FrameProfiler profiler = new FrameProfiler(new String[] { "a", "b" });
+        long t = 0;
+        for (int i = 0; i < 1000; i++)
+            t = frame(profiler, t, 0);
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        // Intervals of 0 ms never reach the publishing interval
+        for (int i = 0; i < 10000; i++)
+            t = frame(profiler, t, 0);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+    }
+}
@@ -0,0 +1,153 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import android.opengl.GLES20;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GLStateCacheTest {
+
+    /** Records the calls that reach OpenGL instead of issuing them */
+    private static class RecordingCache extends GLStateCache {
+        final List<String> calls = new ArrayList<String>();
+
+        @Override
+        protected void glEnable(int cap, boolean enabled) {
+            calls.add((enabled ? "enable " : "disable ") + cap);
+        }
+
+        @Override
+        protected void glUseProgram(int program) {
+            calls.add("program " + program);
+        }
+
+        @Override
+        protected void glActiveTexture(int unit) {
+            calls.add("unit " + unit);
+        }
+
+        @Override
+        protected void glBindTexture2D(int texture) {
+            calls.add("texture " + texture);
+        }
+
+        @Override
+        protected void glEnableVertexAttribArray(int index, boolean enabled) {
+            calls.add((enabled ? "enable attrib " : "disable attrib ") + index);
+        }
+
+        @Override
+        protected void glCullFace(int mode) {
+            calls.add("cull " + mode);
+        }
+
+        @Override
+        protected void glFrontFace(int mode) {
+            calls.add("front " + mode);
+        }
+    }
+
+    @Test
+    public void redundantCalls_areSkippedAndCounted() throws Exception {
+        RecordingCache cache = new RecordingCache();
+        cache.enable(GLES20.GL_DEPTH_TEST);
+        cache.enable(GLES20.GL_DEPTH_TEST);
+        cache.useProgram(3);
+        cache.useProgram(3);
+        cache.activeTexture(GLES20.GL_TEXTURE0);
+        cache.bindTexture2D(7);
+        cache.bindTexture2D(7);
+        cache.enableVertexAttribArray(1);
+        cache.enableVertexAttribArray(1);
+        cache.disableVertexAttribArray(1);
+        cache.beginFrame();
+
+        assertEquals(6, cache.calls.size());
+        assertEquals(6, cache.getLastFrameIssuedCalls());
+        assertEquals(4, cache.getLastFrameSkippedCalls());
+        assertEquals("disable attrib 1", cache.calls.get(5));
+    }
+
+    @Test
+    public void invalidate_issuesTheNextCallsAgain() throws Exception {
+        RecordingCache cache = new RecordingCache();
+        cache.disable(GLES20.GL_CULL_FACE);
+        cache.activeTexture(GLES20.GL_TEXTURE0);
+        cache.bindTexture2D(7);
+
+        cache.invalidateTextures();
+        cache.disable(GLES20.GL_CULL_FACE);
+        cache.activeTexture(GLES20.GL_TEXTURE0);
+        cache.bindTexture2D(7);
+        assertEquals(5, cache.calls.size());
+
+        cache.invalidate();
+        cache.disable(GLES20.GL_CULL_FACE);
+        assertEquals(6, cache.calls.size());
+    }
+
+    @Test
+    public void invalidateVuforiaState_forgetsOnlyWhatVuforiaChanges() throws Exception {
+        RecordingCache cache = new RecordingCache();
+        cache.enable(GLES20.GL_DEPTH_TEST);
+        cache.enable(GLES20.GL_CULL_FACE);
+        cache.enable(GLES20.GL_BLEND);
+        cache.cullFace(GLES20.GL_BACK);
+        cache.useProgram(3);
+        cache.activeTexture(GLES20.GL_TEXTURE1);
+        cache.bindTexture2D(5);
+        cache.activeTexture(GLES20.GL_TEXTURE0);
+        cache.bindTexture2D(7);
+        cache.enableVertexAttribArray(2);
+        cache.calls.clear();
+
+        cache.invalidateVuforiaState();
+        cache.beginFrame();
+        cache.enable(GLES20.GL_DEPTH_TEST);
+        cache.enable(GLES20.GL_CULL_FACE);
+        cache.enable(GLES20.GL_BLEND);
+        cache.cullFace(GLES20.GL_BACK);
+        cache.useProgram(3);
+        cache.activeTexture(GLES20.GL_TEXTURE1);
+        cache.bindTexture2D(5);
+        cache.activeTexture(GLES20.GL_TEXTURE0);
+        cache.bindTexture2D(7);
+        cache.enableVertexAttribArray(2);
+        cache.beginFrame();
+
+        // Blend, unit 1 and the attribute array are still known
+        assertEquals(7, cache.getLastFrameIssuedCalls());
+        assertEquals(3, cache.getLastFrameSkippedCalls());
+        assertFalse(cache.calls.contains("enable " + GLES20.GL_BLEND));
+        assertFalse(cache.calls.contains("texture 5"));
+        assertTrue(cache.calls.contains("texture 7"));
+    }
+
+    @Test
+    public void textures_areTrackedPerUnit() throws Exception {
+        RecordingCache cache = new RecordingCache();
+        cache.activeTexture(GLES20.GL_TEXTURE0);
+        cache.bindTexture2D(1);
+        cache.activeTexture(GLES20.GL_TEXTURE1);
+        cache.bindTexture2D(1);
+        cache.activeTexture(GLES20.GL_TEXTURE0);
+        cache.bindTexture2D(1);
+        assertEquals(5, cache.calls.size());
+    }
+
+    @Test
+    public void untrackedState_isAlwaysIssued() throws Exception {
+        RecordingCache cache = new RecordingCache();
+        cache.enable(GLES20.GL_DITHER);
+        cache.enable(GLES20.GL_DITHER);
+        cache.enableVertexAttribArray(-1);
+        // Texture binds with an unknown active unit
+        cache.bindTexture2D(2);
+        cache.bindTexture2D(2);
+        assertEquals(4, cache.calls.size());
+    }
+}
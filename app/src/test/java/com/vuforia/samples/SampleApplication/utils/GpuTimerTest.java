@@ -0,0 +1,175 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class GpuTimerTest {
+
+    private static final int BACKGROUND = 0;
+    private static final int AUGMENTATION = 1;
+
+    /** Fakes the queries: each one takes 1 ms per id and is ready when marked */
+    private static class FakeTimer extends GpuTimer {
+        final List<String> calls = new ArrayList<String>();
+        final Set<Integer> available = new HashSet<Integer>();
+        boolean supported = true;
+        boolean disjoint;
+
+        FakeTimer() {
+            super(new String[] { "background", "augmentation" });
+        }
+
+        @Override
+        protected boolean glIsTimerQuerySupported() {
+            return supported;
+        }
+
+        @Override
+        protected void glGenQueries(int[] queries) {
+            for (int i = 0; i < queries.length; i++)
+                queries[i] = i + 1;
+        }
+
+        @Override
+        protected void glDeleteQueries(int[] queries) {
+            calls.add("delete " + queries.length + " from " + queries[0]);
+        }
+
+        @Override
+        protected void glBeginQuery(int query) {
+            calls.add("begin " + query);
+        }
+
+        @Override
+        protected void glEndQuery() {
+            calls.add("end");
+        }
+
+        @Override
+        protected boolean glIsResultAvailable(int query) {
+            return available.contains(query);
+        }
+
+        @Override
+        protected long glGetResult(int query) {
+            calls.add("result " + query);
+            return query * 1000000L;
+        }
+
+        @Override
+        protected boolean glIsDisjoint() {
+            return disjoint;
+        }
+    }
+
+    private static void frame(GpuTimer timer) {
+        timer.beginFrame();
+        timer.begin(BACKGROUND);
+        timer.end(BACKGROUND);
+        timer.begin(AUGMENTATION);
+        timer.end(AUGMENTATION);
+    }
+
+    @Test
+    public void results_areReadOnlyWhenAvailable() throws Exception {
+        FakeTimer timer = new FakeTimer();
+        timer.onSurfaceCreated();
+        frame(timer);
+        for (int i = 1; i < GpuTimer.FRAMES_IN_FLIGHT; i++)
+            frame(timer);
+        assertEquals(0, timer.getResultCount());
+        assertNull(timer.format());
+
+        // The first frame used the queries 3 and 4, back to its slot
+        timer.available.add(3);
+        timer.beginFrame();
+        assertTrue(timer.calls.contains("result 3"));
+        assertFalse(timer.calls.contains("result 4"));
+        assertEquals(1, timer.getResultCount());
+        assertEquals(3000000L, timer.getLastNanos(BACKGROUND));
+        assertEquals(3.0, timer.getAverageMs(BACKGROUND), 1e-9);
+        assertTrue(timer.format().startsWith("gpu background 3.00 ms"));
+    }
+
+    @Test
+    public void pendingSlot_isSkippedInsteadOfWaiting() throws Exception {
+        FakeTimer timer = new FakeTimer();
+        timer.onSurfaceCreated();
+        for (int i = 0; i <= GpuTimer.FRAMES_IN_FLIGHT; i++)
+            frame(timer);
+
+        // Back to the slot of the first frame, nothing was available
+        timer.calls.clear();
+        timer.beginFrame();
+        timer.begin(BACKGROUND);
+        timer.end(BACKGROUND);
+        assertTrue(timer.calls.isEmpty());
+    }
+
+    @Test
+    public void pass_isMeasuredOncePerFrame() throws Exception {
+        FakeTimer timer = new FakeTimer();
+        timer.onSurfaceCreated();
+        timer.beginFrame();
+        timer.begin(BACKGROUND);
+        timer.begin(AUGMENTATION);
+        timer.end(AUGMENTATION);
+        timer.end(BACKGROUND);
+        timer.begin(BACKGROUND);
+        timer.end(BACKGROUND);
+        assertEquals(2, timer.calls.size());
+    }
+
+    @Test
+    public void disjointResults_areDiscarded() throws Exception {
+        FakeTimer timer = new FakeTimer();
+        timer.onSurfaceCreated();
+        for (int i = 0; i < GpuTimer.FRAMES_IN_FLIGHT; i++)
+            frame(timer);
+        timer.available.add(3);
+        timer.disjoint = true;
+        timer.beginFrame();
+        assertTrue(timer.calls.contains("result 3"));
+        assertEquals(0, timer.getResultCount());
+
+        // The slot is free again
+        timer.calls.clear();
+        timer.begin(BACKGROUND);
+        assertEquals("begin 3", timer.calls.get(0));
+    }
+
+    @Test
+    public void onSurfaceCreated_deletesThePreviousQueries() throws Exception {
+        FakeTimer timer = new FakeTimer();
+        timer.onSurfaceCreated();
+        assertTrue(timer.calls.isEmpty());
+
+        timer.onSurfaceCreated();
+        assertEquals(1, timer.calls.size());
+        assertEquals("delete " + 2 * GpuTimer.FRAMES_IN_FLIGHT + " from 1", timer.calls.get(0));
+
+        // Nothing was generated on an unsupported context
+        timer.supported = false;
+        timer.onSurfaceCreated();
+        timer.onSurfaceCreated();
+        assertEquals(2, timer.calls.size());
+    }
+
+    @Test
+    public void unsupported_isNoOp() throws Exception {
+        FakeTimer timer = new FakeTimer();
+        timer.supported = false;
+        timer.onSurfaceCreated();
+        assertFalse(timer.isSupported());
+        frame(timer);
+        frame(timer);
+        assertTrue(timer.calls.isEmpty());
+        assertNull(timer.format());
+    }
+}
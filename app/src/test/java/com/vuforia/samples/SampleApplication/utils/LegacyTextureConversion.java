@@ -0,0 +1,39 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The ARGB to RGBA conversion of Texture.loadTextureFromIntBuffer before
+ * PixelBuffers, kept as the reference of PixelBuffersTest.
+ */
+final class LegacyTextureConversion {
+
+    private LegacyTextureConversion() {
+    }
+
+    /** @return the RGBA bytes, rows flipped, as the old texture upload got them */
+    static byte[] convert(int[] data, int width, int height) {
+        int numPixels = width * height;
+        byte[] dataBytes = new byte[numPixels * 4];
+
+        for (int p = 0; p < numPixels; ++p) {
+            int colour = data[p];
+            dataBytes[p * 4] = (byte) (colour >>> 16); // R
+            dataBytes[p * 4 + 1] = (byte) (colour >>> 8); // G
+            dataBytes[p * 4 + 2] = (byte) colour; // B
+            dataBytes[p * 4 + 3] = (byte) (colour >>> 24); // A
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(dataBytes.length).order(
+                ByteOrder.nativeOrder());
+        int rowSize = width * 4;
+        for (int r = 0; r < height; r++)
+            buffer.put(dataBytes, rowSize * (height - 1 - r), rowSize);
+
+        buffer.rewind();
+        byte[] out = new byte[buffer.remaining()];
+        buffer.get(out);
+        return out;
+    }
+}
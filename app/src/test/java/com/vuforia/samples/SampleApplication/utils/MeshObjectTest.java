@@ -0,0 +1,117 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class MeshObjectTest {
+
+    /** Exposes fillBuffer */
+    private static class Mesh extends MeshObject {
+        @Override
+        public Buffer getBuffer(BUFFER_TYPE bufferType) {
+            return null;
+        }
+
+        @Override
+        public int getNumObjectVertex() {
+            return 0;
+        }
+
+        @Override
+        public int getNumObjectIndex() {
+            return 0;
+        }
+    }
+
+    private static float[] floats(Buffer buffer) {
+        ByteBuffer bytes = (ByteBuffer) buffer;
+        float[] values = new float[bytes.remaining() / 4];
+        bytes.duplicate().order(bytes.order()).asFloatBuffer().get(values);
+        return values;
+    }
+
+    @Test
+    public void fillBuffer_copiesFloatsInNativeOrder() throws Exception {
+        float[] values = { 1.5f, -2f, 3.25f, Float.MAX_VALUE, 0f };
+        ByteBuffer buffer = (ByteBuffer) new Mesh().fillBuffer(values);
+        assertTrue(buffer.isDirect());
+        assertEquals(ByteOrder.nativeOrder(), buffer.order());
+        assertEquals(0, buffer.position());
+        assertEquals(values.length * 4, buffer.limit());
+        assertEquals(1.5f, buffer.getFloat(0), 0f);
+        assertArrayEquals(values, floats(buffer), 0f);
+    }
+
+    @Test
+    public void fillBuffer_convertsDoublesToFloats() throws Exception {
+        double[] values = { 0.1, -4.461498, 20.030291 };
+        float[] expected = { 0.1f, -4.461498f, 20.030291f };
+        assertArrayEquals(expected, floats(new Mesh().fillBuffer(values)), 0f);
+    }
+
+    @Test
+    public void fillBuffer_copiesShorts() throws Exception {
+        short[] values = { 0, 1, 2, Short.MAX_VALUE, -1 };
+        ByteBuffer buffer = (ByteBuffer) new Mesh().fillBuffer(values);
+        assertEquals(ByteOrder.nativeOrder(), buffer.order());
+        assertEquals(values.length * 2, buffer.remaining());
+        short[] copy = new short[values.length];
+        buffer.asShortBuffer().get(copy);
+        assertArrayEquals(values, copy);
+    }
+
+    @Test
+    public void bakedMesh_viewsTheModelBuffers() throws Exception {
+        float[] vertices = { 0, 0, 0, 1, 0, 0, 0, 1, 0 };
+        float[] normals = { 0, 0, 1, 0, 0, 1, 0, 0, 1 };
+        float[] texCoords = { 0, 0, 1, 0, 0, 1 };
+        short[] indices = { 0, 1, 2 };
+        BakedMeshObject mesh = new BakedMeshObject(
+                BinaryModelFile.fromArrays(vertices, normals, texCoords, indices));
+        assertEquals(3, mesh.getNumObjectVertex());
+        assertEquals(3, mesh.getNumObjectIndex());
+        assertArrayEquals(vertices, floats(mesh.getVertices()), 0f);
+        assertArrayEquals(normals, floats(mesh.getNormals()), 0f);
+        assertArrayEquals(texCoords, floats(mesh.getTexCoords()), 0f);
+        short[] copy = new short[3];
+        ((ByteBuffer) mesh.getIndices()).asShortBuffer().get(copy);
+        assertArrayEquals(indices, copy);
+    }
+
+    @Test
+    public void bakedAssets_holdTheBuiltInMeshes() throws Exception {
+        BakedMeshObject teapot = new BakedMeshObject(readAsset(Teapot.ASSET));
+        assertEquals(824, teapot.getNumObjectVertex());
+        assertEquals(3072, teapot.getNumObjectIndex());
+        assertEquals(824 * 12, teapot.getNormals().limit());
+        assertEquals(824 * 8, teapot.getTexCoords().limit());
+        assertArrayEquals(new float[] { 11.2222f, 0.1103f, 20.030291f },
+                Arrays.copyOf(floats(teapot.getVertices()), 3), 0f);
+
+        BakedMeshObject cube = new BakedMeshObject(readAsset(CubeObject.ASSET));
+        assertEquals(24, cube.getNumObjectVertex());
+        assertEquals(36, cube.getNumObjectIndex());
+        for (float value : floats(cube.getVertices()))
+            assertEquals(1f, Math.abs(value), 0f);
+    }
+
+    /** The unit tests run in the app module directory */
+    private static ByteBuffer readAsset(String name) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(new File("src/main/assets", name), "r");
+        try {
+            return file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        } finally {
+            file.close();
+        }
+    }
+}
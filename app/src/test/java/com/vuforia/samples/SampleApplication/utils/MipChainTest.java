@@ -0,0 +1,69 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class MipChainTest {
+
+    @Test
+    public void getLevelCount_goesDownToOnePixel() throws Exception {
+        assertEquals(1, MipChain.getLevelCount(1, 1));
+        assertEquals(10, MipChain.getLevelCount(512, 512));
+        assertEquals(10, MipChain.getLevelCount(512, 64));
+        assertEquals(3, MipChain.getLevelCount(5, 3));
+    }
+
+    @Test
+    public void downsample_averagesEachBlock() throws Exception {
+        // 2x2 image: one channel per pixel differs, the others are constant
+        ByteBuffer rgba = ByteBuffer.allocateDirect(2 * 2 * 4);
+        rgba.put(new byte[] { 0, 10, (byte) 255, 1 });
+        rgba.put(new byte[] { 100, 10, (byte) 255, 3 });
+        rgba.put(new byte[] { (byte) 200, 10, (byte) 255, 5 });
+        rgba.put(new byte[] { (byte) 255, 10, (byte) 255, 7 });
+        rgba.rewind();
+
+        ByteBuffer level = MipChain.downsample(rgba, 2, 2);
+        assertEquals(4, level.remaining());
+        assertEquals(139, level.get(0) & 0xFF);
+        assertEquals(10, level.get(1) & 0xFF);
+        assertEquals(255, level.get(2) & 0xFF);
+        assertEquals(4, level.get(3) & 0xFF);
+    }
+
+    @Test
+    public void downsample_dropsTheLastOddColumn() throws Exception {
+        // 3x1 image: the third pixel does not fit the 1x1 level
+        ByteBuffer rgba = ByteBuffer.allocateDirect(3 * 1 * 4);
+        rgba.put(new byte[] { 10, 10, 10, 10 });
+        rgba.put(new byte[] { 30, 30, 30, 30 });
+        rgba.put(new byte[] { (byte) 255, (byte) 255, (byte) 255, (byte) 255 });
+        rgba.rewind();
+
+        ByteBuffer level = MipChain.downsample(rgba, 3, 1);
+        assertEquals(4, level.remaining());
+        // The single row is averaged with itself
+        assertEquals(20, level.get(0) & 0xFF);
+        assertEquals(20, level.get(3) & 0xFF);
+    }
+
+    @Test
+    public void generate_buildsEveryLevelWithItsSize() throws Exception {
+        int width = 8;
+        int height = 2;
+        ByteBuffer rgba = ByteBuffer.allocateDirect(width * height * 4);
+        while (rgba.hasRemaining())
+            rgba.put((byte) 42);
+        rgba.rewind();
+
+        ByteBuffer[] levels = MipChain.generate(rgba, width, height);
+        assertEquals(3, levels.length);
+        assertEquals(4 * 1 * 4, levels[0].remaining());
+        assertEquals(2 * 1 * 4, levels[1].remaining());
+        assertEquals(1 * 1 * 4, levels[2].remaining());
+        assertEquals(42, levels[2].get(3));
+    }
+}
@@ -0,0 +1,41 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class PixelBuffersTest {
+
+    @Test
+    public void argbToRgba_sameBytesAsLegacyConversion() throws Exception {
+        int width = 5, height = 3;
+        int[] argb = new int[width * height];
+        for (int i = 0; i < argb.length; i++)
+            argb[i] = 0x80000000 | (i * 0x010203) ^ (i << 27);
+
+        ByteBuffer rgba = PixelBuffers.argbToRgba(argb, width, height);
+
+        assertTrue(rgba.isDirect());
+        assertEquals(0, rgba.position());
+        assertArrayEquals(LegacyTextureConversion.convert(argb, width, height), bytes(rgba));
+    }
+
+    @Test
+    public void flipRows_swapsRowsInPlace() throws Exception {
+        ByteBuffer data = ByteBuffer.allocateDirect(6);
+        data.put(new byte[]{1, 2, 3, 4, 5, 6}).rewind();
+
+        PixelBuffers.flipRows(data, 2, 3);
+
+        assertEquals(0, data.position());
+        assertArrayEquals(new byte[]{5, 6, 3, 4, 1, 2}, bytes(data));
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] out = new byte[buffer.remaining()];
+        buffer.duplicate().get(out);
+        return out;
+    }
+}
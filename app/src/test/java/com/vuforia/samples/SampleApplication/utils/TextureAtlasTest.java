@@ -0,0 +1,83 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TextureAtlasTest {
+
+    private static Texture solid(int width, int height, int value) {
+        Texture texture = new Texture();
+        texture.mWidth = width;
+        texture.mHeight = height;
+        texture.mChannels = 4;
+        texture.mData = ByteBuffer.allocateDirect(width * height * 4);
+        while (texture.mData.hasRemaining())
+            texture.mData.put((byte) value);
+        texture.mData.rewind();
+        return texture;
+    }
+
+    private static int pixel(Texture page, int x, int y) {
+        return page.mData.get((y * page.mWidth + x) * 4) & 0xFF;
+    }
+
+    @Test
+    public void build_packsTexturesWithoutOverlap() throws Exception {
+        TextureAtlas atlas = new TextureAtlas(256, 2);
+        assertTrue(atlas.add("a", solid(64, 64, 10)));
+        assertTrue(atlas.add("b", solid(32, 16, 20)));
+        assertTrue(atlas.add("c", solid(100, 40, 30)));
+
+        List<Texture> pages = atlas.build();
+        assertEquals(1, pages.size());
+        Texture page = pages.get(0);
+
+        for (String key : new String[] { "a", "b", "c" }) {
+            TextureAtlas.Region region = atlas.getRegion(key);
+            assertEquals(0, region.getPage());
+            int expected = key.equals("a") ? 10 : key.equals("b") ? 20 : 30;
+            // Corners and the extruded border hold the pixels of the texture
+            assertEquals(expected, pixel(page, region.getX(), region.getY()));
+            assertEquals(expected, pixel(page, region.getX() + region.getWidth() - 1,
+                    region.getY() + region.getHeight() - 1));
+            assertEquals(expected, pixel(page, region.getX() - 2, region.getY() - 2));
+        }
+    }
+
+    @Test
+    public void region_mapsTexCoordsInsideThePage() throws Exception {
+        TextureAtlas atlas = new TextureAtlas(128, 0);
+        atlas.add("a", solid(64, 64, 1));
+        atlas.add("b", solid(64, 64, 2));
+        Texture page = atlas.build().get(0);
+        TextureAtlas.Region b = atlas.getRegion("b");
+
+        assertEquals((float) b.getX() / page.mWidth, b.mapU(0), 1e-6f);
+        assertEquals((float) (b.getX() + 64) / page.mWidth, b.mapU(1), 1e-6f);
+        assertEquals((float) (b.getY() + 64) / page.mHeight, b.mapV(1), 1e-6f);
+    }
+
+    @Test
+    public void add_rejectsCompressedAndOversizedTextures() throws Exception {
+        TextureAtlas atlas = new TextureAtlas(64, 4);
+        Texture compressed = solid(8, 8, 0);
+        compressed.mCompressedFormat = CompressedTextureFile.GL_ETC1_RGB8_OES;
+        assertFalse(atlas.add("compressed", compressed));
+        assertFalse(atlas.add("big", solid(64, 8, 0)));
+        assertNull(atlas.getRegion("big"));
+    }
+
+    @Test
+    public void build_opensNewPageWhenFull() throws Exception {
+        TextureAtlas atlas = new TextureAtlas(64, 0);
+        for (int i = 0; i < 5; i++)
+            atlas.add("t" + i, solid(32, 32, i));
+        List<Texture> pages = atlas.build();
+        assertEquals(2, pages.size());
+        assertEquals(1, atlas.getRegion("t4").getPage());
+    }
+}
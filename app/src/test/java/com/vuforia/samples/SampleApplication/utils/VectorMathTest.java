@@ -0,0 +1,182 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class VectorMathTest {
+
+    /** A column major matrix translating by (tx, ty, tz) and scaling by s */
+    private static float[] translateScale(float tx, float ty, float tz, float s) {
+        return new float[] {
+                s, 0, 0, 0,
+                0, s, 0, 0,
+                0, 0, s, 0,
+                tx, ty, tz, 1 };
+    }
+
+    private static float[] randomMatrix(Random random) {
+        float[] m = new float[16];
+        for (int i = 0; i < 16; i++)
+            m[i] = random.nextFloat() * 2 - 1;
+        // Diagonally dominant, so never singular
+        for (int i = 0; i < 4; i++)
+            m[i * 5] += 4;
+        return m;
+    }
+
+    private static void multiply(float[] a, float[] b, float[] out) {
+        for (int c = 0; c < 4; c++) {
+            for (int r = 0; r < 4; r++) {
+                float sum = 0;
+                for (int k = 0; k < 4; k++)
+                    sum += a[k * 4 + r] * b[c * 4 + k];
+                out[c * 4 + r] = sum;
+            }
+        }
+    }
+
+    @Test
+    public void inverse_timesMatrixIsIdentity() throws Exception {
+        Random random = new Random(3);
+        float[] identity = new float[16];
+        VectorMath.matrix44Identity(identity);
+        float[] inverse = new float[16], product = new float[16];
+        for (int i = 0; i < 100; i++) {
+            float[] m = randomMatrix(random);
+            assertTrue(VectorMath.matrix44Inverse(m, inverse));
+            multiply(m, inverse, product);
+            assertArrayEquals(identity, product, 1e-5f);
+        }
+    }
+
+    @Test
+    public void inverse_ofSingularMatrixFails() throws Exception {
+        float[] out = new float[16];
+        assertFalse(VectorMath.matrix44Inverse(new float[16], out));
+        assertArrayEquals(new float[16], out, 0);
+    }
+
+    @Test
+    public void determinant_ofKnownMatrices() throws Exception {
+        assertEquals(8f, VectorMath.matrix44Determinant(translateScale(5, 6, 7, 2)), 1e-6f);
+        float[] m = {
+                2, 0, 0, 1,
+                0, 3, 0, 0,
+                0, 0, 4, 0,
+                1, 0, 0, 5 };
+        // 3 * 4 * (2 * 5 - 1 * 1)
+        assertEquals(108f, VectorMath.matrix44Determinant(m), 1e-5f);
+    }
+
+    @Test
+    public void transform_isColumnMajor() throws Exception {
+        float[] m = translateScale(1, 2, 3, 2);
+        float[] out = new float[4];
+        VectorMath.vec4Transform(new float[] { 1, 1, 1, 1 }, m, out);
+        assertArrayEquals(new float[] { 3, 4, 5, 1 }, out, 0);
+
+        float[] out3 = new float[3];
+        VectorMath.vec3Transform(new float[] { 1, 1, 1 }, m, out3);
+        assertArrayEquals(new float[] { 3, 4, 5 }, out3, 0);
+        VectorMath.vec3TransformNormal(new float[] { 1, 1, 1 }, m, out3);
+        assertArrayEquals(new float[] { 2, 2, 2 }, out3, 0);
+    }
+
+    @Test
+    public void linePlaneIntersection_hitsAndMissesTheFloor() throws Exception {
+        float[] out = { 9, 9, 9 };
+        float[] floor = { 0, 0, 0 }, up = { 0, 0, 1 };
+        assertTrue(VectorMath.linePlaneIntersection(new float[] { 1, 2, 10 },
+                new float[] { 3, 2, 8 }, floor, up, out));
+        assertArrayEquals(new float[] { 11, 2, 0 }, out, 1e-5f);
+
+        out = new float[] { 9, 9, 9 };
+        assertFalse(VectorMath.linePlaneIntersection(new float[] { 0, 0, 1 },
+                new float[] { 5, 0, 1 }, floor, up, out));
+        assertArrayEquals(new float[] { 9, 9, 9 }, out, 0);
+    }
+
+    @Test
+    public void projectScreenPointToPlane_castsTheRayOfThePoint() throws Exception {
+        float[] identity = new float[16];
+        VectorMath.matrix44Identity(identity);
+        // Camera 10 units above the plane z = 0, looking along -z
+        float[] modelView = translateScale(0, 0, -10, 1);
+        float[] lineStart = new float[3], lineEnd = new float[3], hit = new float[3];
+
+        // The center of the screen looks straight down, from the near plane
+        // at z = -1 to the far one at z = 1 in eye coordinates
+        assertTrue(VectorMath.projectScreenPointToPlane(identity, modelView,
+                640, 480, 640, 480, 320, 240, new float[] { 0, 0, 0 },
+                new float[] { 0, 0, 1 }, lineStart, lineEnd, hit));
+        assertArrayEquals(new float[] { 0, 0, 9 }, lineStart, 1e-5f);
+        assertArrayEquals(new float[] { 0, 0, 11 }, lineEnd, 1e-5f);
+        assertArrayEquals(new float[] { 0, 0, 0 }, hit, 1e-5f);
+
+        // The top right corner, y goes down on the screen
+        assertTrue(VectorMath.projectScreenPointToPlane(identity, modelView,
+                640, 480, 640, 480, 640, 0, new float[] { 0, 0, 0 },
+                new float[] { 0, 0, 1 }, null, null, hit));
+        assertArrayEquals(new float[] { 1, 1, 0 }, hit, 1e-5f);
+    }
+
+    @Test
+    public void threads_doNotShareScratch() throws Exception {
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final float depth = 5 + t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        float[] identity = new float[16];
+                        VectorMath.matrix44Identity(identity);
+                        float[] modelView = translateScale(0, 0, -depth, 1);
+                        float[] lineStart = new float[3], hit = new float[3];
+                        for (int i = 0; i < 20000; i++) {
+                            VectorMath.projectScreenPointToPlane(identity, modelView,
+                                    640, 480, 640, 480, 320, 240, new float[] { 0, 0, 0 },
+                                    new float[] { 0, 0, 1 }, lineStart, null, hit);
+                            assertEquals(depth - 1, lineStart[2], 1e-4f);
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        if (failure.get() != null)
+            throw new AssertionError(failure.get());
+    }
+
+    @Test
+    public void projectScreenPointToPlane_doesNotAllocate() throws Exception {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        float[] identity = new float[16];
+        VectorMath.matrix44Identity(identity);
+        float[] modelView = translateScale(0, 0, -10, 1);
+        float[] center = new float[3], normal = { 0, 0, 1 };
+        float[] lineStart = new float[3], lineEnd = new float[3], hit = new float[3];
+        for (int i = 0; i < 1000; i++)
+            VectorMath.projectScreenPointToPlane(identity, modelView, 640, 480,
+                    640, 480, i % 640, 240, center, normal, lineStart, lineEnd, hit);
+
+        long tid = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < 1000; i++)
+            VectorMath.projectScreenPointToPlane(identity, modelView, 640, 480,
+                    640, 480, i % 640, 240, center, normal, lineStart, lineEnd, hit);
+        long allocated = threads.getThreadAllocatedBytes(tid) - before;
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+}
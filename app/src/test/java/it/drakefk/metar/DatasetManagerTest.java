@@ -0,0 +1,207 @@
+package it.drakefk.metar;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class DatasetManagerTest {
+
+    /** Keeps the active datasets like the tracker */
+    private static class FakeTracker implements DatasetManager.Activator<String> {
+        final Set<String> active = new HashSet<String>();
+        final List<String> calls = new ArrayList<String>();
+        String failing;
+
+        @Override
+        public boolean activate(String dataSet) {
+            calls.add("+" + dataSet);
+            if (dataSet.equals(failing))
+                return false;
+            assertTrue(active.add(dataSet));
+            return true;
+        }
+
+        @Override
+        public boolean deactivate(String dataSet) {
+            calls.add("-" + dataSet);
+            assertTrue(active.remove(dataSet));
+            return true;
+        }
+    }
+
+    /** A frame where the given trackables are found */
+    private static class Frame implements TrackableResultSource {
+        final int[] ids;
+
+        Frame(int... ids) {
+            this.ids = ids;
+        }
+
+        @Override
+        public int getNumTrackableResults() {
+            return ids.length;
+        }
+
+        @Override
+        public void getPose(int index, float[] pose) {
+        }
+
+        @Override
+        public int getTrackableId(int index) {
+            return ids[index];
+        }
+
+        @Override
+        public String getTrackableName(int index) {
+            return null;
+        }
+
+        @Override
+        public Object getTrackableUserData(int index) {
+            return null;
+        }
+    }
+
+    private FakeTracker mTracker;
+    private DatasetManager<String> mManager;
+
+    @Before
+    public void setUp() throws Exception {
+        mTracker = new FakeTracker();
+        // 2 datasets and 10 trackables, probing after 1 s
+        mManager = new DatasetManager<String>(2, 10, 1000, mTracker);
+    }
+
+    private static Set<String> set(String... values) {
+        Set<String> set = new HashSet<String>();
+        for (String value : values)
+            set.add(value);
+        return set;
+    }
+
+    @Test
+    public void add_deactivatesTheLeastRecentlyDetected() throws Exception {
+        mManager.add("a", new int[] { 1, 2 }, 0);
+        mManager.add("b", new int[] { 3 }, 10);
+        assertEquals(set("a", "b"), mTracker.active);
+
+        // a is found, so b is the least recently used when c arrives
+        mManager.update(new Frame(2), 20);
+        mManager.add("c", new int[] { 4 }, 30);
+        assertEquals(set("a", "c"), mTracker.active);
+        assertFalse(mManager.isActive("b"));
+        assertEquals(3, mManager.size());
+        assertEquals(2, mManager.getActiveCount());
+    }
+
+    @Test
+    public void add_respectsTheTrackableBudget() throws Exception {
+        mManager.add("a", new int[] { 1, 2, 3, 4, 5, 6 }, 0);
+        mManager.add("b", new int[] { 7, 8, 9, 10, 11 }, 10);
+        // 11 trackables do not fit, only the newest is active
+        assertEquals(set("b"), mTracker.active);
+        mManager.add("c", new int[] { 12 }, 20);
+        assertEquals(set("b", "c"), mTracker.active);
+
+        // A dataset larger than the budget is activated alone
+        mManager.add("huge", new int[20], 30);
+        assertEquals(set("huge"), mTracker.active);
+    }
+
+    @Test
+    public void update_probesTheInactiveDatasetsInTurn() throws Exception {
+        mManager.add("a", new int[] { 1 }, 0);
+        mManager.add("b", new int[] { 2 }, 10);
+        mManager.add("c", new int[] { 3 }, 20);
+        assertEquals(set("b", "c"), mTracker.active);
+
+        // Nothing found for 1 s, a is tried in place of b
+        mManager.update(new Frame(), 500);
+        assertEquals(set("b", "c"), mTracker.active);
+        mManager.update(new Frame(), 1020);
+        assertEquals(set("a", "c"), mTracker.active);
+        // Then b in place of c, and c in place of a
+        mManager.update(new Frame(), 2020);
+        assertEquals(set("a", "b"), mTracker.active);
+        mManager.update(new Frame(), 3020);
+        assertEquals(set("b", "c"), mTracker.active);
+
+        // All of them were tried, the probing stops
+        mTracker.calls.clear();
+        for (long t = 3100; t < 8000; t += 100)
+            mManager.update(new Frame(), t);
+        assertTrue(mTracker.calls.isEmpty());
+
+        // While a trackable is found nothing changes
+        for (long t = 8000; t < 12000; t += 100)
+            mManager.update(new Frame(2), t);
+        assertTrue(mTracker.calls.isEmpty());
+        // Then it is lost and a new round starts
+        mManager.update(new Frame(), 12000);
+        mManager.update(new Frame(), 13000);
+        assertEquals(set("a", "b"), mTracker.active);
+    }
+
+    @Test
+    public void update_doesNotProbeWhileABuiltInTrackableIsFound() throws Exception {
+        mManager.add("a", new int[] { 1 }, 0);
+        mManager.add("b", new int[] { 2 }, 10);
+        mManager.add("c", new int[] { 3 }, 20);
+        mTracker.calls.clear();
+
+        // 99 is not in the imported datasets
+        for (long t = 100; t < 5000; t += 100)
+            mManager.update(new Frame(99), t);
+        assertTrue(mTracker.calls.isEmpty());
+    }
+
+    @Test
+    public void hint_isAppliedByTheNextUpdate() throws Exception {
+        mManager.add("a", new int[] { 1 }, 0);
+        mManager.add("b", new int[] { 2 }, 10);
+        mManager.add("c", new int[] { 3 }, 20);
+        assertTrue(mManager.hint("a", 30));
+        assertFalse(mManager.hint("unknown", 30));
+        assertEquals(set("b", "c"), mTracker.active);
+        mManager.update(new Frame(), 40);
+        assertEquals(set("a", "c"), mTracker.active);
+    }
+
+    @Test
+    public void remove_activatesTheNextOne() throws Exception {
+        mManager.add("a", new int[] { 1 }, 0);
+        mManager.add("b", new int[] { 2 }, 10);
+        mManager.add("c", new int[] { 3 }, 20);
+        assertTrue(mManager.remove("c"));
+        assertFalse(mManager.remove("c"));
+        assertEquals(set("a", "b"), mTracker.active);
+
+        // The ids of c are not looked up anymore
+        mManager.update(new Frame(3), 30);
+        mManager.add("d", new int[] { 4 }, 40);
+        assertEquals(set("b", "d"), mTracker.active);
+    }
+
+    @Test
+    public void failedActivation_staysInactive() throws Exception {
+        mTracker.failing = "a";
+        mManager.add("a", new int[] { 1 }, 0);
+        assertFalse(mManager.isActive("a"));
+        assertEquals(0, mManager.getActiveCount());
+    }
+
+    @Test
+    public void clear_forgetsWithoutTouchingTheTracker() throws Exception {
+        mManager.add("a", new int[] { 1 }, 0);
+        mTracker.calls.clear();
+        mManager.clear();
+        assertEquals(0, mManager.size());
+        assertTrue(mTracker.calls.isEmpty());
+    }
+}
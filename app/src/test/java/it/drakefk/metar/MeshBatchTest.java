@@ -0,0 +1,55 @@
+package it.drakefk.metar;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MeshBatchTest {
+
+    private static float[] matrix(float value) {
+        float[] m = new float[16];
+        m[0] = value;
+        return m;
+    }
+
+    @Test
+    public void group_makesInstancesOfTheSameMeshAndTextureContiguous() throws Exception {
+        Object teapot = new Object();
+        Object cube = new Object();
+        MeshBatch<Object> batch = new MeshBatch<Object>(1);
+        batch.add(teapot, 1, matrix(1));
+        batch.add(cube, 1, matrix(2));
+        batch.add(teapot, 1, matrix(3));
+        batch.add(teapot, 2, matrix(4));
+        batch.add(teapot, 1, matrix(5));
+
+        assertEquals(3, batch.group());
+        assertEquals(5, batch.getCount());
+
+        assertSame(teapot, batch.getMesh(0));
+        assertEquals(1, batch.getTexture(0));
+        assertEquals(3, batch.getSize(0));
+        float[] matrices = batch.getMatrices();
+        int start = batch.getStart(0);
+        assertEquals(1, matrices[start * 16], 0);
+        assertEquals(3, matrices[(start + 1) * 16], 0);
+        assertEquals(5, matrices[(start + 2) * 16], 0);
+
+        assertSame(cube, batch.getMesh(1));
+        assertEquals(1, batch.getSize(1));
+        assertEquals(2, matrices[batch.getStart(1) * 16], 0);
+
+        assertEquals(2, batch.getTexture(2));
+        assertEquals(4, matrices[batch.getStart(2) * 16], 0);
+    }
+
+    @Test
+    public void clear_startsAnEmptyFrame() throws Exception {
+        MeshBatch<Object> batch = new MeshBatch<Object>();
+        batch.add(new Object(), 1, matrix(1));
+        batch.group();
+        batch.clear();
+        assertEquals(0, batch.getCount());
+        assertEquals(0, batch.group());
+    }
+}
@@ -0,0 +1,159 @@
+package it.drakefk.metar;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the pose filters on synthetic poses: jitter is reduced, a step is
+ * reached, rotations stay rotations, and filtering does not allocate.
+ */
+public class PoseFilterTest {
+
+    private static final float DT = 1 / 30f;
+    private static final long DT_NS = 33333333L;
+
+    /** A pose rotated by angle radians around z and translated */
+    private static float[] pose(float angle, float x, float y, float z) {
+        float c = (float) Math.cos(angle), s = (float) Math.sin(angle);
+        return new float[] {
+                c, -s, 0, x,
+                s, c, 0, y,
+                0, 0, 1, z };
+    }
+
+    private static float angleOf(float[] pose) {
+        return (float) Math.atan2(pose[4], pose[0]);
+    }
+
+    private static void assertRotation(float[] pose) {
+        // The columns of the rotation are orthonormal
+        for (int a = 0; a < 3; a++) {
+            for (int b = 0; b < 3; b++) {
+                float dot = pose[a] * pose[b] + pose[4 + a] * pose[4 + b] + pose[8 + a] * pose[8 + b];
+                assertEquals(a == b ? 1f : 0f, dot, 1e-4f);
+            }
+        }
+    }
+
+    /** Standard deviation of x around its true value after the filter settled */
+    private static double jitter(PoseFilter filter, long seed) {
+        Random random = new Random(seed);
+        double sum2 = 0;
+        int samples = 0;
+        for (int i = 0; i < 300; i++) {
+            float[] p = pose(0.3f, 100 + (float) random.nextGaussian(), 0, 500);
+            filter.filter(p, DT);
+            if (i >= 100) {
+                sum2 += (p[3] - 100) * (p[3] - 100);
+                samples++;
+            }
+        }
+        return Math.sqrt(sum2 / samples);
+    }
+
+    @Test
+    public void quaternion_roundTripsThePose() throws Exception {
+        float[] q = new float[4];
+        for (float angle = -3f; angle <= 3f; angle += 0.5f) {
+            float[] p = pose(angle, 1, 2, 3);
+            QuaternionMath.fromPose(p, q);
+            float[] back = pose(0, 1, 2, 3);
+            QuaternionMath.toPose(q, back);
+            assertArrayEquals(p, back, 1e-5f);
+        }
+    }
+
+    @Test
+    public void slerp_takesTheShortestArc() throws Exception {
+        float[] a = new float[4], b = new float[4], out = new float[4];
+        QuaternionMath.fromPose(pose(0.2f, 0, 0, 0), a);
+        QuaternionMath.fromPose(pose(0.6f, 0, 0, 0), b);
+        for (int i = 0; i < 4; i++)
+            b[i] = -b[i];
+        QuaternionMath.slerp(a, b, 0.5f, out);
+        float[] p = pose(0, 0, 0, 0);
+        QuaternionMath.toPose(out, p);
+        assertEquals(0.4f, angleOf(p), 1e-5f);
+    }
+
+    @Test
+    public void filters_reduceJitter() throws Exception {
+        PoseFilter raw = new ExponentialPoseFilter(0, 0);
+        double rawJitter = jitter(raw, 1);
+        assertTrue(jitter(new OneEuroPoseFilter(), 1) < rawJitter * 0.6);
+        assertTrue(jitter(new ExponentialPoseFilter(), 1) < rawJitter * 0.6);
+    }
+
+    @Test
+    public void filters_reachAStep() throws Exception {
+        PoseFilter[] filters = { new OneEuroPoseFilter(), new ExponentialPoseFilter() };
+        for (PoseFilter filter : filters) {
+            filter.filter(pose(0, 0, 0, 500), DT);
+            float[] p = null;
+            for (int i = 0; i < 30; i++) {
+                p = pose(1.0f, 50, 0, 500);
+                filter.filter(p, DT);
+                assertRotation(p);
+            }
+            assertEquals(50f, p[3], 0.5f);
+            assertEquals(1.0f, angleOf(p), 0.01f);
+        }
+    }
+
+    @Test
+    public void bank_filtersOncePerFrameAndResetsLostTrackables() throws Exception {
+        PoseFilterBank bank = new PoseFilterBank(new PoseFilterBank.Factory() {
+            @Override
+            public PoseFilter create() {
+                return new ExponentialPoseFilter(0.5f, 0.5f);
+            }
+        });
+        float[] p = pose(0, 0, 0, 0);
+        bank.filter(7, 0, p);
+        p = pose(0, 100, 0, 0);
+        bank.filter(7, DT_NS, p);
+        float first = p[3];
+        assertTrue(first > 0 && first < 100);
+
+        // The second view of the same frame gets the same pose
+        p = pose(0, 100, 0, 0);
+        bank.filter(7, DT_NS, p);
+        assertEquals(first, p[3], 0);
+
+        // Another trackable has its own filter
+        p = pose(0, 100, 0, 0);
+        bank.filter(8, DT_NS, p);
+        assertEquals(100f, p[3], 0);
+
+        // Lost for a while, taken as is
+        p = pose(0, -100, 0, 0);
+        bank.filter(7, DT_NS + PoseFilterBank.RESET_AFTER_NS + 1, p);
+        assertEquals(-100f, p[3], 0);
+    }
+
+    @Test
+    public void filter_doesNotAllocate() throws Exception {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        PoseFilterBank bank = new PoseFilterBank(new PoseFilterBank.Factory() {
+            @Override
+            public PoseFilter create() {
+                return new OneEuroPoseFilter();
+            }
+        });
+        float[] p = pose(0.5f, 1, 2, 3);
+        for (int i = 0; i < 1000; i++)
+            bank.filter(i % 3, i * DT_NS, p);
+
+        long tid = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(tid);
+        for (int i = 1000; i < 2000; i++)
+            bank.filter(i % 3, i * DT_NS, p);
+        long allocated = threads.getThreadAllocatedBytes(tid) - before;
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+}
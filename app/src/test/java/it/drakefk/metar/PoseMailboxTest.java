@@ -0,0 +1,92 @@
+package it.drakefk.metar;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the latest-pose mailbox between the GL and the UI thread and the
+ * text of the pose HUD.
+ */
+public class PoseMailboxTest {
+
+    private static float[] pose(float value) {
+        float[] pose = new float[16];
+        Arrays.fill(pose, value);
+        return pose;
+    }
+
+    @Test
+    public void take_returnsOnlyTheLatestPoseOnce() throws Exception {
+        PoseMailbox mailbox = new PoseMailbox(16);
+        float[] out = new float[16];
+        assertFalse(mailbox.take(out));
+
+        mailbox.publish(pose(1));
+        mailbox.publish(pose(2));
+        assertTrue(mailbox.take(out));
+        assertArrayEquals(pose(2), out, 0);
+        assertFalse(mailbox.take(out));
+
+        mailbox.publish(pose(3));
+        assertTrue(mailbox.take(out));
+        assertArrayEquals(pose(3), out, 0);
+    }
+
+    @Test
+    public void take_neverSeesAHalfWrittenPose() throws Exception {
+        final PoseMailbox mailbox = new PoseMailbox(16);
+        final int poses = 200000;
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                float[] pose = new float[16];
+                for (int i = 1; i <= poses; i++) {
+                    Arrays.fill(pose, i);
+                    mailbox.publish(pose);
+                }
+            }
+        });
+        writer.start();
+
+        float[] out = new float[16];
+        float last = 0;
+        while (last < poses) {
+            if (!mailbox.take(out))
+                continue;
+            for (float v : out)
+                assertEquals(out[0], v, 0);
+            assertTrue(out[0] > last);
+            last = out[0];
+        }
+        writer.join();
+    }
+
+    @Test
+    public void appendFixed_matchesStringFormat() throws Exception {
+        double[] values = { 0, 1, -1, 0.00004, -0.00004, 0.5, 12.3456789, -987.00051, 1234567.25 };
+        StringBuilder sb = new StringBuilder();
+        for (double v : values) {
+            for (int decimals = 0; decimals <= 4; decimals++) {
+                sb.setLength(0);
+                PoseText.appendFixed(sb, v, decimals, '.');
+                String expected = String.format(Locale.US, "%." + decimals + "f", v);
+                // %f keeps the sign of values rounded to zero
+                if (expected.matches("-0\\.?0*"))
+                    expected = expected.substring(1);
+                assertEquals(expected, sb.toString());
+            }
+        }
+    }
+
+    @Test
+    public void position_usesTheLabelsAndSeparator() throws Exception {
+        PoseText text = new PoseText("mm", "Distanza", ',');
+        assertEquals("Cam Pos: X: 1,5000 mm \n Y: -2,0000 mm \n Z: 0,0001 mm \nDistanza: 3,0000 mm ",
+                text.position(1.5f, -2f, 0.0001f, 3).toString());
+        assertEquals("Rot X: 90,125", text.rotation("Rot X: ", 90.125f).toString());
+    }
+}
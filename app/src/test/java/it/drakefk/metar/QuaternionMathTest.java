@@ -0,0 +1,140 @@
+package it.drakefk.metar;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks QuaternionMath and the MatrixUtils decompositions built on it
+ * against the previous implementations, kept in LegacyRotationMath.
+ */
+public class QuaternionMathTest {
+
+    private static final int SAMPLES = 2000;
+
+    /** Rotation matrix of an axis-angle, through the quaternion */
+    private static float[] matrixOf(float angle, float x, float y, float z) {
+        float[] q = new float[4];
+        QuaternionMath.fromAxisAngle(angle, x, y, z, q);
+        float[] m = new float[16];
+        QuaternionMath.toMatrix(q, m);
+        m[15] = 1;
+        return m;
+    }
+
+    @Test
+    public void matrix_roundTripsThroughTheQuaternion() throws Exception {
+        Random random = new Random(1);
+        float[] q = new float[4];
+        for (int i = 0; i < SAMPLES; i++) {
+            float[] m = LegacyRotationMath.randomRotation(random);
+            QuaternionMath.fromMatrix(m, q);
+            float[] back = new float[16];
+            back[15] = 1;
+            QuaternionMath.toMatrix(q, back);
+            assertArrayEquals(m, back, 1e-5f);
+        }
+    }
+
+    @Test
+    public void eulerAngles_matchThePreviousImplementation() throws Exception {
+        Random random = new Random(2);
+        float[] angles = new float[3];
+        float[] q = new float[4];
+        float[] fromQuaternion = new float[3];
+        for (int i = 0; i < SAMPLES; i++) {
+            float[] m = LegacyRotationMath.randomRotation(random);
+            // Away from gimbal lock, where the decomposition is not unique
+            if (Math.abs(m[2]) > 0.99f || Math.abs(m[8]) > 0.99f)
+                continue;
+            QuaternionMath.fromMatrix(m, q);
+
+            MatrixUtils.toXYZAngle(m, angles);
+            assertArrayEquals(LegacyRotationMath.legacyToXYZAngle(m), angles, 1e-5f);
+            QuaternionMath.toEulerXYZ(q, fromQuaternion);
+            assertArrayEquals(angles, fromQuaternion, 1e-3f);
+
+            MatrixUtils.toZYXAngle(m, angles);
+            assertArrayEquals(LegacyRotationMath.legacyToZYXAngle(m), angles, 1e-5f);
+            QuaternionMath.toEulerZYX(q, fromQuaternion);
+            assertArrayEquals(angles, fromQuaternion, 1e-3f);
+        }
+    }
+
+    @Test
+    public void eulerAngles_areNotNaNPastTheRoundingLimit() throws Exception {
+        float[] m = matrixOf((float) (Math.PI / 2), 0, 1, 0);
+        m[2] = -1.0000001f;
+        float[] angles = MatrixUtils.toXYZAngle(m);
+        assertEquals(Math.PI / 2, angles[1], 1e-6);
+    }
+
+    @Test
+    public void axisAngle_rebuildsTheRotation() throws Exception {
+        Random random = new Random(3);
+        for (int i = 0; i < SAMPLES; i++) {
+            float[] m = LegacyRotationMath.randomRotation(random);
+            float[] axisAngle = MatrixUtils.toAxisAngle(m);
+            assertTrue(axisAngle[0] >= 0 && axisAngle[0] <= Math.PI + 1e-6);
+            assertArrayEquals(m, matrixOf(axisAngle[0], axisAngle[1], axisAngle[2], axisAngle[3]),
+                    1e-4f);
+
+            // Away from the singular cases of the previous code it gives the same angle
+            float[] legacy = LegacyRotationMath.legacyToAxisAngle(m);
+            if (legacy[0] > 0.1f && legacy[0] < Math.PI - 0.1f)
+                assertEquals(legacy[0], axisAngle[0], 1e-3f);
+        }
+    }
+
+    @Test
+    public void axisAngle_isAccurateNearZeroAndHalfTurn() throws Exception {
+        float[] small = MatrixUtils.toAxisAngle(matrixOf(0.005f, 0, 0, 1));
+        assertEquals(0.005f, small[0], 1e-5f);
+        assertEquals(1f, small[3], 1e-5f);
+        // The previous code took it for the identity
+        assertEquals(0f, LegacyRotationMath.legacyToAxisAngle(matrixOf(0.005f, 0, 0, 1))[0], 0);
+
+        float[] halfTurn = MatrixUtils.toAxisAngle(matrixOf((float) Math.PI - 0.001f, 0, 1, 0));
+        assertEquals(Math.PI - 0.001, halfTurn[0], 1e-4);
+        assertEquals(1f, halfTurn[2], 1e-4f);
+    }
+
+    @Test
+    public void foldAngle_matchesAsinOfSin() throws Exception {
+        for (float angle = -20f; angle <= 20f; angle += 0.01f)
+            assertEquals(LegacyRotationMath.legacySimplifyAngleRad(angle),
+                    MatrixUtils.simplifyAngleRad(angle), 2e-5f);
+    }
+
+    @Test
+    public void multiplyAndRotate_matchTheMatrices() throws Exception {
+        Random random = new Random(4);
+        float[] a = new float[4], b = new float[4], ab = new float[4];
+        float[] v = { 1, 2, 3 }, rotated = new float[3];
+        for (int i = 0; i < 200; i++) {
+            float[] ma = LegacyRotationMath.randomRotation(random);
+            float[] mb = LegacyRotationMath.randomRotation(random);
+            float[] mab = new float[16];
+            MatrixUtils.multiplyMM(mab, ma, mb);
+            QuaternionMath.fromMatrix(ma, a);
+            QuaternionMath.fromMatrix(mb, b);
+            QuaternionMath.multiply(a, b, ab);
+
+            float[] back = new float[16];
+            back[15] = 1;
+            QuaternionMath.toMatrix(ab, back);
+            assertArrayEquals(mab, back, 1e-5f);
+
+            QuaternionMath.rotate(ab, v, rotated);
+            assertEquals(mab[0] + 2 * mab[4] + 3 * mab[8], rotated[0], 1e-4f);
+            assertEquals(mab[1] + 2 * mab[5] + 3 * mab[9], rotated[1], 1e-4f);
+            assertEquals(mab[2] + 2 * mab[6] + 3 * mab[10], rotated[2], 1e-4f);
+
+            QuaternionMath.conjugate(ab, ab);
+            QuaternionMath.rotate(ab, rotated, rotated);
+            assertArrayEquals(v, rotated, 1e-4f);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package it.drakefk.metar;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the per-frame matrices of MetARGLRenderer are computed
+ * correctly and without allocating, using a fake source of trackable results.
+ */
+public class RenderScratchPoolTest {
+
+    private static final float SCALE = 0.003f;
+
+    /** A frame with a fixed number of trackables, all with the same pose */
+    private static class FakeResultSource implements TrackableResultSource {
+        int numResults;
+        final float[] pose = {
+                1, 0, 0, 10,
+                0, 0, -1, 20,
+                0, 1, 0, 30 };
+
+        FakeResultSource(int numResults) {
+            this.numResults = numResults;
+        }
+
+        @Override
+        public int getNumTrackableResults() {
+            return numResults;
+        }
+
+        @Override
+        public void getPose(int index, float[] out) {
+            System.arraycopy(pose, 0, out, 0, 12);
+        }
+
+        @Override
+        public int getTrackableId(int index) {
+            return index;
+        }
+
+        @Override
+        public String getTrackableName(int index) {
+            return "tarmac";
+        }
+
+        @Override
+        public Object getTrackableUserData(int index) {
+            return null;
+        }
+    }
+
+    private static float[] identity() {
+        float[] m = new float[16];
+        m[0] = m[5] = m[10] = m[15] = 1;
+        return m;
+    }
+
+    @Test
+    public void prepareFrame_computesModelViewProjection() throws Exception {
+        RenderScratchPool pool = new RenderScratchPool();
+        FakeResultSource source = new FakeResultSource(2);
+
+        assertEquals(2, pool.prepareFrame(source, identity(), SCALE));
+
+        float[] mvp = pool.getModelViewProjection(1);
+        // Rotation is scaled, translation is the pose plus the offset on the local z axis
+        assertEquals(SCALE, mvp[0], 1e-6f);
+        assertEquals(SCALE, mvp[6], 1e-6f);
+        assertEquals(10f, mvp[12], 1e-5f);
+        assertEquals(20f - SCALE, mvp[13], 1e-5f);
+        assertEquals(30f, mvp[14], 1e-5f);
+        assertEquals(1f, mvp[15], 1e-6f);
+
+        // The camera is the inverse of the unscaled pose
+        assertTrue(pool.hasCameraPosition());
+        float[] cam = pool.getCameraPosition();
+        assertEquals(-10f, cam[12], 1e-5f);
+        assertEquals(-30f, cam[13], 1e-5f);
+        assertEquals(20f, cam[14], 1e-5f);
+    }
+
+    @Test
+    public void prepareFrame_noTrackables() throws Exception {
+        RenderScratchPool pool = new RenderScratchPool();
+        assertEquals(0, pool.prepareFrame(new FakeResultSource(0), identity(), SCALE));
+        assertFalse(pool.hasCameraPosition());
+    }
+
+    @Test
+    public void prepareFrame_growsOnlyWhenNeeded() throws Exception {
+        RenderScratchPool pool = new RenderScratchPool();
+        FakeResultSource source = new FakeResultSource(pool.getCapacity() + 1);
+        pool.prepareFrame(source, identity(), SCALE);
+        int capacity = pool.getCapacity();
+        assertTrue(capacity > source.numResults - 1);
+
+        float[] first = pool.getModelViewProjection(0);
+        source.numResults = 1;
+        pool.prepareFrame(source, identity(), SCALE);
+        assertEquals(capacity, pool.getCapacity());
+        assertSame(first, pool.getModelViewProjection(0));
+    }
+
+    @Test
+    public void prepareFrame_steadyStateDoesNotAllocate() throws Exception {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean))
+            return; // allocation counters not available on this JVM
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        if (!threadBean.isThreadAllocatedMemorySupported())
+            return;
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        RenderScratchPool pool = new RenderScratchPool();
+        FakeResultSource source = new FakeResultSource(8);
+        float[] projection = identity();
+        long threadId = Thread.currentThread().getId();
+        long frameNs = 16666667L;
+
+        // The trackables are seen once, then filtered like in MetARGLRenderer
+        pool.prepareFrame(source, projection, SCALE, 0);
+        pool.setPoseFilters(new PoseFilterBank(new PoseFilterBank.Factory() {
+            @Override
+            public PoseFilter create() {
+                return new OneEuroPoseFilter();
+            }
+        }));
+
+        // Warm up: the pool grows to 8 trackables, the filters are created
+        // and the JIT settles
+        for (int f = 1; f <= 20000; f++)
+            pool.prepareFrame(source, projection, SCALE, f * frameNs);
+
+        int frames = 10000;
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int f = 20001; f <= 20000 + frames; f++)
+            pool.prepareFrame(source, projection, SCALE, f * frameNs);
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        // A single float[16] per frame would be more than 600 KB here, the
+        // margin only covers the counter itself
+        assertTrue("Allocated " + allocated + " bytes in " + frames + " frames",
+                allocated < 1024);
+    }
+}
@@ -0,0 +1,39 @@
+package it.drakefk.metar;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SwitchLatencyTest {
+
+    private static final long MS = 1000000L;
+
+    @Test
+    public void switched_measuresFromTheFirstRequest() throws Exception {
+        SwitchLatency latency = new SwitchLatency();
+        latency.requested(100 * MS);
+        // A second tap before the switch does not restart the clock
+        latency.requested(150 * MS);
+        latency.switched(180 * MS, 182 * MS);
+        assertEquals(1, latency.getCount());
+        assertEquals(82, latency.getLastLatencyMs(), 1e-9);
+        assertEquals(2, latency.getLastSwapMs(), 1e-9);
+
+        latency.requested(1000 * MS);
+        latency.switched(1010 * MS, 1011 * MS);
+        assertEquals(11, latency.getLastLatencyMs(), 1e-9);
+        assertEquals(46.5, latency.getMeanLatencyMs(), 1e-9);
+        assertTrue(latency.format().startsWith("switches 2, latency last 11.0 ms mean 46.5 ms max 82.0 ms"));
+    }
+
+    @Test
+    public void failed_forgetsTheRequest() throws Exception {
+        SwitchLatency latency = new SwitchLatency();
+        assertEquals(0, latency.getMeanLatencyMs(), 0);
+        latency.requested(0);
+        latency.failed();
+        // Without a request only the swap counts
+        latency.switched(500 * MS, 503 * MS);
+        assertEquals(3, latency.getLastLatencyMs(), 1e-9);
+    }
+}
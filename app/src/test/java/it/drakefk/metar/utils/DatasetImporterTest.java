@@ -0,0 +1,290 @@
+package it.drakefk.metar.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DatasetImporterTest {
+
+    /** Runs the submitted tasks only when asked, on the calling thread */
+    private static class ManualExecutor extends AbstractExecutorService {
+        final List<Runnable> queue = new ArrayList<Runnable>();
+        boolean shutdown;
+
+        void runAll() {
+            while (!queue.isEmpty())
+                queue.remove(0).run();
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            queue.add(command);
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            List<Runnable> pending = new ArrayList<Runnable>(queue);
+            queue.clear();
+            return pending;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown && queue.isEmpty();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return isTerminated();
+        }
+    }
+
+    /** Loads the datasets as strings and records what happens to them */
+    private static class FakeLoader implements DatasetImporter.Loader<String> {
+        final List<String> calls = new ArrayList<String>();
+        boolean failActivation;
+        /** Run in the middle of load, like a call from another thread */
+        Runnable onLoad;
+
+        @Override
+        public String resolve(String path, ZipExtractor.ProgressListener listener) throws IOException {
+            calls.add("resolve " + path);
+            if (path.endsWith(".broken"))
+                throw new IOException("Corrupted zip");
+            listener.onProgress(50, 100);
+            return path + ".xml";
+        }
+
+        @Override
+        public String load(String path, int storageType) {
+            calls.add("load " + path);
+            if (onLoad != null)
+                onLoad.run();
+            return "dataset " + path;
+        }
+
+        @Override
+        public boolean activate(String dataSet) {
+            calls.add("activate " + dataSet);
+            return !failActivation;
+        }
+
+        @Override
+        public void destroy(String dataSet) {
+            calls.add("destroy " + dataSet);
+        }
+    }
+
+    /** Records the progress and the results in a single list */
+    private static class Recorder implements DatasetImporter.Progress,
+            DatasetImporter.Listener<String> {
+        final List<String> events = new ArrayList<String>();
+
+        @Override
+        public void show() {
+            events.add("show");
+        }
+
+        @Override
+        public void update(int percent) {
+            events.add(percent + "%");
+        }
+
+        @Override
+        public void hide() {
+            events.add("hide");
+        }
+
+        @Override
+        public void onDatasetImported(String path, String dataSet) {
+            events.add("imported " + dataSet);
+        }
+
+        @Override
+        public void onImportFailed(String path) {
+            events.add("failed " + path);
+        }
+
+        @Override
+        public void onImportCancelled(String path) {
+            events.add("cancelled " + path);
+        }
+    }
+
+    /** Runs the calls to the listener immediately */
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private ManualExecutor mWorker;
+    private FakeLoader mLoader;
+    private Recorder mRecorder;
+    private DatasetImporter<String> mImporter;
+
+    @Before
+    public void setUp() throws Exception {
+        mWorker = new ManualExecutor();
+        mLoader = new FakeLoader();
+        mRecorder = new Recorder();
+        mImporter = new DatasetImporter<String>(mLoader, mRecorder, DIRECT, mRecorder, mWorker);
+    }
+
+    @Test
+    public void import_isActivatedByActivatePending() throws Exception {
+        mImporter.importDataset("a.zip");
+        assertTrue(mImporter.isImporting());
+        mWorker.runAll();
+        // Loaded, but only activated on the Vuforia thread
+        assertFalse(mLoader.calls.contains("activate dataset a.zip.xml"));
+
+        mImporter.activatePending();
+        assertFalse(mImporter.isImporting());
+        assertEquals("activate dataset a.zip.xml", mLoader.calls.get(2));
+        assertEquals("[show, 50%, hide, imported dataset a.zip.xml]", mRecorder.events.toString());
+    }
+
+    @Test
+    public void cancel_beforeTheWorkerRuns() throws Exception {
+        mImporter.importDataset("a.zip");
+        mImporter.cancel();
+        assertFalse(mImporter.isImporting());
+        mWorker.runAll();
+        mImporter.activatePending();
+
+        // The task never ran, nothing was loaded
+        assertTrue(mLoader.calls.isEmpty());
+        assertEquals("[show, cancelled a.zip, hide]", mRecorder.events.toString());
+    }
+
+    @Test
+    public void cancel_afterTheLoadDestroysTheDataset() throws Exception {
+        mImporter.importDataset("a.zip");
+        mWorker.runAll();
+        mImporter.cancel();
+        mImporter.activatePending();
+
+        assertFalse(mLoader.calls.contains("activate dataset a.zip.xml"));
+        assertEquals("destroy dataset a.zip.xml", mLoader.calls.get(mLoader.calls.size() - 1));
+        assertEquals("[show, 50%, cancelled a.zip, hide]", mRecorder.events.toString());
+    }
+
+    @Test
+    public void failedActivation_destroysAndReports() throws Exception {
+        mLoader.failActivation = true;
+        mImporter.importDataset("a.zip");
+        mWorker.runAll();
+        mImporter.activatePending();
+
+        assertEquals("destroy dataset a.zip.xml", mLoader.calls.get(mLoader.calls.size() - 1));
+        assertEquals("failed a.zip", mRecorder.events.get(mRecorder.events.size() - 1));
+    }
+
+    @Test
+    public void failedExtraction_isReported() throws Exception {
+        mImporter.importDataset("a.broken");
+        mWorker.runAll();
+        mImporter.activatePending();
+
+        assertEquals(1, mLoader.calls.size());
+        assertEquals("[show, hide, failed a.broken]", mRecorder.events.toString());
+    }
+
+    @Test
+    public void shutdown_destroysTheDatasetsNotActivated() throws Exception {
+        mImporter.importDataset("a.zip");
+        mImporter.importDataset("b.zip");
+        // a is loaded, b never starts
+        mWorker.queue.get(0).run();
+        mWorker.queue.remove(0);
+        mImporter.shutdown(0);
+
+        assertTrue(mWorker.isShutdown());
+        assertFalse(mLoader.calls.contains("load b.zip.xml"));
+        assertEquals("destroy dataset a.zip.xml", mLoader.calls.get(mLoader.calls.size() - 1));
+        assertTrue(mRecorder.events.contains("cancelled a.zip"));
+        assertTrue(mRecorder.events.contains("cancelled b.zip"));
+        // Nothing is left for activatePending
+        mImporter.activatePending();
+        assertFalse(mLoader.calls.contains("activate dataset a.zip.xml"));
+    }
+
+    @Test
+    public void shutdown_whileLoading_theWorkerDestroysTheDataset() throws Exception {
+        mImporter.importDataset("a.zip");
+        Future<String> standby = mImporter.preload("Tarmac.xml", 1);
+        mLoader.onLoad = new Runnable() {
+            @Override
+            public void run() {
+                mImporter.shutdown(0);
+            }
+        };
+        // shutdown returns while a is loaded, the preload never starts
+        mWorker.queue.remove(0).run();
+        // The worker, here the test thread, was interrupted by the cancel
+        assertTrue(Thread.interrupted());
+
+        assertTrue(standby.isCancelled());
+        assertEquals("destroy dataset a.zip.xml", mLoader.calls.get(mLoader.calls.size() - 1));
+        assertEquals("[show, 50%, cancelled a.zip, hide]", mRecorder.events.toString());
+        mImporter.activatePending();
+        assertFalse(mLoader.calls.contains("activate dataset a.zip.xml"));
+    }
+
+    @Test
+    public void shutdown_waitsForTheDatasetBeingLoaded() throws Exception {
+        final CountDownLatch loading = new CountDownLatch(1);
+        mLoader.onLoad = new Runnable() {
+            @Override
+            public void run() {
+                loading.countDown();
+                // Like DataSet.load, the interrupt is ignored
+                long end = System.nanoTime() + 50 * 1000000L;
+                while (System.nanoTime() < end)
+                    Thread.yield();
+            }
+        };
+        DatasetImporter<String> importer = new DatasetImporter<String>(mLoader, mRecorder,
+                DIRECT, mRecorder, Executors.newSingleThreadExecutor());
+        importer.importDataset("a.zip");
+        loading.await();
+
+        assertTrue(importer.shutdown(5000));
+        // Destroyed by the worker before shutdown returned
+        assertEquals("destroy dataset a.zip.xml", mLoader.calls.get(mLoader.calls.size() - 1));
+    }
+
+    @Test
+    public void preload_doesNotActivate() throws Exception {
+        Future<String> standby = mImporter.preload("Tarmac.xml", 1);
+        mWorker.runAll();
+        assertEquals("dataset Tarmac.xml", standby.get());
+        mImporter.activatePending();
+        assertEquals(1, mLoader.calls.size());
+        assertTrue(mRecorder.events.isEmpty());
+    }
+}
@@ -0,0 +1,193 @@
+package it.drakefk.metar.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+public class ExtractionCacheTest {
+
+    /** Counts the extractions */
+    private static class CountingExtractor extends ZipExtractor {
+        int count;
+
+        CountingExtractor() {
+            super(1);
+        }
+
+        @Override
+        public void extract(File zipFile, File destDirectory, ProgressListener listener)
+                throws IOException {
+            count++;
+            super.extract(zipFile, destDirectory, listener);
+        }
+    }
+
+    private File mDir;
+    private File mCacheDir;
+    private CountingExtractor mExtractor;
+
+    @Before
+    public void setUp() throws Exception {
+        mDir = File.createTempFile("cache", "test");
+        mDir.delete();
+        mDir.mkdirs();
+        mCacheDir = new File(mDir, "cache");
+        mExtractor = new CountingExtractor();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        delete(mDir);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children)
+                delete(child);
+        }
+        file.delete();
+    }
+
+    /** A dataset zip with an .xml and a .dat file of the given size */
+    private File dataset(String name, int datSize) throws IOException {
+        File file = new File(mDir, name + ".zip");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+        try {
+            out.putNextEntry(new ZipEntry(name + ".xml"));
+            out.write(("<QCARConfig name=\"" + name + "\"/>").getBytes("UTF-8"));
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry(name + ".dat"));
+            out.write(new byte[datSize]);
+            out.closeEntry();
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static File copy(File from, File to) throws IOException {
+        InputStream in = new FileInputStream(from);
+        OutputStream out = new FileOutputStream(to);
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0)
+                out.write(buffer, 0, read);
+        } finally {
+            in.close();
+            out.close();
+        }
+        return to;
+    }
+
+    @Test
+    public void extract_hitDoesNotExtractAgain() throws Exception {
+        ExtractionCache cache = new ExtractionCache(mCacheDir, 1 << 20, mExtractor);
+        File zip = dataset("stones", 1000);
+        File folder = cache.extract(zip, null);
+        assertTrue(new File(folder, "stones.xml").isFile());
+        assertEquals(1000, new File(folder, "stones.dat").length());
+        assertTrue(new File(folder, ExtractionCache.MANIFEST).isFile());
+
+        assertEquals(folder, cache.extract(zip, null));
+        // A new instance on the same folder, as after a restart of the app
+        assertEquals(folder, new ExtractionCache(mCacheDir, 1 << 20, mExtractor).extract(zip, null));
+        assertEquals(1, mExtractor.count);
+    }
+
+    @Test
+    public void fingerprint_followsTheContentNotTheName() throws Exception {
+        File zip = dataset("stones", 1000);
+        File renamed = copy(zip, new File(mDir, "other.zip"));
+        assertEquals(ExtractionCache.fingerprint(zip), ExtractionCache.fingerprint(renamed));
+
+        ExtractionCache cache = new ExtractionCache(mCacheDir, 1 << 20, mExtractor);
+        assertEquals(cache.extract(zip, null), cache.extract(renamed, null));
+        assertEquals(1, mExtractor.count);
+
+        String before = ExtractionCache.fingerprint(zip);
+        dataset("stones", 1001);
+        assertNotEquals(before, ExtractionCache.fingerprint(zip));
+        assertNotEquals(renamed, cache.extract(zip, null));
+        assertEquals(2, mExtractor.count);
+    }
+
+    @Test(expected = IOException.class)
+    public void fingerprint_rejectsOtherFiles() throws Exception {
+        File file = new File(mDir, "text.zip");
+        OutputStream out = new FileOutputStream(file);
+        out.write(new byte[100]);
+        out.close();
+        ExtractionCache.fingerprint(file);
+    }
+
+    @Test
+    public void extract_repairsIncompleteFolders() throws Exception {
+        ExtractionCache cache = new ExtractionCache(mCacheDir, 1 << 20, mExtractor);
+        File zip = dataset("stones", 1000);
+        File folder = cache.extract(zip, null);
+
+        // A file deleted by the user
+        assertTrue(new File(folder, "stones.dat").delete());
+        cache.extract(zip, null);
+        assertEquals(2, mExtractor.count);
+        assertEquals(1000, new File(folder, "stones.dat").length());
+
+        // An extraction killed before the manifest was written
+        assertTrue(new File(folder, ExtractionCache.MANIFEST).delete());
+        new FileOutputStream(new File(folder, "stones.dat")).close();
+        cache.extract(zip, null);
+        assertEquals(3, mExtractor.count);
+        assertEquals(1000, new File(folder, "stones.dat").length());
+    }
+
+    @Test
+    public void extract_evictsTheLeastRecentlyUsed() throws Exception {
+        // Room for two datasets
+        ExtractionCache cache = new ExtractionCache(mCacheDir, 2500, mExtractor);
+        File a = cache.extract(dataset("a", 1000), null);
+        Thread.sleep(5);
+        File b = cache.extract(dataset("b", 1000), null);
+        Thread.sleep(5);
+        cache.extract(new File(mDir, "a.zip"), null);
+        Thread.sleep(5);
+        File c = cache.extract(dataset("c", 1000), null);
+        assertTrue(a.isDirectory());
+        assertFalse(b.exists());
+        assertTrue(c.isDirectory());
+
+        // The dataset just used is kept even if it is over the budget
+        File d = cache.extract(dataset("d", 5000), null);
+        assertTrue(d.isDirectory());
+        assertFalse(a.exists());
+        assertFalse(c.exists());
+
+        // Folders of interrupted extractions are removed
+        File partial = new File(mCacheDir, "partial");
+        assertTrue(partial.mkdirs());
+        cache.extract(new File(mDir, "d.zip"), null);
+        assertFalse(partial.exists());
+    }
+
+    @Test
+    public void clear_deletesEverything() throws Exception {
+        ExtractionCache cache = new ExtractionCache(mCacheDir, 1 << 20, mExtractor);
+        File folder = cache.extract(dataset("stones", 10), null);
+        cache.clear();
+        assertFalse(folder.exists());
+        cache.extract(new File(mDir, "stones.zip"), null);
+        assertEquals(2, mExtractor.count);
+    }
+}
@@ -0,0 +1,179 @@
+package it.drakefk.metar.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+public class ZipExtractorTest {
+
+    private File mDir;
+
+    @Before
+    public void setUp() throws Exception {
+        mDir = File.createTempFile("zip", "test");
+        mDir.delete();
+        mDir.mkdirs();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        delete(mDir);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children)
+                delete(child);
+        }
+        file.delete();
+    }
+
+    /** A zip with the given entries, a name ending with / is a folder */
+    private File zip(String[] names, byte[][] contents) throws IOException {
+        File file = new File(mDir, "data.zip");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+        try {
+            for (int i = 0; i < names.length; i++) {
+                out.putNextEntry(new ZipEntry(names[i]));
+                if (contents[i] != null)
+                    out.write(contents[i]);
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static byte[] random(int size, long seed) {
+        byte[] data = new byte[size];
+        Random random = new Random(seed);
+        // Half random and half zeros, so it is compressed
+        for (int i = 0; i < size; i += 2)
+            data[i] = (byte) random.nextInt();
+        return data;
+    }
+
+    private static byte[] read(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            byte[] data = new byte[(int) raf.length()];
+            raf.readFully(data);
+            return data;
+        } finally {
+            raf.close();
+        }
+    }
+
+    @Test
+    public void extract_writesAllTheEntries() throws Exception {
+        byte[] big = random(3 * ZipExtractor.BUFFER_SIZE + 17, 1);
+        byte[] small = random(100, 2);
+        File zip = zip(new String[] { "Dataset/", "Dataset/Dataset.xml", "Dataset/Dataset.dat",
+                "Dataset/empty.txt", "other/nested/file.bin" },
+                new byte[][] { null, small, big, new byte[0], small });
+
+        File dest = new File(mDir, "out");
+        final AtomicLong last = new AtomicLong();
+        new ZipExtractor(3).extract(zip, dest, new ZipExtractor.ProgressListener() {
+            @Override
+            public void onProgress(long extractedBytes, long totalBytes) {
+                assertTrue(extractedBytes <= totalBytes);
+                synchronized (last) {
+                    last.set(Math.max(last.get(), extractedBytes));
+                }
+            }
+        });
+
+        assertArrayEquals(small, read(new File(dest, "Dataset/Dataset.xml")));
+        assertArrayEquals(big, read(new File(dest, "Dataset/Dataset.dat")));
+        assertEquals(0, new File(dest, "Dataset/empty.txt").length());
+        assertArrayEquals(small, read(new File(dest, "other/nested/file.bin")));
+        assertEquals(big.length + 2 * small.length, last.get());
+    }
+
+    @Test
+    public void extract_rejectsEntriesOutsideTheDestination() throws Exception {
+        File zip = zip(new String[] { "../evil.txt" }, new byte[][] { { 1 } });
+        try {
+            new ZipExtractor().extract(zip, new File(mDir, "out"), null);
+            fail();
+        } catch (IOException expected) {
+        }
+        assertFalse(new File(mDir, "evil.txt").exists());
+    }
+
+    @Test
+    public void extract_stopsWhenInterrupted() throws Exception {
+        String[] names = new String[8];
+        byte[][] contents = new byte[8][];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "file" + i;
+            contents[i] = random(4 * ZipExtractor.BUFFER_SIZE, i);
+        }
+        final File zip = zip(names, contents);
+        final File dest = new File(mDir, "out");
+        final AtomicReference<Throwable> thrown = new AtomicReference<Throwable>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    new ZipExtractor(2).extract(zip, dest, new ZipExtractor.ProgressListener() {
+                        @Override
+                        public void onProgress(long extractedBytes, long totalBytes) {
+                            try {
+                                // Slow enough to be interrupted in the middle
+                                Thread.sleep(20);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                    });
+                } catch (Throwable e) {
+                    thrown.set(e);
+                }
+            }
+        });
+        thread.start();
+        Thread.sleep(100);
+        thread.interrupt();
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+        assertTrue(String.valueOf(thrown.get()), thrown.get() instanceof InterruptedIOException);
+    }
+
+    @Test
+    public void split_balancesTheGroups() throws Exception {
+        List<ZipEntry> entries = new ArrayList<ZipEntry>();
+        for (long size : new long[] { 10, 70, 20, 40, 30, 50 }) {
+            ZipEntry entry = new ZipEntry("f" + size);
+            entry.setSize(size);
+            entries.add(entry);
+        }
+        List<List<ZipEntry>> groups = ZipExtractor.split(entries, 2);
+        long[] sizes = new long[2];
+        for (int g = 0; g < 2; g++) {
+            for (ZipEntry entry : groups.get(g))
+                sizes[g] += entry.getSize();
+        }
+        Arrays.sort(sizes);
+        assertArrayEquals(new long[] { 110, 110 }, sizes);
+    }
+}
@@ -0,0 +1,76 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading a model from the text format of SampleApplication3DModel
+ * compared with the binary .mesh format, both from memory so the storage
+ * is not measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BinaryModelFileBenchmark {
+
+    /** Number of vertices of the model, with a normal and a texture coordinate each */
+    @Param({ "1000", "20000" })
+    public int vertices;
+
+    private String mText;
+    private ByteBuffer mBinary;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        int[] counts = { vertices * 3, vertices * 3, vertices * 2 };
+        StringBuilder text = new StringBuilder();
+        mBinary = ByteBuffer.allocateDirect(BinaryModelFile.HEADER_SIZE
+                + 4 * (counts[0] + counts[1] + counts[2])).order(ByteOrder.LITTLE_ENDIAN);
+        mBinary.putInt(BinaryModelFile.MAGIC);
+        mBinary.putInt(BinaryModelFile.VERSION);
+        mBinary.putInt(counts[0]);
+        mBinary.putInt(counts[1]);
+        mBinary.putInt(counts[2]);
+        mBinary.putInt(0);
+        for (int count : counts) {
+            text.append(count).append('\n');
+            for (int i = 0; i < count; i++) {
+                float value = random.nextFloat() * 200 - 100;
+                text.append(value).append('\n');
+                mBinary.putFloat(value);
+            }
+        }
+        mText = text.toString();
+        mBinary.flip();
+    }
+
+    @Benchmark
+    public BinaryModelFile readText() throws IOException {
+        return BinaryModelFile.readText(new StringReader(mText));
+    }
+
+    @Benchmark
+    public BinaryModelFile read() throws IOException {
+        return BinaryModelFile.read(mBinary.duplicate());
+    }
+}
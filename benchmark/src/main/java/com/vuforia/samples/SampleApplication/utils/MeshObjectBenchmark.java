@@ -0,0 +1,132 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The creation of the built-in meshes: MeshObject.fillBuffer on the data
+ * of the teapot, and the baked teapot asset wrapped in a BakedMeshObject.
+ * <p>The legacy benchmarks run the element by element puts fillBuffer
+ * made before the bulk copies, as a reference.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MeshObjectBenchmark {
+
+    /** Exposes fillBuffer, the mesh itself is never drawn */
+    private static class Mesh extends MeshObject {
+        @Override
+        public Buffer getBuffer(BUFFER_TYPE bufferType) {
+            return null;
+        }
+
+        @Override
+        public int getNumObjectVertex() {
+            return 0;
+        }
+
+        @Override
+        public int getNumObjectIndex() {
+            return 0;
+        }
+    }
+
+    /** The benchmarks run in the benchmark module directory */
+    private static final String TEAPOT_ASSET = "../app/src/main/assets/meshes/Teapot.mesh";
+
+    private final Mesh mMesh = new Mesh();
+    private ByteBuffer mTeapotData;
+    private double[] mVertices;
+    private float[] mVertexFloats;
+    private short[] mIndices;
+
+    @Setup
+    public void setup() throws IOException {
+        RandomAccessFile file = new RandomAccessFile(TEAPOT_ASSET, "r");
+        try {
+            mTeapotData = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        } finally {
+            file.close();
+        }
+        MeshObject teapot = new BakedMeshObject(mTeapotData.duplicate());
+        ByteBuffer vertices = (ByteBuffer) teapot.getVertices();
+        mVertexFloats = new float[vertices.remaining() / 4];
+        vertices.asFloatBuffer().get(mVertexFloats);
+        mVertices = new double[mVertexFloats.length];
+        for (int i = 0; i < mVertices.length; i++)
+            mVertices[i] = mVertexFloats[i];
+        ByteBuffer indices = (ByteBuffer) teapot.getIndices();
+        mIndices = new short[indices.remaining() / 2];
+        indices.asShortBuffer().get(mIndices);
+    }
+
+    @Benchmark
+    public Buffer fillBufferDoubles() {
+        return mMesh.fillBuffer(mVertices);
+    }
+
+    @Benchmark
+    public Buffer fillBufferFloats() {
+        return mMesh.fillBuffer(mVertexFloats);
+    }
+
+    @Benchmark
+    public Buffer fillBufferShorts() {
+        return mMesh.fillBuffer(mIndices);
+    }
+
+    @Benchmark
+    public Buffer legacyFillBufferDoubles() {
+        ByteBuffer bb = ByteBuffer.allocateDirect(4 * mVertices.length);
+        bb.order(ByteOrder.LITTLE_ENDIAN);
+        for (double d : mVertices)
+            bb.putFloat((float) d);
+        bb.rewind();
+        return bb;
+    }
+
+    @Benchmark
+    public Buffer legacyFillBufferFloats() {
+        ByteBuffer bb = ByteBuffer.allocateDirect(4 * mVertexFloats.length);
+        bb.order(ByteOrder.LITTLE_ENDIAN);
+        for (float f : mVertexFloats)
+            bb.putFloat(f);
+        bb.rewind();
+        return bb;
+    }
+
+    @Benchmark
+    public Buffer legacyFillBufferShorts() {
+        ByteBuffer bb = ByteBuffer.allocateDirect(2 * mIndices.length);
+        bb.order(ByteOrder.LITTLE_ENDIAN);
+        for (short s : mIndices)
+            bb.putShort(s);
+        bb.rewind();
+        return bb;
+    }
+
+    @Benchmark
+    public MeshObject bakedTeapot() throws IOException {
+        return new BakedMeshObject(mTeapotData.duplicate());
+    }
+}
@@ -0,0 +1,58 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The pixel conversions of the texture loading. Texture itself needs the
+ * Android Bitmap, loadTextureFromIntBuffer is measured through
+ * PixelBuffers.argbToRgba, which is all it does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PixelBuffersBenchmark {
+
+    /** Width and height of the square texture */
+    @Param({ "256", "1024" })
+    public int size;
+
+    private int[] mArgb;
+    private ByteBuffer mRgba;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        mArgb = new int[size * size];
+        for (int i = 0; i < mArgb.length; i++)
+            mArgb[i] = random.nextInt();
+        mRgba = PixelBuffers.argbToRgba(mArgb, size, size);
+    }
+
+    @Benchmark
+    public ByteBuffer argbToRgba() {
+        return PixelBuffers.argbToRgba(mArgb, size, size);
+    }
+
+    @Benchmark
+    public ByteBuffer flipRows() {
+        PixelBuffers.flipRows(mRgba, size * 4, size);
+        return mRgba;
+    }
+}
@@ -0,0 +1,87 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The float[] math behind SampleMath, which itself needs the native
+ * Vuforia vectors: the inverse, the transforms and the ray cast of a
+ * touch on a plane.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class VectorMathBenchmark {
+
+    private final float[] mMatrix = new float[16];
+    private final float[] mInverseProj = new float[16];
+    private final float[] mModelView = new float[16];
+    private final float[] mOut = new float[16];
+    private final float[] mVector = { 1, 2, 3, 1 };
+    private final float[] mPlaneCenter = { 0, 0, 0 };
+    private final float[] mPlaneNormal = { 0, 0, 1 };
+    private final float[] mLineStart = new float[3];
+    private final float[] mLineEnd = new float[3];
+    private final float[] mIntersection = new float[3];
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        for (int i = 0; i < 16; i++)
+            mMatrix[i] = random.nextFloat() * 2 - 1;
+        for (int i = 0; i < 4; i++)
+            mMatrix[i * 5] += 4;
+
+        // A perspective projection with a 60 degrees field of view
+        float[] projection = new float[16];
+        float f = (float) (1 / Math.tan(Math.PI / 6));
+        float near = 10, far = 5000;
+        projection[0] = f / (4 / 3f);
+        projection[5] = f;
+        projection[10] = (far + near) / (near - far);
+        projection[11] = -1;
+        projection[14] = 2 * far * near / (near - far);
+        VectorMath.matrix44Inverse(projection, mInverseProj);
+
+        // The trackable 300 units in front of the camera
+        VectorMath.matrix44Identity(mModelView);
+        mModelView[14] = -300;
+    }
+
+    @Benchmark
+    public boolean matrix44Inverse() {
+        return VectorMath.matrix44Inverse(mMatrix, mOut);
+    }
+
+    @Benchmark
+    public float matrix44Determinant() {
+        return VectorMath.matrix44Determinant(mMatrix);
+    }
+
+    @Benchmark
+    public float[] vec4Transform() {
+        VectorMath.vec4Transform(mVector, mMatrix, mOut);
+        return mOut;
+    }
+
+    @Benchmark
+    public boolean projectScreenPointToPlane() {
+        return VectorMath.projectScreenPointToPlane(mInverseProj, mModelView,
+                1280, 720, 1280, 960, 700, 300, mPlaneCenter, mPlaneNormal,
+                mLineStart, mLineEnd, mIntersection);
+    }
+}
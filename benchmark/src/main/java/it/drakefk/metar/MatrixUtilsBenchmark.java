@@ -0,0 +1,118 @@
+package it.drakefk.metar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-frame matrix code of the renderer: the rotation decompositions
+ * and the angle folding shown in the HUD, and the model view products of
+ * every trackable.
+ * <p>Each call takes the next of {@link #MATRICES} random rotations, so
+ * the branches of the decompositions are not always the same.</p>
+ * <p>The legacy benchmarks run the decompositions made before
+ * QuaternionMath, kept in the unit tests as LegacyRotationMath, as a
+ * reference.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MatrixUtilsBenchmark {
+
+    private static final int MATRICES = 1024;
+
+    private final float[][] mMatrices = new float[MATRICES][];
+    private final float[] mOut = new float[4];
+    private final float[] mProduct = new float[16];
+    private int mNext = 0;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        float[] q = new float[4];
+        for (int i = 0; i < MATRICES; i++) {
+            QuaternionMath.fromAxisAngle((float) (random.nextFloat() * 2 * Math.PI),
+                    random.nextFloat() - 0.5f, random.nextFloat() - 0.5f,
+                    random.nextFloat() - 0.5f, q);
+            float[] m = new float[16];
+            QuaternionMath.toMatrix(q, m);
+            m[12] = random.nextFloat() * 100;
+            m[13] = random.nextFloat() * 100;
+            m[14] = random.nextFloat() * 500;
+            m[15] = 1;
+            mMatrices[i] = m;
+        }
+    }
+
+    private float[] next() {
+        mNext = (mNext + 1) & (MATRICES - 1);
+        return mMatrices[mNext];
+    }
+
+    @Benchmark
+    public float[] toAxisAngle() {
+        MatrixUtils.toAxisAngle(next(), mOut);
+        return mOut;
+    }
+
+    @Benchmark
+    public float[] toXYZAngle() {
+        MatrixUtils.toXYZAngle(next(), mOut);
+        return mOut;
+    }
+
+    @Benchmark
+    public float[] toZYXAngle() {
+        MatrixUtils.toZYXAngle(next(), mOut);
+        return mOut;
+    }
+
+    @Benchmark
+    public float foldAngle() {
+        return QuaternionMath.foldAngle(next()[0] * 10);
+    }
+
+    @Benchmark
+    public float[] legacyToAxisAngle() {
+        return LegacyRotationMath.legacyToAxisAngle(next());
+    }
+
+    @Benchmark
+    public float[] legacyToXYZAngle() {
+        return LegacyRotationMath.legacyToXYZAngle(next());
+    }
+
+    @Benchmark
+    public float[] legacyToZYXAngle() {
+        return LegacyRotationMath.legacyToZYXAngle(next());
+    }
+
+    @Benchmark
+    public float legacyFoldAngle() {
+        return LegacyRotationMath.legacySimplifyAngleRad(next()[0] * 10);
+    }
+
+    @Benchmark
+    public float[] multiplyMM() {
+        MatrixUtils.multiplyMM(mProduct, next(), next());
+        return mProduct;
+    }
+
+    @Benchmark
+    public boolean invertM() {
+        return MatrixUtils.invertM(mProduct, next());
+    }
+}
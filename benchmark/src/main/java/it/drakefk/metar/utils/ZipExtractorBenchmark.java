@@ -0,0 +1,137 @@
+package it.drakefk.metar.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * The extraction of a synthetic dataset bundle: ZipExtractor with one and
+ * more threads, and the ZipInputStream loop DatasetLoader.unzip used
+ * before as a reference.
+ * <p>The zip has a few large files, like the .dat of the datasets, and
+ * many small ones, half random bytes so they are compressed about 2:1.
+ * The files are extracted in a temporary folder, so the disk is part of
+ * the measure.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ZipExtractorBenchmark {
+
+    private static final int LARGE_FILES = 6;
+    private static final int LARGE_FILE_SIZE = 8 * 1024 * 1024;
+    private static final int SMALL_FILES = 64;
+    private static final int SMALL_FILE_SIZE = 16 * 1024;
+
+    /** Only the extractor has threads */
+    @State(Scope.Benchmark)
+    public static class Threads {
+        @Param({ "1", "4" })
+        public int threads;
+    }
+
+    private File mDir;
+    private File mZip;
+    private File mDest;
+
+    @Setup
+    public void setup() throws IOException {
+        mDir = File.createTempFile("zipbench", "");
+        mDir.delete();
+        mDir.mkdirs();
+        mZip = new File(mDir, "bundle.zip");
+        mDest = new File(mDir, "out");
+
+        Random random = new Random(42);
+        ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(mZip)));
+        try {
+            for (int i = 0; i < LARGE_FILES; i++)
+                addEntry(out, "bundle/target" + i + ".dat", LARGE_FILE_SIZE, random);
+            for (int i = 0; i < SMALL_FILES; i++)
+                addEntry(out, "bundle/target" + i + ".xml", SMALL_FILE_SIZE, random);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void addEntry(ZipOutputStream out, String name, int size, Random random)
+            throws IOException {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i += 2)
+            data[i] = (byte) random.nextInt();
+        out.putNextEntry(new ZipEntry(name));
+        out.write(data);
+        out.closeEntry();
+    }
+
+    @TearDown
+    public void tearDown() {
+        delete(mDir);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children)
+                delete(child);
+        }
+        file.delete();
+    }
+
+    @Benchmark
+    public void extract(Threads threads) throws IOException {
+        new ZipExtractor(threads.threads).extract(mZip, mDest, null);
+    }
+
+    /** The previous DatasetLoader.unzip */
+    @Benchmark
+    public void legacyUnzip() throws IOException {
+        String destDirectory = mDest.getPath();
+        File destDir = new File(destDirectory);
+        if (!destDir.exists())
+            destDir.mkdirs();
+
+        ZipInputStream zipIn = new ZipInputStream(new FileInputStream(mZip));
+        ZipEntry entry = zipIn.getNextEntry();
+        while (entry != null) {
+            String filePath = destDirectory + File.separator + entry.getName();
+            if (!entry.isDirectory()) {
+                new File(filePath).getParentFile().mkdirs();
+                BufferedOutputStream bos = new BufferedOutputStream(new FileOutputStream(filePath));
+                byte[] bytesIn = new byte[4096];
+                int read;
+                while ((read = zipIn.read(bytesIn)) != -1)
+                    bos.write(bytesIn, 0, read);
+                bos.close();
+            } else {
+                new File(filePath).mkdir();
+            }
+            zipIn.closeEntry();
+            entry = zipIn.getNextEntry();
+        }
+        zipIn.close();
+    }
+}
@@ -0,0 +1,40 @@
+package com.vuforia.samples.SampleApplication.utils;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+
+// Offline converter from the text format of SampleApplication3DModel to
+// BinaryModelFile:
+//   ./gradlew :tools:convertModel -Pin=Buildings.txt -Pout=Buildings.mesh
+public final class ModelConverter
+{
+    private ModelConverter()
+    {
+    }
+    
+    
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length != 2)
+        {
+            System.err.println("Usage: ModelConverter <model.txt> <model"
+                + BinaryModelFile.EXTENSION + ">");
+            System.exit(1);
+        }
+
+        FileReader input = new FileReader(args[0]);
+        BinaryModelFile model;
+        try
+        {
+            model = BinaryModelFile.readText(input);
+        } finally
+        {
+            input.close();
+        }
+        model.write(new File(args[1]));
+        System.out.println("Converted " + args[0] + " to " + args[1] + ": "
+            + model.getNumVertexFloats() / 3 + " vertices");
+    }
+}